@@ -0,0 +1,118 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * DAO del archivo de reservas pasadas.
+ * Las reservas se mueven al archivo copiandolas con INSERT ... SELECT y borrandolas despues de la
+ * tabla reserva; los triggers de los resumenes mensuales no restan las parcelas reservadas que
+ * ya estan en el archivo, de modo que los resumenes no cambian al archivar.
+ */
+@Dao
+public interface ArchivoDao {
+
+    /**
+     * Obtiene los IDs de las reservas vigentes cuya fecha de salida es anterior a un limite.
+     *
+     * @param limite Fecha limite (excluida).
+     * @param maximo Numero maximo de IDs a devolver.
+     * @return Lista de IDs ordenada de menor a mayor.
+     */
+    @Query("SELECT id FROM reserva WHERE fechaSalida < :limite ORDER BY id LIMIT :maximo")
+    List<Integer> getIdsReservasSalidaAnterior(Date limite, int maximo);
+
+    /**
+     * Copia unas reservas vigentes al archivo.
+     *
+     * @param ids       Los IDs de las reservas.
+     * @param archivada Momento en que se archivan.
+     */
+    @Query("INSERT INTO reservaArchivada (id, nombreCliente, numeroMovil, fechaEntrada, fechaSalida, " +
+            "precioTotalCentimos, clienteId, archivada) " +
+            "SELECT id, nombreCliente, numeroMovil, fechaEntrada, fechaSalida, precioTotalCentimos, clienteId, " +
+            ":archivada " +
+            "FROM reserva WHERE id IN (:ids)")
+    void copiarReservas(List<Integer> ids, Date archivada);
+
+    /**
+     * Copia al archivo las parcelas reservadas de unas reservas vigentes.
+     *
+     * @param ids Los IDs de las reservas.
+     */
+    @Query("INSERT INTO parcelaReservadaArchivada (id, reservaId, parcelaId, numeroOcupantes, " +
+            "precioXpersonaCentimos, numeroNoches) " +
+            "SELECT id, reservaId, parcelaId, numeroOcupantes, precioXpersonaCentimos, numeroNoches " +
+            "FROM parcelaReservada WHERE reservaId IN (:ids)")
+    void copiarParcelasReservadas(List<Integer> ids);
+
+    /**
+     * Borra unas reservas vigentes, y con ellas sus parcelas reservadas.
+     *
+     * @param ids Los IDs de las reservas.
+     * @return El numero de reservas borradas.
+     */
+    @Query("DELETE FROM reserva WHERE id IN (:ids)")
+    int borrarReservas(List<Integer> ids);
+
+    /**
+     * Obtiene una reserva archivada por su ID.
+     *
+     * @param id El ID de la reserva.
+     * @return La reserva archivada, o null si no esta en el archivo.
+     */
+    @Query("SELECT * FROM reservaArchivada WHERE id = :id")
+    ReservaArchivada getReservaArchivadaById(int id);
+
+    /**
+     * Obtiene las parcelas reservadas de una reserva archivada.
+     *
+     * @param reservaId El ID de la reserva.
+     * @return Lista de parcelas reservadas ordenada por ID.
+     */
+    @Query("SELECT * FROM parcelaReservadaArchivada WHERE reservaId = :reservaId ORDER BY id")
+    List<ParcelaReservadaArchivada> getParcelasReservadasArchivadas(int reservaId);
+
+    /**
+     * Busca reservas archivadas cuyo nombre de cliente contiene un texto, sin distinguir mayusculas.
+     *
+     * @param texto  Texto a buscar.
+     * @param maximo Numero maximo de resultados.
+     * @return Lista de reservas archivadas, de la mas reciente a la mas antigua.
+     */
+    @Query("SELECT * FROM reservaArchivada WHERE nombreCliente LIKE '%' || :texto || '%' " +
+            "ORDER BY fechaEntrada DESC LIMIT :maximo")
+    List<ReservaArchivada> buscarPorNombreCliente(String texto, int maximo);
+
+    /**
+     * Busca las reservas archivadas de un numero de movil.
+     *
+     * @param numeroMovil El numero de movil normalizado con {@link NumeroTelefono#normalizar(String)}.
+     * @return Lista de reservas archivadas, de la mas reciente a la mas antigua.
+     */
+    @Query("SELECT * FROM reservaArchivada WHERE numeroMovil = :numeroMovil ORDER BY fechaEntrada DESC")
+    List<ReservaArchivada> buscarPorNumeroMovil(String numeroMovil);
+
+    /**
+     * Obtiene las reservas archivadas cuya fecha de entrada esta en el intervalo [inicio, fin).
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Lista de reservas archivadas ordenada por fecha de entrada.
+     */
+    @Query("SELECT * FROM reservaArchivada WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin " +
+            "ORDER BY fechaEntrada, id")
+    List<ReservaArchivada> getReservasArchivadasEntre(Date inicio, Date fin);
+
+    /**
+     * Cuenta las reservas del archivo.
+     *
+     * @return El numero de reservas archivadas.
+     */
+    @Query("SELECT COUNT(*) FROM reservaArchivada")
+    int getNumeroReservasArchivadas();
+
+}
@@ -0,0 +1,208 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Clase que gestiona el archivo de reservas pasadas.
+ * Mueve a las tablas reservaArchivada y parcelaReservadaArchivada las reservas cuya fecha de salida
+ * es anterior a un horizonte, para que las listas, ordenaciones y comprobaciones de disponibilidad
+ * solo recorran las reservas vigentes. El traslado se hace por lotes, cada uno en su propia
+ * transaccion y como una tarea distinta del ejecutor de la base de datos, de modo que el resto de
+ * operaciones no esperan a que termine todo el archivo.
+ * Los informes de ingresos y los resumenes mensuales incluyen las reservas archivadas.
+ */
+public class ArchivoRepository {
+
+    /** Horizonte por defecto: se archivan las reservas que salieron hace mas de un ano */
+    public static final int HORIZONTE_DIAS = 365;
+    /** Numero de reservas que se archivan en cada transaccion */
+    static final int TAMANO_LOTE = 500;
+
+    private static final long MILLIS_DIA = 24L * 60 * 60 * 1000;
+
+    private final CampingRoomDatabase mDb;
+    private final ArchivoDao mArchivoDao;
+
+    /** Ejecuta las operaciones en segundo plano con timeout y registra sus metricas */
+    private final MetricasRepositorio mMetricas = MetricasRepositorio.getInstancia();
+
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
+
+    /**
+     * Constructor de ArchivoRepository para el camping principal.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public ArchivoRepository(Application application) {
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor de ArchivoRepository para un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public ArchivoRepository(Application application, String campingId) {
+        this(new RetencionCamping(application, campingId));
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     */
+    private ArchivoRepository(RetencionCamping retencion) {
+        this(retencion.getDatabase());
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor con la base de datos, por ejemplo una base de datos en memoria.
+     *
+     * @param db La base de datos.
+     */
+    ArchivoRepository(CampingRoomDatabase db) {
+        mDb = db;
+        mArchivoDao = db.archivoDao();
+    }
+
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
+    /**
+     * Archiva las reservas cuya fecha de salida es anterior a hoy menos un horizonte.
+     * La llamada espera a que terminen todos los lotes, por lo que no se debe hacer desde el hilo principal.
+     *
+     * @param diasHorizonte Dias que se mantienen las reservas vigentes despues de su salida.
+     * @return El numero de reservas archivadas, o -1 si falla algun lote (los lotes anteriores
+     *         quedan archivados y se puede volver a llamar).
+     * @throws IllegalArgumentException Si el horizonte es negativo, lo que archivaria reservas futuras.
+     */
+    public int archivarAnterioresA(int diasHorizonte) {
+        if (diasHorizonte < 0) {
+            throw new IllegalArgumentException("El horizonte no puede ser negativo: " + diasHorizonte);
+        }
+        return archivarSalidasAnteriores(new Date(System.currentTimeMillis() - diasHorizonte * MILLIS_DIA));
+    }
+
+    /**
+     * Archiva, por lotes de {@link #TAMANO_LOTE}, las reservas cuya fecha de salida es anterior a un limite.
+     *
+     * @param limite Fecha limite (excluida).
+     * @return El numero de reservas archivadas, o -1 si falla algun lote.
+     */
+    int archivarSalidasAnteriores(Date limite) {
+        int total = 0;
+        int archivadas;
+        do {
+            archivadas = mMetricas.ejecutarEscritura("ArchivoRepository.archivarLote", () -> archivarLote(limite), -1);
+            if (archivadas < 0) {
+                Log.e("ArchivoRepository", "Archivo interrumpido tras " + total + " reservas");
+                return -1;
+            }
+            total += archivadas;
+        } while (archivadas == TAMANO_LOTE);
+        Log.d("ArchivoRepository", "Reservas archivadas: " + total);
+        return total;
+    }
+
+    /**
+     * Mueve al archivo un lote de reservas en una transaccion.
+     *
+     * @param limite Fecha limite de salida (excluida).
+     * @return El numero de reservas archivadas.
+     */
+    private int archivarLote(Date limite) {
+        return mDb.runInTransaction(() -> {
+            List<Integer> ids = mArchivoDao.getIdsReservasSalidaAnterior(limite, TAMANO_LOTE);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            mArchivoDao.copiarReservas(ids, new Date());
+            mArchivoDao.copiarParcelasReservadas(ids);
+            return mArchivoDao.borrarReservas(ids);
+        });
+    }
+
+    /**
+     * Obtiene una reserva archivada por su ID.
+     *
+     * @param id El ID de la reserva.
+     * @return La reserva archivada, o null si no esta en el archivo o se produce un error.
+     */
+    public ReservaArchivada getReservaArchivadaById(int id) {
+        return mMetricas.ejecutar("ArchivoRepository.getReservaArchivadaById",
+                () -> mArchivoDao.getReservaArchivadaById(id), null);
+    }
+
+    /**
+     * Obtiene las parcelas reservadas de una reserva archivada.
+     *
+     * @param reservaId El ID de la reserva.
+     * @return Lista de parcelas reservadas, vacia en caso de error.
+     */
+    public List<ParcelaReservadaArchivada> getParcelasReservadasArchivadas(int reservaId) {
+        return mMetricas.ejecutar("ArchivoRepository.getParcelasReservadasArchivadas",
+                () -> mArchivoDao.getParcelasReservadasArchivadas(reservaId), new ArrayList<>());
+    }
+
+    /**
+     * Busca reservas archivadas por una parte del nombre del cliente.
+     *
+     * @param texto  Texto a buscar.
+     * @param maximo Numero maximo de resultados.
+     * @return Lista de reservas archivadas, de la mas reciente a la mas antigua, vacia en caso de error.
+     */
+    public List<ReservaArchivada> buscarPorNombreCliente(String texto, int maximo) {
+        return mMetricas.ejecutar("ArchivoRepository.buscarPorNombreCliente",
+                () -> mArchivoDao.buscarPorNombreCliente(texto, maximo), new ArrayList<>());
+    }
+
+    /**
+     * Busca las reservas archivadas de un numero de movil.
+     *
+     * @param numeroMovil El numero de movil, con o sin espacios, guiones o prefijo internacional.
+     * @return Lista de reservas archivadas, de la mas reciente a la mas antigua, vacia en caso de error.
+     */
+    public List<ReservaArchivada> buscarPorNumeroMovil(String numeroMovil) {
+        return mMetricas.ejecutar("ArchivoRepository.buscarPorNumeroMovil",
+                () -> mArchivoDao.buscarPorNumeroMovil(NumeroTelefono.normalizar(numeroMovil)), new ArrayList<>());
+    }
+
+    /**
+     * Obtiene las reservas archivadas cuya fecha de entrada esta en el intervalo [inicio, fin).
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Lista de reservas archivadas ordenada por fecha de entrada, vacia en caso de error.
+     */
+    public List<ReservaArchivada> getReservasArchivadasEntre(Date inicio, Date fin) {
+        return mMetricas.ejecutar("ArchivoRepository.getReservasArchivadasEntre",
+                () -> mArchivoDao.getReservasArchivadasEntre(inicio, fin), new ArrayList<>());
+    }
+
+    /**
+     * Cuenta las reservas del archivo.
+     *
+     * @return El numero de reservas archivadas, o -1 en caso de error.
+     */
+    public int getNumeroReservasArchivadas() {
+        return mMetricas.ejecutar("ArchivoRepository.getNumeroReservasArchivadas",
+                mArchivoDao::getNumeroReservasArchivadas, -1);
+    }
+
+}
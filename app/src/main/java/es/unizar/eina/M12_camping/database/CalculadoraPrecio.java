@@ -0,0 +1,63 @@
+package es.unizar.eina.M12_camping.database;
+
+import java.util.Date;
+
+/**
+ * Utilidades para trabajar con importes de dinero y calcular precios de reservas.
+ * Los importes se guardan en la base de datos como centimos de euro (long), de forma que las
+ * sumas son exactas y pueden calcularse directamente en SQL.
+ */
+public final class CalculadoraPrecio {
+
+    /** Milisegundos que tiene un dia */
+    private static final double MILLIS_POR_DIA = 1000.0 * 60 * 60 * 24;
+
+    private CalculadoraPrecio() {
+    }
+
+    /**
+     * Convierte un importe en euros a centimos, redondeando al centimo mas cercano.
+     *
+     * @param euros El importe en euros.
+     * @return El importe en centimos.
+     */
+    public static long aCentimos(double euros) {
+        return Math.round(euros * 100);
+    }
+
+    /**
+     * Convierte un importe en centimos a euros.
+     *
+     * @param centimos El importe en centimos.
+     * @return El importe en euros.
+     */
+    public static double aEuros(long centimos) {
+        return centimos / 100.0;
+    }
+
+    /**
+     * Calcula el numero de noches entre dos fechas.
+     * Se redondea al dia mas cercano para que los cambios de horario no resten una noche.
+     *
+     * @param fechaEntrada La fecha de entrada.
+     * @param fechaSalida  La fecha de salida.
+     * @return El numero de noches (negativo si la salida es anterior a la entrada).
+     */
+    public static int calcularNoches(Date fechaEntrada, Date fechaSalida) {
+        long diffInMillis = fechaSalida.getTime() - fechaEntrada.getTime();
+        return (int) Math.round(diffInMillis / MILLIS_POR_DIA);
+    }
+
+    /**
+     * Calcula el importe de una parcela reservada.
+     *
+     * @param precioXpersonaCentimos El precio por persona y noche en centimos.
+     * @param numeroOcupantes        El numero de ocupantes.
+     * @param numeroNoches           El numero de noches.
+     * @return El importe de la linea en centimos.
+     */
+    public static long importeCentimos(long precioXpersonaCentimos, int numeroOcupantes, int numeroNoches) {
+        return precioXpersonaCentimos * numeroOcupantes * numeroNoches;
+    }
+
+}
@@ -0,0 +1,80 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entrada del diario de cambios: una fila insertada, modificada o borrada en parcela, reserva o
+ * parcelaReservada. Las escriben los triggers de {@link SqlCambios} en la misma transaccion que el
+ * cambio, y se leen en orden de secuencia con {@link DiarioCambios}.
+ */
+@Entity(tableName = "cambio")
+public class Cambio {
+
+    /** Operacion que se hizo sobre la fila */
+    public enum Operacion { INSERT, UPDATE, DELETE }
+
+    /** Numero de secuencia, creciente y que nunca se reutiliza. */
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "secuencia")
+    private final long secuencia;
+
+    /** Tabla de la fila (parcela, reserva o parcelaReservada). */
+    @NonNull
+    @ColumnInfo(name = "tabla")
+    private final String tabla;
+
+    /** ID de la fila. */
+    @ColumnInfo(name = "filaId")
+    private final int filaId;
+
+    /** Operacion que se hizo sobre la fila. */
+    @NonNull
+    @ColumnInfo(name = "operacion")
+    private final Operacion operacion;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param secuencia Numero de secuencia.
+     * @param tabla     Tabla de la fila.
+     * @param filaId    ID de la fila.
+     * @param operacion Operacion que se hizo sobre la fila.
+     */
+    public Cambio(long secuencia, @NonNull String tabla, int filaId, @NonNull Operacion operacion) {
+        this.secuencia = secuencia;
+        this.tabla = tabla;
+        this.filaId = filaId;
+        this.operacion = operacion;
+    }
+
+    /** @return El numero de secuencia. */
+    public long getSecuencia() {
+        return secuencia;
+    }
+
+    /** @return La tabla de la fila. */
+    @NonNull
+    public String getTabla() {
+        return tabla;
+    }
+
+    /** @return El ID de la fila. */
+    public int getFilaId() {
+        return filaId;
+    }
+
+    /** @return La operacion que se hizo sobre la fila. */
+    @NonNull
+    public Operacion getOperacion() {
+        return operacion;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return secuencia + " " + operacion + " " + tabla + " " + filaId;
+    }
+}
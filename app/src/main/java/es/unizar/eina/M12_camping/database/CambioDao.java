@@ -0,0 +1,48 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO del diario de cambios. Las entradas solo las escriben los triggers de {@link SqlCambios}.
+ */
+@Dao
+public interface CambioDao {
+
+    /**
+     * Obtiene las entradas posteriores a una secuencia.
+     *
+     * @param secuencia Secuencia de la ultima entrada leida (excluida), o 0 para leer desde el principio.
+     * @param maximo    Numero maximo de entradas a devolver.
+     * @return Lista de entradas ordenada por secuencia.
+     */
+    @Query("SELECT * FROM cambio WHERE secuencia > :secuencia ORDER BY secuencia LIMIT :maximo")
+    List<Cambio> getCambiosDesde(long secuencia, int maximo);
+
+    /**
+     * Obtiene la secuencia de la ultima entrada, aunque se haya purgado.
+     *
+     * @return La ultima secuencia asignada, o 0 si no hay ninguna.
+     */
+    @Query("SELECT COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'cambio'), 0)")
+    long getUltimaSecuencia();
+
+    /**
+     * Obtiene la secuencia de la entrada mas antigua que se conserva.
+     *
+     * @return La primera secuencia, o 0 si el diario esta vacio.
+     */
+    @Query("SELECT COALESCE(MIN(secuencia), 0) FROM cambio")
+    long getPrimeraSecuencia();
+
+    /**
+     * Borra las entradas hasta una secuencia.
+     *
+     * @param secuencia Secuencia de la ultima entrada que se borra (incluida).
+     * @return El numero de entradas borradas.
+     */
+    @Query("DELETE FROM cambio WHERE secuencia <= :secuencia")
+    int purgarHasta(long secuencia);
+}
@@ -1,6 +1,8 @@
 package es.unizar.eina.M12_camping.database;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.room.Database;
@@ -8,22 +10,35 @@ import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
+import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Clase que representa la base de datos del camping utilizando Room.
  * Define la estructura de la base de datos y proporciona metodos para obtener
  * la instancia de la base de datos y el DAO de Parcela.
  */
-@Database(entities = {Parcela.class, Reserva.class, ParcelaReservada.class}, version = 1, exportSchema = false)
+@Database(entities = {Parcela.class, Reserva.class, ParcelaReservada.class, ResumenMensual.class,
+        MensajePendiente.class, ReservaArchivada.class, ParcelaReservadaArchivada.class, Cambio.class,
+        FilaSync.class, EstadoSync.class, Cliente.class},
+        version = CampingRoomDatabase.VERSION, exportSchema = true)
 @TypeConverters({DateConverter.class})
 public abstract class CampingRoomDatabase extends RoomDatabase {
 
+    /** Version del esquema de la base de datos */
+    static final int VERSION = 14;
+
     /**
      * Proporciona acceso al DAO de Parcela.
      *
@@ -45,92 +60,581 @@ public abstract class CampingRoomDatabase extends RoomDatabase {
      */
     public abstract ParcelaReservadaDao parcelaReservadaDao();
 
-    /** Instancia unica de la base de datos */
-    private static volatile CampingRoomDatabase INSTANCE;
+    /**
+     * Proporciona acceso al DAO de los resumenes mensuales.
+     *
+     * @return El DAO de ResumenMensual.
+     */
+    public abstract ResumenMensualDao resumenMensualDao();
+
+    /**
+     * Proporciona acceso al DAO de la cola de mensajes.
+     *
+     * @return El DAO de MensajePendiente.
+     */
+    public abstract MensajePendienteDao mensajePendienteDao();
+
+    /**
+     * Proporciona acceso al DAO del archivo de reservas pasadas.
+     *
+     * @return El DAO del archivo.
+     */
+    public abstract ArchivoDao archivoDao();
+
+    /**
+     * Proporciona acceso al DAO del diario de cambios.
+     *
+     * @return El DAO de Cambio.
+     */
+    public abstract CambioDao cambioDao();
+
+    /**
+     * Proporciona acceso al DAO del estado de la sincronizacion.
+     *
+     * @return El DAO de la sincronizacion.
+     */
+    public abstract SyncDao syncDao();
+
+    /**
+     * Proporciona acceso al DAO de los clientes.
+     *
+     * @return El DAO de Cliente.
+     */
+    public abstract ClienteDao clienteDao();
 
     /** Numero de hilos para las operaciones de base de datos */
     private static final int NUMBER_OF_THREADS = 4;
 
     /** Executor para realizar operaciones de escritura en la base de datos en segundo plano */
-    static final ExecutorService databaseWriteExecutor =
-            Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    static final ThreadPoolExecutor databaseWriteExecutor = new ThreadPoolExecutor(NUMBER_OF_THREADS,
+            NUMBER_OF_THREADS, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+
+    /**
+     * Migracion de la version 1 a la 2.
+     * Anade a parcelaReservada el precio por persona y las noches con los que se reservo cada parcela,
+     * rellenandolos con el precio actual de la parcela y la duracion de la reserva.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE parcelaReservada ADD COLUMN precioXpersona REAL NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE parcelaReservada ADD COLUMN numeroNoches INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("UPDATE parcelaReservada SET " +
+                    "precioXpersona = COALESCE((SELECT p.precioXpersona FROM parcela p " +
+                    "WHERE p.id = parcelaReservada.parcelaId), 0), " +
+                    "numeroNoches = COALESCE((SELECT CAST(ROUND((r.fechaSalida - r.fechaEntrada) / 86400000.0) AS INTEGER) " +
+                    "FROM reserva r WHERE r.id = parcelaReservada.reservaId), 0)");
+        }
+    };
 
     /**
-     * Obtiene la instancia unica de la base de datos.
-     * Si la instancia aun no se ha creado, se inicializa en un contexto sincronizado.
+     * Migracion de la version 2 a la 3.
+     * Los importes pasan de guardarse como euros en coma flotante a centimos enteros, para que
+     * las sumas sean exactas y se puedan agregar en SQL. Como SQLite no permite cambiar el tipo
+     * de una columna, se reconstruyen las tablas copiando los datos.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `parcela_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`nombre` TEXT NOT NULL, `maxOcupantes` INTEGER NOT NULL, " +
+                    "`precioXpersonaCentimos` INTEGER NOT NULL, `descripcion` TEXT NOT NULL)");
+            db.execSQL("INSERT INTO parcela_new (id, nombre, maxOcupantes, precioXpersonaCentimos, descripcion) " +
+                    "SELECT id, nombre, maxOcupantes, CAST(ROUND(precioXpersona * 100) AS INTEGER), descripcion FROM parcela");
+            db.execSQL("DROP TABLE parcela");
+            db.execSQL("ALTER TABLE parcela_new RENAME TO parcela");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `reserva_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`nombreCliente` TEXT NOT NULL, `numeroMovil` INTEGER NOT NULL, `fechaEntrada` INTEGER NOT NULL, " +
+                    "`fechaSalida` INTEGER NOT NULL, `precioTotalCentimos` INTEGER NOT NULL)");
+            db.execSQL("INSERT INTO reserva_new (id, nombreCliente, numeroMovil, fechaEntrada, fechaSalida, precioTotalCentimos) " +
+                    "SELECT id, nombreCliente, numeroMovil, fechaEntrada, fechaSalida, " +
+                    "CAST(ROUND(precioTotal * 100) AS INTEGER) FROM reserva");
+            db.execSQL("DROP TABLE reserva");
+            db.execSQL("ALTER TABLE reserva_new RENAME TO reserva");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `parcelaReservada_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`reservaId` INTEGER NOT NULL, `parcelaId` INTEGER NOT NULL, `numeroOcupantes` INTEGER NOT NULL, " +
+                    "`precioXpersonaCentimos` INTEGER NOT NULL DEFAULT 0, `numeroNoches` INTEGER NOT NULL DEFAULT 0, " +
+                    "FOREIGN KEY(`reservaId`) REFERENCES `reserva`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , " +
+                    "FOREIGN KEY(`parcelaId`) REFERENCES `parcela`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("INSERT INTO parcelaReservada_new (id, reservaId, parcelaId, numeroOcupantes, " +
+                    "precioXpersonaCentimos, numeroNoches) " +
+                    "SELECT id, reservaId, parcelaId, numeroOcupantes, CAST(ROUND(precioXpersona * 100) AS INTEGER), " +
+                    "numeroNoches FROM parcelaReservada");
+            db.execSQL("DROP TABLE parcelaReservada");
+            db.execSQL("ALTER TABLE parcelaReservada_new RENAME TO parcelaReservada");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_parcelaReservada_reservaId` ON `parcelaReservada` (`reservaId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_parcelaReservada_parcelaId` ON `parcelaReservada` (`parcelaId`)");
+        }
+    };
+
+    /**
+     * Crea los triggers que mantienen la tabla resumenMensual al escribir parcelas reservadas y reservas.
      *
-     * @param context El contexto de la aplicacion.
-     * @return La instancia unica de CampingRoomDatabase.
+     * @param db La base de datos.
+     * @see SqlResumenMensual#crearTriggers()
      */
-    static CampingRoomDatabase getDatabase(final Context context) {
-        if (INSTANCE == null) {
-            synchronized (CampingRoomDatabase.class) {
-                if (INSTANCE == null) {
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
-                                    CampingRoomDatabase.class, "m12_camping_database")
-                            .addCallback(sRoomDatabaseCallback)
-                            .build();
+    static void crearTriggersResumen(@NonNull SupportSQLiteDatabase db) {
+        for (String sql : SqlResumenMensual.crearTriggers()) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Crea los triggers que registran en el diario de cambios las escrituras en parcelas, reservas
+     * y parcelas reservadas.
+     *
+     * @param db La base de datos.
+     * @see SqlCambios#crearTriggers()
+     */
+    static void crearTriggersCambios(@NonNull SupportSQLiteDatabase db) {
+        for (String sql : SqlCambios.crearTriggers()) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Crea los triggers que asignan a cada reserva su cliente.
+     *
+     * @param db La base de datos.
+     * @see SqlClientes#crearTriggers()
+     */
+    static void crearTriggersClientes(@NonNull SupportSQLiteDatabase db) {
+        for (String sql : SqlClientes.crearTriggers()) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Comprueba que existen los triggers de la tabla resumenMensual. Las cargas masivas los borran
+     * mientras escriben; si el proceso muere antes de que los vuelvan a crear, se recalculan los
+     * resumenes y se crean los triggers, en una transaccion. Si existen todos no hace nada.
+     *
+     * @param db La base de datos.
+     * @return true si se han tenido que reparar.
+     */
+    static boolean repararTriggersResumen(@NonNull SupportSQLiteDatabase db) {
+        List<String> nombres = SqlResumenMensual.nombresTriggers();
+        StringBuilder lista = new StringBuilder();
+        for (int i = 0; i < nombres.size(); i++) {
+            lista.append(i == 0 ? "?" : ", ?");
+        }
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name IN ("
+                + lista + ")", nombres.toArray())) {
+            if (cursor.moveToFirst() && cursor.getInt(0) == nombres.size()) {
+                return false;
+            }
+        }
+        db.beginTransaction();
+        try {
+            reconstruirResumenes(db);
+            crearTriggersResumen(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.w("CampingRoomDatabase", "Reconstruidos los resumenes mensuales y sus triggers");
+        return true;
+    }
+
+    /**
+     * Recalcula la tabla resumenMensual a partir de todas las parcelas reservadas.
+     *
+     * @param db La base de datos.
+     * @see SqlResumenMensual#reconstruir()
+     */
+    static void reconstruirResumenes(@NonNull SupportSQLiteDatabase db) {
+        for (String sql : SqlResumenMensual.reconstruir()) {
+            db.execSQL(sql);
+        }
+    }
+
+    /**
+     * Migracion de la version 3 a la 4.
+     * Crea la tabla de resumenes mensuales por parcela, la rellena con las reservas existentes
+     * y crea los triggers que la mantienen actualizada.
+     */
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `resumenMensual` (`parcelaId` INTEGER NOT NULL, " +
+                    "`mes` INTEGER NOT NULL, `nochesVendidas` INTEGER NOT NULL, `ocupantes` INTEGER NOT NULL, " +
+                    "`ingresosCentimos` INTEGER NOT NULL, PRIMARY KEY(`parcelaId`, `mes`), " +
+                    "FOREIGN KEY(`parcelaId`) REFERENCES `parcela`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_resumenMensual_mes` ON `resumenMensual` (`mes`)");
+            reconstruirResumenes(db);
+            crearTriggersResumen(db);
+        }
+    };
+
+    /**
+     * Migracion de la version 4 a la 5.
+     * Crea la cola persistente de mensajes de salida.
+     */
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `mensajePendiente` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`clave` TEXT NOT NULL, `reservaId` INTEGER NOT NULL, `telefono` TEXT NOT NULL, " +
+                    "`texto` TEXT NOT NULL, `canal` TEXT NOT NULL, `estado` INTEGER NOT NULL, " +
+                    "`intentos` INTEGER NOT NULL, `proximoIntento` INTEGER NOT NULL, `creado` INTEGER NOT NULL, " +
+                    "`ultimoError` TEXT)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_mensajePendiente_clave` ON `mensajePendiente` (`clave`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_mensajePendiente_estado_proximoIntento` " +
+                    "ON `mensajePendiente` (`estado`, `proximoIntento`)");
+        }
+    };
+
+    /**
+     * Migracion de la version 5 a la 6.
+     * Crea las tablas del archivo de reservas pasadas y vuelve a crear los triggers de los resumenes
+     * mensuales, que no deben restar las parcelas reservadas que se borran al archivarlas.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `reservaArchivada` (`id` INTEGER NOT NULL, " +
+                    "`nombreCliente` TEXT NOT NULL, `numeroMovil` INTEGER NOT NULL, `fechaEntrada` INTEGER NOT NULL, " +
+                    "`fechaSalida` INTEGER NOT NULL, `precioTotalCentimos` INTEGER NOT NULL, " +
+                    "`archivada` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reservaArchivada_fechaEntrada` ON `reservaArchivada` (`fechaEntrada`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reservaArchivada_fechaSalida` ON `reservaArchivada` (`fechaSalida`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reservaArchivada_nombreCliente` ON `reservaArchivada` (`nombreCliente`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `parcelaReservadaArchivada` (`id` INTEGER NOT NULL, " +
+                    "`reservaId` INTEGER NOT NULL, `parcelaId` INTEGER NOT NULL, `numeroOcupantes` INTEGER NOT NULL, " +
+                    "`precioXpersonaCentimos` INTEGER NOT NULL, `numeroNoches` INTEGER NOT NULL, PRIMARY KEY(`id`), " +
+                    "FOREIGN KEY(`reservaId`) REFERENCES `reservaArchivada`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , " +
+                    "FOREIGN KEY(`parcelaId`) REFERENCES `parcela`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_parcelaReservadaArchivada_reservaId` " +
+                    "ON `parcelaReservadaArchivada` (`reservaId`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_parcelaReservadaArchivada_parcelaId` " +
+                    "ON `parcelaReservadaArchivada` (`parcelaId`)");
+            for (String sql : SqlResumenMensual.borrarTriggers()) {
+                db.execSQL(sql);
+            }
+            crearTriggersResumen(db);
+        }
+    };
+
+    /**
+     * Migracion de la version 6 a la 7.
+     * Crea el diario de cambios y los triggers que lo mantienen. Las filas que ya existian no se
+     * registran: los consumidores empiezan leyendo todas las tablas.
+     */
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `cambio` (`secuencia` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`tabla` TEXT NOT NULL, `filaId` INTEGER NOT NULL, `operacion` TEXT NOT NULL)");
+            crearTriggersCambios(db);
+        }
+    };
+
+    /**
+     * Migracion de la version 7 a la 8.
+     * Crea las tablas del estado de la sincronizacion entre dispositivos.
+     */
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `filaSync` (`tabla` TEXT NOT NULL, `filaId` INTEGER NOT NULL, " +
+                    "`gid` TEXT NOT NULL, `version` INTEGER NOT NULL, `huella` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`tabla`, `filaId`))");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_filaSync_tabla_gid` ON `filaSync` (`tabla`, `gid`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `estadoSync` (`clave` TEXT NOT NULL, `valor` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`clave`))");
+        }
+    };
+
+    /**
+     * Migracion de la version 8 a la 9.
+     * Anade la version de las parcelas y las reservas, con la que se detectan las ediciones
+     * concurrentes. Las filas existentes empiezan en la version 0.
+     */
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE parcela ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE reserva ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Migracion de la version 9 a la 10.
+     * Anade el indice unico del nombre de las parcelas. Antes la unicidad solo la comprobaba la
+     * interfaz, asi que a las parcelas repetidas, salvo la de menor ID, se les anade su ID al nombre.
+     * Si otra parcela ya se llama asi, se anade ademas un contador: "Aneto (7-2)".
+     */
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            // Los nombres nuevos no pueden coincidir con el de ninguna parcela, repetida o no
+            Set<String> usados = new HashSet<>();
+            try (Cursor cursor = db.query("SELECT DISTINCT nombre FROM parcela")) {
+                while (cursor.moveToNext()) {
+                    usados.add(cursor.getString(0));
                 }
             }
+            List<Object[]> renombradas = new ArrayList<>();
+            try (Cursor cursor = db.query("SELECT id, nombre FROM parcela " +
+                    "WHERE id NOT IN (SELECT MIN(id) FROM parcela GROUP BY nombre) ORDER BY id")) {
+                while (cursor.moveToNext()) {
+                    int id = cursor.getInt(0);
+                    String base = cursor.getString(1) + " (" + id;
+                    String nombre = base + ")";
+                    for (int n = 2; usados.contains(nombre); n++) {
+                        nombre = base + "-" + n + ")";
+                    }
+                    usados.add(nombre);
+                    renombradas.add(new Object[]{nombre, id});
+                }
+            }
+            for (Object[] renombrada : renombradas) {
+                db.execSQL("UPDATE parcela SET nombre = ?, version = version + 1 WHERE id = ?", renombrada);
+            }
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_parcela_nombre` ON `parcela` (`nombre`)");
+        }
+    };
+
+    /**
+     * Migracion de la version 10 a la 11.
+     * Anade los indices de los campos por los que se ordenan los listados de parcelas y reservas,
+     * que se vuelven a consultar con cada escritura. El nombre de la parcela ya tiene su indice unico.
+     */
+    static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_parcela_maxOcupantes` ON `parcela` (`maxOcupantes`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_parcela_precioXpersonaCentimos` " +
+                    "ON `parcela` (`precioXpersonaCentimos`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reserva_nombreCliente` ON `reserva` (`nombreCliente`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reserva_numeroMovil` ON `reserva` (`numeroMovil`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reserva_fechaEntrada` ON `reserva` (`fechaEntrada`)");
+        }
+    };
+
+    /**
+     * Migracion de la version 11 a la 12.
+     * Guarda el telefono como texto con solo sus digitos, para admitir numeros de hasta 15 cifras
+     * y buscar por una parte inicial del numero con el indice. Como SQLite no permite cambiar el
+     * tipo de una columna, se reconstruyen las tablas reserva y reservaArchivada; antes se borran
+     * los triggers, que no se pueden quedar apuntando a una tabla que no existe, y se conserva el
+     * contador de IDs de las reservas para que no se reutilicen los de las reservas borradas.
+     */
+    static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            for (String sql : SqlResumenMensual.borrarTriggers()) {
+                db.execSQL(sql);
+            }
+            for (String sql : SqlCambios.borrarTriggers()) {
+                db.execSQL(sql);
+            }
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `reserva_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`nombreCliente` TEXT NOT NULL, `numeroMovil` TEXT NOT NULL, `fechaEntrada` INTEGER NOT NULL, " +
+                    "`fechaSalida` INTEGER NOT NULL, `precioTotalCentimos` INTEGER NOT NULL, " +
+                    "`version` INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("INSERT INTO reserva_new (id, nombreCliente, numeroMovil, fechaEntrada, fechaSalida, " +
+                    "precioTotalCentimos, version) SELECT id, nombreCliente, CAST(numeroMovil AS TEXT), fechaEntrada, " +
+                    "fechaSalida, precioTotalCentimos, version FROM reserva");
+            db.execSQL("DELETE FROM sqlite_sequence WHERE name = 'reserva_new'");
+            db.execSQL("INSERT INTO sqlite_sequence (name, seq) " +
+                    "SELECT 'reserva_new', seq FROM sqlite_sequence WHERE name = 'reserva'");
+            db.execSQL("DROP TABLE reserva");
+            db.execSQL("ALTER TABLE reserva_new RENAME TO reserva");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reserva_nombreCliente` ON `reserva` (`nombreCliente`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reserva_numeroMovil` ON `reserva` (`numeroMovil`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reserva_fechaEntrada` ON `reserva` (`fechaEntrada`)");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `reservaArchivada_new` (`id` INTEGER NOT NULL, " +
+                    "`nombreCliente` TEXT NOT NULL, `numeroMovil` TEXT NOT NULL, `fechaEntrada` INTEGER NOT NULL, " +
+                    "`fechaSalida` INTEGER NOT NULL, `precioTotalCentimos` INTEGER NOT NULL, " +
+                    "`archivada` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+            db.execSQL("INSERT INTO reservaArchivada_new (id, nombreCliente, numeroMovil, fechaEntrada, fechaSalida, " +
+                    "precioTotalCentimos, archivada) SELECT id, nombreCliente, CAST(numeroMovil AS TEXT), " +
+                    "fechaEntrada, fechaSalida, precioTotalCentimos, archivada FROM reservaArchivada");
+            db.execSQL("DROP TABLE reservaArchivada");
+            db.execSQL("ALTER TABLE reservaArchivada_new RENAME TO reservaArchivada");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reservaArchivada_fechaEntrada` ON `reservaArchivada` (`fechaEntrada`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reservaArchivada_fechaSalida` ON `reservaArchivada` (`fechaSalida`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reservaArchivada_nombreCliente` ON `reservaArchivada` (`nombreCliente`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reservaArchivada_numeroMovil` ON `reservaArchivada` (`numeroMovil`)");
+
+            crearTriggersResumen(db);
+            crearTriggersCambios(db);
+        }
+    };
+
+    /**
+     * Migracion de la version 12 a la 13.
+     * Crea la tabla cliente y la columna clienteId de las reservas vigentes y archivadas, con sus
+     * indices. Los clientes se obtienen de las reservas existentes con {@link SqlClientes#reconstruir()},
+     * que descarta los repetidos en una sola pasada. Los triggers del diario se vuelven a crear
+     * porque el de reserva ya no registra los cambios de clienteId.
+     */
+    static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            for (String sql : SqlCambios.borrarTriggers()) {
+                db.execSQL(sql);
+            }
+            db.execSQL("CREATE TABLE IF NOT EXISTS `cliente` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`nombre` TEXT NOT NULL, `numeroMovil` TEXT NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_cliente_numeroMovil_nombre` " +
+                    "ON `cliente` (`numeroMovil`, `nombre`)");
+            db.execSQL("ALTER TABLE reserva ADD COLUMN `clienteId` INTEGER REFERENCES `cliente`(`id`) " +
+                    "ON UPDATE NO ACTION ON DELETE SET NULL");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reserva_clienteId_fechaEntrada` " +
+                    "ON `reserva` (`clienteId`, `fechaEntrada`)");
+            db.execSQL("ALTER TABLE reservaArchivada ADD COLUMN `clienteId` INTEGER");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_reservaArchivada_clienteId_fechaEntrada` " +
+                    "ON `reservaArchivada` (`clienteId`, `fechaEntrada`)");
+            for (String sql : SqlClientes.reconstruir()) {
+                db.execSQL(sql);
+            }
+            crearTriggersClientes(db);
+            crearTriggersCambios(db);
         }
-        return INSTANCE;
+    };
+
+    /**
+     * Migracion de la version 13 a la 14.
+     * Los resumenes mensuales reparten las noches de cada parcela reservada entre los meses en que
+     * caen y calculan el mes sin la zona horaria del dispositivo, asi que se vuelven a crear sus
+     * triggers y se recalculan los resumenes.
+     */
+    static final Migration MIGRATION_13_14 = new Migration(13, 14) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            for (String sql : SqlResumenMensual.borrarTriggers()) {
+                db.execSQL(sql);
+            }
+            reconstruirResumenes(db);
+            crearTriggersResumen(db);
+        }
+    };
+
+    /**
+     * Obtiene la base de datos del camping principal.
+     *
+     * @param context El contexto de la aplicacion.
+     * @return La base de datos del camping principal.
+     * @see RegistroCampings#getDatabase(String)
+     */
+    static CampingRoomDatabase getDatabase(final Context context) {
+        return RegistroCampings.getInstancia(context).getDatabase(RegistroCampings.CAMPING_PRINCIPAL);
     }
 
-    /** Callback para inicializar datos en la base de datos al crearla */
-    private static RoomDatabase.Callback sRoomDatabaseCallback = new RoomDatabase.Callback() {
+    /**
+     * Crea una instancia de la base de datos sobre un fichero. Solo la usa {@link RegistroCampings},
+     * que mantiene una instancia por camping.
+     *
+     * @param context      El contexto de la aplicacion.
+     * @param fichero      Nombre del fichero de la base de datos.
+     * @param datosEjemplo true para insertar los datos de ejemplo al crear el fichero.
+     * @return La base de datos, que se abre en el primer acceso.
+     */
+    static CampingRoomDatabase crear(Context context, String fichero, boolean datosEjemplo) {
+        CallbackCreacion callback = new CallbackCreacion(datosEjemplo);
+        CampingRoomDatabase db = Room.databaseBuilder(context.getApplicationContext(),
+                        CampingRoomDatabase.class, fichero)
+                .addCallback(callback)
+                .openHelperFactory(new FabricaSQLiteInstrumentada(
+                        new FrameworkSQLiteOpenHelperFactory(), MetricasConsultas.getInstancia()))
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                        MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10,
+                        MIGRATION_10_11, MIGRATION_11_12, MIGRATION_12_13,
+                        MIGRATION_13_14)
+                .build();
+        callback.mDb = db;
+        return db;
+    }
+
+    /**
+     * Callback para inicializar la base de datos al crearla y, al abrirla, reparar los triggers de
+     * los resumenes que haya dejado borrados una carga masiva interrumpida.
+     */
+    private static final class CallbackCreacion extends RoomDatabase.Callback {
+
+        private final boolean mDatosEjemplo;
+        /** La base de datos, que se asigna despues de construirla y antes de abrirla */
+        private volatile CampingRoomDatabase mDb;
+
+        CallbackCreacion(boolean datosEjemplo) {
+            mDatosEjemplo = datosEjemplo;
+        }
+
         @Override
         public void onCreate(@NonNull SupportSQLiteDatabase db) {
             super.onCreate(db);
+            crearTriggersResumen(db);
+            crearTriggersCambios(db);
+            crearTriggersClientes(db);
+            if (mDatosEjemplo) {
+                databaseWriteExecutor.execute(() -> insertarDatosEjemplo(mDb));
+            }
+        }
 
-            databaseWriteExecutor.execute(() -> {
-
-                ParcelaDao parcelaDao = INSTANCE.parcelaDao();
-                ReservaDao reservaDao = INSTANCE.reservaDao();
-                ParcelaReservadaDao parcelaReservadaDao = INSTANCE.parcelaReservadaDao();
-
-                parcelaDao.deleteAll();
-                reservaDao.deleteAll();
-                parcelaReservadaDao.deleteAll();
-
-                try {
-                    Parcela parcela = new Parcela("Aneto", 8, 10.0, "120m2, SI agua, SI luz");
-                    long idAneto = parcelaDao.insert(parcela);
-                    parcela = new Parcela("Cinca", 4, 25.0, "80m2, SI agua, NO luz");
-                    long idCinca = parcelaDao.insert(parcela);
-
-                    // Crear un SimpleDateFormat para analizar las fechas
-                    SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy");
-
-                    // Insertar reservas
-                    Reserva reserva = new Reserva(
-                            "Juan",
-                            123456789,
-                            Objects.requireNonNull(dateFormat.parse("10-01-2025")),
-                            Objects.requireNonNull(dateFormat.parse("14-01-2025")),
-                            0.0
-                    );
-                    long idJuan = reservaDao.insert(reserva);
-
-                    ParcelaReservada parcelaReservada1 = new ParcelaReservada((int) idJuan, (int) idAneto, 5);
-                    parcelaReservadaDao.insert(parcelaReservada1);
-
-                    reserva = new Reserva(
-                            "Luisa",
-                            987654321,
-                            Objects.requireNonNull(dateFormat.parse("12-02-2025")),
-                            Objects.requireNonNull(dateFormat.parse("14-02-2025")),
-                            0.0
-                    );
-                    long idLuisa = reservaDao.insert(reserva);
-
-                    ParcelaReservada parcelaReservada2 = new ParcelaReservada((int) idLuisa, (int) idCinca, 1);
-                    parcelaReservadaDao.insert(parcelaReservada2);
-
-                } catch (Exception e) {
-                    // Manejar errores en caso de que las fechas no puedan analizarse
-                    e.printStackTrace();
-                }
-            });
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            super.onOpen(db);
+            repararTriggersResumen(db);
         }
-    };
+    }
+
+    /**
+     * Inserta las parcelas y reservas de ejemplo.
+     *
+     * @param db La base de datos.
+     */
+    private static void insertarDatosEjemplo(CampingRoomDatabase db) {
+        ParcelaDao parcelaDao = db.parcelaDao();
+        ReservaDao reservaDao = db.reservaDao();
+        ParcelaReservadaDao parcelaReservadaDao = db.parcelaReservadaDao();
+
+        parcelaDao.deleteAll();
+        reservaDao.deleteAll();
+        parcelaReservadaDao.deleteAll();
+
+        try {
+            Parcela parcela = new Parcela("Aneto", 8, 10.0, "120m2, SI agua, SI luz");
+            long idAneto = parcelaDao.insert(parcela);
+            parcela = new Parcela("Cinca", 4, 25.0, "80m2, SI agua, NO luz");
+            long idCinca = parcelaDao.insert(parcela);
+
+            // Crear un SimpleDateFormat para analizar las fechas
+            SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy");
+
+            // Insertar reservas
+            Reserva reserva = new Reserva(
+                    "Juan",
+                    "123456789",
+                    Objects.requireNonNull(dateFormat.parse("10-01-2025")),
+                    Objects.requireNonNull(dateFormat.parse("14-01-2025")),
+                    200.0
+            );
+            long idJuan = reservaDao.insert(reserva);
+
+            ParcelaReservada parcelaReservada1 = new ParcelaReservada((int) idJuan, (int) idAneto, 5, 1000, 4);
+            parcelaReservadaDao.insert(parcelaReservada1);
+
+            reserva = new Reserva(
+                    "Luisa",
+                    "987654321",
+                    Objects.requireNonNull(dateFormat.parse("12-02-2025")),
+                    Objects.requireNonNull(dateFormat.parse("14-02-2025")),
+                    50.0
+            );
+            long idLuisa = reservaDao.insert(reserva);
+
+            ParcelaReservada parcelaReservada2 = new ParcelaReservada((int) idLuisa, (int) idCinca, 1, 2500, 2);
+            parcelaReservadaDao.insert(parcelaReservada2);
+
+        } catch (Exception e) {
+            // Manejar errores en caso de que las fechas no puedan analizarse
+            e.printStackTrace();
+        }
+    }
 }
@@ -0,0 +1,88 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carga en {@link CampingRoomDatabase} los datos de un {@link GeneradorDatos}.
+ * Cada lote se inserta en una transaccion. Durante la carga se desactivan los triggers de los
+ * resumenes mensuales, que se recalculan al terminar de una sola vez.
+ * Las operaciones son sincronas y no se pueden ejecutar en el hilo principal.
+ */
+public class CargadorDatos implements GeneradorDatos.Destino {
+
+    private final CampingRoomDatabase mDb;
+
+    /**
+     * Constructor de CargadorDatos.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public CargadorDatos(Application application) {
+        this(CampingRoomDatabase.getDatabase(application));
+    }
+
+    /**
+     * Constructor con la base de datos en la que se cargan los datos, por ejemplo una base de datos en memoria.
+     *
+     * @param db La base de datos.
+     */
+    public CargadorDatos(CampingRoomDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Genera y carga parcelas y reservas.
+     *
+     * @param generador   El generador de los datos.
+     * @param numParcelas Numero de parcelas a cargar.
+     * @param numReservas Numero de reservas a cargar.
+     */
+    public void cargar(GeneradorDatos generador, int numParcelas, int numReservas) {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        // Si el proceso muere antes de volver a crearlos, se reparan al abrir la base de datos
+        for (String sql : SqlResumenMensual.borrarTriggers()) {
+            db.execSQL(sql);
+        }
+        try {
+            generador.generar(numParcelas, numReservas, this);
+        } finally {
+            mDb.runInTransaction(() -> {
+                CampingRoomDatabase.reconstruirResumenes(db);
+                CampingRoomDatabase.crearTriggersResumen(db);
+            });
+        }
+    }
+
+    @Override
+    public void insertarParcelas(List<Parcela> parcelas) {
+        mDb.runInTransaction(() -> {
+            long[] ids = mDb.parcelaDao().insertAll(parcelas);
+            for (int i = 0; i < ids.length; i++) {
+                // Si ya habia una parcela con el mismo nombre, las reservas generadas se asignan a ella
+                parcelas.get(i).setId(ids[i] != -1 ? (int) ids[i]
+                        : mDb.parcelaDao().getIdParcelaByNombre(parcelas.get(i).getNombre()));
+            }
+        });
+    }
+
+    @Override
+    public void insertarReservas(List<Reserva> reservas, List<List<ParcelaReservada>> lineas) {
+        mDb.runInTransaction(() -> {
+            long[] ids = mDb.reservaDao().insertAll(reservas);
+            List<ParcelaReservada> todas = new ArrayList<>(reservas.size() * 2);
+            for (int i = 0; i < ids.length; i++) {
+                reservas.get(i).setId((int) ids[i]);
+                for (ParcelaReservada linea : lineas.get(i)) {
+                    linea.setReservaId((int) ids[i]);
+                    todas.add(linea);
+                }
+            }
+            mDb.parcelaReservadaDao().insertAll(todas);
+        });
+    }
+}
@@ -0,0 +1,84 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Cliente del camping, identificado por su telefono y su nombre.
+ * Las reservas guardan el ID de su cliente, de modo que todas las estancias de un cliente se
+ * obtienen con el indice de clienteId en lugar de comparar los nombres y telefonos de todas las
+ * reservas. Las filas las crean los triggers de {@link SqlClientes} al guardar las reservas.
+ * El indice unico de (numeroMovil, nombre) impide los clientes repetidos y permite buscarlos
+ * por una parte inicial del telefono.
+ */
+@Entity(tableName = "cliente",
+        indices = {@Index(value = {"numeroMovil", "nombre"}, unique = true)})
+public class Cliente {
+
+    /** ID unico del cliente, autogenerado. */
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    private int id;
+
+    /** Nombre del cliente. */
+    @NonNull
+    @ColumnInfo(name = "nombre")
+    private final String nombre;
+
+    /** Telefono del cliente, solo con sus digitos (ver {@link NumeroTelefono}). */
+    @NonNull
+    @ColumnInfo(name = "numeroMovil")
+    private final String numeroMovil;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param nombre      Nombre del cliente.
+     * @param numeroMovil Telefono del cliente.
+     */
+    public Cliente(@NonNull String nombre, @NonNull String numeroMovil) {
+        this.nombre = nombre;
+        this.numeroMovil = numeroMovil;
+    }
+
+    /**
+     * Obtiene el ID del cliente.
+     *
+     * @return El ID del cliente.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Establece el ID del cliente.
+     *
+     * @param id El ID del cliente.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Obtiene el nombre del cliente.
+     *
+     * @return El nombre del cliente.
+     */
+    @NonNull
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * Obtiene el telefono del cliente.
+     *
+     * @return El telefono del cliente.
+     */
+    @NonNull
+    public String getNumeroMovil() {
+        return numeroMovil;
+    }
+}
@@ -0,0 +1,75 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO para consultar los clientes y su historial de reservas.
+ * Los clientes no se escriben desde aqui: los crean los triggers de {@link SqlClientes}.
+ */
+@Dao
+public interface ClienteDao {
+
+    /** Busqueda por una parte inicial del telefono, como un rango del indice unico de cliente */
+    String BUSQUEDA_POR_TELEFONO = "SELECT * FROM cliente WHERE numeroMovil >= :desde AND numeroMovil < :hasta " +
+            "ORDER BY numeroMovil ASC, nombre ASC LIMIT :maximo";
+
+    /** Reservas vigentes de un cliente, leidas en orden del indice de (clienteId, fechaEntrada) */
+    String HISTORIAL = "SELECT * FROM reserva WHERE clienteId = :clienteId ORDER BY fechaEntrada DESC";
+
+    /** Reservas archivadas de un cliente, leidas en orden del indice de (clienteId, fechaEntrada) */
+    String HISTORIAL_ARCHIVADO = "SELECT * FROM reservaArchivada WHERE clienteId = :clienteId " +
+            "ORDER BY fechaEntrada DESC";
+
+    /**
+     * Obtiene un cliente por su ID.
+     *
+     * @param id El ID del cliente.
+     * @return El cliente, o null si no existe.
+     */
+    @Query("SELECT * FROM cliente WHERE id = :id")
+    Cliente getClienteById(int id);
+
+    /**
+     * Obtiene el cliente con un nombre y un telefono.
+     *
+     * @param nombre      El nombre del cliente.
+     * @param numeroMovil El telefono normalizado del cliente.
+     * @return El cliente, o null si no existe.
+     */
+    @Query("SELECT * FROM cliente WHERE numeroMovil = :numeroMovil AND nombre = :nombre")
+    Cliente getCliente(String nombre, String numeroMovil);
+
+    /**
+     * Busca los clientes cuyo telefono esta en un rango, ordenados por telefono y nombre.
+     * Con {@link NumeroTelefono#finPrefijo(String)} como limite superior devuelve los clientes
+     * cuyo telefono empieza por un prefijo.
+     *
+     * @param desde  El limite inferior, incluido.
+     * @param hasta  El limite superior, excluido.
+     * @param maximo El numero maximo de clientes que se devuelven.
+     * @return Los clientes encontrados.
+     */
+    @Query(BUSQUEDA_POR_TELEFONO)
+    List<Cliente> buscarPorTelefono(String desde, String hasta, int maximo);
+
+    /**
+     * Obtiene las reservas vigentes de un cliente.
+     *
+     * @param clienteId El ID del cliente.
+     * @return Las reservas, de la mas reciente a la mas antigua.
+     */
+    @Query(HISTORIAL)
+    List<Reserva> getReservas(int clienteId);
+
+    /**
+     * Obtiene las reservas archivadas de un cliente.
+     *
+     * @param clienteId El ID del cliente.
+     * @return Las reservas archivadas, de la mas reciente a la mas antigua.
+     */
+    @Query(HISTORIAL_ARCHIVADO)
+    List<ReservaArchivada> getReservasArchivadas(int clienteId);
+}
@@ -0,0 +1,129 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase que gestiona las consultas de los clientes y de su historial de reservas.
+ * El historial se lee con el indice de (clienteId, fechaEntrada) de las reservas vigentes y de las
+ * archivadas, de modo que su coste depende de las reservas del cliente y no del total de reservas.
+ */
+public class ClienteRepository {
+
+    /** Numero maximo de clientes que devuelve la busqueda por telefono */
+    public static final int MAX_RESULTADOS_TELEFONO = 50;
+
+    private final ClienteDao mClienteDao;
+
+    /** Ejecuta las operaciones en segundo plano con timeout y registra sus metricas */
+    private final MetricasRepositorio mMetricas = MetricasRepositorio.getInstancia();
+
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
+
+    /**
+     * Constructor del repositorio de clientes del camping principal.
+     *
+     * @param application La aplicacion que proporciona el contexto para la base de datos.
+     */
+    public ClienteRepository(Application application) {
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor del repositorio de clientes de un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public ClienteRepository(Application application, String campingId) {
+        this(new RetencionCamping(application, campingId));
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     */
+    private ClienteRepository(RetencionCamping retencion) {
+        this(retencion.getDatabase());
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor con la base de datos, por ejemplo una base de datos en memoria.
+     *
+     * @param db La base de datos.
+     */
+    ClienteRepository(CampingRoomDatabase db) {
+        mClienteDao = db.clienteDao();
+    }
+
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
+    /**
+     * Obtiene un cliente por su ID.
+     *
+     * @param id El ID del cliente.
+     * @return El cliente, o null si no existe o se produce un error.
+     */
+    public Cliente getClienteById(int id) {
+        return mMetricas.ejecutar("ClienteRepository.getClienteById",
+                () -> mClienteDao.getClienteById(id), null);
+    }
+
+    /**
+     * Busca los clientes cuyo telefono empieza por los digitos dados. Devuelve como mucho
+     * {@link #MAX_RESULTADOS_TELEFONO} clientes.
+     *
+     * @param prefijo Los primeros digitos del telefono, con o sin espacios, guiones o prefijo internacional.
+     * @return Los clientes ordenados por telefono y nombre; vacia si el prefijo no tiene digitos,
+     * no es un telefono o se produce un error.
+     */
+    public List<Cliente> buscarPorTelefono(String prefijo) {
+        String digitos;
+        try {
+            digitos = NumeroTelefono.normalizar(prefijo);
+        } catch (IllegalArgumentException e) {
+            return new ArrayList<>();
+        }
+        if (digitos.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return mMetricas.ejecutar("ClienteRepository.buscarPorTelefono",
+                () -> mClienteDao.buscarPorTelefono(digitos, NumeroTelefono.finPrefijo(digitos),
+                        MAX_RESULTADOS_TELEFONO), new ArrayList<>());
+    }
+
+    /**
+     * Obtiene las reservas vigentes de un cliente.
+     *
+     * @param clienteId El ID del cliente.
+     * @return Las reservas, de la mas reciente a la mas antigua; vacia en caso de error.
+     */
+    public List<Reserva> getReservas(int clienteId) {
+        return mMetricas.ejecutar("ClienteRepository.getReservas",
+                () -> mClienteDao.getReservas(clienteId), new ArrayList<>());
+    }
+
+    /**
+     * Obtiene las reservas archivadas de un cliente.
+     *
+     * @param clienteId El ID del cliente.
+     * @return Las reservas archivadas, de la mas reciente a la mas antigua; vacia en caso de error.
+     */
+    public List<ReservaArchivada> getReservasArchivadas(int clienteId) {
+        return mMetricas.ejecutar("ClienteRepository.getReservasArchivadas",
+                () -> mClienteDao.getReservasArchivadas(clienteId), new ArrayList<>());
+    }
+}
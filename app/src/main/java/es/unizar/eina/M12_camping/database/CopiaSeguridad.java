@@ -0,0 +1,223 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Instantaneas de la base de datos de un camping, hechas mientras la aplicacion la sigue usando,
+ * y restauracion de una instantanea.
+ * Una instantanea es un fichero de base de datos completo y sin WAL con los datos confirmados en
+ * el momento de hacerla. Desde Android 11 (SQLite 3.28) se hace con VACUUM INTO, que lee en una
+ * transaccion de lectura sin bloquear a los escritores. En versiones anteriores se copian el
+ * fichero y su WAL con el cerrojo de escritura, que solo detiene a los escritores durante la copia,
+ * y despues se integra el WAL en la copia.
+ * Las llamadas son sincronas y no se deben hacer desde el hilo principal.
+ */
+public class CopiaSeguridad {
+
+    /** Sufijo de los ficheros a medio escribir */
+    private static final String SUFIJO_TEMPORAL = ".tmp";
+
+    private final RegistroCampings mRegistro;
+    private final String mCampingId;
+
+    /**
+     * Constructor de CopiaSeguridad para el camping principal.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public CopiaSeguridad(Application application) {
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor de CopiaSeguridad para un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public CopiaSeguridad(Application application, String campingId) {
+        this(RegistroCampings.getInstancia(application), campingId);
+    }
+
+    /**
+     * Constructor con el registro que abre la base de datos.
+     *
+     * @param registro  El registro de los campings.
+     * @param campingId El identificador del camping.
+     */
+    CopiaSeguridad(RegistroCampings registro, String campingId) {
+        mRegistro = registro;
+        mCampingId = campingId;
+    }
+
+    /**
+     * Hace una instantanea de la base de datos. Se escribe en un fichero temporal que se renombra
+     * al terminar, de modo que el destino nunca queda a medio escribir; si ya existe se sustituye.
+     *
+     * @param destino El fichero de la instantanea.
+     * @return El tamano de la instantanea en bytes.
+     * @throws IOException Si no se puede hacer la instantanea.
+     */
+    public long crearInstantanea(File destino) throws IOException {
+        File temporal = new File(destino.getPath() + SUFIJO_TEMPORAL);
+        borrarFicheros(temporal);
+        long inicio = System.nanoTime();
+        try {
+            mRegistro.usar(mCampingId, db -> {
+                try {
+                    copiar(db.getOpenHelper().getWritableDatabase(), temporal);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+            if (!temporal.renameTo(destino)) {
+                throw new IOException("No se puede mover " + temporal + " a " + destino);
+            }
+        } catch (UncheckedIOException e) {
+            borrarFicheros(temporal);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            borrarFicheros(temporal);
+            throw e;
+        }
+        Log.d("CopiaSeguridad", "Instantanea del camping " + mCampingId + " en " + destino + ": "
+                + destino.length() + " bytes, " + (System.nanoTime() - inicio) / 1000000 + " ms");
+        return destino.length();
+    }
+
+    /**
+     * Sustituye la base de datos por una instantanea. La instantanea se copia junto a la base de
+     * datos y se comprueba antes de cerrar la base de datos y cambiar el fichero, de modo que si
+     * esta danada la base de datos no se toca. Las instantaneas de versiones anteriores se migran
+     * al abrirlas. Los repositorios del camping retienen su base de datos: se deben cerrar antes de
+     * restaurar y volver a crear despues.
+     *
+     * @param instantanea El fichero de la instantanea, que no se modifica.
+     * @throws IOException           Si no se puede copiar, esta danada o es de una version posterior.
+     * @throws IllegalStateException Si la base de datos se esta usando o algun repositorio la retiene.
+     */
+    public void restaurar(File instantanea) throws IOException {
+        File temporal = new File(mRegistro.getFichero(mCampingId).getPath() + SUFIJO_TEMPORAL);
+        borrarFicheros(temporal);
+        try {
+            copiarFichero(instantanea, temporal);
+            comprobar(temporal);
+            mRegistro.reemplazar(mCampingId, temporal);
+        } catch (IOException | RuntimeException e) {
+            borrarFicheros(temporal);
+            throw e;
+        }
+        Log.d("CopiaSeguridad", "Restaurado el camping " + mCampingId + " desde " + instantanea);
+    }
+
+    /**
+     * Copia los datos confirmados de una base de datos abierta en un fichero sin WAL, que no debe
+     * existir o estar vacio.
+     *
+     * @param db      La base de datos.
+     * @param destino El fichero de la copia.
+     * @throws IOException Si no se puede copiar.
+     */
+    static void copiar(SupportSQLiteDatabase db, File destino) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            db.execSQL("VACUUM INTO ?", new Object[]{destino.getPath()});
+            return;
+        }
+        // Se integra en el fichero lo que se pueda del WAL, sin esperar a los lectores, para copiar menos
+        try (Cursor cursor = db.query("PRAGMA wal_checkpoint(PASSIVE)")) {
+            cursor.moveToFirst();
+        }
+        File fichero = new File(db.getPath());
+        File wal = new File(db.getPath() + "-wal");
+        // Con el cerrojo de escritura nadie confirma transacciones ni reinicia el WAL. Un checkpoint
+        // en curso puede seguir escribiendo en el fichero, pero solo paginas que tambien estan en el
+        // WAL copiado, que prevalecen al integrarlo en la copia.
+        db.beginTransaction();
+        try {
+            copiarFichero(fichero, destino);
+            if (wal.exists()) {
+                copiarFichero(wal, new File(destino.getPath() + "-wal"));
+            }
+        } finally {
+            db.endTransaction();
+        }
+        integrarWal(destino).close();
+    }
+
+    /**
+     * Comprueba que un fichero es una base de datos integra de una version que se puede abrir.
+     */
+    private static void comprobar(File fichero) throws IOException {
+        SQLiteDatabase db;
+        try {
+            db = integrarWal(fichero);
+        } catch (RuntimeException e) {
+            throw new IOException("No es una base de datos: " + fichero, e);
+        }
+        try (Cursor cursor = db.rawQuery("PRAGMA quick_check", null)) {
+            String resultado = cursor.moveToFirst() ? cursor.getString(0) : null;
+            if (!"ok".equals(resultado)) {
+                throw new IOException("La instantanea esta danada: " + resultado);
+            }
+            int version = db.getVersion();
+            if (version < 1 || version > CampingRoomDatabase.VERSION) {
+                throw new IOException("Version de la instantanea no soportada: " + version);
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * Abre una base de datos y la pasa al modo sin WAL, lo que integra en el fichero las
+     * transacciones confirmadas de su WAL y lo borra.
+     *
+     * @return La base de datos abierta.
+     */
+    private static SQLiteDatabase integrarWal(File fichero) {
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(fichero.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        try (Cursor cursor = db.rawQuery("PRAGMA journal_mode=DELETE", null)) {
+            cursor.moveToFirst();
+        } catch (RuntimeException e) {
+            db.close();
+            throw e;
+        }
+        return db;
+    }
+
+    private static void copiarFichero(File origen, File destino) throws IOException {
+        try (FileChannel entrada = new FileInputStream(origen).getChannel();
+             FileChannel salida = new FileOutputStream(destino).getChannel()) {
+            long tamano = entrada.size();
+            long copiados = 0;
+            while (copiados < tamano) {
+                copiados += entrada.transferTo(copiados, tamano - copiados, salida);
+            }
+            salida.force(true);
+        }
+    }
+
+    /** Borra un fichero de base de datos y sus ficheros auxiliares, si existen */
+    private static void borrarFicheros(File fichero) {
+        for (String sufijo : new String[]{"", "-wal", "-shm", "-journal"}) {
+            File borrar = new File(fichero.getPath() + sufijo);
+            if (borrar.exists() && !borrar.delete()) {
+                Log.w("CopiaSeguridad", "No se puede borrar " + borrar);
+            }
+        }
+    }
+}
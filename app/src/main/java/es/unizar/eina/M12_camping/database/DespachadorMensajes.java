@@ -0,0 +1,308 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import es.unizar.eina.send.CanalEnvio;
+import es.unizar.eina.send.RegistroImplementores;
+import es.unizar.eina.send.ResultadoEnvio;
+
+/**
+ * Envia en segundo plano los mensajes de la cola {@link MensajePendiente}.
+ * Toma los mensajes por lotes, los entrega al implementor de su canal en un {@link RegistroImplementores}
+ * respetando un limite de mensajes por segundo y registra el resultado de cada envio cuando se
+ * completa, sin esperar a un envio para lanzar el siguiente. Si un envio falla
+ * se reintenta con una espera que se duplica en cada intento, hasta un maximo de intentos.
+ * Los canales que abren otra aplicacion desde una actividad ({@link CanalEnvio#requiereActividad()})
+ * no se pueden usar sin el usuario, asi que sus mensajes se dan por fallidos sin enviarlos.
+ * Trabaja en su propio hilo, de modo que no ocupa los hilos de la base de datos ni bloquea la interfaz.
+ */
+public class DespachadorMensajes {
+
+    /**
+     * Fuente de tiempo del despachador. Permite sustituir el reloj real en las pruebas.
+     */
+    interface Reloj {
+        /** @return El instante actual en milisegundos. */
+        long ahora();
+
+        /**
+         * Espera el tiempo indicado.
+         *
+         * @param milisegundos El tiempo a esperar.
+         * @throws InterruptedException Si se interrumpe el hilo durante la espera.
+         */
+        void esperar(long milisegundos) throws InterruptedException;
+    }
+
+    /** Reloj del sistema */
+    static final Reloj RELOJ_SISTEMA = new Reloj() {
+        @Override
+        public long ahora() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void esperar(long milisegundos) throws InterruptedException {
+            Thread.sleep(milisegundos);
+        }
+    };
+
+    /** Numero de mensajes que se toman de la cola en cada lote */
+    static final int TAMANO_LOTE = 50;
+    /** Numero maximo de mensajes enviados por segundo */
+    static final int MENSAJES_POR_SEGUNDO = 5;
+    /** Numero maximo de intentos antes de dar un mensaje por fallido */
+    static final int MAX_INTENTOS = 5;
+    /** Espera antes del primer reintento en milisegundos */
+    static final long ESPERA_BASE = 30000;
+    /** Espera maxima entre reintentos en milisegundos */
+    static final long ESPERA_MAXIMA = 30 * 60 * 1000;
+    /** Intervalo entre revisiones de la cola en milisegundos */
+    private static final long INTERVALO_REVISION = 15000;
+    /** Tiempo maximo de espera por los resultados de un lote en milisegundos */
+    private static final long ESPERA_RESULTADOS = 30000;
+
+    private final MensajePendienteDao mDao;
+    private final RegistroImplementores mRegistro;
+    private final Reloj mReloj;
+    private final int mTamanoLote;
+    private final long mIntervaloEnvio;
+    private final int mMaxIntentos;
+    private final long mEsperaBase;
+    private final long mEsperaResultados;
+
+    private ScheduledExecutorService mEjecutor;
+
+    /** Instante del ultimo envio, para respetar el limite de mensajes por segundo */
+    private long mUltimoEnvio = Long.MIN_VALUE;
+
+    /**
+     * Constructor de DespachadorMensajes con el registro de implementors de la aplicacion, de modo
+     * que sus envios se suman a las metricas de los envios de la interfaz.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public DespachadorMensajes(Application application) {
+        this(application, RegistroImplementores.getInstancia());
+    }
+
+    /**
+     * Constructor de DespachadorMensajes.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param registro    Registro con el implementor de envio de cada canal.
+     */
+    public DespachadorMensajes(Application application, RegistroImplementores registro) {
+        this(CampingRoomDatabase.getDatabase(application).mensajePendienteDao(), registro, RELOJ_SISTEMA,
+                TAMANO_LOTE, MENSAJES_POR_SEGUNDO, MAX_INTENTOS, ESPERA_BASE, ESPERA_RESULTADOS);
+    }
+
+    /**
+     * Constructor con todos los parametros del despachador, utilizado en las pruebas.
+     *
+     * @param dao                DAO de la cola de mensajes.
+     * @param registro           Registro con el implementor de envio de cada canal.
+     * @param reloj              Fuente de tiempo.
+     * @param tamanoLote         Numero de mensajes que se toman en cada lote.
+     * @param mensajesPorSegundo Numero maximo de mensajes enviados por segundo.
+     * @param maxIntentos        Numero maximo de intentos por mensaje.
+     * @param esperaBase         Espera antes del primer reintento en milisegundos.
+     * @param esperaResultados   Tiempo maximo de espera por los resultados de un lote en milisegundos.
+     */
+    DespachadorMensajes(MensajePendienteDao dao, RegistroImplementores registro, Reloj reloj,
+                        int tamanoLote, int mensajesPorSegundo, int maxIntentos, long esperaBase,
+                        long esperaResultados) {
+        if (tamanoLote <= 0 || mensajesPorSegundo <= 0 || maxIntentos <= 0 || esperaBase < 0
+                || esperaResultados <= 0) {
+            throw new IllegalArgumentException("Parametros del despachador no validos.");
+        }
+        mDao = dao;
+        mRegistro = registro;
+        mReloj = reloj;
+        mTamanoLote = tamanoLote;
+        mIntervaloEnvio = 1000L / mensajesPorSegundo;
+        mMaxIntentos = maxIntentos;
+        mEsperaBase = esperaBase;
+        mEsperaResultados = esperaResultados;
+    }
+
+    /**
+     * Empieza a revisar la cola periodicamente en un hilo propio.
+     * Los mensajes que se quedaron en envio en una ejecucion anterior vuelven a la cola.
+     */
+    public synchronized void iniciar() {
+        if (mEjecutor != null) {
+            return;
+        }
+        mEjecutor = Executors.newSingleThreadScheduledExecutor();
+        mEjecutor.execute(mDao::reiniciarEnviando);
+        mEjecutor.scheduleWithFixedDelay(this::procesarPendientes, 0, INTERVALO_REVISION, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deja de revisar la cola. Los mensajes del lote en curso que no se lleguen a enviar
+     * se recuperan la siguiente vez que se inicie el despachador.
+     */
+    public synchronized void detener() {
+        if (mEjecutor != null) {
+            mEjecutor.shutdownNow();
+            mEjecutor = null;
+        }
+    }
+
+    /**
+     * Revisa la cola inmediatamente, sin esperar a la siguiente revision periodica.
+     */
+    public synchronized void despertar() {
+        if (mEjecutor != null) {
+            mEjecutor.execute(this::procesarPendientes);
+        }
+    }
+
+    /**
+     * Envia lotes de mensajes hasta que no quede ninguno listo.
+     */
+    void procesarPendientes() {
+        try {
+            while (procesarLote() > 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            Log.e("DespachadorMensajes", "Error procesando la cola de mensajes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Toma un lote de mensajes listos, los envia y registra el resultado de cada uno.
+     * Los envios del lote se lanzan sin esperar a los anteriores; antes de terminar se espera a
+     * que se completen todos, y los que no lo hacen a tiempo se cancelan y se dan por fallidos.
+     *
+     * @return El numero de mensajes procesados.
+     * @throws InterruptedException Si se interrumpe el hilo mientras espera para respetar el limite de envio.
+     */
+    int procesarLote() throws InterruptedException {
+        List<MensajePendiente> lote = mDao.getListos(mReloj.ahora(), mTamanoLote);
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        List<Integer> ids = new ArrayList<>(lote.size());
+        for (MensajePendiente mensaje : lote) {
+            ids.add(mensaje.getId());
+        }
+        mDao.marcarEnviando(ids);
+
+        List<CompletableFuture<ResultadoEnvio>> envios = new ArrayList<>(lote.size());
+        List<CompletableFuture<Void>> registros = new ArrayList<>(lote.size());
+        for (MensajePendiente mensaje : lote) {
+            esperarTurno();
+            CompletableFuture<ResultadoEnvio> envio = enviar(mensaje);
+            envios.add(envio);
+            registros.add(envio.thenAccept(resultado -> registrarResultado(mensaje, resultado)));
+        }
+
+        try {
+            CompletableFuture.allOf(envios.toArray(new CompletableFuture[0]))
+                    .get(mEsperaResultados, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Completar el futuro de RegistroImplementores cancela el envio que sigue en curso
+            // y lo registra como agotado en las metricas del canal
+            for (int i = 0; i < envios.size(); i++) {
+                envios.get(i).complete(ResultadoEnvio.fallo(
+                        canalDe(lote.get(i)), "Tiempo de espera agotado"));
+            }
+        }
+        // Los resultados se registran en la base de datos al completarse cada envio
+        try {
+            CompletableFuture.allOf(registros.toArray(new CompletableFuture[0])).get();
+        } catch (ExecutionException e) {
+            Log.e("DespachadorMensajes", "Error registrando los resultados: " + e.getMessage());
+        }
+        return lote.size();
+    }
+
+    /**
+     * Espera lo necesario para no superar el numero maximo de mensajes por segundo.
+     */
+    private void esperarTurno() throws InterruptedException {
+        long ahora = mReloj.ahora();
+        if (mUltimoEnvio != Long.MIN_VALUE && ahora - mUltimoEnvio < mIntervaloEnvio) {
+            mReloj.esperar(mIntervaloEnvio - (ahora - mUltimoEnvio));
+            ahora = mReloj.ahora();
+        }
+        mUltimoEnvio = ahora;
+    }
+
+    /**
+     * Obtiene el canal de un mensaje, o null si el canal guardado no existe.
+     */
+    private static CanalEnvio canalDe(MensajePendiente mensaje) {
+        try {
+            return CanalEnvio.valueOf(mensaje.getCanal());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Lanza el envio de un mensaje por su canal.
+     */
+    private CompletableFuture<ResultadoEnvio> enviar(MensajePendiente mensaje) {
+        CanalEnvio canal = canalDe(mensaje);
+        if (canal == null) {
+            return CompletableFuture.completedFuture(
+                    ResultadoEnvio.fallo(null, "Canal no disponible: " + mensaje.getCanal()));
+        }
+        if (canal.requiereActividad()) {
+            return CompletableFuture.completedFuture(
+                    ResultadoEnvio.fallo(canal, "El canal " + canal + " no se puede usar en segundo plano"));
+        }
+        return mRegistro.enviar(canal, mensaje.getTelefono(), mensaje.getTexto());
+    }
+
+    /**
+     * Registra en la cola el resultado del envio de un mensaje.
+     * Los mensajes de canales sin implementor o que requieren una actividad no se reintentan.
+     */
+    private void registrarResultado(MensajePendiente mensaje, ResultadoEnvio resultado) {
+        int intentos = mensaje.getIntentos() + 1;
+        if (resultado.isExito()) {
+            mDao.marcarEnviado(mensaje.getId(), intentos);
+            return;
+        }
+        String error = resultado.getError();
+        Log.d("DespachadorMensajes", "Error enviando el mensaje " + mensaje.getId() + ": " + error);
+        CanalEnvio canal = canalDe(mensaje);
+        if (intentos >= mMaxIntentos || canal == null || canal.requiereActividad()
+                || mRegistro.obtener(canal) == null) {
+            mDao.marcarFallido(mensaje.getId(), intentos, error);
+        } else {
+            mDao.reprogramar(mensaje.getId(), intentos, mReloj.ahora() + calcularEspera(intentos), error);
+        }
+    }
+
+    /**
+     * Calcula la espera antes de un reintento, que se duplica con cada intento fallido.
+     *
+     * @param intentos El numero de intentos realizados.
+     * @return La espera en milisegundos.
+     */
+    long calcularEspera(int intentos) {
+        long espera = mEsperaBase << Math.min(intentos - 1, 20);
+        return Math.min(espera, ESPERA_MAXIMA);
+    }
+
+}
@@ -0,0 +1,245 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Detecta las llamadas a los repositorios hechas desde el hilo principal, que lo bloquean mientras
+ * esperan a la base de datos. Para cada metodo y punto de llamada guarda cuantas veces se ha llamado
+ * y cuanto tiempo ha estado bloqueado el hilo principal.
+ * Solo esta activo en las compilaciones de depuracion. En modo estricto, en lugar de registrar la
+ * llamada lanza una excepcion, lo que permite que las pruebas fallen; se activa con
+ * {@link #setEstricto(boolean)} o con la propiedad {@link #PROPIEDAD_ESTRICTO}.
+ */
+public class DetectorHiloPrincipal {
+
+    /** Propiedad del sistema que activa el modo estricto al abrir la base de datos */
+    public static final String PROPIEDAD_ESTRICTO = "camping.hiloPrincipalEstricto";
+    /** Paquete de los repositorios */
+    private static final String PAQUETE = DetectorHiloPrincipal.class.getPackage().getName() + ".";
+
+    private static final DetectorHiloPrincipal INSTANCIA = new DetectorHiloPrincipal();
+
+    private final ConcurrentMap<String, Bloqueo> mBloqueos = new ConcurrentHashMap<>();
+    private volatile boolean mActivo;
+    private volatile boolean mEstricto;
+
+    /**
+     * Obtiene el detector de la aplicacion.
+     *
+     * @return La instancia unica de DetectorHiloPrincipal.
+     */
+    public static DetectorHiloPrincipal getInstancia() {
+        return INSTANCIA;
+    }
+
+    /** La aplicacion usa {@link #getInstancia()}; las pruebas crean instancias propias */
+    DetectorHiloPrincipal() {
+    }
+
+    /**
+     * Activa o desactiva la deteccion. {@link CampingRoomDatabase} la activa en las compilaciones
+     * de depuracion.
+     *
+     * @param activo true para detectar las llamadas desde el hilo principal.
+     */
+    public void setActivo(boolean activo) {
+        mActivo = activo;
+    }
+
+    /**
+     * Activa o desactiva el modo estricto, que tambien activa la deteccion.
+     *
+     * @param estricto true para lanzar una excepcion en cada llamada desde el hilo principal.
+     */
+    public void setEstricto(boolean estricto) {
+        mEstricto = estricto;
+        if (estricto) {
+            mActivo = true;
+        }
+    }
+
+    /**
+     * Indica si hay que medir la llamada actual, es decir, si la deteccion esta activa y el hilo
+     * actual es el principal.
+     *
+     * @param metodo Nombre del metodo del repositorio, con la forma Clase.metodo.
+     * @return true si la llamada bloquea el hilo principal.
+     * @throws IllegalStateException En modo estricto, si la llamada se hace desde el hilo principal.
+     */
+    boolean comprobar(String metodo) {
+        if (!mActivo || !esHiloPrincipal()) {
+            return false;
+        }
+        if (mEstricto) {
+            throw new IllegalStateException("Acceso a la base de datos desde el hilo principal: " + metodo
+                    + " llamado desde " + sitioDeLlamada(new Throwable().getStackTrace()));
+        }
+        return true;
+    }
+
+    private static boolean esHiloPrincipal() {
+        Looper principal = Looper.getMainLooper();
+        return principal != null && principal.getThread() == Thread.currentThread();
+    }
+
+    /**
+     * Registra una llamada que ha bloqueado el hilo principal, con el punto de llamada actual.
+     *
+     * @param metodo Nombre del metodo del repositorio.
+     * @param nanos  Tiempo que ha estado bloqueado el hilo en nanosegundos.
+     */
+    void registrar(String metodo, long nanos) {
+        registrar(metodo, sitioDeLlamada(new Throwable().getStackTrace()), nanos);
+    }
+
+    void registrar(String metodo, String sitio, long nanos) {
+        String clave = metodo + " <- " + sitio;
+        Bloqueo bloqueo = mBloqueos.get(clave);
+        if (bloqueo == null) {
+            bloqueo = new Bloqueo(metodo, sitio);
+            Bloqueo anterior = mBloqueos.putIfAbsent(clave, bloqueo);
+            if (anterior != null) {
+                bloqueo = anterior;
+            }
+        }
+        bloqueo.anadir(nanos);
+        Log.w("DetectorHiloPrincipal", String.format(Locale.ROOT, "%s bloqueo el hilo principal %.1f ms en %s",
+                metodo, nanos / 1e6, sitio));
+    }
+
+    /**
+     * Obtiene el primer elemento de una pila que no es del detector, de {@link MetricasRepositorio}
+     * ni de un repositorio, es decir, quien ha llamado al repositorio.
+     *
+     * @param pila La pila de llamadas, empezando por la mas reciente.
+     * @return El punto de llamada, o "desconocido" si no se encuentra.
+     */
+    static String sitioDeLlamada(StackTraceElement[] pila) {
+        for (StackTraceElement elemento : pila) {
+            String clase = elemento.getClassName();
+            boolean interna = clase.equals(DetectorHiloPrincipal.class.getName())
+                    || clase.equals(MetricasRepositorio.class.getName())
+                    || (clase.startsWith(PAQUETE) && clase.endsWith("Repository"));
+            if (!interna) {
+                return elemento.toString();
+            }
+        }
+        return "desconocido";
+    }
+
+    /**
+     * Obtiene los bloqueos registrados, de mayor a menor tiempo bloqueado.
+     *
+     * @return Los bloqueos.
+     */
+    public List<Bloqueo> getBloqueos() {
+        List<Bloqueo> bloqueos = new ArrayList<>(mBloqueos.values());
+        Collections.sort(bloqueos, (a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return bloqueos;
+    }
+
+    /**
+     * Borra los bloqueos registrados.
+     */
+    public void reiniciar() {
+        mBloqueos.clear();
+    }
+
+    /**
+     * Escribe el inventario de bloqueos, de mayor a menor tiempo bloqueado.
+     *
+     * @param destino Donde se escribe el inventario.
+     */
+    public void volcar(Writer destino) {
+        PrintWriter salida = new PrintWriter(destino);
+        salida.println("# Llamadas a la base de datos desde el hilo principal (de mayor a menor tiempo bloqueado)");
+        for (Bloqueo bloqueo : getBloqueos()) {
+            salida.println(bloqueo);
+        }
+        salida.flush();
+    }
+
+    /**
+     * Escribe el inventario de {@link #volcar(Writer)} en un fichero.
+     *
+     * @param fichero El fichero, que se sobrescribe.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public void volcar(File fichero) throws IOException {
+        try (Writer escritor = new OutputStreamWriter(new FileOutputStream(fichero), StandardCharsets.UTF_8)) {
+            volcar(escritor);
+        }
+    }
+
+    /**
+     * Llamadas a un metodo de un repositorio desde un punto de llamada del hilo principal.
+     */
+    public static final class Bloqueo {
+        private final String mMetodo;
+        private final String mSitio;
+        private final LongAdder mLlamadas = new LongAdder();
+        private final LongAdder mTotalNanos = new LongAdder();
+        private final AtomicLong mMaximoNanos = new AtomicLong();
+
+        Bloqueo(String metodo, String sitio) {
+            mMetodo = metodo;
+            mSitio = sitio;
+        }
+
+        void anadir(long nanos) {
+            mLlamadas.increment();
+            mTotalNanos.add(nanos);
+            mMaximoNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /** @return El metodo del repositorio. */
+        public String getMetodo() {
+            return mMetodo;
+        }
+
+        /** @return El punto de llamada, con clase, metodo, fichero y linea. */
+        public String getSitio() {
+            return mSitio;
+        }
+
+        /** @return El numero de llamadas. */
+        public long getLlamadas() {
+            return mLlamadas.sum();
+        }
+
+        /** @return El tiempo total bloqueado en nanosegundos. */
+        public long getTotalNanos() {
+            return mTotalNanos.sum();
+        }
+
+        /** @return El tiempo maximo bloqueado en una llamada, en milisegundos. */
+        public double getMaximoMs() {
+            return mMaximoNanos.get() / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            long llamadas = getLlamadas();
+            return String.format(Locale.ROOT, "n=%d total=%.1f ms media=%.2f ms max=%.2f ms | %s <- %s",
+                    llamadas, getTotalNanos() / 1e6, llamadas == 0 ? 0 : getTotalNanos() / 1e6 / llamadas,
+                    getMaximoMs(), mMetodo, mSitio);
+        }
+    }
+}
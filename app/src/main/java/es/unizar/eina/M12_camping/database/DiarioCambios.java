@@ -0,0 +1,167 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Lectura del diario de cambios de parcelas, reservas y parcelas reservadas, para mantener
+ * actualizadas copias de los datos (exportaciones, sincronizacion, caches) sin volver a leer las tablas.
+ * Cada consumidor guarda la secuencia de la ultima entrada que ha procesado y pide las posteriores.
+ * Las entradas solo indican que fila ha cambiado; INSERT y UPDATE se tratan igual, leyendo la fila
+ * actual, y DELETE significa que la fila ya no esta. Si {@link #esContinuo(long)} devuelve false
+ * (porque se han purgado entradas que el consumidor no habia leido, o porque se ha restaurado una
+ * copia de seguridad anterior), el consumidor debe volver a leer todas las tablas.
+ * Las llamadas son sincronas y no se deben hacer desde el hilo principal.
+ */
+public class DiarioCambios {
+
+    /** Numero de entradas que se leen en cada consulta de {@link #procesarDesde(long, Consumer)} */
+    public static final int TAMANO_LOTE = 1000;
+
+    private final CambioDao mCambioDao;
+
+    /** Ejecuta las operaciones en segundo plano con timeout y registra sus metricas */
+    private final MetricasRepositorio mMetricas = MetricasRepositorio.getInstancia();
+
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
+
+    /**
+     * Constructor de DiarioCambios para el camping principal.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public DiarioCambios(Application application) {
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor de DiarioCambios para un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public DiarioCambios(Application application, String campingId) {
+        this(new RetencionCamping(application, campingId));
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     */
+    private DiarioCambios(RetencionCamping retencion) {
+        this(retencion.getDatabase());
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor con la base de datos, por ejemplo una base de datos en memoria.
+     *
+     * @param db La base de datos.
+     */
+    DiarioCambios(CampingRoomDatabase db) {
+        mCambioDao = db.cambioDao();
+    }
+
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
+    /**
+     * Obtiene un lote de entradas posteriores a una secuencia.
+     *
+     * @param secuencia Secuencia de la ultima entrada procesada, o 0 para leer desde el principio.
+     * @param maximo    Numero maximo de entradas.
+     * @return Lista de entradas ordenada por secuencia, vacia si no hay mas o en caso de error.
+     */
+    public List<Cambio> getCambiosDesde(long secuencia, int maximo) {
+        return mMetricas.ejecutar("DiarioCambios.getCambiosDesde",
+                () -> mCambioDao.getCambiosDesde(secuencia, maximo), new ArrayList<>());
+    }
+
+    /**
+     * Entrega al consumidor, por lotes de {@link #TAMANO_LOTE}, todas las entradas posteriores a una
+     * secuencia. Si el consumidor lanza una excepcion se propaga y los lotes siguientes no se leen.
+     *
+     * @param secuencia  Secuencia de la ultima entrada procesada, o 0 para leer desde el principio.
+     * @param consumidor Recibe cada lote, ordenado por secuencia.
+     * @return La secuencia de la ultima entrada entregada, que es la que se debe guardar; si no hay
+     *         entradas o falla la lectura, la secuencia recibida o la del ultimo lote entregado.
+     */
+    public long procesarDesde(long secuencia, Consumer<List<Cambio>> consumidor) {
+        long ultima = secuencia;
+        List<Cambio> lote;
+        do {
+            long desde = ultima;
+            lote = mMetricas.ejecutar("DiarioCambios.getCambiosDesde",
+                    () -> mCambioDao.getCambiosDesde(desde, TAMANO_LOTE), null);
+            if (lote == null) {
+                Log.e("DiarioCambios", "Lectura del diario interrumpida en la secuencia " + ultima);
+                return ultima;
+            }
+            if (!lote.isEmpty()) {
+                consumidor.accept(lote);
+                ultima = lote.get(lote.size() - 1).getSecuencia();
+            }
+        } while (lote.size() == TAMANO_LOTE);
+        return ultima;
+    }
+
+    /**
+     * Comprueba si leyendo desde una secuencia se obtienen todos los cambios posteriores.
+     *
+     * @param secuencia Secuencia de la ultima entrada procesada, o 0 si no se ha procesado ninguna.
+     * @return true si no falta ninguna entrada; false si el consumidor debe volver a leer todas las
+     *         tablas o no se ha podido comprobar.
+     */
+    public boolean esContinuo(long secuencia) {
+        return mMetricas.ejecutar("DiarioCambios.esContinuo", () -> esContinuo(mCambioDao, secuencia), false);
+    }
+
+    /**
+     * Comprueba si leyendo desde una secuencia se obtienen todos los cambios posteriores, en el hilo actual.
+     *
+     * @param cambioDao El DAO del diario.
+     * @param secuencia Secuencia de la ultima entrada procesada.
+     * @return true si no falta ninguna entrada.
+     */
+    static boolean esContinuo(CambioDao cambioDao, long secuencia) {
+        long ultima = cambioDao.getUltimaSecuencia();
+        long primera = cambioDao.getPrimeraSecuencia();
+        if (secuencia > ultima) {
+            return false;
+        }
+        return primera == 0 ? secuencia == ultima : secuencia >= primera - 1;
+    }
+
+    /**
+     * Obtiene la secuencia de la ultima entrada, desde la que puede empezar un consumidor nuevo
+     * despues de leer todas las tablas.
+     *
+     * @return La ultima secuencia, o -1 en caso de error.
+     */
+    public long getUltimaSecuencia() {
+        return mMetricas.ejecutar("DiarioCambios.getUltimaSecuencia", mCambioDao::getUltimaSecuencia, -1L);
+    }
+
+    /**
+     * Borra las entradas que ya han procesado todos los consumidores.
+     *
+     * @param secuencia La menor de las secuencias guardadas por los consumidores (incluida).
+     * @return El numero de entradas borradas, o -1 en caso de error.
+     */
+    public int purgarHasta(long secuencia) {
+        return mMetricas.ejecutarEscritura("DiarioCambios.purgarHasta", () -> mCambioDao.purgarHasta(secuencia), -1);
+    }
+}
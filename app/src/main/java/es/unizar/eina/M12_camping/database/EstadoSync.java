@@ -0,0 +1,46 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Valor del estado de la sincronizacion, por ejemplo la ultima secuencia del diario de cambios
+ * enviada. Se guarda en la base de datos para confirmarlo en la misma transaccion que los datos.
+ */
+@Entity(tableName = "estadoSync")
+public class EstadoSync {
+
+    /** Nombre del valor. */
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "clave")
+    private final String clave;
+
+    /** El valor. */
+    @ColumnInfo(name = "valor")
+    private final long valor;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param clave Nombre del valor.
+     * @param valor El valor.
+     */
+    public EstadoSync(@NonNull String clave, long valor) {
+        this.clave = clave;
+        this.valor = valor;
+    }
+
+    /** @return El nombre del valor. */
+    @NonNull
+    public String getClave() {
+        return clave;
+    }
+
+    /** @return El valor. */
+    public long getValor() {
+        return valor;
+    }
+}
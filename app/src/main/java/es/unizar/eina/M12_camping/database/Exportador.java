@@ -0,0 +1,399 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exporta las parcelas, reservas y parcelas reservadas a JSON o CSV.
+ * Las filas se leen de cursores y se escriben segun se leen, con {@link JsonWriter} en el caso de
+ * JSON, de modo que la memoria usada no depende del tamano de las tablas. La exportacion se ejecuta
+ * en segundo plano y se cancela con {@link Future#cancel(boolean)}.
+ * Las filas se leen de una instantanea de la base de datos (ver {@link CopiaSeguridad}), que se borra
+ * al terminar, de modo que el fichero refleja un unico instante aunque se modifiquen los datos
+ * durante la exportacion, y sin bloquear a los escritores mientras se escribe.
+ */
+public class Exportador {
+
+    /** Formato del fichero exportado */
+    public enum Formato { JSON, CSV }
+
+    /** Tablas que se exportan, en el orden en que se escriben */
+    public enum Tabla {
+        PARCELAS("parcelas", "parcela",
+                "id", "nombre", "maxOcupantes", "precioXpersonaCentimos", "descripcion"),
+        RESERVAS("reservas", "reserva",
+                "id", "nombreCliente", "numeroMovil", "fechaEntrada", "fechaSalida", "precioTotalCentimos"),
+        PARCELAS_RESERVADAS("parcelasReservadas", "parcelaReservada",
+                "id", "reservaId", "parcelaId", "numeroOcupantes", "precioXpersonaCentimos", "numeroNoches");
+
+        private final String mNombre;
+        private final String mTablaSql;
+        private final String[] mColumnas;
+
+        Tabla(String nombre, String tablaSql, String... columnas) {
+            mNombre = nombre;
+            mTablaSql = tablaSql;
+            mColumnas = columnas;
+        }
+
+        /** @return El nombre de la tabla en el fichero exportado. */
+        public String getNombre() {
+            return mNombre;
+        }
+
+        /** @return Las columnas que se exportan, en orden. */
+        public String[] getColumnas() {
+            return mColumnas.clone();
+        }
+
+        /** @return El nombre de la tabla en la base de datos. */
+        String getTablaSql() {
+            return mTablaSql;
+        }
+    }
+
+    /**
+     * Recibe el progreso de una exportacion, desde el hilo que la ejecuta.
+     */
+    public interface Progreso {
+        /**
+         * Se llama cada {@link #INTERVALO_PROGRESO} filas y al terminar cada tabla.
+         *
+         * @param tabla La tabla que se esta exportando.
+         * @param filas Filas exportadas de la tabla.
+         * @param total Filas que tiene la tabla.
+         */
+        void actualizar(Tabla tabla, long filas, long total);
+    }
+
+    /**
+     * Recibe el final de una exportacion, desde el hilo que la ejecuta.
+     */
+    public interface Fin {
+        /**
+         * Se llama una vez, cuando la exportacion termina, falla o se cancela.
+         *
+         * @param filas El numero de filas exportadas, o -1 si no ha terminado.
+         * @param error La causa si no ha terminado, o null.
+         */
+        void terminar(long filas, Exception error);
+    }
+
+    /** Numero de filas entre dos avisos de progreso */
+    public static final int INTERVALO_PROGRESO = 1000;
+
+    /** Ejecutor de las exportaciones, de una en una para no ocupar el ejecutor de la base de datos */
+    private static final ExecutorService EJECUTOR = Executors.newSingleThreadExecutor();
+
+    private final CampingRoomDatabase mDb;
+
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
+
+    /**
+     * Constructor de Exportador para el camping principal.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public Exportador(Application application) {
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor de Exportador para un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public Exportador(Application application, String campingId) {
+        this(new RetencionCamping(application, campingId));
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     */
+    private Exportador(RetencionCamping retencion) {
+        this(retencion.getDatabase());
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor con la base de datos que se exporta.
+     *
+     * @param db La base de datos.
+     */
+    Exportador(CampingRoomDatabase db) {
+        mDb = db;
+    }
+
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
+    /**
+     * Exporta las tablas en segundo plano. En JSON se escribe un unico fichero con un array por tabla;
+     * en CSV el destino es un directorio en el que se escribe un fichero por tabla (por ejemplo, reservas.csv).
+     * Si la exportacion falla o se cancela se borran los ficheros a medio escribir.
+     *
+     * @param formato  El formato.
+     * @param destino  El fichero (JSON) o directorio (CSV) de destino.
+     * @param progreso Recibe el progreso, o null.
+     * @return La exportacion en curso, cuyo resultado es el numero de filas exportadas.
+     */
+    public Future<Long> exportar(Formato formato, File destino, Progreso progreso) {
+        return exportar(formato, destino, progreso, null);
+    }
+
+    /**
+     * Exporta las tablas en segundo plano y avisa al terminar, sin que nadie tenga que esperar al
+     * resultado. Ver {@link #exportar(Formato, File, Progreso)}.
+     *
+     * @param formato  El formato.
+     * @param destino  El fichero (JSON) o directorio (CSV) de destino.
+     * @param progreso Recibe el progreso, o null.
+     * @param fin      Recibe el resultado, o null.
+     * @return La exportacion en curso, cuyo resultado es el numero de filas exportadas.
+     */
+    public Future<Long> exportar(Formato formato, File destino, Progreso progreso, Fin fin) {
+        return EJECUTOR.submit(() -> {
+            long filas;
+            try {
+                filas = formato == Formato.JSON ? exportarJson(destino, progreso) : exportarCsv(destino, progreso);
+            } catch (Exception e) {
+                if (fin != null) {
+                    fin.terminar(-1, e);
+                }
+                throw e;
+            }
+            Log.d("Exportador", "Exportadas " + filas + " filas a " + destino);
+            if (fin != null) {
+                fin.terminar(filas, null);
+            }
+            return filas;
+        });
+    }
+
+    private long exportarJson(File fichero, Progreso progreso) throws IOException {
+        long filas;
+        try (Writer escritor = abrir(fichero)) {
+            filas = exportarJson(escritor, progreso);
+        } catch (IOException | RuntimeException e) {
+            borrar(fichero);
+            throw e;
+        }
+        return filas;
+    }
+
+    private long exportarCsv(File directorio, Progreso progreso) throws IOException {
+        if (!directorio.isDirectory() && !directorio.mkdirs()) {
+            throw new IOException("No se puede crear el directorio " + directorio);
+        }
+        return conInstantanea(origen -> {
+            long filas = 0;
+            for (Tabla tabla : Tabla.values()) {
+                File fichero = new File(directorio, tabla.getNombre() + ".csv");
+                try (Writer escritor = abrir(fichero)) {
+                    filas += exportarCsv(origen, tabla, escritor, progreso);
+                } catch (IOException | RuntimeException e) {
+                    borrar(fichero);
+                    throw e;
+                }
+            }
+            return filas;
+        });
+    }
+
+    /** Lectura de la instantanea de la base de datos */
+    private interface Lectura {
+        long leer(SQLiteDatabase origen) throws IOException;
+    }
+
+    /**
+     * Hace una instantanea de la base de datos en un fichero temporal, la abre para leer y la
+     * borra al terminar la lectura.
+     */
+    private long conInstantanea(Lectura lectura) throws IOException {
+        File instantanea = File.createTempFile("exportacion", ".db");
+        try {
+            CopiaSeguridad.copiar(mDb.getOpenHelper().getWritableDatabase(), instantanea);
+            SQLiteDatabase origen = SQLiteDatabase.openDatabase(instantanea.getPath(), null,
+                    SQLiteDatabase.OPEN_READONLY);
+            try {
+                return lectura.leer(origen);
+            } finally {
+                origen.close();
+            }
+        } finally {
+            borrar(instantanea);
+        }
+    }
+
+    /**
+     * Escribe todas las tablas en JSON, leidas de una instantanea: un objeto con un array de
+     * objetos por tabla.
+     *
+     * @param destino  Donde se escribe, que no se cierra.
+     * @param progreso Recibe el progreso, o null.
+     * @return El numero de filas exportadas.
+     * @throws IOException            Si no se puede hacer la instantanea o escribir.
+     * @throws InterruptedIOException Si se interrumpe el hilo, por ejemplo al cancelar la exportacion.
+     */
+    long exportarJson(Writer destino, Progreso progreso) throws IOException {
+        return conInstantanea(origen -> exportarJson(origen, destino, progreso));
+    }
+
+    private long exportarJson(SQLiteDatabase origen, Writer destino, Progreso progreso) throws IOException {
+        JsonWriter json = new JsonWriter(destino);
+        json.beginObject();
+        long filas = 0;
+        for (Tabla tabla : Tabla.values()) {
+            json.name(tabla.getNombre()).beginArray();
+            filas += recorrer(origen, tabla, progreso, cursor -> {
+                json.beginObject();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    json.name(tabla.mColumnas[i]);
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            json.nullValue();
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            json.value(cursor.getLong(i));
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            json.value(cursor.getDouble(i));
+                            break;
+                        default:
+                            json.value(cursor.getString(i));
+                    }
+                }
+                json.endObject();
+            });
+            json.endArray();
+        }
+        json.endObject();
+        json.flush();
+        return filas;
+    }
+
+    /**
+     * Escribe una tabla en CSV, leida de una instantanea, con una cabecera con los nombres de las columnas.
+     *
+     * @param tabla    La tabla.
+     * @param destino  Donde se escribe, que no se cierra.
+     * @param progreso Recibe el progreso, o null.
+     * @return El numero de filas exportadas.
+     * @throws IOException Si no se puede hacer la instantanea o escribir, o se interrumpe el hilo.
+     */
+    long exportarCsv(Tabla tabla, Writer destino, Progreso progreso) throws IOException {
+        return conInstantanea(origen -> exportarCsv(origen, tabla, destino, progreso));
+    }
+
+    private long exportarCsv(SQLiteDatabase origen, Tabla tabla, Writer destino, Progreso progreso)
+            throws IOException {
+        for (int i = 0; i < tabla.mColumnas.length; i++) {
+            destino.write(i == 0 ? "" : ",");
+            destino.write(tabla.mColumnas[i]);
+        }
+        destino.write("\r\n");
+        long filas = recorrer(origen, tabla, progreso, cursor -> {
+            for (int i = 0; i < cursor.getColumnCount(); i++) {
+                destino.write(i == 0 ? "" : ",");
+                if (!cursor.isNull(i)) {
+                    destino.write(campoCsv(cursor.getString(i)));
+                }
+            }
+            destino.write("\r\n");
+        });
+        destino.flush();
+        return filas;
+    }
+
+    /**
+     * Escapa un campo CSV segun RFC 4180: si contiene comas, comillas o saltos de linea se
+     * encierra entre comillas y se duplican las comillas.
+     *
+     * @param valor El valor del campo.
+     * @return El campo escapado.
+     */
+    static String campoCsv(String valor) {
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+
+    /** Escribe una fila del cursor */
+    private interface EscritorFila {
+        void escribir(Cursor cursor) throws IOException;
+    }
+
+    /**
+     * Recorre las filas de una tabla con un cursor, en orden de ID, sin cargarlas en memoria.
+     *
+     * @return El numero de filas recorridas.
+     */
+    private static long recorrer(SQLiteDatabase origen, Tabla tabla, Progreso progreso, EscritorFila escritor)
+            throws IOException {
+        long total = contar(origen, tabla);
+        long filas = 0;
+        try (Cursor cursor = origen.rawQuery("SELECT " + String.join(", ", tabla.mColumnas)
+                + " FROM " + tabla.mTablaSql + " ORDER BY id", null)) {
+            while (cursor.moveToNext()) {
+                escritor.escribir(cursor);
+                filas++;
+                if (filas % INTERVALO_PROGRESO == 0) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Exportacion cancelada en " + tabla.getNombre());
+                    }
+                    if (progreso != null) {
+                        progreso.actualizar(tabla, filas, total);
+                    }
+                }
+            }
+        }
+        if (progreso != null) {
+            progreso.actualizar(tabla, filas, total);
+        }
+        return filas;
+    }
+
+    private static long contar(SQLiteDatabase origen, Tabla tabla) {
+        try (Cursor cursor = origen.rawQuery("SELECT COUNT(*) FROM " + tabla.mTablaSql, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static Writer abrir(File fichero) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fichero), StandardCharsets.UTF_8));
+    }
+
+    private static void borrar(File fichero) {
+        if (fichero.exists() && !fichero.delete()) {
+            Log.w("Exportador", "No se puede borrar " + fichero);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.CancellationSignal;
+import android.util.Pair;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteProgram;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fabrica de SupportSQLiteOpenHelper que mide la duracion de cada sentencia ejecutada sobre la base
+ * de datos y la registra en {@link MetricasConsultas}. Envuelve la fabrica real, de modo que Room no
+ * nota la diferencia.
+ * En las sentencias compiladas se mide la ejecucion; en las consultas, el tiempo desde que se lanzan
+ * hasta que se cierra el cursor, que incluye la lectura de las filas por el DAO.
+ */
+public class FabricaSQLiteInstrumentada implements SupportSQLiteOpenHelper.Factory {
+
+    private final SupportSQLiteOpenHelper.Factory mDelegada;
+    private final MetricasConsultas mMetricas;
+
+    /**
+     * Crea una fabrica instrumentada.
+     *
+     * @param delegada La fabrica que abre realmente la base de datos.
+     * @param metricas Donde se registran las mediciones.
+     */
+    public FabricaSQLiteInstrumentada(SupportSQLiteOpenHelper.Factory delegada, MetricasConsultas metricas) {
+        mDelegada = delegada;
+        mMetricas = metricas;
+    }
+
+    @Override
+    public SupportSQLiteOpenHelper create(SupportSQLiteOpenHelper.Configuration configuracion) {
+        return new OpenHelperInstrumentado(mDelegada.create(configuracion));
+    }
+
+    /** Argumentos enlazados a una sentencia, indexados desde 1 como en SQLite */
+    private static class Argumentos implements SupportSQLiteProgram {
+        private Object[] mValores = new Object[0];
+
+        private void poner(int indice, Object valor) {
+            if (indice > mValores.length) {
+                mValores = Arrays.copyOf(mValores, indice);
+            }
+            mValores[indice - 1] = valor;
+        }
+
+        Object[] getValores() {
+            return mValores.clone();
+        }
+
+        @Override
+        public void bindNull(int indice) {
+            poner(indice, null);
+        }
+
+        @Override
+        public void bindLong(int indice, long valor) {
+            poner(indice, valor);
+        }
+
+        @Override
+        public void bindDouble(int indice, double valor) {
+            poner(indice, valor);
+        }
+
+        @Override
+        public void bindString(int indice, String valor) {
+            poner(indice, valor);
+        }
+
+        @Override
+        public void bindBlob(int indice, byte[] valor) {
+            poner(indice, String.format(Locale.ROOT, "<blob %d bytes>", valor.length));
+        }
+
+        @Override
+        public void clearBindings() {
+            mValores = new Object[0];
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private class OpenHelperInstrumentado implements SupportSQLiteOpenHelper {
+        private final SupportSQLiteOpenHelper mDelegado;
+        private BaseDatosInstrumentada mBaseDatos;
+
+        OpenHelperInstrumentado(SupportSQLiteOpenHelper delegado) {
+            mDelegado = delegado;
+        }
+
+        /** La fabrica real devuelve siempre el mismo objeto mientras no se reabre la base de datos */
+        private synchronized SupportSQLiteDatabase envolver(SupportSQLiteDatabase db) {
+            if (mBaseDatos == null || mBaseDatos.mDelegada != db) {
+                mBaseDatos = new BaseDatosInstrumentada(db);
+            }
+            return mBaseDatos;
+        }
+
+        @Override
+        public String getDatabaseName() {
+            return mDelegado.getDatabaseName();
+        }
+
+        @Override
+        public void setWriteAheadLoggingEnabled(boolean activado) {
+            mDelegado.setWriteAheadLoggingEnabled(activado);
+        }
+
+        @Override
+        public SupportSQLiteDatabase getWritableDatabase() {
+            return envolver(mDelegado.getWritableDatabase());
+        }
+
+        @Override
+        public SupportSQLiteDatabase getReadableDatabase() {
+            return envolver(mDelegado.getReadableDatabase());
+        }
+
+        @Override
+        public void close() {
+            mDelegado.close();
+        }
+    }
+
+    private class BaseDatosInstrumentada implements SupportSQLiteDatabase {
+        private final SupportSQLiteDatabase mDelegada;
+
+        BaseDatosInstrumentada(SupportSQLiteDatabase delegada) {
+            mDelegada = delegada;
+        }
+
+        @Override
+        public SupportSQLiteStatement compileStatement(String sql) {
+            return new SentenciaInstrumentada(sql, mDelegada.compileStatement(sql));
+        }
+
+        @Override
+        public Cursor query(String sql) {
+            long inicio = System.nanoTime();
+            return new CursorInstrumentado(mDelegada.query(sql), sql, null, inicio);
+        }
+
+        @Override
+        public Cursor query(String sql, Object[] argumentos) {
+            long inicio = System.nanoTime();
+            return new CursorInstrumentado(mDelegada.query(sql, argumentos), sql, argumentos, inicio);
+        }
+
+        @Override
+        public Cursor query(SupportSQLiteQuery consulta) {
+            long inicio = System.nanoTime();
+            return new CursorInstrumentado(mDelegada.query(consulta), consulta, inicio);
+        }
+
+        @Override
+        public Cursor query(SupportSQLiteQuery consulta, CancellationSignal cancelacion) {
+            long inicio = System.nanoTime();
+            return new CursorInstrumentado(mDelegada.query(consulta, cancelacion), consulta, inicio);
+        }
+
+        @Override
+        public void execSQL(String sql) {
+            long inicio = System.nanoTime();
+            mDelegada.execSQL(sql);
+            mMetricas.registrar(sql, null, System.nanoTime() - inicio);
+        }
+
+        @Override
+        public void execSQL(String sql, Object[] argumentos) {
+            long inicio = System.nanoTime();
+            mDelegada.execSQL(sql, argumentos);
+            mMetricas.registrar(sql, argumentos, System.nanoTime() - inicio);
+        }
+
+        @Override
+        public long insert(String tabla, int conflicto, ContentValues valores) {
+            return mDelegada.insert(tabla, conflicto, valores);
+        }
+
+        @Override
+        public int delete(String tabla, String condicion, Object[] argumentos) {
+            return mDelegada.delete(tabla, condicion, argumentos);
+        }
+
+        @Override
+        public int update(String tabla, int conflicto, ContentValues valores, String condicion,
+                          Object[] argumentos) {
+            return mDelegada.update(tabla, conflicto, valores, condicion, argumentos);
+        }
+
+        @Override
+        public void beginTransaction() {
+            mDelegada.beginTransaction();
+        }
+
+        @Override
+        public void beginTransactionNonExclusive() {
+            mDelegada.beginTransactionNonExclusive();
+        }
+
+        @Override
+        public void beginTransactionWithListener(SQLiteTransactionListener oyente) {
+            mDelegada.beginTransactionWithListener(oyente);
+        }
+
+        @Override
+        public void beginTransactionWithListenerNonExclusive(SQLiteTransactionListener oyente) {
+            mDelegada.beginTransactionWithListenerNonExclusive(oyente);
+        }
+
+        @Override
+        public void endTransaction() {
+            mDelegada.endTransaction();
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            mDelegada.setTransactionSuccessful();
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return mDelegada.inTransaction();
+        }
+
+        @Override
+        public boolean isDbLockedByCurrentThread() {
+            return mDelegada.isDbLockedByCurrentThread();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely() {
+            return mDelegada.yieldIfContendedSafely();
+        }
+
+        @Override
+        public boolean yieldIfContendedSafely(long espera) {
+            return mDelegada.yieldIfContendedSafely(espera);
+        }
+
+        @Override
+        public boolean isExecPerConnectionSQLSupported() {
+            return mDelegada.isExecPerConnectionSQLSupported();
+        }
+
+        @Override
+        public void execPerConnectionSQL(String sql, Object[] argumentos) {
+            mDelegada.execPerConnectionSQL(sql, argumentos);
+        }
+
+        @Override
+        public int getVersion() {
+            return mDelegada.getVersion();
+        }
+
+        @Override
+        public void setVersion(int version) {
+            mDelegada.setVersion(version);
+        }
+
+        @Override
+        public long getMaximumSize() {
+            return mDelegada.getMaximumSize();
+        }
+
+        @Override
+        public long setMaximumSize(long tamano) {
+            return mDelegada.setMaximumSize(tamano);
+        }
+
+        @Override
+        public long getPageSize() {
+            return mDelegada.getPageSize();
+        }
+
+        @Override
+        public void setPageSize(long tamano) {
+            mDelegada.setPageSize(tamano);
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return mDelegada.isReadOnly();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return mDelegada.isOpen();
+        }
+
+        @Override
+        public boolean needUpgrade(int version) {
+            return mDelegada.needUpgrade(version);
+        }
+
+        @Override
+        public String getPath() {
+            return mDelegada.getPath();
+        }
+
+        @Override
+        public void setLocale(Locale locale) {
+            mDelegada.setLocale(locale);
+        }
+
+        @Override
+        public void setMaxSqlCacheSize(int tamano) {
+            mDelegada.setMaxSqlCacheSize(tamano);
+        }
+
+        @Override
+        public void setForeignKeyConstraintsEnabled(boolean activadas) {
+            mDelegada.setForeignKeyConstraintsEnabled(activadas);
+        }
+
+        @Override
+        public boolean enableWriteAheadLogging() {
+            return mDelegada.enableWriteAheadLogging();
+        }
+
+        @Override
+        public void disableWriteAheadLogging() {
+            mDelegada.disableWriteAheadLogging();
+        }
+
+        @Override
+        public boolean isWriteAheadLoggingEnabled() {
+            return mDelegada.isWriteAheadLoggingEnabled();
+        }
+
+        @Override
+        public List<Pair<String, String>> getAttachedDbs() {
+            return mDelegada.getAttachedDbs();
+        }
+
+        @Override
+        public boolean isDatabaseIntegrityOk() {
+            return mDelegada.isDatabaseIntegrityOk();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mDelegada.close();
+        }
+    }
+
+    /** Sentencia compilada que guarda sus argumentos para el registro de consultas lentas */
+    private class SentenciaInstrumentada implements SupportSQLiteStatement {
+        private final String mSql;
+        private final SupportSQLiteStatement mDelegada;
+        private final Argumentos mArgumentos = new Argumentos();
+
+        SentenciaInstrumentada(String sql, SupportSQLiteStatement delegada) {
+            mSql = sql;
+            mDelegada = delegada;
+        }
+
+        private void registrar(long inicio) {
+            long nanos = System.nanoTime() - inicio;
+            mMetricas.registrar(mSql, mMetricas.esLenta(nanos) ? mArgumentos.getValores() : null, nanos);
+        }
+
+        @Override
+        public void execute() {
+            long inicio = System.nanoTime();
+            try {
+                mDelegada.execute();
+            } finally {
+                registrar(inicio);
+            }
+        }
+
+        @Override
+        public int executeUpdateDelete() {
+            long inicio = System.nanoTime();
+            try {
+                return mDelegada.executeUpdateDelete();
+            } finally {
+                registrar(inicio);
+            }
+        }
+
+        @Override
+        public long executeInsert() {
+            long inicio = System.nanoTime();
+            try {
+                return mDelegada.executeInsert();
+            } finally {
+                registrar(inicio);
+            }
+        }
+
+        @Override
+        public long simpleQueryForLong() {
+            long inicio = System.nanoTime();
+            try {
+                return mDelegada.simpleQueryForLong();
+            } finally {
+                registrar(inicio);
+            }
+        }
+
+        @Override
+        public String simpleQueryForString() {
+            long inicio = System.nanoTime();
+            try {
+                return mDelegada.simpleQueryForString();
+            } finally {
+                registrar(inicio);
+            }
+        }
+
+        @Override
+        public void bindNull(int indice) {
+            mDelegada.bindNull(indice);
+            mArgumentos.bindNull(indice);
+        }
+
+        @Override
+        public void bindLong(int indice, long valor) {
+            mDelegada.bindLong(indice, valor);
+            mArgumentos.bindLong(indice, valor);
+        }
+
+        @Override
+        public void bindDouble(int indice, double valor) {
+            mDelegada.bindDouble(indice, valor);
+            mArgumentos.bindDouble(indice, valor);
+        }
+
+        @Override
+        public void bindString(int indice, String valor) {
+            mDelegada.bindString(indice, valor);
+            mArgumentos.bindString(indice, valor);
+        }
+
+        @Override
+        public void bindBlob(int indice, byte[] valor) {
+            mDelegada.bindBlob(indice, valor);
+            mArgumentos.bindBlob(indice, valor);
+        }
+
+        @Override
+        public void clearBindings() {
+            mDelegada.clearBindings();
+            mArgumentos.clearBindings();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mDelegada.close();
+        }
+    }
+
+    /**
+     * Cursor que registra la consulta al cerrarse. Los argumentos de una SupportSQLiteQuery solo se
+     * leen si la consulta ha sido lenta; Room no la libera hasta despues de cerrar el cursor.
+     */
+    private class CursorInstrumentado extends CursorWrapper {
+        private final String mSql;
+        private final Object[] mArgumentos;
+        private final SupportSQLiteQuery mConsulta;
+        private final long mInicio;
+        private boolean mCerrado;
+
+        CursorInstrumentado(Cursor cursor, String sql, Object[] argumentos, long inicio) {
+            super(cursor);
+            mSql = sql;
+            mArgumentos = argumentos;
+            mConsulta = null;
+            mInicio = inicio;
+        }
+
+        CursorInstrumentado(Cursor cursor, SupportSQLiteQuery consulta, long inicio) {
+            super(cursor);
+            mSql = consulta.getSql();
+            mArgumentos = null;
+            mConsulta = consulta;
+            mInicio = inicio;
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            if (mCerrado) {
+                return;
+            }
+            mCerrado = true;
+            long nanos = System.nanoTime() - mInicio;
+            Object[] argumentos = mArgumentos;
+            if (mConsulta != null && mMetricas.esLenta(nanos)) {
+                Argumentos capturados = new Argumentos();
+                mConsulta.bindTo(capturados);
+                argumentos = capturados.getValores();
+            }
+            mMetricas.registrar(mSql, argumentos, nanos);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * Estado de sincronizacion de una fila local de parcela, reserva o parcelaReservada.
+ * Relaciona el ID local de la fila con su identificador global, que es el mismo en todos los
+ * dispositivos, y guarda la version acordada con el servidor y la huella de los datos enviados o
+ * recibidos en la ultima sincronizacion. Solo la escribe {@link SincronizadorDelta}.
+ */
+@Entity(tableName = "filaSync", primaryKeys = {"tabla", "filaId"},
+        indices = {@Index(value = {"tabla", "gid"}, unique = true)})
+public class FilaSync {
+
+    /** Tabla de la fila. */
+    @NonNull
+    @ColumnInfo(name = "tabla")
+    private final String tabla;
+
+    /** ID local de la fila. */
+    @ColumnInfo(name = "filaId")
+    private final int filaId;
+
+    /** Identificador global de la fila. */
+    @NonNull
+    @ColumnInfo(name = "gid")
+    private final String gid;
+
+    /** Version de la fila en el servidor, o 0 si todavia no la ha aceptado. */
+    @ColumnInfo(name = "version")
+    private final long version;
+
+    /** Huella de los datos de la fila en la ultima sincronizacion. */
+    @ColumnInfo(name = "huella")
+    private final long huella;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param tabla   Tabla de la fila.
+     * @param filaId  ID local de la fila.
+     * @param gid     Identificador global de la fila.
+     * @param version Version de la fila en el servidor.
+     * @param huella  Huella de los datos de la fila.
+     */
+    public FilaSync(@NonNull String tabla, int filaId, @NonNull String gid, long version, long huella) {
+        this.tabla = tabla;
+        this.filaId = filaId;
+        this.gid = gid;
+        this.version = version;
+        this.huella = huella;
+    }
+
+    /** @return La tabla de la fila. */
+    @NonNull
+    public String getTabla() {
+        return tabla;
+    }
+
+    /** @return El ID local de la fila. */
+    public int getFilaId() {
+        return filaId;
+    }
+
+    /** @return El identificador global de la fila. */
+    @NonNull
+    public String getGid() {
+        return gid;
+    }
+
+    /** @return La version de la fila en el servidor. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** @return La huella de los datos de la fila. */
+    public long getHuella() {
+        return huella;
+    }
+}
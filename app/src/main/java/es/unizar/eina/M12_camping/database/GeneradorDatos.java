@@ -0,0 +1,315 @@
+package es.unizar.eina.M12_camping.database;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generador de datos sinteticos con la forma de un camping real, para pruebas de volumen y benchmarks.
+ * Con la misma semilla genera siempre los mismos datos.
+ * <ul>
+ *     <li>Las parcelas tienen capacidades de 2 a 8 personas y precios que crecen con la capacidad.</li>
+ *     <li>Las entradas siguen la temporada: julio y agosto concentran la mayor parte de las reservas
+ *     y los meses de invierno casi no tienen.</li>
+ *     <li>En temporada alta las estancias son de una o dos semanas; el resto del anio, de fin de semana.</li>
+ *     <li>La mayoria de los grupos son de 2 a 4 personas, y una de cada siete reservas ocupa varias parcelas.</li>
+ *     <li>Los anios que abarcan las reservas se eligen para que la ocupacion media ronde el 50%. Una
+ *     parcela no se reserva dos veces para la misma noche: si no hay parcelas libres en las fechas
+ *     elegidas se buscan otras, de modo que cuando la temporada alta se llena las reservas pasan a
+ *     los meses cercanos.</li>
+ * </ul>
+ * No depende de Android: las entidades generadas se entregan por lotes a un {@link Destino},
+ * que puede ser la base de datos de Room ({@link CargadorDatos}) o cualquier otro almacenamiento.
+ */
+public final class GeneradorDatos {
+
+    /**
+     * Almacenamiento al que se entregan los datos generados.
+     */
+    public interface Destino {
+        /**
+         * Inserta un lote de parcelas y asigna a cada una su ID.
+         *
+         * @param parcelas Las parcelas a insertar.
+         */
+        void insertarParcelas(List<Parcela> parcelas);
+
+        /**
+         * Inserta un lote de reservas con sus parcelas reservadas. Debe asignar a cada reserva su ID
+         * y a sus parcelas reservadas el ID de la reserva antes de insertarlas.
+         *
+         * @param reservas Las reservas a insertar.
+         * @param lineas   Las parcelas reservadas de cada reserva, en el mismo orden que las reservas.
+         */
+        void insertarReservas(List<Reserva> reservas, List<List<ParcelaReservada>> lineas);
+    }
+
+    /** Primer anio de las reservas generadas */
+    static final int PRIMER_ANIO = 2015;
+    /** Numero de reservas que se entregan al destino en cada lote */
+    public static final int TAMANO_LOTE = 1000;
+
+    /** Peso de cada mes (de enero a diciembre) en la eleccion de la fecha de entrada */
+    private static final int[] PESO_MES = {2, 2, 3, 6, 5, 8, 16, 18, 9, 5, 3, 4};
+    /** Duraciones de estancia en temporada alta (julio y agosto), equiprobables */
+    private static final int[] NOCHES_TEMPORADA_ALTA = {2, 3, 4, 5, 7, 7, 7, 10, 14, 14};
+    /** Duraciones de estancia el resto del anio, equiprobables */
+    private static final int[] NOCHES_TEMPORADA_BAJA = {1, 1, 2, 2, 2, 3, 3, 4, 5, 7};
+    /** Peso de cada tamano de grupo, de 1 a 6 personas */
+    private static final int[] PESO_OCUPANTES = {10, 35, 20, 25, 6, 4};
+    /** Capacidades de las parcelas, equiprobables */
+    private static final int[] CAPACIDADES = {2, 4, 4, 6, 6, 8};
+    /** Estimacion de las noches de parcela que ocupa una reserva media, para calcular los anios */
+    private static final double NOCHES_POR_RESERVA = 5.3;
+    /** Ocupacion media que se busca */
+    private static final double OCUPACION_OBJETIVO = 0.5;
+    /** Intentos de encontrar una parcela libre antes de cambiar de fecha */
+    private static final int INTENTOS_PARCELA = 20;
+    /** Intentos de encontrar una fecha con parcelas libres antes de aceptar un solapamiento */
+    private static final int INTENTOS_FECHA = 20;
+    /** Estancia maxima generada, en noches */
+    private static final int MAX_NOCHES = 14;
+
+    private static final String[] NOMBRES = {"Juan", "Luisa", "Carlos", "Maria", "Pablo", "Lucia", "Javier",
+            "Elena", "Sergio", "Ana", "David", "Marta", "Jorge", "Laura", "Alberto", "Carmen"};
+    private static final String[] APELLIDOS = {"Garcia", "Lopez", "Martinez", "Sanchez", "Perez", "Gomez",
+            "Ruiz", "Hernandez", "Jimenez", "Moreno", "Alonso", "Navarro", "Torres", "Gil", "Serrano", "Blasco"};
+
+    private final Random mAleatorio;
+
+    /**
+     * Constructor de GeneradorDatos.
+     *
+     * @param semilla La semilla de los numeros aleatorios.
+     */
+    public GeneradorDatos(long semilla) {
+        mAleatorio = new Random(semilla);
+    }
+
+    /**
+     * Genera las parcelas y las reservas y las entrega al destino en lotes de {@link #TAMANO_LOTE} reservas.
+     *
+     * @param numParcelas Numero de parcelas a generar.
+     * @param numReservas Numero de reservas a generar.
+     * @param destino     Destino de los datos generados.
+     */
+    public void generar(int numParcelas, int numReservas, Destino destino) {
+        generar(numParcelas, numReservas, TAMANO_LOTE, destino);
+    }
+
+    /**
+     * Genera las parcelas y las reservas y las entrega al destino por lotes.
+     *
+     * @param numParcelas Numero de parcelas a generar.
+     * @param numReservas Numero de reservas a generar.
+     * @param tamanoLote  Numero de reservas de cada lote.
+     * @param destino     Destino de los datos generados.
+     */
+    public void generar(int numParcelas, int numReservas, int tamanoLote, Destino destino) {
+        if (numParcelas <= 0 || numReservas < 0 || tamanoLote <= 0) {
+            throw new IllegalArgumentException("Parametros del generador no validos.");
+        }
+        List<Parcela> parcelas = generarParcelas(numParcelas);
+        for (int i = 0; i < numParcelas; i += tamanoLote) {
+            destino.insertarParcelas(parcelas.subList(i, Math.min(i + tamanoLote, numParcelas)));
+        }
+
+        int anios = (int) Math.max(1, Math.ceil(numReservas * NOCHES_POR_RESERVA
+                / (numParcelas * 365 * OCUPACION_OBJETIVO)));
+        Calendario calendario = new Calendario(anios);
+        BitSet[] ocupacion = new BitSet[numParcelas];
+        for (int i = 0; i < numParcelas; i++) {
+            ocupacion[i] = new BitSet();
+        }
+
+        List<Reserva> reservas = new ArrayList<>(tamanoLote);
+        List<List<ParcelaReservada>> lineas = new ArrayList<>(tamanoLote);
+        for (int i = 0; i < numReservas; i++) {
+            List<ParcelaReservada> lineasReserva = new ArrayList<>(3);
+            reservas.add(generarReserva(parcelas, ocupacion, calendario, lineasReserva));
+            lineas.add(lineasReserva);
+            if (reservas.size() == tamanoLote) {
+                destino.insertarReservas(reservas, lineas);
+                reservas = new ArrayList<>(tamanoLote);
+                lineas = new ArrayList<>(tamanoLote);
+            }
+        }
+        if (!reservas.isEmpty()) {
+            destino.insertarReservas(reservas, lineas);
+        }
+    }
+
+    /**
+     * Genera las parcelas, con nombres unicos.
+     */
+    private List<Parcela> generarParcelas(int numParcelas) {
+        List<Parcela> parcelas = new ArrayList<>(numParcelas);
+        for (int i = 1; i <= numParcelas; i++) {
+            int capacidad = CAPACIDADES[mAleatorio.nextInt(CAPACIDADES.length)];
+            long precio = 400 + 100L * capacidad + 50L * mAleatorio.nextInt(6);
+            int metros = 40 + 10 * capacidad + 5 * mAleatorio.nextInt(5);
+            String descripcion = metros + "m2, " + (mAleatorio.nextInt(5) > 0 ? "SI" : "NO") + " agua, " +
+                    (mAleatorio.nextInt(3) > 0 ? "SI" : "NO") + " luz";
+            parcelas.add(new Parcela(String.format("Parcela %04d", i), capacidad, precio, descripcion));
+        }
+        return parcelas;
+    }
+
+    /**
+     * Genera una reserva y sus parcelas reservadas, marcando como ocupadas las noches de cada parcela.
+     */
+    private Reserva generarReserva(List<Parcela> parcelas, BitSet[] ocupacion, Calendario calendario,
+                                   List<ParcelaReservada> lineas) {
+        int numLineas = Math.min(elegirNumeroParcelas(), parcelas.size());
+        int[] elegidas = new int[numLineas];
+        int entrada = 0;
+        int noches = 0;
+        for (int intento = 0; intento < INTENTOS_FECHA; intento++) {
+            int mes = elegirPonderado(PESO_MES);
+            entrada = calendario.diaAleatorio(mAleatorio, mes);
+            int[] duraciones = (mes == Calendar.JULY || mes == Calendar.AUGUST)
+                    ? NOCHES_TEMPORADA_ALTA : NOCHES_TEMPORADA_BAJA;
+            noches = duraciones[mAleatorio.nextInt(duraciones.length)];
+            if (elegirParcelas(ocupacion, entrada, entrada + noches, elegidas)
+                    || intento == INTENTOS_FECHA - 1) {
+                break;
+            }
+        }
+
+        long total = 0;
+        for (int indice : elegidas) {
+            Parcela parcela = parcelas.get(indice);
+            ocupacion[indice].set(entrada, entrada + noches);
+            int ocupantes = Math.min(elegirPonderado(PESO_OCUPANTES) + 1, parcela.getMaxOcupantes());
+            ParcelaReservada linea = new ParcelaReservada(0, parcela.getId(), ocupantes,
+                    parcela.getPrecioXpersonaCentimos(), noches);
+            total += linea.getImporteCentimos();
+            lineas.add(linea);
+        }
+
+        String nombre = NOMBRES[mAleatorio.nextInt(NOMBRES.length)] + " " +
+                APELLIDOS[mAleatorio.nextInt(APELLIDOS.length)];
+        String movil = String.valueOf(600000000 + mAleatorio.nextInt(100000000));
+        return new Reserva(nombre, movil, new Date(calendario.inicioDia(entrada)),
+                new Date(calendario.inicioDia(entrada + noches)), total);
+    }
+
+    /**
+     * Elige parcelas distintas para una reserva, intentando que esten libres en las noches [desde, hasta).
+     * Si no encuentra suficientes parcelas libres, rellena con parcelas ocupadas.
+     *
+     * @return true si todas las parcelas elegidas estan libres.
+     */
+    private boolean elegirParcelas(BitSet[] ocupacion, int desde, int hasta, int[] elegidas) {
+        boolean libres = true;
+        for (int i = 0; i < elegidas.length; i++) {
+            int candidata = -1;
+            boolean libre = false;
+            for (int intento = 0; intento < INTENTOS_PARCELA && !libre; intento++) {
+                int indice = mAleatorio.nextInt(ocupacion.length);
+                if (yaElegida(elegidas, i, indice)) {
+                    continue;
+                }
+                candidata = indice;
+                int ocupada = ocupacion[indice].nextSetBit(desde);
+                libre = ocupada < 0 || ocupada >= hasta;
+            }
+            libres &= libre;
+            if (candidata < 0) {
+                // Hay menos parcelas que lineas: se repite la primera
+                candidata = elegidas[0];
+            }
+            elegidas[i] = candidata;
+        }
+        return libres;
+    }
+
+    private static boolean yaElegida(int[] elegidas, int numero, int indice) {
+        for (int i = 0; i < numero; i++) {
+            if (elegidas[i] == indice) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Elige cuantas parcelas ocupa una reserva: una en el 85% de los casos, dos en el 12% y tres en el 3%.
+     */
+    private int elegirNumeroParcelas() {
+        int valor = mAleatorio.nextInt(100);
+        return valor < 85 ? 1 : valor < 97 ? 2 : 3;
+    }
+
+    /**
+     * Elige un indice de la tabla con probabilidad proporcional a su peso.
+     */
+    private int elegirPonderado(int[] pesos) {
+        int total = 0;
+        for (int peso : pesos) {
+            total += peso;
+        }
+        int valor = mAleatorio.nextInt(total);
+        for (int i = 0; i < pesos.length; i++) {
+            valor -= pesos[i];
+            if (valor < 0) {
+                return i;
+            }
+        }
+        return pesos.length - 1;
+    }
+
+    /**
+     * Dias del periodo de reservas, numerados desde el 1 de enero de {@link #PRIMER_ANIO}, con el instante
+     * en que empieza cada uno en la zona horaria local.
+     */
+    private static final class Calendario {
+        private final int mAnios;
+        private final long[] mInicioDia;
+        /** Primer dia y numero de dias de cada mes, indexados por anio * 12 + mes */
+        private final int[] mPrimerDiaMes;
+        private final int[] mDiasMes;
+
+        Calendario(int anios) {
+            mAnios = anios;
+            mPrimerDiaMes = new int[anios * 12];
+            mDiasMes = new int[anios * 12];
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set(PRIMER_ANIO, Calendar.JANUARY, 1);
+            List<Long> inicios = new ArrayList<>();
+            int dia = 0;
+            for (int mes = 0; mes < anios * 12; mes++) {
+                mPrimerDiaMes[mes] = dia;
+                mDiasMes[mes] = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+                for (int i = 0; i < mDiasMes[mes]; i++) {
+                    inicios.add(calendar.getTimeInMillis());
+                    calendar.add(Calendar.DAY_OF_MONTH, 1);
+                    dia++;
+                }
+            }
+            // Dias extra para las salidas de las ultimas reservas
+            for (int i = 0; i <= MAX_NOCHES; i++) {
+                inicios.add(calendar.getTimeInMillis());
+                calendar.add(Calendar.DAY_OF_MONTH, 1);
+            }
+            mInicioDia = new long[inicios.size()];
+            for (int i = 0; i < mInicioDia.length; i++) {
+                mInicioDia[i] = inicios.get(i);
+            }
+        }
+
+        /** Elige un dia al azar del mes indicado de cualquiera de los anios */
+        int diaAleatorio(Random aleatorio, int mes) {
+            int indice = aleatorio.nextInt(mAnios) * 12 + mes;
+            return mPrimerDiaMes[indice] + aleatorio.nextInt(mDiasMes[indice]);
+        }
+
+        long inicioDia(int dia) {
+            return mInicioDia[dia];
+        }
+    }
+}
@@ -0,0 +1,737 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Importa parcelas, reservas y parcelas reservadas en el formato que escribe {@link Exportador}
+ * (JSON o un CSV por tabla), por ejemplo desde una hoja de calculo.
+ * La importacion es un proceso en cadena: el hilo que llama lee la entrada y la divide en bloques
+ * de {@link #TAMANO_BLOQUE} filas; varios hilos analizan y validan los bloques en paralelo; y un unico
+ * hilo escritor recibe los bloques validados por una cola acotada, en el orden de la entrada, y los
+ * inserta con transacciones de hasta {@link #TAMANO_TRANSACCION} filas.
+ * Los IDs de la entrada solo sirven para relacionar las filas: las parcelas y reservas reciben IDs
+ * nuevos y las parcelas reservadas se asocian a ellos. Una parcela con el mismo nombre que una
+ * existente no se inserta, sino que se asocia a la existente.
+ * Como {@link CargadorDatos}, desactiva los triggers de los resumenes mensuales durante la
+ * importacion y los recalcula al terminar. Las llamadas son sincronas y no se pueden hacer desde el
+ * hilo principal.
+ */
+public class Importador {
+
+    /** Numero de filas que analiza cada tarea */
+    public static final int TAMANO_BLOQUE = 1000;
+    /** Numero maximo de filas que se insertan en cada transaccion */
+    public static final int TAMANO_TRANSACCION = 10000;
+    /** Numero maximo de bloques leidos pendientes de escribir */
+    static final int CAPACIDAD_COLA = 16;
+    /** Numero de rechazos de los que se guarda el detalle */
+    static final int MAXIMO_RECHAZOS_GUARDADOS = 100;
+
+    /** Marca el final de la cola de bloques */
+    private static final Future<Bloque> FIN = CompletableFuture.completedFuture(null);
+
+    private final CampingRoomDatabase mDb;
+    private final int mHilos;
+
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
+
+    /**
+     * Constructor de Importador para el camping principal.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public Importador(Application application) {
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor de Importador para un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public Importador(Application application, String campingId) {
+        this(new RetencionCamping(application, campingId),
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     * @param hilos     Numero de hilos que analizan la entrada.
+     */
+    private Importador(RetencionCamping retencion, int hilos) {
+        this(retencion.getDatabase(), hilos);
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor con la base de datos y el numero de hilos de analisis.
+     *
+     * @param db    La base de datos.
+     * @param hilos Numero de hilos que analizan la entrada.
+     */
+    Importador(CampingRoomDatabase db, int hilos) {
+        mDb = db;
+        mHilos = hilos;
+    }
+
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
+    /**
+     * Importa un fichero JSON con un array por tabla, con los nombres de {@link Exportador.Tabla}.
+     * Las tablas deben aparecer en el orden de {@link Exportador.Tabla}; las que no se conocen se ignoran.
+     *
+     * @param origen El JSON, que no se cierra.
+     * @return El resultado de la importacion.
+     * @throws IOException Si no se puede leer la entrada, no es JSON valido o falla la escritura.
+     */
+    public Resultado importarJson(Reader origen) throws IOException {
+        return new Importacion().ejecutar(importacion -> {
+            JsonReader json = new JsonReader(origen);
+            json.beginObject();
+            while (json.hasNext()) {
+                Exportador.Tabla tabla = tablaLlamada(json.nextName());
+                if (tabla == null) {
+                    json.skipValue();
+                    continue;
+                }
+                json.beginArray();
+                long[] numero = {0};
+                importacion.importarTabla(tabla, () -> {
+                    if (!json.hasNext()) {
+                        json.endArray();
+                        return null;
+                    }
+                    JsonElement elemento = JsonParser.parseReader(json);
+                    return new Fila(++numero[0], () -> camposJson(elemento));
+                });
+            }
+            json.endObject();
+        });
+    }
+
+    /**
+     * Importa los ficheros CSV de un directorio, con los nombres que escribe {@link Exportador}
+     * (por ejemplo, reservas.csv). Los ficheros que no existen se saltan.
+     *
+     * @param directorio El directorio.
+     * @return El resultado de la importacion.
+     * @throws IOException Si no se puede leer algun fichero o falla la escritura.
+     */
+    public Resultado importarCsv(File directorio) throws IOException {
+        Map<Exportador.Tabla, Reader> origenes = new EnumMap<>(Exportador.Tabla.class);
+        try {
+            for (Exportador.Tabla tabla : Exportador.Tabla.values()) {
+                File fichero = new File(directorio, tabla.getNombre() + ".csv");
+                if (fichero.isFile()) {
+                    origenes.put(tabla, new InputStreamReader(new FileInputStream(fichero), StandardCharsets.UTF_8));
+                }
+            }
+            return importarCsv(origenes);
+        } finally {
+            for (Reader origen : origenes.values()) {
+                origen.close();
+            }
+        }
+    }
+
+    /**
+     * Importa un CSV por tabla. La primera fila de cada CSV es la cabecera con los nombres de las columnas,
+     * que pueden estar en cualquier orden.
+     *
+     * @param origenes El CSV de cada tabla, que no se cierran.
+     * @return El resultado de la importacion.
+     * @throws IOException Si no se puede leer la entrada o falla la escritura.
+     */
+    public Resultado importarCsv(Map<Exportador.Tabla, Reader> origenes) throws IOException {
+        return new Importacion().ejecutar(importacion -> {
+            for (Exportador.Tabla tabla : Exportador.Tabla.values()) {
+                Reader origen = origenes.get(tabla);
+                if (origen == null) {
+                    continue;
+                }
+                BufferedReader lector = new BufferedReader(origen);
+                String cabecera = leerRegistroCsv(lector);
+                if (cabecera == null) {
+                    continue;
+                }
+                Map<String, Integer> indices = new HashMap<>();
+                List<String> columnas = camposCsv(cabecera);
+                for (int i = 0; i < columnas.size(); i++) {
+                    indices.put(columnas.get(i).trim(), i);
+                }
+                long[] numero = {1};
+                importacion.importarTabla(tabla, () -> {
+                    String registro = leerRegistroCsv(lector);
+                    while (registro != null && registro.isEmpty()) {
+                        numero[0]++;
+                        registro = leerRegistroCsv(lector);
+                    }
+                    if (registro == null) {
+                        return null;
+                    }
+                    String leido = registro;
+                    return new Fila(++numero[0], () -> {
+                        List<String> campos = camposCsv(leido);
+                        return columna -> {
+                            Integer i = indices.get(columna);
+                            return i == null || i >= campos.size() || campos.get(i).isEmpty() ? null : campos.get(i);
+                        };
+                    });
+                });
+            }
+        });
+    }
+
+    private static Exportador.Tabla tablaLlamada(String nombre) {
+        for (Exportador.Tabla tabla : Exportador.Tabla.values()) {
+            if (tabla.getNombre().equals(nombre)) {
+                return tabla;
+            }
+        }
+        return null;
+    }
+
+    private static Campos camposJson(JsonElement elemento) {
+        if (!elemento.isJsonObject()) {
+            throw new IllegalArgumentException("La fila no es un objeto JSON");
+        }
+        JsonObject objeto = elemento.getAsJsonObject();
+        return columna -> {
+            JsonElement valor = objeto.get(columna);
+            return valor == null || valor.isJsonNull() ? null : valor.getAsString();
+        };
+    }
+
+    /**
+     * Lee un registro CSV, que puede ocupar varias lineas si tiene saltos de linea entre comillas.
+     *
+     * @param lector El lector.
+     * @return El registro sin el salto de linea final, o null al final de la entrada.
+     * @throws IOException Si no se puede leer.
+     */
+    static String leerRegistroCsv(BufferedReader lector) throws IOException {
+        String linea = lector.readLine();
+        if (linea == null) {
+            return null;
+        }
+        StringBuilder registro = new StringBuilder(linea);
+        int comillas = contarComillas(linea);
+        while (comillas % 2 != 0) {
+            linea = lector.readLine();
+            if (linea == null) {
+                break;
+            }
+            registro.append('\n').append(linea);
+            comillas += contarComillas(linea);
+        }
+        return registro.toString();
+    }
+
+    private static int contarComillas(String texto) {
+        int comillas = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) == '"') {
+                comillas++;
+            }
+        }
+        return comillas;
+    }
+
+    /**
+     * Divide un registro CSV en campos segun RFC 4180.
+     *
+     * @param registro El registro.
+     * @return Los campos, sin las comillas que los encierran.
+     */
+    static List<String> camposCsv(String registro) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < registro.length(); i++) {
+            char c = registro.charAt(i);
+            if (entreComillas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < registro.length() && registro.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreComillas = false;
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    /**
+     * Analiza y valida una fila. Se ejecuta en los hilos de analisis.
+     *
+     * @return La fila valida, con los IDs de la entrada.
+     * @throws IllegalArgumentException Si la fila no es valida, con el motivo.
+     */
+    static Valida validar(Exportador.Tabla tabla, Fila fila) {
+        Campos campos = fila.mCampos.get();
+        switch (tabla) {
+            case PARCELAS: {
+                int id = entero(campos, "id");
+                String nombre = obligatorio(campos, "nombre");
+                int maxOcupantes = entero(campos, "maxOcupantes");
+                long precio = largo(campos, "precioXpersonaCentimos");
+                String descripcion = campos.get("descripcion");
+                if (maxOcupantes <= 0) {
+                    throw new IllegalArgumentException("maxOcupantes debe ser positivo");
+                }
+                if (precio < 0) {
+                    throw new IllegalArgumentException("precioXpersonaCentimos no puede ser negativo");
+                }
+                return new Valida(fila.mNumero, id, new Parcela(nombre.trim(), maxOcupantes, precio,
+                        descripcion == null ? "" : descripcion));
+            }
+            case RESERVAS: {
+                int id = entero(campos, "id");
+                String nombreCliente = obligatorio(campos, "nombreCliente");
+                String numeroMovil = NumeroTelefono.normalizar(obligatorio(campos, "numeroMovil"));
+                long entrada = largo(campos, "fechaEntrada");
+                long salida = largo(campos, "fechaSalida");
+                long precio = largo(campos, "precioTotalCentimos");
+                if (salida <= entrada) {
+                    throw new IllegalArgumentException("fechaSalida debe ser posterior a fechaEntrada");
+                }
+                if (precio < 0) {
+                    throw new IllegalArgumentException("precioTotalCentimos no puede ser negativo");
+                }
+                if (!NumeroTelefono.esValido(numeroMovil)) {
+                    throw new IllegalArgumentException("numeroMovil debe tener entre " + NumeroTelefono.MIN_DIGITOS
+                            + " y " + NumeroTelefono.MAX_DIGITOS + " digitos");
+                }
+                return new Valida(fila.mNumero, id, new Reserva(nombreCliente.trim(), numeroMovil,
+                        new Date(entrada), new Date(salida), precio));
+            }
+            default: {
+                int id = entero(campos, "id");
+                int reservaId = entero(campos, "reservaId");
+                int parcelaId = entero(campos, "parcelaId");
+                int ocupantes = entero(campos, "numeroOcupantes");
+                long precio = largo(campos, "precioXpersonaCentimos");
+                int noches = entero(campos, "numeroNoches");
+                if (ocupantes <= 0 || noches <= 0) {
+                    throw new IllegalArgumentException("numeroOcupantes y numeroNoches deben ser positivos");
+                }
+                if (precio < 0) {
+                    throw new IllegalArgumentException("precioXpersonaCentimos no puede ser negativo");
+                }
+                return new Valida(fila.mNumero, id, new ParcelaReservada(reservaId, parcelaId, ocupantes, precio, noches));
+            }
+        }
+    }
+
+    private static String obligatorio(Campos campos, String columna) {
+        String valor = campos.get(columna);
+        if (valor == null || valor.trim().isEmpty()) {
+            throw new IllegalArgumentException("Falta " + columna);
+        }
+        return valor;
+    }
+
+    private static long largo(Campos campos, String columna) {
+        String valor = obligatorio(campos, columna).trim();
+        try {
+            return Long.parseLong(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(columna + " no es un numero entero: " + valor);
+        }
+    }
+
+    private static int entero(Campos campos, String columna) {
+        long valor = largo(campos, columna);
+        if (valor < Integer.MIN_VALUE || valor > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(columna + " esta fuera de rango: " + valor);
+        }
+        return (int) valor;
+    }
+
+    /** Valores de una fila de la entrada por nombre de columna */
+    interface Campos {
+        /**
+         * @param columna El nombre de la columna.
+         * @return El valor, o null si no esta o esta vacio.
+         */
+        String get(String columna);
+    }
+
+    /** Fila leida, pendiente de analizar */
+    static final class Fila {
+        final long mNumero;
+        final Supplier<Campos> mCampos;
+
+        Fila(long numero, Supplier<Campos> campos) {
+            mNumero = numero;
+            mCampos = campos;
+        }
+    }
+
+    /** Fila validada, con la entidad que se insertara */
+    static final class Valida {
+        final long mNumero;
+        final int mIdOrigen;
+        final Object mEntidad;
+
+        Valida(long numero, int idOrigen, Object entidad) {
+            mNumero = numero;
+            mIdOrigen = idOrigen;
+            mEntidad = entidad;
+        }
+    }
+
+    /** Bloque de filas analizado */
+    private static final class Bloque {
+        final List<Valida> mValidas = new ArrayList<>();
+        final List<Rechazo> mRechazos = new ArrayList<>();
+    }
+
+    /** Lee las filas de una tabla */
+    private interface LectorFilas {
+        /** @return La siguiente fila, o null al final de la tabla. */
+        Fila siguiente() throws IOException;
+    }
+
+    /** Lee todas las tablas de la entrada */
+    private interface LectorTablas {
+        void leer(Importacion importacion) throws IOException;
+    }
+
+    /**
+     * Estado de una importacion: los hilos, la correspondencia entre los IDs de la entrada y los
+     * insertados, y el resultado. Los mapas de IDs y el resultado solo los usa el hilo escritor.
+     */
+    private final class Importacion {
+        private final ExecutorService mAnalizadores = Executors.newFixedThreadPool(mHilos);
+        private final ExecutorService mEscritor = Executors.newSingleThreadExecutor();
+        private final Map<Integer, Integer> mParcelas = new HashMap<>();
+        private final Map<Integer, Integer> mReservas = new HashMap<>();
+        private final Resultado mResultado = new Resultado();
+
+        Resultado ejecutar(LectorTablas lector) throws IOException {
+            long inicio = System.nanoTime();
+            SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+            // Si el proceso muere antes de volver a crearlos, se reparan al abrir la base de datos
+            for (String sql : SqlResumenMensual.borrarTriggers()) {
+                db.execSQL(sql);
+            }
+            try {
+                lector.leer(this);
+            } finally {
+                mAnalizadores.shutdownNow();
+                mEscritor.shutdownNow();
+                mDb.runInTransaction(() -> {
+                    CampingRoomDatabase.reconstruirResumenes(db);
+                    CampingRoomDatabase.crearTriggersResumen(db);
+                });
+            }
+            mResultado.mNanos = System.nanoTime() - inicio;
+            Log.d("Importador", mResultado.toString());
+            return mResultado;
+        }
+
+        /**
+         * Importa una tabla: lee las filas en bloques, los manda a analizar y los encola para el
+         * escritor, esperando si la cola esta llena.
+         */
+        void importarTabla(Exportador.Tabla tabla, LectorFilas lector) throws IOException {
+            BlockingQueue<Future<Bloque>> cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+            Future<?> escritor = mEscritor.submit(() -> {
+                escribir(tabla, cola);
+                return null;
+            });
+            List<Fila> filas = new ArrayList<>(TAMANO_BLOQUE);
+            Fila fila;
+            while ((fila = lector.siguiente()) != null) {
+                filas.add(fila);
+                if (filas.size() == TAMANO_BLOQUE) {
+                    encolar(cola, analizar(tabla, filas), escritor);
+                    filas = new ArrayList<>(TAMANO_BLOQUE);
+                }
+            }
+            if (!filas.isEmpty()) {
+                encolar(cola, analizar(tabla, filas), escritor);
+            }
+            encolar(cola, FIN, escritor);
+            esperar(escritor);
+        }
+
+        private Future<Bloque> analizar(Exportador.Tabla tabla, List<Fila> filas) {
+            return mAnalizadores.submit(() -> {
+                Bloque bloque = new Bloque();
+                for (Fila fila : filas) {
+                    try {
+                        bloque.mValidas.add(validar(tabla, fila));
+                    } catch (RuntimeException e) {
+                        bloque.mRechazos.add(new Rechazo(tabla, fila.mNumero, e.getMessage()));
+                    }
+                }
+                return bloque;
+            });
+        }
+
+        /** Encola un bloque; si el escritor ha terminado por un error, lo propaga */
+        private void encolar(BlockingQueue<Future<Bloque>> cola, Future<Bloque> bloque, Future<?> escritor)
+                throws IOException {
+            try {
+                while (!cola.offer(bloque, 100, TimeUnit.MILLISECONDS)) {
+                    if (escritor.isDone()) {
+                        esperar(escritor);
+                        throw new IOException("El escritor ha terminado antes de tiempo");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Importacion interrumpida");
+            }
+        }
+
+        private void esperar(Future<?> escritor) throws IOException {
+            try {
+                escritor.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Importacion interrumpida");
+            } catch (ExecutionException e) {
+                throw new IOException("Error al escribir la importacion", e.getCause());
+            }
+        }
+
+        /** Bucle del hilo escritor: recoge los bloques en orden y los inserta por transacciones */
+        private void escribir(Exportador.Tabla tabla, BlockingQueue<Future<Bloque>> cola) throws Exception {
+            List<Valida> pendientes = new ArrayList<>();
+            Future<Bloque> siguiente;
+            while ((siguiente = cola.take()) != FIN) {
+                Bloque bloque = siguiente.get();
+                for (Rechazo rechazo : bloque.mRechazos) {
+                    mResultado.rechazar(rechazo);
+                }
+                pendientes.addAll(bloque.mValidas);
+                if (pendientes.size() >= TAMANO_TRANSACCION) {
+                    confirmar(tabla, pendientes);
+                    pendientes.clear();
+                }
+            }
+            if (!pendientes.isEmpty()) {
+                confirmar(tabla, pendientes);
+            }
+        }
+
+        private void confirmar(Exportador.Tabla tabla, List<Valida> validas) {
+            mDb.runInTransaction(() -> {
+                switch (tabla) {
+                    case PARCELAS:
+                        insertarParcelas(validas);
+                        break;
+                    case RESERVAS:
+                        insertarReservas(validas);
+                        break;
+                    default:
+                        insertarParcelasReservadas(validas);
+                }
+            });
+        }
+
+        private void insertarParcelas(List<Valida> validas) {
+            ParcelaDao dao = mDb.parcelaDao();
+            for (Valida valida : validas) {
+                Parcela parcela = (Parcela) valida.mEntidad;
+                Integer existente = dao.getIdParcelaByNombre(parcela.getNombre());
+                mParcelas.put(valida.mIdOrigen, existente != null ? existente : (int) dao.insert(parcela));
+                mResultado.anadir(Exportador.Tabla.PARCELAS);
+            }
+        }
+
+        private void insertarReservas(List<Valida> validas) {
+            List<Reserva> reservas = new ArrayList<>(validas.size());
+            for (Valida valida : validas) {
+                reservas.add((Reserva) valida.mEntidad);
+            }
+            long[] ids = mDb.reservaDao().insertAll(reservas);
+            for (int i = 0; i < ids.length; i++) {
+                mReservas.put(validas.get(i).mIdOrigen, (int) ids[i]);
+                mResultado.anadir(Exportador.Tabla.RESERVAS);
+            }
+        }
+
+        private void insertarParcelasReservadas(List<Valida> validas) {
+            List<ParcelaReservada> lineas = new ArrayList<>(validas.size());
+            for (Valida valida : validas) {
+                ParcelaReservada linea = (ParcelaReservada) valida.mEntidad;
+                Integer reservaId = mReservas.get(linea.getReservaId());
+                Integer parcelaId = mParcelas.get(linea.getParcelaId());
+                if (reservaId == null || parcelaId == null) {
+                    mResultado.rechazar(new Rechazo(Exportador.Tabla.PARCELAS_RESERVADAS, valida.mNumero,
+                            reservaId == null ? "No se ha importado la reserva " + linea.getReservaId()
+                                    : "No se ha importado la parcela " + linea.getParcelaId()));
+                    continue;
+                }
+                linea.setReservaId(reservaId);
+                linea.setParcelaId(parcelaId);
+                lineas.add(linea);
+            }
+            mDb.parcelaReservadaDao().insertAll(lineas);
+            for (int i = 0; i < lineas.size(); i++) {
+                mResultado.anadir(Exportador.Tabla.PARCELAS_RESERVADAS);
+            }
+        }
+    }
+
+    /**
+     * Fila de la entrada que no se ha importado.
+     */
+    public static final class Rechazo {
+        private final Exportador.Tabla mTabla;
+        private final long mFila;
+        private final String mMotivo;
+
+        Rechazo(Exportador.Tabla tabla, long fila, String motivo) {
+            mTabla = tabla;
+            mFila = fila;
+            mMotivo = motivo;
+        }
+
+        /** @return La tabla de la fila. */
+        public Exportador.Tabla getTabla() {
+            return mTabla;
+        }
+
+        /** @return El numero de la fila en la tabla (en CSV, la cabecera es la fila 1). */
+        public long getFila() {
+            return mFila;
+        }
+
+        /** @return El motivo del rechazo. */
+        public String getMotivo() {
+            return mMotivo;
+        }
+
+        @Override
+        public String toString() {
+            return mTabla.getNombre() + " fila " + mFila + ": " + mMotivo;
+        }
+    }
+
+    /**
+     * Resultado de una importacion: las filas importadas de cada tabla, las rechazadas y el rendimiento.
+     */
+    public static final class Resultado {
+        private final Map<Exportador.Tabla, Long> mImportadas = new EnumMap<>(Exportador.Tabla.class);
+        private final List<Rechazo> mRechazos = new ArrayList<>();
+        private long mRechazadas;
+        private long mNanos;
+
+        void anadir(Exportador.Tabla tabla) {
+            Long importadas = mImportadas.get(tabla);
+            mImportadas.put(tabla, importadas == null ? 1 : importadas + 1);
+        }
+
+        void rechazar(Rechazo rechazo) {
+            mRechazadas++;
+            if (mRechazos.size() < MAXIMO_RECHAZOS_GUARDADOS) {
+                mRechazos.add(rechazo);
+            }
+        }
+
+        /**
+         * @param tabla La tabla.
+         * @return Las filas importadas de la tabla; las parcelas asociadas a una existente tambien cuentan.
+         */
+        public long getImportadas(Exportador.Tabla tabla) {
+            Long importadas = mImportadas.get(tabla);
+            return importadas == null ? 0 : importadas;
+        }
+
+        /** @return Las filas importadas de todas las tablas. */
+        public long getImportadas() {
+            long total = 0;
+            for (long importadas : mImportadas.values()) {
+                total += importadas;
+            }
+            return total;
+        }
+
+        /** @return El numero de filas rechazadas. */
+        public long getRechazadas() {
+            return mRechazadas;
+        }
+
+        /** @return El detalle de las primeras {@link #MAXIMO_RECHAZOS_GUARDADOS} filas rechazadas. */
+        public List<Rechazo> getRechazos() {
+            return Collections.unmodifiableList(mRechazos);
+        }
+
+        /** @return La duracion de la importacion en milisegundos. */
+        public double getDuracionMs() {
+            return mNanos / 1e6;
+        }
+
+        /** @return Las filas leidas (importadas y rechazadas) por segundo. */
+        public double getFilasPorSegundo() {
+            return mNanos == 0 ? 0 : (getImportadas() + mRechazadas) / (mNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Importadas %d filas (%s), rechazadas %d, %.0f ms, %.0f filas/s",
+                    getImportadas(), mImportadas, mRechazadas, getDuracionMs(), getFilasPorSegundo());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Informes que agregan los datos de todos los campings del {@link RegistroCampings}.
+ * Cada informe consulta los campings en paralelo y despues combina los resultados. Las consultas
+ * usan los DAO directamente, ya que se ejecutan en el ejecutor de la base de datos.
+ * Las llamadas son sincronas y no se deben hacer desde el hilo principal.
+ */
+public class InformeCampings {
+
+    private final RegistroCampings mRegistro;
+
+    /**
+     * Constructor de InformeCampings.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar las bases de datos.
+     */
+    public InformeCampings(Application application) {
+        this(RegistroCampings.getInstancia(application));
+    }
+
+    /**
+     * Constructor con el registro de los campings.
+     *
+     * @param registro El registro de los campings.
+     */
+    InformeCampings(RegistroCampings registro) {
+        mRegistro = registro;
+    }
+
+    /**
+     * Obtiene los ingresos de cada camping por las reservas con fecha de entrada en el intervalo [inicio, fin).
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Los ingresos en centimos de cada camping que ha respondido.
+     */
+    public Map<String, Long> getIngresosCentimosPorCamping(Date inicio, Date fin) {
+        return mRegistro.consultarTodos(db -> db.reservaDao().getIngresosCentimosEntre(inicio, fin));
+    }
+
+    /**
+     * Obtiene los ingresos de todos los campings por las reservas con fecha de entrada en el intervalo [inicio, fin).
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return La suma de los ingresos en centimos de los campings que han respondido.
+     */
+    public long getIngresosCentimosEntre(Date inicio, Date fin) {
+        long total = 0;
+        for (long ingresos : getIngresosCentimosPorCamping(inicio, fin).values()) {
+            total += ingresos;
+        }
+        return total;
+    }
+
+    /**
+     * Obtiene los totales mensuales de todos los campings entre dos meses, sumando los de cada camping.
+     *
+     * @param mesInicio Mes inicial con formato aaaamm (incluido).
+     * @param mesFin    Mes final con formato aaaamm (incluido).
+     * @return Lista de totales ordenada por mes.
+     */
+    public List<TotalMensual> getTotalesMensuales(int mesInicio, int mesFin) {
+        Map<String, List<TotalMensual>> porCamping = mRegistro.consultarTodos(
+                db -> db.resumenMensualDao().getTotalesMensuales(mesInicio, mesFin));
+        return combinar(porCamping.values());
+    }
+
+    /**
+     * Suma, mes a mes, los totales mensuales de varios campings.
+     *
+     * @param totales Los totales de cada camping.
+     * @return Lista de totales ordenada por mes.
+     */
+    static List<TotalMensual> combinar(Iterable<List<TotalMensual>> totales) {
+        Map<Integer, TotalMensual> porMes = new TreeMap<>();
+        for (List<TotalMensual> camping : totales) {
+            for (TotalMensual total : camping) {
+                TotalMensual acumulado = porMes.get(total.mes);
+                porMes.put(total.mes, acumulado == null ? total : new TotalMensual(total.mes,
+                        acumulado.nochesVendidas + total.nochesVendidas,
+                        acumulado.ocupantes + total.ocupantes,
+                        acumulado.ingresosCentimos + total.ingresosCentimos));
+            }
+        }
+        return new ArrayList<>(porMes.values());
+    }
+
+}
@@ -0,0 +1,39 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Resultado de una consulta de agregacion de ingresos.
+ * No es una entidad: Room lo rellena directamente con las columnas de la consulta,
+ * sin cargar reservas ni parcelas.
+ */
+public class IngresoPeriodo {
+
+    /** Periodo agregado (dia, mes o identificador de parcela segun la consulta) */
+    @NonNull
+    public final String periodo;
+
+    /** Ingresos del periodo en centimos */
+    public final long ingresosCentimos;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param periodo          El periodo agregado.
+     * @param ingresosCentimos Los ingresos del periodo en centimos.
+     */
+    public IngresoPeriodo(@NonNull String periodo, long ingresosCentimos) {
+        this.periodo = periodo;
+        this.ingresosCentimos = ingresosCentimos;
+    }
+
+    /**
+     * Devuelve los ingresos del periodo en euros.
+     *
+     * @return Los ingresos en euros.
+     */
+    public double getIngresos() {
+        return CalculadoraPrecio.aEuros(ingresosCentimos);
+    }
+
+}
@@ -0,0 +1,332 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Mensaje de salida guardado en la cola de envios.
+ * Los mensajes se generan en segundo plano (por ejemplo, los recordatorios de llegada) y los
+ * envia {@link DespachadorMensajes}, que registra en cada uno el estado de la entrega.
+ * La clave identifica el motivo del mensaje, de modo que volver a generar el mismo lote no
+ * duplica mensajes ya encolados.
+ */
+@Entity(tableName = "mensajePendiente",
+        indices = {
+                @Index(value = "clave", unique = true),
+                @Index(value = {"estado", "proximoIntento"})
+        })
+public class MensajePendiente {
+
+    /** El mensaje esta esperando a ser enviado */
+    public static final int PENDIENTE = 0;
+    /** El despachador ha tomado el mensaje y lo esta enviando */
+    public static final int ENVIANDO = 1;
+    /** El mensaje se ha entregado al implementor de envio */
+    public static final int ENVIADO = 2;
+    /** Se han agotado los reintentos sin conseguir enviar el mensaje */
+    public static final int FALLIDO = 3;
+
+    /** ID unico del mensaje, autogenerado */
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "id")
+    private int id;
+
+    /** Clave unica del mensaje (por ejemplo, "llegada:12:20250110") */
+    @NonNull
+    @ColumnInfo(name = "clave")
+    private String clave;
+
+    /** ID de la reserva a la que se refiere el mensaje */
+    @ColumnInfo(name = "reservaId")
+    private int reservaId;
+
+    /** Telefono del destinatario */
+    @NonNull
+    @ColumnInfo(name = "telefono")
+    private String telefono;
+
+    /** Texto del mensaje, ya generado */
+    @NonNull
+    @ColumnInfo(name = "texto")
+    private String texto;
+
+    /** Canal por el que se envia el mensaje (nombre de un {@link es.unizar.eina.send.CanalEnvio}) */
+    @NonNull
+    @ColumnInfo(name = "canal")
+    private String canal;
+
+    /** Estado de la entrega (PENDIENTE, ENVIANDO, ENVIADO o FALLIDO) */
+    @ColumnInfo(name = "estado")
+    private int estado;
+
+    /** Numero de intentos de envio realizados */
+    @ColumnInfo(name = "intentos")
+    private int intentos;
+
+    /** Instante (en milisegundos) a partir del cual se puede intentar el siguiente envio */
+    @ColumnInfo(name = "proximoIntento")
+    private long proximoIntento;
+
+    /** Instante (en milisegundos) en el que se encolo el mensaje */
+    @ColumnInfo(name = "creado")
+    private long creado;
+
+    /** Descripcion del ultimo error de envio, o null si no ha habido errores */
+    @Nullable
+    @ColumnInfo(name = "ultimoError")
+    private String ultimoError;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param clave          Clave unica del mensaje.
+     * @param reservaId      ID de la reserva a la que se refiere el mensaje.
+     * @param telefono       Telefono del destinatario.
+     * @param texto          Texto del mensaje.
+     * @param canal          Canal de envio.
+     * @param estado         Estado de la entrega.
+     * @param intentos       Numero de intentos realizados.
+     * @param proximoIntento Instante del siguiente intento.
+     * @param creado         Instante en el que se encolo el mensaje.
+     * @param ultimoError    Ultimo error de envio.
+     */
+    public MensajePendiente(@NonNull String clave, int reservaId, @NonNull String telefono,
+                            @NonNull String texto, @NonNull String canal, int estado, int intentos,
+                            long proximoIntento, long creado, @Nullable String ultimoError) {
+        this.clave = clave;
+        this.reservaId = reservaId;
+        this.telefono = telefono;
+        this.texto = texto;
+        this.canal = canal;
+        this.estado = estado;
+        this.intentos = intentos;
+        this.proximoIntento = proximoIntento;
+        this.creado = creado;
+        this.ultimoError = ultimoError;
+    }
+
+    /**
+     * Crea un mensaje nuevo, pendiente de enviar desde el instante indicado.
+     *
+     * @param clave     Clave unica del mensaje.
+     * @param reservaId ID de la reserva a la que se refiere el mensaje.
+     * @param telefono  Telefono del destinatario.
+     * @param texto     Texto del mensaje.
+     * @param canal     Canal de envio.
+     * @param ahora     Instante actual en milisegundos.
+     */
+    @Ignore
+    public MensajePendiente(@NonNull String clave, int reservaId, @NonNull String telefono,
+                            @NonNull String texto, @NonNull String canal, long ahora) {
+        this(clave, reservaId, telefono, texto, canal, PENDIENTE, 0, ahora, ahora, null);
+    }
+
+    /**
+     * Obtiene el ID del mensaje.
+     *
+     * @return El ID del mensaje.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Establece el ID del mensaje.
+     *
+     * @param id El ID del mensaje.
+     */
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Obtiene la clave unica del mensaje.
+     *
+     * @return La clave del mensaje.
+     */
+    @NonNull
+    public String getClave() {
+        return clave;
+    }
+
+    /**
+     * Establece la clave unica del mensaje.
+     *
+     * @param clave La clave del mensaje.
+     */
+    public void setClave(@NonNull String clave) {
+        this.clave = clave;
+    }
+
+    /**
+     * Obtiene el ID de la reserva a la que se refiere el mensaje.
+     *
+     * @return El ID de la reserva.
+     */
+    public int getReservaId() {
+        return reservaId;
+    }
+
+    /**
+     * Establece el ID de la reserva a la que se refiere el mensaje.
+     *
+     * @param reservaId El ID de la reserva.
+     */
+    public void setReservaId(int reservaId) {
+        this.reservaId = reservaId;
+    }
+
+    /**
+     * Obtiene el telefono del destinatario.
+     *
+     * @return El telefono.
+     */
+    @NonNull
+    public String getTelefono() {
+        return telefono;
+    }
+
+    /**
+     * Establece el telefono del destinatario.
+     *
+     * @param telefono El telefono.
+     */
+    public void setTelefono(@NonNull String telefono) {
+        this.telefono = telefono;
+    }
+
+    /**
+     * Obtiene el texto del mensaje.
+     *
+     * @return El texto del mensaje.
+     */
+    @NonNull
+    public String getTexto() {
+        return texto;
+    }
+
+    /**
+     * Establece el texto del mensaje.
+     *
+     * @param texto El texto del mensaje.
+     */
+    public void setTexto(@NonNull String texto) {
+        this.texto = texto;
+    }
+
+    /**
+     * Obtiene el canal de envio.
+     *
+     * @return El canal de envio.
+     */
+    @NonNull
+    public String getCanal() {
+        return canal;
+    }
+
+    /**
+     * Establece el canal de envio.
+     *
+     * @param canal El canal de envio.
+     */
+    public void setCanal(@NonNull String canal) {
+        this.canal = canal;
+    }
+
+    /**
+     * Obtiene el estado de la entrega.
+     *
+     * @return El estado (PENDIENTE, ENVIANDO, ENVIADO o FALLIDO).
+     */
+    public int getEstado() {
+        return estado;
+    }
+
+    /**
+     * Establece el estado de la entrega.
+     *
+     * @param estado El estado (PENDIENTE, ENVIANDO, ENVIADO o FALLIDO).
+     */
+    public void setEstado(int estado) {
+        this.estado = estado;
+    }
+
+    /**
+     * Obtiene el numero de intentos de envio realizados.
+     *
+     * @return El numero de intentos.
+     */
+    public int getIntentos() {
+        return intentos;
+    }
+
+    /**
+     * Establece el numero de intentos de envio realizados.
+     *
+     * @param intentos El numero de intentos.
+     */
+    public void setIntentos(int intentos) {
+        this.intentos = intentos;
+    }
+
+    /**
+     * Obtiene el instante a partir del cual se puede intentar el siguiente envio.
+     *
+     * @return El instante en milisegundos.
+     */
+    public long getProximoIntento() {
+        return proximoIntento;
+    }
+
+    /**
+     * Establece el instante a partir del cual se puede intentar el siguiente envio.
+     *
+     * @param proximoIntento El instante en milisegundos.
+     */
+    public void setProximoIntento(long proximoIntento) {
+        this.proximoIntento = proximoIntento;
+    }
+
+    /**
+     * Obtiene el instante en el que se encolo el mensaje.
+     *
+     * @return El instante en milisegundos.
+     */
+    public long getCreado() {
+        return creado;
+    }
+
+    /**
+     * Establece el instante en el que se encolo el mensaje.
+     *
+     * @param creado El instante en milisegundos.
+     */
+    public void setCreado(long creado) {
+        this.creado = creado;
+    }
+
+    /**
+     * Obtiene la descripcion del ultimo error de envio.
+     *
+     * @return El ultimo error, o null si no ha habido errores.
+     */
+    @Nullable
+    public String getUltimoError() {
+        return ultimoError;
+    }
+
+    /**
+     * Establece la descripcion del ultimo error de envio.
+     *
+     * @param ultimoError El ultimo error.
+     */
+    public void setUltimoError(@Nullable String ultimoError) {
+        this.ultimoError = ultimoError;
+    }
+
+}
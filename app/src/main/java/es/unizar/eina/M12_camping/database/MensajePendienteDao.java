@@ -0,0 +1,122 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO para la cola de mensajes de salida.
+ * Proporciona los metodos para encolar mensajes, tomar los que estan listos para enviarse
+ * y registrar el resultado de cada envio.
+ */
+@Dao
+public interface MensajePendienteDao {
+
+    /**
+     * Encola varios mensajes en una sola transaccion.
+     * Los mensajes cuya clave ya existe se ignoran.
+     *
+     * @param mensajes Los mensajes a encolar.
+     * @return Los IDs de los mensajes insertados (-1 para los ignorados).
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long[] insertAll(List<MensajePendiente> mensajes);
+
+    /**
+     * Obtiene los mensajes pendientes cuyo siguiente intento ya ha llegado.
+     *
+     * @param ahora  Instante actual en milisegundos.
+     * @param limite Numero maximo de mensajes a devolver.
+     * @return Lista de mensajes ordenada por instante del siguiente intento.
+     */
+    @Query("SELECT * FROM mensajePendiente WHERE estado = " + MensajePendiente.PENDIENTE +
+            " AND proximoIntento <= :ahora ORDER BY proximoIntento, id LIMIT :limite")
+    List<MensajePendiente> getListos(long ahora, int limite);
+
+    /**
+     * Marca unos mensajes como en envio, para que no los tome otro lote.
+     *
+     * @param ids Los IDs de los mensajes.
+     * @return El numero de mensajes marcados.
+     */
+    @Query("UPDATE mensajePendiente SET estado = " + MensajePendiente.ENVIANDO +
+            " WHERE id IN (:ids) AND estado = " + MensajePendiente.PENDIENTE)
+    int marcarEnviando(List<Integer> ids);
+
+    /**
+     * Registra que un mensaje se ha enviado correctamente.
+     *
+     * @param id       El ID del mensaje.
+     * @param intentos El numero de intentos realizados.
+     * @return El numero de filas afectadas.
+     */
+    @Query("UPDATE mensajePendiente SET estado = " + MensajePendiente.ENVIADO +
+            ", intentos = :intentos, ultimoError = NULL WHERE id = :id")
+    int marcarEnviado(int id, int intentos);
+
+    /**
+     * Devuelve un mensaje a la cola tras un envio fallido, para reintentarlo mas tarde.
+     *
+     * @param id             El ID del mensaje.
+     * @param intentos       El numero de intentos realizados.
+     * @param proximoIntento Instante a partir del cual se puede reintentar.
+     * @param error          Descripcion del error.
+     * @return El numero de filas afectadas.
+     */
+    @Query("UPDATE mensajePendiente SET estado = " + MensajePendiente.PENDIENTE +
+            ", intentos = :intentos, proximoIntento = :proximoIntento, ultimoError = :error WHERE id = :id")
+    int reprogramar(int id, int intentos, long proximoIntento, String error);
+
+    /**
+     * Registra que un mensaje ha agotado sus reintentos.
+     *
+     * @param id       El ID del mensaje.
+     * @param intentos El numero de intentos realizados.
+     * @param error    Descripcion del ultimo error.
+     * @return El numero de filas afectadas.
+     */
+    @Query("UPDATE mensajePendiente SET estado = " + MensajePendiente.FALLIDO +
+            ", intentos = :intentos, ultimoError = :error WHERE id = :id")
+    int marcarFallido(int id, int intentos, String error);
+
+    /**
+     * Devuelve a la cola los mensajes que se quedaron en envio (por ejemplo, si se cerro la aplicacion).
+     *
+     * @return El numero de mensajes devueltos a la cola.
+     */
+    @Query("UPDATE mensajePendiente SET estado = " + MensajePendiente.PENDIENTE +
+            " WHERE estado = " + MensajePendiente.ENVIANDO)
+    int reiniciarEnviando();
+
+    /**
+     * Cuenta los mensajes que estan en un estado.
+     *
+     * @param estado El estado.
+     * @return El numero de mensajes en ese estado.
+     */
+    @Query("SELECT COUNT(*) FROM mensajePendiente WHERE estado = :estado")
+    int contarPorEstado(int estado);
+
+    /**
+     * Observa el numero de mensajes que quedan por enviar.
+     *
+     * @return Un objeto LiveData con el numero de mensajes pendientes o en envio.
+     */
+    @Query("SELECT COUNT(*) FROM mensajePendiente WHERE estado IN (" + MensajePendiente.PENDIENTE +
+            ", " + MensajePendiente.ENVIANDO + ")")
+    LiveData<Integer> observarPendientes();
+
+    /**
+     * Obtiene los mensajes de una reserva.
+     *
+     * @param reservaId El ID de la reserva.
+     * @return Lista de mensajes de la reserva ordenada por fecha de creacion.
+     */
+    @Query("SELECT * FROM mensajePendiente WHERE reservaId = :reservaId ORDER BY creado, id")
+    List<MensajePendiente> getMensajesByReservaId(int reservaId);
+
+}
@@ -0,0 +1,136 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.lifecycle.LiveData;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import es.unizar.eina.send.CanalEnvio;
+
+/**
+ * Clase que gestiona la cola de mensajes de salida.
+ * Genera los mensajes por lotes en los hilos de la base de datos y los guarda en la tabla
+ * {@link MensajePendiente}, de donde los toma {@link DespachadorMensajes} para enviarlos.
+ */
+public class MensajeRepository {
+
+    private final ReservaDao mReservaDao;
+    private final MensajePendienteDao mMensajePendienteDao;
+
+    /** Ejecuta las operaciones en segundo plano con timeout y registra sus metricas */
+    private final MetricasRepositorio mMetricas = MetricasRepositorio.getInstancia();
+
+    /** Numero de mensajes que se insertan en cada transaccion */
+    private static final int TAMANO_BLOQUE = 500;
+
+    /**
+     * Constructor de MensajeRepository.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public MensajeRepository(Application application) {
+        CampingRoomDatabase db = CampingRoomDatabase.getDatabase(application);
+        mReservaDao = db.reservaDao();
+        mMensajePendienteDao = db.mensajePendienteDao();
+    }
+
+    /**
+     * Encola un recordatorio para cada reserva cuya fecha de entrada cae en el dia indicado.
+     * Los mensajes se generan e insertan en segundo plano; si ya se habian encolado los
+     * recordatorios de ese dia, no se duplican.
+     *
+     * @param dia   Un instante cualquiera del dia de llegada.
+     * @param canal Canal por el que se enviaran los mensajes.
+     * @return El numero de mensajes nuevos encolados, o -1 en caso de error.
+     * @throws IllegalArgumentException Si el canal requiere una actividad, porque
+     *                                  {@link DespachadorMensajes} no lo puede usar.
+     */
+    public int encolarRecordatoriosLlegada(Date dia, CanalEnvio canal) {
+        if (canal.requiereActividad()) {
+            throw new IllegalArgumentException("El canal " + canal + " no se puede usar en segundo plano.");
+        }
+        return mMetricas.ejecutarEscritura("MensajeRepository.encolarRecordatoriosLlegada", () -> {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(dia);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            Date inicio = calendar.getTime();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            Date fin = calendar.getTime();
+
+            List<ReservaConParcelas> reservas = mReservaDao.getReservasConParcelasEntradaEntre(inicio, fin);
+            List<String> textos = PlantillaMensaje.RECORDATORIO_LLEGADA.generarLote(reservas);
+            String diaClave = new SimpleDateFormat("yyyyMMdd", Locale.US).format(inicio);
+            long ahora = System.currentTimeMillis();
+
+            int encolados = 0;
+            List<MensajePendiente> bloque = new ArrayList<>(Math.min(reservas.size(), TAMANO_BLOQUE));
+            for (int i = 0; i < reservas.size(); i++) {
+                Reserva reserva = reservas.get(i).reserva;
+                bloque.add(new MensajePendiente("llegada:" + reserva.getId() + ":" + diaClave, reserva.getId(),
+                        reserva.getNumeroMovil(), textos.get(i), canal.name(), ahora));
+                if (bloque.size() == TAMANO_BLOQUE) {
+                    encolados += contarInsertados(mMensajePendienteDao.insertAll(bloque));
+                    bloque.clear();
+                }
+            }
+            if (!bloque.isEmpty()) {
+                encolados += contarInsertados(mMensajePendienteDao.insertAll(bloque));
+            }
+            return encolados;
+        }, -1);
+    }
+
+    /**
+     * Cuenta los IDs validos devueltos por una insercion que ignora conflictos.
+     */
+    private static int contarInsertados(long[] ids) {
+        int insertados = 0;
+        for (long id : ids) {
+            if (id > 0) {
+                insertados++;
+            }
+        }
+        return insertados;
+    }
+
+    /**
+     * Observa el numero de mensajes que quedan por enviar.
+     *
+     * @return Un objeto LiveData con el numero de mensajes pendientes o en envio.
+     */
+    public LiveData<Integer> observarPendientes() {
+        return mMensajePendienteDao.observarPendientes();
+    }
+
+    /**
+     * Cuenta los mensajes que estan en un estado.
+     *
+     * @param estado El estado (ver las constantes de {@link MensajePendiente}).
+     * @return El numero de mensajes en ese estado, o -1 en caso de error.
+     */
+    public int contarPorEstado(int estado) {
+        return mMetricas.ejecutar("MensajeRepository.contarPorEstado",
+                () -> mMensajePendienteDao.contarPorEstado(estado), -1);
+    }
+
+    /**
+     * Obtiene los mensajes de una reserva con su estado de entrega.
+     *
+     * @param reservaId El ID de la reserva.
+     * @return Lista de mensajes de la reserva, vacia en caso de error.
+     */
+    public List<MensajePendiente> getMensajesByReservaId(int reservaId) {
+        return mMetricas.ejecutar("MensajeRepository.getMensajesByReservaId",
+                () -> mMensajePendienteDao.getMensajesByReservaId(reservaId), new ArrayList<>());
+    }
+
+}
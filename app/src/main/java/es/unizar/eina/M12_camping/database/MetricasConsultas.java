@@ -0,0 +1,306 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estadisticas de latencia de las sentencias SQL ejecutadas sobre la base de datos.
+ * Cada metodo de los DAO genera siempre la misma sentencia, de modo que las estadisticas de una
+ * sentencia son las de su metodo. Para cada sentencia se guarda un histograma de latencias, y las
+ * ejecuciones que superan un umbral se guardan, con sus argumentos, en un registro de consultas lentas.
+ * Las mediciones las hace {@link FabricaSQLiteInstrumentada}.
+ */
+public class MetricasConsultas {
+
+    /** Limites superiores de las cubetas del histograma, en microsegundos; la ultima no tiene limite */
+    static final long[] LIMITES_MICROS = {100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000,
+            250000, 500000, 1000000};
+    /** Umbral por defecto a partir del cual una ejecucion se considera lenta, en milisegundos */
+    static final long UMBRAL_LENTA_MS = 50;
+    /** Numero de consultas lentas que se conservan */
+    static final int MAX_CONSULTAS_LENTAS = 100;
+
+    private static final MetricasConsultas INSTANCIA = new MetricasConsultas();
+
+    private final ConcurrentMap<String, EstadisticaConsulta> mEstadisticas = new ConcurrentHashMap<>();
+    private final ArrayDeque<ConsultaLenta> mLentas = new ArrayDeque<>();
+    private volatile long mUmbralLentaNanos = UMBRAL_LENTA_MS * 1000000;
+
+    /** La aplicacion usa {@link #getInstancia()}; las pruebas crean instancias propias */
+    MetricasConsultas() {
+    }
+
+    /**
+     * Obtiene las estadisticas de la base de datos de la aplicacion.
+     *
+     * @return La instancia unica de MetricasConsultas.
+     */
+    public static MetricasConsultas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /**
+     * Establece el umbral a partir del cual una ejecucion se guarda en el registro de consultas lentas.
+     *
+     * @param milisegundos El umbral en milisegundos.
+     */
+    public void setUmbralLenta(long milisegundos) {
+        mUmbralLentaNanos = milisegundos * 1000000;
+    }
+
+    /**
+     * Indica si una duracion supera el umbral de consulta lenta.
+     *
+     * @param nanos La duracion en nanosegundos.
+     * @return true si la ejecucion es lenta.
+     */
+    boolean esLenta(long nanos) {
+        return nanos >= mUmbralLentaNanos;
+    }
+
+    /**
+     * Registra una ejecucion de una sentencia.
+     *
+     * @param sql        La sentencia.
+     * @param argumentos Los argumentos con los que se ejecuto, o null si no se conocen. Solo se
+     *                   guardan si la ejecucion es lenta.
+     * @param nanos      La duracion de la ejecucion en nanosegundos.
+     */
+    void registrar(String sql, Object[] argumentos, long nanos) {
+        EstadisticaConsulta estadistica = mEstadisticas.get(sql);
+        if (estadistica == null) {
+            estadistica = new EstadisticaConsulta(sql);
+            EstadisticaConsulta anterior = mEstadisticas.putIfAbsent(sql, estadistica);
+            if (anterior != null) {
+                estadistica = anterior;
+            }
+        }
+        estadistica.anadir(nanos);
+        if (esLenta(nanos)) {
+            ConsultaLenta lenta = new ConsultaLenta(sql, argumentos, nanos, System.currentTimeMillis(),
+                    Thread.currentThread().getName());
+            Log.w("MetricasConsultas", lenta.toString());
+            synchronized (mLentas) {
+                if (mLentas.size() == MAX_CONSULTAS_LENTAS) {
+                    mLentas.removeFirst();
+                }
+                mLentas.addLast(lenta);
+            }
+        }
+    }
+
+    /**
+     * Obtiene las estadisticas de todas las sentencias, de mayor a menor tiempo total.
+     *
+     * @return Las estadisticas.
+     */
+    public List<EstadisticaConsulta> getEstadisticas() {
+        List<EstadisticaConsulta> estadisticas = new ArrayList<>(mEstadisticas.values());
+        Collections.sort(estadisticas, (a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return estadisticas;
+    }
+
+    /**
+     * Obtiene las ultimas consultas lentas, de la mas antigua a la mas reciente.
+     *
+     * @return Las consultas lentas.
+     */
+    public List<ConsultaLenta> getConsultasLentas() {
+        synchronized (mLentas) {
+            return new ArrayList<>(mLentas);
+        }
+    }
+
+    /**
+     * Borra todas las estadisticas y el registro de consultas lentas.
+     */
+    public void reiniciar() {
+        mEstadisticas.clear();
+        synchronized (mLentas) {
+            mLentas.clear();
+        }
+    }
+
+    /**
+     * Escribe un informe con las estadisticas de cada sentencia y las consultas lentas.
+     *
+     * @param destino Donde se escribe el informe.
+     */
+    public void volcar(Writer destino) {
+        PrintWriter salida = new PrintWriter(destino);
+        salida.println("# Sentencias (de mayor a menor tiempo total)");
+        for (EstadisticaConsulta estadistica : getEstadisticas()) {
+            salida.println(estadistica);
+        }
+        salida.println();
+        salida.printf(Locale.ROOT, "# Consultas lentas (>= %d ms)%n", mUmbralLentaNanos / 1000000);
+        for (ConsultaLenta lenta : getConsultasLentas()) {
+            salida.println(lenta);
+        }
+        salida.flush();
+    }
+
+    /**
+     * Escribe el informe de {@link #volcar(Writer)} en un fichero.
+     *
+     * @param fichero El fichero, que se sobrescribe.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public void volcar(File fichero) throws IOException {
+        try (Writer escritor = new OutputStreamWriter(new FileOutputStream(fichero), StandardCharsets.UTF_8)) {
+            volcar(escritor);
+        }
+    }
+
+    /**
+     * Estadisticas de latencia de una sentencia. Admite registros concurrentes.
+     */
+    public static final class EstadisticaConsulta {
+        private final String mSql;
+        private final LongAdder mEjecuciones = new LongAdder();
+        private final LongAdder mTotalNanos = new LongAdder();
+        private final AtomicLong mMaximoNanos = new AtomicLong();
+        private final AtomicLongArray mCubetas = new AtomicLongArray(LIMITES_MICROS.length + 1);
+
+        EstadisticaConsulta(String sql) {
+            mSql = sql;
+        }
+
+        void anadir(long nanos) {
+            mEjecuciones.increment();
+            mTotalNanos.add(nanos);
+            mMaximoNanos.accumulateAndGet(nanos, Math::max);
+            mCubetas.incrementAndGet(cubeta(nanos / 1000));
+        }
+
+        private static int cubeta(long micros) {
+            int indice = Arrays.binarySearch(LIMITES_MICROS, micros);
+            return indice >= 0 ? indice : -indice - 1;
+        }
+
+        /** @return La sentencia SQL. */
+        public String getSql() {
+            return mSql;
+        }
+
+        /** @return El numero de ejecuciones. */
+        public long getEjecuciones() {
+            return mEjecuciones.sum();
+        }
+
+        /** @return El tiempo total de todas las ejecuciones en nanosegundos. */
+        public long getTotalNanos() {
+            return mTotalNanos.sum();
+        }
+
+        /** @return La duracion media en milisegundos. */
+        public double getMediaMs() {
+            long ejecuciones = getEjecuciones();
+            return ejecuciones == 0 ? 0 : getTotalNanos() / 1e6 / ejecuciones;
+        }
+
+        /** @return La duracion maxima en milisegundos. */
+        public double getMaximoMs() {
+            return mMaximoNanos.get() / 1e6;
+        }
+
+        /**
+         * Estima un percentil de la duracion a partir del histograma.
+         *
+         * @param percentil El percentil, entre 0 y 100.
+         * @return El limite superior de la cubeta que contiene el percentil, en milisegundos.
+         * Para la ultima cubeta, que no tiene limite, devuelve la duracion maxima.
+         */
+        public double getPercentilMs(double percentil) {
+            long[] cubetas = new long[mCubetas.length()];
+            long total = 0;
+            for (int i = 0; i < cubetas.length; i++) {
+                cubetas[i] = mCubetas.get(i);
+                total += cubetas[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long objetivo = (long) Math.ceil(percentil / 100 * total);
+            long acumulado = 0;
+            for (int i = 0; i < LIMITES_MICROS.length; i++) {
+                acumulado += cubetas[i];
+                if (acumulado >= objetivo) {
+                    return LIMITES_MICROS[i] / 1000.0;
+                }
+            }
+            return getMaximoMs();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "n=%d total=%.1f ms media=%.2f ms p50<=%.2f ms p95<=%.2f ms p99<=%.2f ms max=%.2f ms | %s",
+                    getEjecuciones(), getTotalNanos() / 1e6, getMediaMs(), getPercentilMs(50),
+                    getPercentilMs(95), getPercentilMs(99), getMaximoMs(), mSql);
+        }
+    }
+
+    /**
+     * Ejecucion de una sentencia que ha superado el umbral de consulta lenta.
+     */
+    public static final class ConsultaLenta {
+        private final String mSql;
+        private final Object[] mArgumentos;
+        private final long mDuracionNanos;
+        private final long mInstante;
+        private final String mHilo;
+
+        ConsultaLenta(String sql, Object[] argumentos, long duracionNanos, long instante, String hilo) {
+            mSql = sql;
+            mArgumentos = argumentos == null ? null : argumentos.clone();
+            mDuracionNanos = duracionNanos;
+            mInstante = instante;
+            mHilo = hilo;
+        }
+
+        /** @return La sentencia SQL. */
+        public String getSql() {
+            return mSql;
+        }
+
+        /** @return Los argumentos de la ejecucion, o null si no se conocen. */
+        public Object[] getArgumentos() {
+            return mArgumentos == null ? null : mArgumentos.clone();
+        }
+
+        /** @return La duracion en milisegundos. */
+        public double getDuracionMs() {
+            return mDuracionNanos / 1e6;
+        }
+
+        /** @return El instante de la ejecucion en milisegundos. */
+        public long getInstante() {
+            return mInstante;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d [%s] %.2f ms | %s | %s", mInstante, mHilo, getDuracionMs(),
+                    mSql, mArgumentos == null ? "?" : Arrays.deepToString(mArgumentos));
+        }
+    }
+}
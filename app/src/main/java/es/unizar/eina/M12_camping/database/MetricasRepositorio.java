@@ -0,0 +1,456 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ejecuta las operaciones de los repositorios en {@link CampingRoomDatabase#databaseWriteExecutor}
+ * y lleva la cuenta, por metodo, de las llamadas, los fallos, los timeouts y el tiempo de espera.
+ * Las lecturas se esperan como mucho un timeout; las escrituras se esperan hasta que terminan, porque
+ * una escritura abandonada se sigue ejecutando y el llamante no sabria si se ha guardado.
+ * Ademas muestrea periodicamente los hilos activos y la cola del ejecutor.
+ * Las metricas se exportan como JSON, una linea por metodo y otra para el ejecutor.
+ */
+public class MetricasRepositorio {
+
+    /** Tiempo maximo de espera para operaciones de base de datos en milisegundos */
+    static final long TIMEOUT = 15000;
+    /** Fraccion del timeout a partir de la cual una espera se cuenta como cercana al timeout */
+    static final double FRACCION_CERCA_TIMEOUT = 0.8;
+    /** Intervalo entre muestras del ejecutor en milisegundos */
+    static final long INTERVALO_MUESTREO = 1000;
+
+    private static volatile MetricasRepositorio INSTANCIA;
+
+    private final ThreadPoolExecutor mEjecutor;
+    private final long mTimeoutNanos;
+    private final DetectorHiloPrincipal mDetector;
+    private final ConcurrentMap<String, EstadisticaMetodo> mMetodos = new ConcurrentHashMap<>();
+    private final Gson mGson = new Gson();
+
+    private final AtomicInteger mHilosActivos = new AtomicInteger();
+    private final AtomicInteger mHilosActivosMaximo = new AtomicInteger();
+    private final AtomicInteger mCola = new AtomicInteger();
+    private final AtomicInteger mColaMaxima = new AtomicInteger();
+    private final AtomicLong mSumaCola = new AtomicLong();
+    private final AtomicLong mMuestras = new AtomicLong();
+
+    /**
+     * Obtiene las metricas de los repositorios de la aplicacion. La primera llamada inicia el muestreo
+     * del ejecutor en un hilo de fondo.
+     *
+     * @return La instancia unica de MetricasRepositorio.
+     */
+    public static MetricasRepositorio getInstancia() {
+        if (INSTANCIA == null) {
+            synchronized (MetricasRepositorio.class) {
+                if (INSTANCIA == null) {
+                    MetricasRepositorio metricas = new MetricasRepositorio(CampingRoomDatabase.databaseWriteExecutor,
+                            TIMEOUT, DetectorHiloPrincipal.getInstancia());
+                    metricas.iniciarMuestreo();
+                    INSTANCIA = metricas;
+                }
+            }
+        }
+        return INSTANCIA;
+    }
+
+    /**
+     * Crea un registro de metricas sin muestreo periodico.
+     *
+     * @param ejecutor  El ejecutor en el que se lanzan las operaciones.
+     * @param timeoutMs Tiempo maximo de espera de cada operacion en milisegundos.
+     * @param detector  Detector de las llamadas desde el hilo principal.
+     */
+    MetricasRepositorio(ThreadPoolExecutor ejecutor, long timeoutMs, DetectorHiloPrincipal detector) {
+        mEjecutor = ejecutor;
+        mTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        mDetector = detector;
+    }
+
+    private void iniciarMuestreo() {
+        ScheduledExecutorService muestreo = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "MetricasRepositorio");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        muestreo.scheduleAtFixedRate(this::muestrear, INTERVALO_MUESTREO, INTERVALO_MUESTREO,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Toma una muestra de los hilos activos y la longitud de la cola del ejecutor.
+     */
+    void muestrear() {
+        int activos = mEjecutor.getActiveCount();
+        int cola = mEjecutor.getQueue().size();
+        mHilosActivos.set(activos);
+        mHilosActivosMaximo.accumulateAndGet(activos, Math::max);
+        mCola.set(cola);
+        mColaMaxima.accumulateAndGet(cola, Math::max);
+        mSumaCola.addAndGet(cola);
+        mMuestras.incrementAndGet();
+    }
+
+    /**
+     * Ejecuta una operacion en el ejecutor de la base de datos y espera su resultado como mucho
+     * el timeout. Si la operacion falla, no termina a tiempo o se interrumpe la espera, lo registra
+     * en el Logcat y devuelve el valor por defecto. Las llamadas desde el hilo principal se registran
+     * en {@link DetectorHiloPrincipal}. Las operaciones que escriben usan
+     * {@link #ejecutarEscritura(String, Callable, Object)}.
+     *
+     * @param metodo     Nombre del metodo del repositorio, con la forma Clase.metodo.
+     * @param tarea      La operacion.
+     * @param porDefecto El valor devuelto en caso de error.
+     * @param <T>        El tipo del resultado.
+     * @return El resultado de la operacion, o porDefecto en caso de error.
+     * @throws IllegalStateException Si se llama desde el hilo principal con el detector en modo estricto.
+     */
+    public <T> T ejecutar(String metodo, Callable<T> tarea, T porDefecto) {
+        return ejecutar(metodo, tarea, porDefecto, true);
+    }
+
+    /**
+     * Ejecuta una operacion que escribe en la base de datos y espera a que termine, sin timeout: el
+     * resultado siempre corresponde a lo que ha quedado guardado, de modo que porDefecto solo se
+     * devuelve si la operacion ha fallado sin escribir nada. Si se interrumpe la espera se sigue
+     * esperando y se restaura la interrupcion al terminar. Las esperas que superan el timeout se
+     * registran en el Logcat y cuentan como cercanas al timeout.
+     *
+     * @param metodo     Nombre del metodo del repositorio, con la forma Clase.metodo.
+     * @param tarea      La operacion, que debe ser atomica (una transaccion o una sola sentencia).
+     * @param porDefecto El valor devuelto si la operacion falla.
+     * @param <T>        El tipo del resultado.
+     * @return El resultado de la operacion, o porDefecto si ha fallado.
+     * @throws IllegalStateException Si se llama desde el hilo principal con el detector en modo estricto.
+     */
+    public <T> T ejecutarEscritura(String metodo, Callable<T> tarea, T porDefecto) {
+        return ejecutar(metodo, tarea, porDefecto, false);
+    }
+
+    private <T> T ejecutar(String metodo, Callable<T> tarea, T porDefecto, boolean conTimeout) {
+        boolean bloqueaHiloPrincipal = mDetector.comprobar(metodo);
+        EstadisticaMetodo estadistica = obtenerEstadistica(metodo);
+        long inicio = System.nanoTime();
+        AtomicLong comienzo = new AtomicLong();
+        Future<T> future = mEjecutor.submit(() -> {
+            comienzo.set(System.nanoTime());
+            return tarea.call();
+        });
+        Resultado resultado = Resultado.CORRECTO;
+        try {
+            return conTimeout ? future.get(mTimeoutNanos, TimeUnit.NANOSECONDS) : esperarSinTimeout(metodo, future);
+        } catch (ExecutionException e) {
+            resultado = Resultado.FALLO;
+            Log.e(clase(metodo), metodo + ": " + e.getCause());
+            return porDefecto;
+        } catch (TimeoutException e) {
+            resultado = Resultado.TIMEOUT;
+            Log.e(clase(metodo), metodo + ": sin respuesta tras "
+                    + TimeUnit.NANOSECONDS.toMillis(mTimeoutNanos) + " ms");
+            return porDefecto;
+        } catch (InterruptedException e) {
+            resultado = Resultado.INTERRUMPIDO;
+            Thread.currentThread().interrupt();
+            Log.e(clase(metodo), metodo + ": espera interrumpida");
+            return porDefecto;
+        } finally {
+            long fin = System.nanoTime();
+            long empezada = comienzo.get();
+            estadistica.anadir(resultado, fin - inicio, (empezada == 0 ? fin : empezada) - inicio,
+                    mTimeoutNanos);
+            if (bloqueaHiloPrincipal) {
+                mDetector.registrar(metodo, fin - inicio);
+            }
+        }
+    }
+
+    /**
+     * Espera el resultado de una escritura aunque se interrumpa el hilo, restaurando la interrupcion
+     * al terminar.
+     */
+    private <T> T esperarSinTimeout(String metodo, Future<T> future) throws ExecutionException {
+        boolean interrumpido = false;
+        try {
+            while (true) {
+                try {
+                    return future.get(mTimeoutNanos, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    Log.w(clase(metodo), metodo + ": escritura sin terminar tras "
+                            + TimeUnit.NANOSECONDS.toMillis(mTimeoutNanos) + " ms, se sigue esperando");
+                } catch (InterruptedException e) {
+                    interrumpido = true;
+                }
+            }
+        } finally {
+            if (interrumpido) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String clase(String metodo) {
+        int punto = metodo.indexOf('.');
+        return punto < 0 ? metodo : metodo.substring(0, punto);
+    }
+
+    private EstadisticaMetodo obtenerEstadistica(String metodo) {
+        EstadisticaMetodo estadistica = mMetodos.get(metodo);
+        if (estadistica == null) {
+            estadistica = new EstadisticaMetodo(metodo);
+            EstadisticaMetodo anterior = mMetodos.putIfAbsent(metodo, estadistica);
+            if (anterior != null) {
+                estadistica = anterior;
+            }
+        }
+        return estadistica;
+    }
+
+    /**
+     * Obtiene las estadisticas de todos los metodos, ordenadas por nombre.
+     *
+     * @return Las estadisticas.
+     */
+    public List<EstadisticaMetodo> getEstadisticas() {
+        List<EstadisticaMetodo> estadisticas = new ArrayList<>(mMetodos.values());
+        Collections.sort(estadisticas, (a, b) -> a.getMetodo().compareTo(b.getMetodo()));
+        return estadisticas;
+    }
+
+    /**
+     * Obtiene las estadisticas de un metodo.
+     *
+     * @param metodo Nombre del metodo, con la forma Clase.metodo.
+     * @return Las estadisticas, o null si el metodo no se ha llamado.
+     */
+    public EstadisticaMetodo getEstadistica(String metodo) {
+        return mMetodos.get(metodo);
+    }
+
+    /** @return La longitud maxima de la cola del ejecutor entre las muestras tomadas. */
+    public int getColaMaxima() {
+        return mColaMaxima.get();
+    }
+
+    /** @return El numero maximo de hilos activos del ejecutor entre las muestras tomadas. */
+    public int getHilosActivosMaximo() {
+        return mHilosActivosMaximo.get();
+    }
+
+    /**
+     * Escribe las metricas en formato JSON lines: una linea por metodo y una ultima con las
+     * muestras del ejecutor. Todas las lineas llevan el instante de la exportacion.
+     *
+     * @param destino Donde se escriben las lineas.
+     */
+    public void exportar(Writer destino) {
+        long instante = System.currentTimeMillis();
+        double timeoutMs = mTimeoutNanos / 1e6;
+        PrintWriter salida = new PrintWriter(destino);
+        for (EstadisticaMetodo estadistica : getEstadisticas()) {
+            salida.println(mGson.toJson(new LineaMetodo(instante, timeoutMs, estadistica)));
+        }
+        LineaEjecutor ejecutor = new LineaEjecutor();
+        ejecutor.instante = instante;
+        ejecutor.hilos = mEjecutor.getMaximumPoolSize();
+        ejecutor.hilosActivos = mHilosActivos.get();
+        ejecutor.hilosActivosMaximo = mHilosActivosMaximo.get();
+        ejecutor.cola = mCola.get();
+        ejecutor.colaMaxima = mColaMaxima.get();
+        long muestras = mMuestras.get();
+        ejecutor.colaMedia = muestras == 0 ? 0 : (double) mSumaCola.get() / muestras;
+        ejecutor.muestras = muestras;
+        ejecutor.tareasCompletadas = mEjecutor.getCompletedTaskCount();
+        salida.println(mGson.toJson(ejecutor));
+        salida.flush();
+    }
+
+    /**
+     * Anade las lineas de {@link #exportar(Writer)} al final de un fichero, de modo que las
+     * exportaciones sucesivas forman una serie temporal.
+     *
+     * @param fichero El fichero.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public void exportar(File fichero) throws IOException {
+        try (Writer escritor = new OutputStreamWriter(new FileOutputStream(fichero, true),
+                StandardCharsets.UTF_8)) {
+            exportar(escritor);
+        }
+    }
+
+    /** Forma en que termina una llamada */
+    enum Resultado {CORRECTO, FALLO, TIMEOUT, INTERRUMPIDO}
+
+    /**
+     * Estadisticas de las llamadas a un metodo de un repositorio. Admite registros concurrentes.
+     * La espera es el tiempo total que el llamante esta bloqueado; la cola, la parte de ese tiempo
+     * en que la operacion aun no habia empezado a ejecutarse.
+     */
+    public static final class EstadisticaMetodo {
+        private final String mMetodo;
+        private final LongAdder mLlamadas = new LongAdder();
+        private final LongAdder mFallos = new LongAdder();
+        private final LongAdder mTimeouts = new LongAdder();
+        private final LongAdder mInterrupciones = new LongAdder();
+        private final LongAdder mCercaDelTimeout = new LongAdder();
+        private final LongAdder mEsperaTotalNanos = new LongAdder();
+        private final AtomicLong mEsperaMaximaNanos = new AtomicLong();
+        private final LongAdder mColaTotalNanos = new LongAdder();
+        private final AtomicLong mColaMaximaNanos = new AtomicLong();
+
+        EstadisticaMetodo(String metodo) {
+            mMetodo = metodo;
+        }
+
+        void anadir(Resultado resultado, long esperaNanos, long colaNanos, long timeoutNanos) {
+            mLlamadas.increment();
+            switch (resultado) {
+                case FALLO:
+                    mFallos.increment();
+                    break;
+                case TIMEOUT:
+                    mTimeouts.increment();
+                    break;
+                case INTERRUMPIDO:
+                    mInterrupciones.increment();
+                    break;
+                default:
+                    if (esperaNanos >= timeoutNanos * FRACCION_CERCA_TIMEOUT) {
+                        mCercaDelTimeout.increment();
+                    }
+                    break;
+            }
+            mEsperaTotalNanos.add(esperaNanos);
+            mEsperaMaximaNanos.accumulateAndGet(esperaNanos, Math::max);
+            mColaTotalNanos.add(colaNanos);
+            mColaMaximaNanos.accumulateAndGet(colaNanos, Math::max);
+        }
+
+        /** @return El nombre del metodo. */
+        public String getMetodo() {
+            return mMetodo;
+        }
+
+        /** @return El numero de llamadas. */
+        public long getLlamadas() {
+            return mLlamadas.sum();
+        }
+
+        /** @return El numero de llamadas en las que la operacion lanzo una excepcion. */
+        public long getFallos() {
+            return mFallos.sum();
+        }
+
+        /** @return El numero de llamadas que superaron el timeout. */
+        public long getTimeouts() {
+            return mTimeouts.sum();
+        }
+
+        /** @return El numero de llamadas cuya espera fue interrumpida. */
+        public long getInterrupciones() {
+            return mInterrupciones.sum();
+        }
+
+        /** @return El numero de llamadas correctas que esperaron al menos el 80 % del timeout. */
+        public long getCercaDelTimeout() {
+            return mCercaDelTimeout.sum();
+        }
+
+        /** @return La espera media en milisegundos. */
+        public double getEsperaMediaMs() {
+            long llamadas = getLlamadas();
+            return llamadas == 0 ? 0 : mEsperaTotalNanos.sum() / 1e6 / llamadas;
+        }
+
+        /** @return La espera maxima en milisegundos. */
+        public double getEsperaMaximaMs() {
+            return mEsperaMaximaNanos.get() / 1e6;
+        }
+
+        /** @return El tiempo medio en la cola del ejecutor en milisegundos. */
+        public double getColaMediaMs() {
+            long llamadas = getLlamadas();
+            return llamadas == 0 ? 0 : mColaTotalNanos.sum() / 1e6 / llamadas;
+        }
+
+        /** @return El tiempo maximo en la cola del ejecutor en milisegundos. */
+        public double getColaMaximaMs() {
+            return mColaMaximaNanos.get() / 1e6;
+        }
+    }
+
+    /** Linea JSON con las metricas de un metodo */
+    private static final class LineaMetodo {
+        final String tipo = "metodo";
+        final long instante;
+        final String metodo;
+        final long llamadas;
+        final long fallos;
+        final long timeouts;
+        final long interrupciones;
+        final long cercaDelTimeout;
+        final double esperaMediaMs;
+        final double esperaMaximaMs;
+        final double colaMediaMs;
+        final double colaMaximaMs;
+        final double timeoutMs;
+        /** Espera maxima como fraccion del timeout; 1 o mas indica que se ha alcanzado */
+        final double esperaMaximaSobreTimeout;
+
+        LineaMetodo(long instante, double timeoutMs, EstadisticaMetodo estadistica) {
+            this.instante = instante;
+            this.metodo = estadistica.getMetodo();
+            this.llamadas = estadistica.getLlamadas();
+            this.fallos = estadistica.getFallos();
+            this.timeouts = estadistica.getTimeouts();
+            this.interrupciones = estadistica.getInterrupciones();
+            this.cercaDelTimeout = estadistica.getCercaDelTimeout();
+            this.esperaMediaMs = estadistica.getEsperaMediaMs();
+            this.esperaMaximaMs = estadistica.getEsperaMaximaMs();
+            this.colaMediaMs = estadistica.getColaMediaMs();
+            this.colaMaximaMs = estadistica.getColaMaximaMs();
+            this.timeoutMs = timeoutMs;
+            this.esperaMaximaSobreTimeout = esperaMaximaMs / timeoutMs;
+        }
+    }
+
+    /** Linea JSON con las muestras del ejecutor */
+    private static final class LineaEjecutor {
+        final String tipo = "ejecutor";
+        long instante;
+        int hilos;
+        int hilosActivos;
+        int hilosActivosMaximo;
+        int cola;
+        int colaMaxima;
+        double colaMedia;
+        long muestras;
+        long tareasCompletadas;
+    }
+}
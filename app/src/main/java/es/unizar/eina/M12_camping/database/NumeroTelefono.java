@@ -0,0 +1,70 @@
+package es.unizar.eina.M12_camping.database;
+
+/**
+ * Utilidades para guardar y buscar numeros de telefono.
+ * Los numeros se guardan como texto con solo los digitos, sin espacios, guiones, puntos ni
+ * parentesis y sin el prefijo internacional "+" o "00", de forma que caben numeros de cualquier
+ * longitud y un numero parcial se busca como un rango del indice de la columna.
+ */
+public final class NumeroTelefono {
+
+    /** Numero minimo de digitos de un telefono valido */
+    public static final int MIN_DIGITOS = 9;
+
+    /** Numero maximo de digitos de un telefono valido */
+    public static final int MAX_DIGITOS = 15;
+
+    private NumeroTelefono() {
+    }
+
+    /**
+     * Normaliza un numero de telefono o un prefijo de uno, dejando solo sus digitos.
+     *
+     * @param telefono El numero tal como se ha escrito.
+     * @return Los digitos del numero, sin el prefijo internacional "+" o "00".
+     * @throws IllegalArgumentException Si contiene caracteres que no forman parte de un telefono.
+     */
+    public static String normalizar(String telefono) {
+        String recortado = telefono.trim();
+        int inicio = 0;
+        if (recortado.startsWith("+")) {
+            inicio = 1;
+        } else if (recortado.startsWith("00")) {
+            inicio = 2;
+        }
+        StringBuilder digitos = new StringBuilder(recortado.length());
+        for (int i = inicio; i < recortado.length(); i++) {
+            char c = recortado.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digitos.append(c);
+            } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')') {
+                throw new IllegalArgumentException("Caracter no valido en el telefono: " + c);
+            }
+        }
+        return digitos.toString();
+    }
+
+    /**
+     * Comprueba si un numero ya normalizado tiene una longitud valida.
+     *
+     * @param normalizado El numero devuelto por {@link #normalizar(String)}.
+     * @return true si tiene entre {@link #MIN_DIGITOS} y {@link #MAX_DIGITOS} digitos.
+     */
+    public static boolean esValido(String normalizado) {
+        return normalizado.length() >= MIN_DIGITOS && normalizado.length() <= MAX_DIGITOS;
+    }
+
+    /**
+     * Calcula el limite superior, excluido, de los numeros que empiezan por un prefijo.
+     * Los numeros que empiezan por el prefijo son los que cumplen
+     * {@code prefijo <= numero < finPrefijo(prefijo)}, una condicion que SQLite resuelve con un
+     * rango del indice en lugar de recorrer la tabla como haria un {@code LIKE}.
+     *
+     * @param prefijo Un prefijo normalizado, no vacio.
+     * @return El prefijo con su ultimo caracter incrementado.
+     */
+    public static String finPrefijo(String prefijo) {
+        char ultimo = prefijo.charAt(prefijo.length() - 1);
+        return prefijo.substring(0, prefijo.length() - 1) + (char) (ultimo + 1);
+    }
+}
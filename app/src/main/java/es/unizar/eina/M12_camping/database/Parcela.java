@@ -3,14 +3,24 @@ package es.unizar.eina.M12_camping.database;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 /**
  * Esta clase representa una parcela en un camping.
  * La clase incluye el nombre, el numero maximo de ocupantes,
  * el precio por persona y la descripcion de la parcela.
+ * El precio se guarda en centimos de euro para que las sumas sean exactas.
+ * El nombre es unico; lo garantiza un indice, sin consultas previas.
+ * Los indices de los demas campos evitan ordenar las filas en cada consulta de los listados.
  */
-@Entity(tableName = "parcela")
+@Entity(tableName = "parcela",
+        indices = {
+                @Index(value = "nombre", unique = true),
+                @Index(value = "maxOcupantes"),
+                @Index(value = "precioXpersonaCentimos")
+        })
 public class Parcela {
 
     /** ID unico de la parcela */
@@ -18,7 +28,7 @@ public class Parcela {
     @ColumnInfo(name = "id")
     private int id;
 
-    /** Nombre de la parcela */
+    /** Nombre de la parcela, unico en el camping */
     @NonNull
     @ColumnInfo(name = "nombre")
     private String nombre;
@@ -27,15 +37,19 @@ public class Parcela {
     @ColumnInfo(name = "maxOcupantes")
     private int maxOcupantes;
 
-    /** Precio por persona de la parcela */
-    @ColumnInfo(name = "precioXpersona")
-    private double precioXpersona;
+    /** Precio por persona de la parcela, en centimos */
+    @ColumnInfo(name = "precioXpersonaCentimos")
+    private long precioXpersonaCentimos;
 
     /** Descripcion de la parcela */
     @NonNull
     @ColumnInfo(name = "descripcion")
     private String descripcion;
 
+    /** Version de la parcela, que aumenta con cada modificacion para detectar ediciones concurrentes. */
+    @ColumnInfo(name = "version", defaultValue = "0")
+    private long version;
+
     /**
      * Constructor para inicializar los detalles de la parcela.
      *
@@ -44,6 +58,7 @@ public class Parcela {
      * @param precioXpersona El precio por persona para esta parcela.
      * @param descripcion    La descripcion de la parcela.
      */
+    @Ignore
     public Parcela(@NonNull String nombre, Integer maxOcupantes, Double precioXpersona, @NonNull String descripcion) {
         if (maxOcupantes <= 0) {
             throw new IllegalArgumentException("El numero maximo de ocupantes debe ser mayor que 0.");
@@ -53,7 +68,22 @@ public class Parcela {
         }
         this.nombre = nombre;
         this.maxOcupantes = maxOcupantes;
-        this.precioXpersona = precioXpersona;
+        this.precioXpersonaCentimos = CalculadoraPrecio.aCentimos(precioXpersona);
+        this.descripcion = descripcion;
+    }
+
+    /**
+     * Constructor utilizado por Room, con el precio ya expresado en centimos.
+     *
+     * @param nombre                 El nombre de la parcela.
+     * @param maxOcupantes           El numero maximo de ocupantes de la parcela.
+     * @param precioXpersonaCentimos El precio por persona en centimos.
+     * @param descripcion            La descripcion de la parcela.
+     */
+    Parcela(@NonNull String nombre, int maxOcupantes, long precioXpersonaCentimos, @NonNull String descripcion) {
+        this.nombre = nombre;
+        this.maxOcupantes = maxOcupantes;
+        this.precioXpersonaCentimos = precioXpersonaCentimos;
         this.descripcion = descripcion;
     }
 
@@ -118,22 +148,43 @@ public class Parcela {
     /**
      * Devuelve el precio por persona de la parcela.
      *
-     * @return El precio por persona.
+     * @return El precio por persona en euros.
      */
     public double getPrecioXpersona() {
-        return this.precioXpersona;
+        return CalculadoraPrecio.aEuros(this.precioXpersonaCentimos);
     }
 
     /**
      * Permite actualizar el precio por persona de una parcela.
      *
-     * @param precioXpersona El nuevo precio por persona.
+     * @param precioXpersona El nuevo precio por persona en euros.
      */
     public void setPrecioXpersona(Double precioXpersona) {
         if (precioXpersona <= 0) {
             throw new IllegalArgumentException("El precio por persona debe ser mayor que 0.");
         }
-        this.precioXpersona = precioXpersona;
+        this.precioXpersonaCentimos = CalculadoraPrecio.aCentimos(precioXpersona);
+    }
+
+    /**
+     * Devuelve el precio por persona de la parcela en centimos.
+     *
+     * @return El precio por persona en centimos.
+     */
+    public long getPrecioXpersonaCentimos() {
+        return this.precioXpersonaCentimos;
+    }
+
+    /**
+     * Permite actualizar el precio por persona de una parcela en centimos.
+     *
+     * @param precioXpersonaCentimos El nuevo precio por persona en centimos.
+     */
+    public void setPrecioXpersonaCentimos(long precioXpersonaCentimos) {
+        if (precioXpersonaCentimos <= 0) {
+            throw new IllegalArgumentException("El precio por persona debe ser mayor que 0.");
+        }
+        this.precioXpersonaCentimos = precioXpersonaCentimos;
     }
 
     /**
@@ -155,4 +206,23 @@ public class Parcela {
         this.descripcion = descripcion;
     }
 
+    /**
+     * Obtiene la version de la parcela leida de la base de datos.
+     *
+     * @return La version de la parcela.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Establece la version de la parcela. Las actualizaciones condicionadas solo se aplican si
+     * coincide con la guardada.
+     *
+     * @param version La version de la parcela.
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
 }
\ No newline at end of file
@@ -18,18 +18,34 @@ import java.util.List;
 @Dao
 public interface ParcelaDao {
 
+    /** Consultas de los listados de parcelas; cada orden tiene un indice, declarado en {@link Parcela} */
+    String LISTADO_POR_NOMBRE = "SELECT * FROM Parcela ORDER BY nombre ASC";
+    String LISTADO_POR_OCUPANTES = "SELECT * FROM Parcela ORDER BY maxOcupantes ASC";
+    String LISTADO_POR_PRECIO = "SELECT * FROM Parcela ORDER BY precioXpersonaCentimos ASC";
+
     /**
      * Inserta una nueva parcela en la base de datos.
-     * Si ya existe una parcela con el mismo identificador, ignora el conflicto.
+     * Si ya existe una parcela con el mismo identificador o el mismo nombre, se lanza
+     * SQLiteConstraintException.
      *
      * @param parcela La parcela a insertar.
      * @return El identificador de la parcela insertada.
      */
-    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    @Insert(onConflict = OnConflictStrategy.ABORT)
     long insert(Parcela parcela);
 
     /**
-     * Actualiza una parcela existente en la base de datos.
+     * Inserta varias parcelas en una sola transaccion.
+     * Las parcelas que no se pueden insertar se ignoran.
+     *
+     * @param parcelas Las parcelas a insertar.
+     * @return Los IDs de las parcelas insertadas (-1 para las ignoradas).
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long[] insertAll(List<Parcela> parcelas);
+
+    /**
+     * Actualiza una parcela existente en la base de datos, con la version que lleva la parcela.
      *
      * @param parcela La parcela con los datos actualizados.
      * @return El numero de filas afectadas (deberia ser 1 si la actualizacion es exitosa).
@@ -37,6 +53,40 @@ public interface ParcelaDao {
     @Update
     int update(Parcela parcela);
 
+    /**
+     * Actualiza una parcela si su version no ha cambiado desde que se leyo, e incrementa la version.
+     *
+     * @param id                     El ID de la parcela.
+     * @param version                La version leida.
+     * @param nombre                 El nombre de la parcela.
+     * @param maxOcupantes           El numero maximo de ocupantes.
+     * @param precioXpersonaCentimos El precio por persona en centimos.
+     * @param descripcion            La descripcion de la parcela.
+     * @return 1 si se ha actualizado, 0 si no existe o su version es otra.
+     * @throws android.database.sqlite.SQLiteConstraintException Si otra parcela tiene el mismo nombre.
+     */
+    @Query("UPDATE parcela SET nombre = :nombre, maxOcupantes = :maxOcupantes, " +
+            "precioXpersonaCentimos = :precioXpersonaCentimos, descripcion = :descripcion, " +
+            "version = version + 1 WHERE id = :id AND version = :version")
+    int updateSiVersion(int id, long version, String nombre, int maxOcupantes,
+                        long precioXpersonaCentimos, String descripcion);
+
+    /**
+     * Actualiza una parcela sea cual sea su version, e incrementa la version.
+     *
+     * @param id                     El ID de la parcela.
+     * @param nombre                 El nombre de la parcela.
+     * @param maxOcupantes           El numero maximo de ocupantes.
+     * @param precioXpersonaCentimos El precio por persona en centimos.
+     * @param descripcion            La descripcion de la parcela.
+     * @return 1 si se ha actualizado, 0 si no existe.
+     * @throws android.database.sqlite.SQLiteConstraintException Si otra parcela tiene el mismo nombre.
+     */
+    @Query("UPDATE parcela SET nombre = :nombre, maxOcupantes = :maxOcupantes, " +
+            "precioXpersonaCentimos = :precioXpersonaCentimos, descripcion = :descripcion, " +
+            "version = version + 1 WHERE id = :id")
+    int sobrescribir(int id, String nombre, int maxOcupantes, long precioXpersonaCentimos, String descripcion);
+
     /**
      * Elimina una parcela especifica de la base de datos.
      *
@@ -65,7 +115,7 @@ public interface ParcelaDao {
      *
      * @return Un objeto LiveData que contiene una lista de parcelas ordenadas por nombre en orden ascendente.
      */
-    @Query("SELECT * FROM Parcela ORDER BY nombre ASC")
+    @Query(LISTADO_POR_NOMBRE)
     LiveData<List<Parcela>> getOrderedParcelasNombre();
 
     /**
@@ -73,7 +123,7 @@ public interface ParcelaDao {
      *
      * @return Un objeto LiveData que contiene una lista de parcelas ordenadas por el numero maximo de ocupantes en orden ascendente.
      */
-    @Query("SELECT * FROM Parcela ORDER BY maxOcupantes ASC")
+    @Query(LISTADO_POR_OCUPANTES)
     LiveData<List<Parcela>> getOrderedParcelasMaxOcupantes();
 
     /**
@@ -81,29 +131,9 @@ public interface ParcelaDao {
      *
      * @return Un objeto LiveData que contiene una lista de parcelas ordenadas por precio por persona en orden ascendente.
      */
-    @Query("SELECT * FROM Parcela ORDER BY precioXpersona ASC")
+    @Query(LISTADO_POR_PRECIO)
     LiveData<List<Parcela>> getOrderedParcelasPrecioXpersona();
 
-    /**
-     * Verifica si existe una parcela con el nombre especificado.
-     *
-     * @param nombre El nombre a verificar.
-     * @return true si existe una parcela con el mismo nombre, de lo contrario false.
-     */
-    @Query("SELECT COUNT(*) > 0 FROM Parcela WHERE nombre = :nombre")
-    boolean isNombreDuplicado(String nombre);
-
-    /**
-     * Verifica si existe una parcela con el nombre especificado que no tenga el ID proporcionado.
-     * Este metodo es util para la edicion de parcelas, donde se permite que el nombre no cambie.
-     *
-     * @param nombre El nombre a verificar.
-     * @param id     El ID de la parcela que se esta editando.
-     * @return true si existe otra parcela con el mismo nombre, de lo contrario false.
-     */
-    @Query("SELECT COUNT(*) > 0 FROM Parcela WHERE nombre = :nombre AND id != :id")
-    boolean isNombreDuplicadoExceptId(String nombre, int id);
-
     /**
      * Obtiene una parcela por su ID.
      *
@@ -116,6 +146,15 @@ public interface ParcelaDao {
     @Query("SELECT nombre FROM parcela WHERE id = :id")
     String getNombreParcelaById(int id);
 
+    /**
+     * Obtiene el ID de la parcela con un nombre.
+     *
+     * @param nombre El nombre de la parcela.
+     * @return El ID de la parcela, o null si no hay ninguna con ese nombre.
+     */
+    @Query("SELECT id FROM parcela WHERE nombre = :nombre LIMIT 1")
+    Integer getIdParcelaByNombre(String nombre);
+
     @Query("SELECT * FROM Parcela WHERE id NOT IN (SELECT pr.parcelaId FROM ParcelaReservada pr " +
             "JOIN Reserva r ON pr.reservaId = r.id " +
             "WHERE (:fechaInicio BETWEEN r.fechaEntrada AND r.fechaSalida) " +
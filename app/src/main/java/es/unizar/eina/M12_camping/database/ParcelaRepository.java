@@ -1,15 +1,12 @@
 package es.unizar.eina.M12_camping.database;
 
 import android.app.Application;
+import android.database.sqlite.SQLiteConstraintException;
 import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * Clase que gestiona el acceso a la fuente de datos para las parcelas.
@@ -24,17 +21,48 @@ public class ParcelaRepository {
     private final LiveData<List<Parcela>> mParcelasOrdOcupantes;
     private final LiveData<List<Parcela>> mParcelasOrdPrecio;
 
-    /** Tiempo maximo de espera para operaciones de base de datos en milisegundos */
-    private final long TIMEOUT = 15000;
+    /** Ejecuta las operaciones en segundo plano con timeout y registra sus metricas */
+    private final MetricasRepositorio mMetricas = MetricasRepositorio.getInstancia();
  
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
+
     /**
      * Constructor de ParcelaRepository.
-     * Utiliza el contexto de la aplicacion para obtener la instancia de la base de datos.
+     * Utiliza el contexto de la aplicacion para obtener la instancia de la base de datos del camping principal.
      *
      * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
      */
     public ParcelaRepository(Application application) {
-        CampingRoomDatabase db = CampingRoomDatabase.getDatabase(application);
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor de ParcelaRepository para las parcelas de un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public ParcelaRepository(Application application, String campingId) {
+        this(new RetencionCamping(application, campingId));
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     */
+    private ParcelaRepository(RetencionCamping retencion) {
+        this(retencion.getDatabase());
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor de ParcelaRepository con la base de datos, por ejemplo una base de datos en memoria.
+     *
+     * @param db La base de datos.
+     */
+    ParcelaRepository(CampingRoomDatabase db) {
         mParcelaDao = db.parcelaDao();
         mAllParcelas = mParcelaDao.getUnOrderedParcelas();
         mParcelasOrdNombre = mParcelaDao.getOrderedParcelasNombre();
@@ -42,6 +70,16 @@ public class ParcelaRepository {
         mParcelasOrdPrecio = mParcelaDao.getOrderedParcelasPrecioXpersona();
     }
 
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
     /**
      * Obtiene todas las parcelas en la base de datos sin un orden especifico.
      * Room ejecuta todas las consultas en un hilo separado, y LiveData notifica a los observadores cuando los datos cambian.
@@ -82,105 +120,95 @@ public class ParcelaRepository {
     /**
      * Inserta una nueva parcela en la base de datos.
      * La operacion se ejecuta en un hilo separado y espera un resultado utilizando Future.
+     * El indice unico del nombre rechaza los duplicados en la propia insercion.
      *
      * @param parcela La parcela a insertar. Debe tener un nombre no nulo y no vacio.
-     * @return El identificador de la parcela insertada, o -1 si la insercion falla.
+     * @return El resultado, con el identificador de la parcela insertada, o duplicada si ya existe
+     * una parcela con el mismo nombre.
      */
-    public long insert(Parcela parcela) {
+    public ResultadoInsercion insert(Parcela parcela) {
         if (parcela.getNombre().trim().isEmpty()) {
             throw new IllegalArgumentException("El nombre de la parcela no puede estar vacío.");
         }
-//        if (mParcelaDao.isNombreDuplicado(parcela.getNombre())) {
-//            throw new IllegalArgumentException("El nombre de la parcela ya existe en el sistema.");
-//        }
-
-        Future<Long> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mParcelaDao.insert(parcela));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
-            Log.d("ParcelaRepository", ex.getClass().getSimpleName() + ex.getMessage());
-            return -1;
-        }
+
+        return mMetricas.ejecutarEscritura("ParcelaRepository.insert", () -> {
+            try {
+                return ResultadoInsercion.insertada(mParcelaDao.insert(parcela));
+            } catch (SQLiteConstraintException e) {
+                // El ID se genera, asi que solo el nombre puede violar una restriccion
+                return ResultadoInsercion.duplicada();
+            }
+        }, ResultadoInsercion.error());
     }
 
     /**
-     * Actualiza una parcela en la base de datos.
+     * Actualiza una parcela en la base de datos, aunque otro la haya modificado despues de leerla.
      * La operacion se ejecuta en un hilo separado y espera un resultado utilizando Future.
      *
      * @param parcela La parcela que se desea actualizar. Debe tener un ID mayor que 0, un nombre no nulo y no vacio,
      *                un numero maximo de ocupantes, un precio por persona y una descripcion.
-     * @return El numero de filas modificadas (1 si se actualiza correctamente, 0 si no existe una parcela con ese ID).
+     * @return El resultado; duplicada si otra parcela tiene el mismo nombre.
+     * @see #updateSiVersion(Parcela)
      */
-    public int update(Parcela parcela) {
+    public ResultadoActualizacion<Parcela> update(Parcela parcela) {
         if (parcela.getNombre().trim().isEmpty()) {
             throw new IllegalArgumentException("El nombre de la parcela no puede estar vacío.");
         }
-//        if(mParcelaDao.isNombreDuplicadoExceptId(parcela.getNombre(), parcela.getId())) {
-//            throw new IllegalArgumentException("Ya existe una parcela con el mismo nombre.");
-//        }
-
-        Future<Integer> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mParcelaDao.update(parcela));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
-            Log.d("ParcelaRepository", ex.getClass().getSimpleName() + ex.getMessage());
-            return -1;
-        }
-    }
 
-    /**
-     * Elimina una parcela de la base de datos.
-     * La operacion se ejecuta en un hilo separado y espera un resultado utilizando Future.
-     *
-     * @param parcela La parcela a eliminar. Debe tener un ID mayor que 0.
-     * @return El numero de filas eliminadas (1 si se elimina correctamente, 0 si no existe una parcela con ese ID).
-     */
-    public int delete(Parcela parcela) {
-        Future<Integer> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mParcelaDao.delete(parcela));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
-            Log.d("ParcelaRepository", ex.getClass().getSimpleName() + ex.getMessage());
-            return -1;
-        }
+        return mMetricas.ejecutarEscritura("ParcelaRepository.update", () -> {
+            try {
+                if (mParcelaDao.sobrescribir(parcela.getId(), parcela.getNombre(), parcela.getMaxOcupantes(),
+                        parcela.getPrecioXpersonaCentimos(), parcela.getDescripcion()) == 0) {
+                    return ResultadoActualizacion.<Parcela>noEncontrada();
+                }
+            } catch (SQLiteConstraintException e) {
+                return ResultadoActualizacion.<Parcela>duplicada();
+            }
+            return ResultadoActualizacion.actualizada(parcela);
+        }, ResultadoActualizacion.error());
     }
 
     /**
-     * Verifica si existe una parcela con el nombre especificado.
+     * Actualiza una parcela solo si nadie la ha modificado desde que se leyo, es decir, si su
+     * version coincide con la guardada.
      *
-     * @param nombre El nombre a verificar.
-     * @return true si existe una parcela con el mismo nombre, de lo contrario false.
+     * @param parcela La parcela que se desea actualizar, con la version leida. Debe tener un ID
+     *                mayor que 0 y un nombre no vacio.
+     * @return El resultado; si se actualiza, la parcela con la version nueva, si hay conflicto,
+     * la parcela guardada, y duplicada si otra parcela tiene el mismo nombre.
      */
-    public boolean isNombreDuplicado(String nombre) {
-        Future<Boolean> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mParcelaDao.isNombreDuplicado(nombre));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
-            Log.d("ParcelaRepository", ex.getClass().getSimpleName() + ex.getMessage());
-            return false;
+    public ResultadoActualizacion<Parcela> updateSiVersion(Parcela parcela) {
+        if (parcela.getNombre().trim().isEmpty()) {
+            throw new IllegalArgumentException("El nombre de la parcela no puede estar vacío.");
         }
+
+        return mMetricas.ejecutarEscritura("ParcelaRepository.updateSiVersion", () -> {
+            int filas;
+            try {
+                filas = mParcelaDao.updateSiVersion(parcela.getId(), parcela.getVersion(), parcela.getNombre(),
+                        parcela.getMaxOcupantes(), parcela.getPrecioXpersonaCentimos(), parcela.getDescripcion());
+            } catch (SQLiteConstraintException e) {
+                return ResultadoActualizacion.<Parcela>duplicada();
+            }
+            if (filas > 0) {
+                parcela.setVersion(parcela.getVersion() + 1);
+                return ResultadoActualizacion.actualizada(parcela);
+            }
+            Parcela actual = mParcelaDao.getParcelaById(parcela.getId());
+            return actual == null ? ResultadoActualizacion.<Parcela>noEncontrada()
+                    : ResultadoActualizacion.conflicto(actual);
+        }, ResultadoActualizacion.error());
     }
 
     /**
-     * Verifica si existe una parcela con el nombre especificado que no tenga el ID proporcionado.
+     * Elimina una parcela de la base de datos.
+     * La operacion se ejecuta en un hilo separado y espera un resultado utilizando Future.
      *
-     * @param nombre El nombre a verificar.
-     * @param id     El ID de la parcela que se esta editando.
-     * @return true si existe otra parcela con el mismo nombre, de lo contrario false.
+     * @param parcela La parcela a eliminar. Debe tener un ID mayor que 0.
+     * @return El numero de filas eliminadas (1 si se elimina correctamente, 0 si no existe una parcela con ese ID).
      */
-    public boolean isNombreDuplicadoExceptId(String nombre, int id) {
-        Future<Boolean> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mParcelaDao.isNombreDuplicadoExceptId(nombre, id));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
-            Log.d("ParcelaRepository", ex.getClass().getSimpleName() + ex.getMessage());
-            return false;
-        }
+    public int delete(Parcela parcela) {
+        return mMetricas.ejecutarEscritura("ParcelaRepository.delete", () -> mParcelaDao.delete(parcela), -1);
     }
 
     /**
@@ -192,19 +220,14 @@ public class ParcelaRepository {
     public String getNombreParcelaById(int parcelaId) {
         Log.d("ParcelaRepository", "getNombreParcelaById: parcelaId = " + parcelaId);
 
-        Future<String> future = CampingRoomDatabase.databaseWriteExecutor.submit(() -> mParcelaDao.getNombreParcelaById(parcelaId));
-        try {
-            String nombreParcela = future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-            if (nombreParcela == null) {
-                Log.d("ParcelaRepository", "getNombreParcelaById: No se encontro nombre para parcelaId = " + parcelaId);
-            } else {
-                Log.d("ParcelaRepository", "getNombreParcelaById: Nombre de parcela = " + nombreParcela);
-            }
-            return nombreParcela;
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            Log.e("ParcelaRepository", "getNombreParcelaById: Error al obtener nombre de parcela: " + e.getMessage());
-            return null;
+        String nombreParcela = mMetricas.ejecutar("ParcelaRepository.getNombreParcelaById",
+                () -> mParcelaDao.getNombreParcelaById(parcelaId), null);
+        if (nombreParcela == null) {
+            Log.d("ParcelaRepository", "getNombreParcelaById: No se encontro nombre para parcelaId = " + parcelaId);
+        } else {
+            Log.d("ParcelaRepository", "getNombreParcelaById: Nombre de parcela = " + nombreParcela);
         }
+        return nombreParcela;
     }
 
     /**
@@ -214,15 +237,8 @@ public class ParcelaRepository {
      * @return La parcela correspondiente, o null si no se encuentra.
      */
     public Parcela getParcelaById(int parcelaId) {
-        Future<Parcela> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mParcelaDao.getParcelaById(parcelaId)
-        );
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            Log.e("ReservaRepository", "Error obteniendo parcela por ID: " + e.getMessage());
-            return null;
-        }
+        return mMetricas.ejecutar("ParcelaRepository.getParcelaById",
+                () -> mParcelaDao.getParcelaById(parcelaId), null);
     }
 
 }
\ No newline at end of file
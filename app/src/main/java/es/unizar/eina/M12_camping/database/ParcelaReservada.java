@@ -9,6 +9,8 @@ import androidx.room.PrimaryKey;
  * Representa la relacion entre una reserva y una parcela reservada.
  * Cada instancia de esta clase asocia una parcela especifica a una reserva concreta,
  * incluyendo el numero de ocupantes asignados a esa parcela.
+ * Guarda ademas el precio por persona y el numero de noches con los que se reservo la parcela,
+ * de modo que el importe de la linea no cambia aunque se modifique despues el precio de la parcela.
  */
 @Entity(tableName = "parcelaReservada",
         foreignKeys = {
@@ -40,17 +42,30 @@ public class ParcelaReservada {
     @ColumnInfo(name = "numeroOcupantes")
     private int numeroOcupantes;
 
+    /** Precio por persona y noche de la parcela en el momento de reservarla, en centimos */
+    @ColumnInfo(name = "precioXpersonaCentimos", defaultValue = "0")
+    private long precioXpersonaCentimos;
+
+    /** Numero de noches reservadas */
+    @ColumnInfo(name = "numeroNoches", defaultValue = "0")
+    private int numeroNoches;
+
     /**
      * Constructor de la clase ParcelaReservada.
      *
      * @param reservaId       ID de la reserva asociada.
      * @param parcelaId       ID de la parcela reservada.
      * @param numeroOcupantes Numero de ocupantes en la parcela.
+     * @param precioXpersonaCentimos Precio por persona de la parcela al reservarla, en centimos.
+     * @param numeroNoches    Numero de noches reservadas.
      */
-    public ParcelaReservada(int reservaId, int parcelaId, int numeroOcupantes) {
+    public ParcelaReservada(int reservaId, int parcelaId, int numeroOcupantes,
+                            long precioXpersonaCentimos, int numeroNoches) {
         this.reservaId = reservaId;
         this.parcelaId = parcelaId;
         this.numeroOcupantes = numeroOcupantes;
+        this.precioXpersonaCentimos = precioXpersonaCentimos;
+        this.numeroNoches = numeroNoches;
     }
 
     /**
@@ -125,4 +140,50 @@ public class ParcelaReservada {
         this.numeroOcupantes = numeroOcupantes;
     }
 
-}
\ No newline at end of file
+    /**
+     * Obtiene el precio por persona con el que se reservo la parcela.
+     *
+     * @return Precio por persona en centimos en el momento de la reserva.
+     */
+    public long getPrecioXpersonaCentimos() {
+        return precioXpersonaCentimos;
+    }
+
+    /**
+     * Establece el precio por persona con el que se reserva la parcela.
+     *
+     * @param precioXpersonaCentimos Precio por persona a guardar, en centimos.
+     */
+    public void setPrecioXpersonaCentimos(long precioXpersonaCentimos) {
+        this.precioXpersonaCentimos = precioXpersonaCentimos;
+    }
+
+    /**
+     * Obtiene el numero de noches reservadas.
+     *
+     * @return Numero de noches.
+     */
+    public int getNumeroNoches() {
+        return numeroNoches;
+    }
+
+    /**
+     * Establece el numero de noches reservadas.
+     *
+     * @param numeroNoches Numero de noches a asignar.
+     */
+    public void setNumeroNoches(int numeroNoches) {
+        this.numeroNoches = numeroNoches;
+    }
+
+    /**
+     * Calcula el importe de la linea a partir de los valores guardados en ella,
+     * sin consultar el precio actual de la parcela.
+     *
+     * @return Precio por persona x ocupantes x noches, en centimos.
+     */
+    public long getImporteCentimos() {
+        return CalculadoraPrecio.importeCentimos(precioXpersonaCentimos, numeroOcupantes, numeroNoches);
+    }
+
+}
@@ -0,0 +1,134 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * Parcela reservada de una {@link ReservaArchivada}. Conserva el ID, el precio por persona y
+ * el numero de noches de la linea original, de modo que los resumenes mensuales y los informes
+ * de ingresos dan los mismos importes antes y despues de archivar.
+ */
+@Entity(tableName = "parcelaReservadaArchivada",
+        foreignKeys = {
+                @ForeignKey(entity = ReservaArchivada.class,
+                        parentColumns = "id",
+                        childColumns = "reservaId",
+                        onDelete = ForeignKey.CASCADE),
+                @ForeignKey(entity = Parcela.class,
+                        parentColumns = "id",
+                        childColumns = "parcelaId",
+                        onDelete = ForeignKey.CASCADE)
+        })
+public class ParcelaReservadaArchivada {
+
+    /** ID que tenia la parcela reservada */
+    @PrimaryKey
+    @ColumnInfo(name = "id")
+    private final int id;
+
+    /** ID de la reserva archivada */
+    @ColumnInfo(name = "reservaId", index = true)
+    private final int reservaId;
+
+    /** ID de la parcela reservada */
+    @ColumnInfo(name = "parcelaId", index = true)
+    private final int parcelaId;
+
+    /** Numero de ocupantes en la parcela */
+    @ColumnInfo(name = "numeroOcupantes")
+    private final int numeroOcupantes;
+
+    /** Precio por persona y noche de la parcela en el momento de reservarla, en centimos */
+    @ColumnInfo(name = "precioXpersonaCentimos")
+    private final long precioXpersonaCentimos;
+
+    /** Numero de noches reservadas */
+    @ColumnInfo(name = "numeroNoches")
+    private final int numeroNoches;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param id                     ID que tenia la parcela reservada.
+     * @param reservaId              ID de la reserva archivada.
+     * @param parcelaId              ID de la parcela reservada.
+     * @param numeroOcupantes        Numero de ocupantes en la parcela.
+     * @param precioXpersonaCentimos Precio por persona de la parcela al reservarla, en centimos.
+     * @param numeroNoches           Numero de noches reservadas.
+     */
+    public ParcelaReservadaArchivada(int id, int reservaId, int parcelaId, int numeroOcupantes,
+                                     long precioXpersonaCentimos, int numeroNoches) {
+        this.id = id;
+        this.reservaId = reservaId;
+        this.parcelaId = parcelaId;
+        this.numeroOcupantes = numeroOcupantes;
+        this.precioXpersonaCentimos = precioXpersonaCentimos;
+        this.numeroNoches = numeroNoches;
+    }
+
+    /**
+     * Obtiene el ID que tenia la parcela reservada.
+     *
+     * @return ID de la parcela reservada.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene el ID de la reserva archivada.
+     *
+     * @return ID de la reserva.
+     */
+    public int getReservaId() {
+        return reservaId;
+    }
+
+    /**
+     * Obtiene el ID de la parcela reservada.
+     *
+     * @return ID de la parcela.
+     */
+    public int getParcelaId() {
+        return parcelaId;
+    }
+
+    /**
+     * Obtiene el numero de ocupantes en la parcela.
+     *
+     * @return Numero de ocupantes.
+     */
+    public int getNumeroOcupantes() {
+        return numeroOcupantes;
+    }
+
+    /**
+     * Obtiene el precio por persona con el que se reservo la parcela.
+     *
+     * @return Precio por persona en centimos.
+     */
+    public long getPrecioXpersonaCentimos() {
+        return precioXpersonaCentimos;
+    }
+
+    /**
+     * Obtiene el numero de noches reservadas.
+     *
+     * @return Numero de noches.
+     */
+    public int getNumeroNoches() {
+        return numeroNoches;
+    }
+
+    /**
+     * Calcula el importe de la linea.
+     *
+     * @return Precio por persona x ocupantes x noches, en centimos.
+     */
+    public long getImporteCentimos() {
+        return CalculadoraPrecio.importeCentimos(precioXpersonaCentimos, numeroOcupantes, numeroNoches);
+    }
+
+}
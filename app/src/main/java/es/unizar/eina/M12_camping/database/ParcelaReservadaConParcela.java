@@ -0,0 +1,20 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.Embedded;
+import androidx.room.Relation;
+
+/**
+ * Parcela reservada junto con los datos de su parcela.
+ * No es una entidad: Room la rellena al cargar un {@link ReservaConParcelas}.
+ */
+public class ParcelaReservadaConParcela {
+
+    /** La parcela reservada */
+    @Embedded
+    public ParcelaReservada parcelaReservada;
+
+    /** La parcela a la que se refiere la parcela reservada */
+    @Relation(parentColumn = "parcelaId", entityColumn = "id")
+    public Parcela parcela;
+
+}
@@ -26,6 +26,15 @@ public interface ParcelaReservadaDao {
     @Insert
     long insert(ParcelaReservada parcelaReservada);
 
+    /**
+     * Inserta varias ParcelaReservada en una sola transaccion.
+     *
+     * @param parcelasReservadas Las ParcelaReservada a insertar.
+     * @return Los IDs de las ParcelaReservada insertadas, en el mismo orden.
+     */
+    @Insert
+    long[] insertAll(List<ParcelaReservada> parcelasReservadas);
+
     /**
      * Actualiza una ParcelaReservada existente en la base de datos.
      *
@@ -59,4 +68,59 @@ public interface ParcelaReservadaDao {
     @Query("SELECT * FROM parcelaReservada WHERE reservaId = :reservaId")
     LiveData<List<ParcelaReservada>> getParcelasReservadasByReservaId(int reservaId);
 
+    /**
+     * Obtiene los IDs de las parcelas reservadas de una reserva.
+     *
+     * @param reservaId El ID de la reserva.
+     * @return Lista de IDs.
+     */
+    @Query("SELECT id FROM parcelaReservada WHERE reservaId = :reservaId")
+    List<Integer> getIdsByReservaId(int reservaId);
+
+    /**
+     * Elimina varias parcelas reservadas por su ID.
+     *
+     * @param ids Los IDs de las parcelas reservadas.
+     * @return El numero de filas eliminadas.
+     */
+    @Query("DELETE FROM parcelaReservada WHERE id IN (:ids)")
+    int deleteByIds(List<Integer> ids);
+
+    /**
+     * Calcula el precio total de una reserva a partir de los precios y noches guardados
+     * en sus parcelas reservadas, sin consultar la tabla de parcelas.
+     *
+     * @param reservaId El ID de la reserva.
+     * @return La suma de los importes de las lineas de la reserva en centimos (0 si no tiene lineas).
+     */
+    @Query("SELECT COALESCE(SUM(precioXpersonaCentimos * numeroOcupantes * numeroNoches), 0) " +
+            "FROM parcelaReservada WHERE reservaId = :reservaId")
+    long getPrecioTotalCentimosByReservaId(int reservaId);
+
+    /**
+     * Calcula los ingresos generados por una parcela en todas sus reservas, vigentes y archivadas.
+     *
+     * @param parcelaId El ID de la parcela.
+     * @return Los ingresos de la parcela en centimos (0 si no tiene reservas).
+     */
+    @Query("SELECT COALESCE(SUM(precioXpersonaCentimos * numeroOcupantes * numeroNoches), 0) FROM (" +
+            "SELECT precioXpersonaCentimos, numeroOcupantes, numeroNoches FROM parcelaReservada " +
+            "WHERE parcelaId = :parcelaId UNION ALL " +
+            "SELECT precioXpersonaCentimos, numeroOcupantes, numeroNoches FROM parcelaReservadaArchivada " +
+            "WHERE parcelaId = :parcelaId)")
+    long getIngresosCentimosByParcelaId(int parcelaId);
+
+    /**
+     * Calcula los ingresos generados por cada parcela que tenga alguna reserva, vigente o archivada.
+     * El periodo de cada resultado es el ID de la parcela.
+     *
+     * @return Lista de ingresos por parcela, ordenada por ID de parcela.
+     */
+    @Query("SELECT CAST(parcelaId AS TEXT) AS periodo, " +
+            "SUM(precioXpersonaCentimos * numeroOcupantes * numeroNoches) AS ingresosCentimos FROM (" +
+            "SELECT parcelaId, precioXpersonaCentimos, numeroOcupantes, numeroNoches FROM parcelaReservada " +
+            "UNION ALL SELECT parcelaId, precioXpersonaCentimos, numeroOcupantes, numeroNoches " +
+            "FROM parcelaReservadaArchivada) GROUP BY parcelaId ORDER BY parcelaId")
+    List<IngresoPeriodo> getIngresosPorParcela();
+
 }
@@ -0,0 +1,262 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Plantilla de mensaje para las notificaciones de reservas.
+ * El texto de la plantilla se analiza una sola vez al compilarla; despues se puede generar el
+ * mensaje de cualquier {@link ReservaConParcelas} sin volver a analizarla ni consultar la base de datos.
+ * <p>
+ * Campos de la reserva: {@code {id}}, {@code {nombreCliente}}, {@code {numeroMovil}},
+ * {@code {fechaEntrada}}, {@code {fechaSalida}}, {@code {noches}} y {@code {precioTotal}}.
+ * El bloque {@code {#parcelas}...{/parcelas}} se repite para cada parcela reservada y admite
+ * ademas {@code {parcela}}, {@code {ocupantes}}, {@code {precioXpersona}} e {@code {importe}}.
+ * Las fechas se escriben como dd-MM-yyyy y los importes en euros con dos decimales.
+ * </p>
+ * Las instancias son inmutables y se pueden usar desde varios hilos a la vez.
+ */
+public final class PlantillaMensaje {
+
+    /** Mensaje con toda la informacion de una reserva */
+    public static final PlantillaMensaje CONFIRMACION = compilar(
+            "Reserva a nombre de: {nombreCliente}" +
+            "\nTelefono: {numeroMovil}" +
+            "\nFecha de entrada: {fechaEntrada}" +
+            "\nFecha de salida: {fechaSalida}" +
+            "\nPrecio total: {precioTotal}" +
+            "{#parcelas}\n - Parcela: {parcela}, Ocupantes: {ocupantes}{/parcelas}");
+
+    /** Recordatorio para los clientes que llegan proximamente */
+    public static final PlantillaMensaje RECORDATORIO_LLEGADA = compilar(
+            "Hola {nombreCliente}, le recordamos que su reserva comienza el {fechaEntrada} " +
+            "y termina el {fechaSalida}. Le esperamos.");
+
+    /** Nombre del bloque que se repite para cada parcela reservada */
+    private static final String BLOQUE_PARCELAS = "parcelas";
+
+    /**
+     * Trozo de una plantilla compilada.
+     */
+    private interface Segmento {
+        /**
+         * Escribe el trozo del mensaje.
+         *
+         * @param ctx   Contexto del mensaje que se esta generando.
+         * @param r     La reserva.
+         * @param linea La parcela reservada actual, o null fuera del bloque de parcelas.
+         */
+        void escribir(Contexto ctx, ReservaConParcelas r, ParcelaReservadaConParcela linea);
+    }
+
+    /**
+     * Estado reutilizable durante la generacion de uno o varios mensajes en un mismo hilo.
+     */
+    private static final class Contexto {
+        final StringBuilder sb = new StringBuilder(256);
+        final Calendar calendar = Calendar.getInstance();
+
+        void fecha(Date fecha) {
+            calendar.setTime(fecha);
+            dosCifras(calendar.get(Calendar.DAY_OF_MONTH));
+            sb.append('-');
+            dosCifras(calendar.get(Calendar.MONTH) + 1);
+            sb.append('-').append(calendar.get(Calendar.YEAR));
+        }
+
+        void euros(long centimos) {
+            if (centimos < 0) {
+                sb.append('-');
+                centimos = -centimos;
+            }
+            sb.append(centimos / 100).append('.');
+            dosCifras((int) (centimos % 100));
+        }
+
+        private void dosCifras(int valor) {
+            if (valor < 10) {
+                sb.append('0');
+            }
+            sb.append(valor);
+        }
+    }
+
+    private final String mTexto;
+    private final List<Segmento> mSegmentos;
+
+    private PlantillaMensaje(String texto, List<Segmento> segmentos) {
+        mTexto = texto;
+        mSegmentos = segmentos;
+    }
+
+    /**
+     * Compila el texto de una plantilla.
+     *
+     * @param texto El texto de la plantilla.
+     * @return La plantilla compilada.
+     * @throws IllegalArgumentException Si la plantilla usa un campo desconocido o un bloque mal cerrado.
+     */
+    public static PlantillaMensaje compilar(@NonNull String texto) {
+        List<Segmento> segmentos = new ArrayList<>();
+        int fin = analizar(texto, 0, false, segmentos);
+        if (fin != texto.length()) {
+            throw new IllegalArgumentException("Cierre de bloque inesperado en la posicion " + fin);
+        }
+        return new PlantillaMensaje(texto, Collections.unmodifiableList(segmentos));
+    }
+
+    /**
+     * Analiza el texto desde una posicion hasta el final o hasta el cierre del bloque actual.
+     *
+     * @return La posicion en la que empieza el cierre del bloque, o la longitud del texto.
+     */
+    private static int analizar(String texto, int desde, boolean enBloque, List<Segmento> segmentos) {
+        int pos = desde;
+        while (pos < texto.length()) {
+            int abre = texto.indexOf('{', pos);
+            if (abre < 0) {
+                anadirLiteral(segmentos, texto.substring(pos));
+                return texto.length();
+            }
+            int cierra = texto.indexOf('}', abre);
+            if (cierra < 0) {
+                throw new IllegalArgumentException("Llave sin cerrar en la posicion " + abre);
+            }
+            anadirLiteral(segmentos, texto.substring(pos, abre));
+            String campo = texto.substring(abre + 1, cierra);
+
+            if (campo.equals("/" + BLOQUE_PARCELAS)) {
+                // Fuera de un bloque, compilar() detecta el cierre sobrante
+                return abre;
+            } else if (campo.equals("#" + BLOQUE_PARCELAS)) {
+                if (enBloque) {
+                    throw new IllegalArgumentException("Los bloques de parcelas no se pueden anidar");
+                }
+                List<Segmento> interior = new ArrayList<>();
+                int finBloque = analizar(texto, cierra + 1, true, interior);
+                String cierreBloque = "{/" + BLOQUE_PARCELAS + "}";
+                if (!texto.startsWith(cierreBloque, finBloque)) {
+                    throw new IllegalArgumentException("Falta " + cierreBloque);
+                }
+                segmentos.add(bloqueParcelas(interior));
+                pos = finBloque + cierreBloque.length();
+            } else {
+                segmentos.add(campo(campo, enBloque));
+                pos = cierra + 1;
+            }
+        }
+        return texto.length();
+    }
+
+    private static void anadirLiteral(List<Segmento> segmentos, String literal) {
+        if (!literal.isEmpty()) {
+            segmentos.add((ctx, r, linea) -> ctx.sb.append(literal));
+        }
+    }
+
+    private static Segmento bloqueParcelas(List<Segmento> interior) {
+        Segmento[] partes = interior.toArray(new Segmento[0]);
+        return (ctx, r, linea) -> {
+            if (r.parcelas == null) {
+                return;
+            }
+            for (ParcelaReservadaConParcela parcela : r.parcelas) {
+                for (Segmento parte : partes) {
+                    parte.escribir(ctx, r, parcela);
+                }
+            }
+        };
+    }
+
+    private static Segmento campo(String nombre, boolean enBloque) {
+        switch (nombre) {
+            case "id":
+                return (ctx, r, linea) -> ctx.sb.append(r.reserva.getId());
+            case "nombreCliente":
+                return (ctx, r, linea) -> ctx.sb.append(r.reserva.getNombreCliente());
+            case "numeroMovil":
+                return (ctx, r, linea) -> ctx.sb.append(r.reserva.getNumeroMovil());
+            case "fechaEntrada":
+                return (ctx, r, linea) -> ctx.fecha(r.reserva.getFechaEntrada());
+            case "fechaSalida":
+                return (ctx, r, linea) -> ctx.fecha(r.reserva.getFechaSalida());
+            case "precioTotal":
+                return (ctx, r, linea) -> ctx.euros(r.reserva.getPrecioTotalCentimos());
+            case "noches":
+                if (enBloque) {
+                    return (ctx, r, linea) -> ctx.sb.append(linea.parcelaReservada.getNumeroNoches());
+                }
+                return (ctx, r, linea) -> ctx.sb.append(
+                        CalculadoraPrecio.calcularNoches(r.reserva.getFechaEntrada(), r.reserva.getFechaSalida()));
+            default:
+                break;
+        }
+        if (enBloque) {
+            switch (nombre) {
+                case "parcela":
+                    return (ctx, r, linea) -> ctx.sb.append(linea.parcela != null ? linea.parcela.getNombre() : "");
+                case "ocupantes":
+                    return (ctx, r, linea) -> ctx.sb.append(linea.parcelaReservada.getNumeroOcupantes());
+                case "precioXpersona":
+                    return (ctx, r, linea) -> ctx.euros(linea.parcelaReservada.getPrecioXpersonaCentimos());
+                case "importe":
+                    return (ctx, r, linea) -> ctx.euros(linea.parcelaReservada.getImporteCentimos());
+                default:
+                    break;
+            }
+        }
+        throw new IllegalArgumentException("Campo desconocido en la plantilla: {" + nombre + "}");
+    }
+
+    /**
+     * Genera el mensaje de una reserva.
+     *
+     * @param reserva La reserva con sus parcelas.
+     * @return El mensaje generado.
+     */
+    public String generar(@NonNull ReservaConParcelas reserva) {
+        Contexto ctx = new Contexto();
+        escribir(ctx, reserva);
+        return ctx.sb.toString();
+    }
+
+    /**
+     * Genera los mensajes de varias reservas, reutilizando el mismo bufer y calendario.
+     *
+     * @param reservas Las reservas con sus parcelas.
+     * @return Los mensajes generados, en el mismo orden que las reservas.
+     */
+    public List<String> generarLote(@NonNull List<ReservaConParcelas> reservas) {
+        Contexto ctx = new Contexto();
+        List<String> mensajes = new ArrayList<>(reservas.size());
+        for (ReservaConParcelas reserva : reservas) {
+            ctx.sb.setLength(0);
+            escribir(ctx, reserva);
+            mensajes.add(ctx.sb.toString());
+        }
+        return mensajes;
+    }
+
+    private void escribir(Contexto ctx, ReservaConParcelas reserva) {
+        for (Segmento segmento : mSegmentos) {
+            segmento.escribir(ctx, reserva, null);
+        }
+    }
+
+    /**
+     * Devuelve el texto original de la plantilla.
+     *
+     * @return El texto de la plantilla.
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        return mTexto;
+    }
+
+}
@@ -0,0 +1,107 @@
+package es.unizar.eina.M12_camping.database;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Formato de los mensajes de la sincronizacion: JSON comprimido con gzip.
+ * Una peticion tiene el cursor del dispositivo en el servidor ("cursor"), el numero maximo de filas
+ * que puede recibir ("maximo") y las filas que han cambiado en el dispositivo ("cambios"). La
+ * respuesta tiene las versiones de las filas aceptadas ("aceptados"), el estado en el servidor de
+ * las rechazadas por conflicto ("conflictos"), las filas cambiadas por otros dispositivos
+ * ("cambios"), el nuevo cursor ("cursor") y si quedan filas por recibir ("hayMas").
+ * Cada fila tiene su tabla, su identificador global, su version y sus datos, que son null si se ha
+ * borrado. En los datos, las referencias a otras filas son identificadores globales.
+ */
+public final class ProtocoloSync {
+
+    static final String CURSOR = "cursor";
+    static final String MAXIMO = "maximo";
+    static final String CAMBIOS = "cambios";
+    static final String ACEPTADOS = "aceptados";
+    static final String CONFLICTOS = "conflictos";
+    static final String HAY_MAS = "hayMas";
+    static final String TABLA = "tabla";
+    static final String GID = "gid";
+    static final String VERSION = "version";
+    static final String DATOS = "datos";
+
+    private ProtocoloSync() {
+    }
+
+    /**
+     * Crea una fila del mensaje.
+     *
+     * @param tabla   La tabla de la fila.
+     * @param gid     El identificador global.
+     * @param version La version (en una peticion, la version en la que se baso el cambio).
+     * @param datos   Los datos, o null si la fila se ha borrado.
+     * @return La fila.
+     */
+    static JsonObject fila(String tabla, String gid, long version, JsonObject datos) {
+        JsonObject fila = new JsonObject();
+        fila.addProperty(TABLA, tabla);
+        fila.addProperty(GID, gid);
+        fila.addProperty(VERSION, version);
+        fila.add(DATOS, datos == null ? JsonNull.INSTANCE : datos);
+        return fila;
+    }
+
+    /**
+     * Obtiene los datos de una fila del mensaje.
+     *
+     * @param fila La fila.
+     * @return Los datos, o null si la fila se ha borrado.
+     */
+    static JsonObject datos(JsonObject fila) {
+        JsonElement datos = fila.get(DATOS);
+        return datos == null || datos.isJsonNull() ? null : datos.getAsJsonObject();
+    }
+
+    /**
+     * Codifica un mensaje.
+     *
+     * @param mensaje El mensaje.
+     * @return El mensaje comprimido.
+     */
+    public static byte[] codificar(JsonObject mensaje) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer escritor = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            escritor.write(mensaje.toString());
+        } catch (IOException e) {
+            // No ocurre al escribir en memoria
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodifica un mensaje.
+     *
+     * @param bytes El mensaje comprimido.
+     * @return El mensaje.
+     * @throws IOException Si no es un mensaje valido.
+     */
+    public static JsonObject decodificar(byte[] bytes) throws IOException {
+        try (Reader lector = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes)),
+                StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(lector).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Mensaje de sincronizacion no valido", e);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prueba de carga sobre {@link ParcelaRepository} y {@link ReservaRepository}.
+ * Carga un conjunto de datos con {@link GeneradorDatos} y lanza desde varios hilos una mezcla de
+ * operaciones (consultas de disponibilidad, altas, ediciones y cargas de listados), midiendo la
+ * latencia de cada una y la cola de tareas pendientes del ejecutor de la base de datos.
+ * Las operaciones son sincronas y no se pueden ejecutar en el hilo principal.
+ */
+public class PruebaCarga {
+
+    /** Operaciones de la mezcla de carga */
+    public enum Operacion {
+        /** Consulta de las parcelas disponibles en un rango de fechas */
+        DISPONIBILIDAD,
+        /** Alta de una reserva con una parcela reservada */
+        ALTA_RESERVA,
+        /** Lectura y modificacion de una reserva */
+        EDICION_RESERVA,
+        /** Lectura y modificacion de una parcela */
+        EDICION_PARCELA,
+        /** Carga de una pagina del listado de reservas con sus parcelas */
+        LISTADO
+    }
+
+    /** Numero de reservas de cada pagina del listado */
+    private static final int TAMANO_PAGINA = 50;
+    /** Intervalo de muestreo de la cola del ejecutor en milisegundos */
+    private static final long INTERVALO_MUESTREO = 5;
+
+    private final Application mApplication;
+    private final ParcelaRepository mParcelaRepository;
+    private final ReservaRepository mReservaRepository;
+    private final long mSemilla;
+    private final Map<Operacion, Integer> mPesos = new EnumMap<>(Operacion.class);
+    private int mConcurrencia = 4;
+    private int mOperaciones = 2000;
+
+    private final List<Parcela> mParcelas = new ArrayList<>();
+    private final List<Reserva> mReservas = new ArrayList<>();
+    private final List<List<ParcelaReservada>> mLineas = new ArrayList<>();
+
+    /**
+     * Constructor de PruebaCarga, con la mezcla de operaciones por defecto.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param semilla     La semilla de los datos y de la eleccion de operaciones.
+     */
+    public PruebaCarga(Application application, long semilla) {
+        mApplication = application;
+        mParcelaRepository = new ParcelaRepository(application);
+        mReservaRepository = new ReservaRepository(application);
+        mSemilla = semilla;
+        mPesos.put(Operacion.DISPONIBILIDAD, 30);
+        mPesos.put(Operacion.ALTA_RESERVA, 15);
+        mPesos.put(Operacion.EDICION_RESERVA, 15);
+        mPesos.put(Operacion.EDICION_PARCELA, 10);
+        mPesos.put(Operacion.LISTADO, 30);
+    }
+
+    /**
+     * Establece el numero de hilos que lanzan operaciones a la vez.
+     *
+     * @param concurrencia El numero de hilos.
+     */
+    public void setConcurrencia(int concurrencia) {
+        if (concurrencia <= 0) {
+            throw new IllegalArgumentException("La concurrencia debe ser mayor que 0.");
+        }
+        mConcurrencia = concurrencia;
+    }
+
+    /**
+     * Establece el numero total de operaciones de la prueba.
+     *
+     * @param operaciones El numero de operaciones.
+     */
+    public void setOperaciones(int operaciones) {
+        if (operaciones <= 0) {
+            throw new IllegalArgumentException("El numero de operaciones debe ser mayor que 0.");
+        }
+        mOperaciones = operaciones;
+    }
+
+    /**
+     * Establece el peso de una operacion en la mezcla. Un peso 0 excluye la operacion.
+     *
+     * @param operacion La operacion.
+     * @param peso      El peso relativo de la operacion.
+     */
+    public void setPeso(Operacion operacion, int peso) {
+        if (peso < 0) {
+            throw new IllegalArgumentException("El peso no puede ser negativo.");
+        }
+        mPesos.put(operacion, peso);
+    }
+
+    /**
+     * Carga en la base de datos los datos sobre los que trabajan las operaciones.
+     *
+     * @param numParcelas Numero de parcelas.
+     * @param numReservas Numero de reservas.
+     */
+    public void cargarDatos(int numParcelas, int numReservas) {
+        new CargadorDatos(mApplication) {
+            @Override
+            public void insertarParcelas(List<Parcela> parcelas) {
+                super.insertarParcelas(parcelas);
+                mParcelas.addAll(parcelas);
+            }
+
+            @Override
+            public void insertarReservas(List<Reserva> reservas, List<List<ParcelaReservada>> lineas) {
+                super.insertarReservas(reservas, lineas);
+                mReservas.addAll(reservas);
+                mLineas.addAll(lineas);
+            }
+        }.cargar(new GeneradorDatos(mSemilla), numParcelas, numReservas);
+    }
+
+    /**
+     * Ejecuta la prueba sobre los datos cargados con {@link #cargarDatos(int, int)}.
+     *
+     * @return El resultado de la prueba.
+     * @throws InterruptedException Si se interrumpe el hilo mientras espera a que terminen las operaciones.
+     */
+    public Resultado ejecutar() throws InterruptedException {
+        if (mParcelas.isEmpty() || mReservas.isEmpty()) {
+            throw new IllegalStateException("No hay datos cargados para la prueba.");
+        }
+        int pesoTotal = 0;
+        for (int peso : mPesos.values()) {
+            pesoTotal += peso;
+        }
+        if (pesoTotal == 0) {
+            throw new IllegalStateException("La mezcla de operaciones esta vacia.");
+        }
+
+        Map<Operacion, Latencias> latencias = new EnumMap<>(Operacion.class);
+        for (Operacion operacion : Operacion.values()) {
+            latencias.put(operacion, new Latencias(mOperaciones));
+        }
+        AtomicInteger errores = new AtomicInteger();
+        ColaMuestreada cola = new ColaMuestreada(CampingRoomDatabase.databaseWriteExecutor);
+
+        ExecutorService hilos = Executors.newFixedThreadPool(mConcurrencia);
+        long inicio = System.nanoTime();
+        cola.iniciar();
+        for (int i = 0; i < mOperaciones; i++) {
+            Random aleatorio = new Random(mSemilla * 31 + i);
+            Operacion operacion = elegir(aleatorio, pesoTotal);
+            hilos.execute(() -> {
+                long antes = System.nanoTime();
+                boolean correcta;
+                try {
+                    correcta = ejecutarOperacion(operacion, aleatorio);
+                } catch (RuntimeException e) {
+                    correcta = false;
+                }
+                latencias.get(operacion).anadir(System.nanoTime() - antes);
+                if (!correcta) {
+                    errores.incrementAndGet();
+                }
+            });
+        }
+        hilos.shutdown();
+        hilos.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        long duracion = System.nanoTime() - inicio;
+        cola.detener();
+
+        return new Resultado(mConcurrencia, mOperaciones, errores.get(), duracion, latencias,
+                cola.getMaximo(), cola.getMedia());
+    }
+
+    private Operacion elegir(Random aleatorio, int pesoTotal) {
+        int valor = aleatorio.nextInt(pesoTotal);
+        for (Operacion operacion : Operacion.values()) {
+            valor -= mPesos.get(operacion);
+            if (valor < 0) {
+                return operacion;
+            }
+        }
+        return Operacion.values()[Operacion.values().length - 1];
+    }
+
+    /**
+     * Ejecuta una operacion a traves de los repositorios.
+     *
+     * @return true si la operacion termino correctamente.
+     */
+    private boolean ejecutarOperacion(Operacion operacion, Random aleatorio) {
+        switch (operacion) {
+            case DISPONIBILIDAD: {
+                Reserva referencia = mReservas.get(aleatorio.nextInt(mReservas.size()));
+                long dia = 24L * 60 * 60 * 1000;
+                Date entrada = new Date(referencia.getFechaEntrada().getTime() + (aleatorio.nextInt(15) - 7) * dia);
+                Date salida = new Date(entrada.getTime() + (1 + aleatorio.nextInt(7)) * dia);
+                return mReservaRepository.getParcelasDisponibles(entrada, salida) != null;
+            }
+            case ALTA_RESERVA: {
+                int indice = aleatorio.nextInt(mReservas.size());
+                Reserva modelo = mReservas.get(indice);
+                ParcelaReservada linea = mLineas.get(indice).get(0);
+                Reserva reserva = new Reserva("Carga " + aleatorio.nextInt(100000), modelo.getNumeroMovil(),
+                        modelo.getFechaEntrada(), modelo.getFechaSalida(), modelo.getPrecioTotal());
+                long id = mReservaRepository.insert(reserva);
+                return id > 0 && mReservaRepository.insertParcelaReservada(new ParcelaReservada((int) id,
+                        linea.getParcelaId(), linea.getNumeroOcupantes(), linea.getPrecioXpersonaCentimos(),
+                        linea.getNumeroNoches())) > 0;
+            }
+            case EDICION_RESERVA: {
+                Reserva reserva = mReservaRepository.getReservaById(
+                        mReservas.get(aleatorio.nextInt(mReservas.size())).getId());
+                if (reserva == null) {
+                    return false;
+                }
+                reserva.setNombreCliente(reserva.getNombreCliente() + ".");
+                return aceptada(mReservaRepository.updateSiVersion(reserva));
+            }
+            case EDICION_PARCELA: {
+                Parcela parcela = mParcelaRepository.getParcelaById(
+                        mParcelas.get(aleatorio.nextInt(mParcelas.size())).getId());
+                if (parcela == null) {
+                    return false;
+                }
+                parcela.setDescripcion(parcela.getDescripcion() + ".");
+                return aceptada(mParcelaRepository.updateSiVersion(parcela));
+            }
+            case LISTADO:
+            default: {
+                int desde = aleatorio.nextInt(Math.max(1, mReservas.size() - TAMANO_PAGINA));
+                List<Integer> ids = new ArrayList<>(TAMANO_PAGINA);
+                for (int i = desde; i < Math.min(desde + TAMANO_PAGINA, mReservas.size()); i++) {
+                    ids.add(mReservas.get(i).getId());
+                }
+                return mReservaRepository.getReservasConParcelas(ids).size() == ids.size();
+            }
+        }
+    }
+
+    /**
+     * Indica si una edicion ha terminado como se espera. Dos hilos pueden editar a la vez la misma
+     * fila; el bloqueo optimista rechaza la segunda con un conflicto, que no es un error.
+     *
+     * @param resultado El resultado de la edicion.
+     * @return true si la fila se ha actualizado o hay conflicto.
+     */
+    private static boolean aceptada(ResultadoActualizacion<?> resultado) {
+        return resultado.isActualizada() || resultado.isConflicto();
+    }
+
+    /**
+     * Latencias registradas de una operacion, en nanosegundos. Admite escrituras concurrentes.
+     */
+    private static final class Latencias {
+        private final long[] mValores;
+        private final AtomicInteger mNumero = new AtomicInteger();
+
+        Latencias(int capacidad) {
+            mValores = new long[capacidad];
+        }
+
+        void anadir(long nanos) {
+            mValores[mNumero.getAndIncrement()] = nanos;
+        }
+
+        long[] ordenadas() {
+            long[] valores = Arrays.copyOf(mValores, mNumero.get());
+            Arrays.sort(valores);
+            return valores;
+        }
+    }
+
+    /**
+     * Muestrea periodicamente el numero de tareas en la cola de un ejecutor.
+     */
+    private static final class ColaMuestreada {
+        private final ThreadPoolExecutor mEjecutor;
+        private final AtomicInteger mMaximo = new AtomicInteger();
+        private final AtomicLong mSuma = new AtomicLong();
+        private final AtomicLong mMuestras = new AtomicLong();
+        private ScheduledExecutorService mMuestreo;
+
+        ColaMuestreada(ThreadPoolExecutor ejecutor) {
+            mEjecutor = ejecutor;
+        }
+
+        void iniciar() {
+            mMuestreo = Executors.newSingleThreadScheduledExecutor();
+            mMuestreo.scheduleAtFixedRate(() -> {
+                int tamano = mEjecutor.getQueue().size();
+                mMaximo.accumulateAndGet(tamano, Math::max);
+                mSuma.addAndGet(tamano);
+                mMuestras.incrementAndGet();
+            }, 0, INTERVALO_MUESTREO, TimeUnit.MILLISECONDS);
+        }
+
+        void detener() throws InterruptedException {
+            mMuestreo.shutdown();
+            mMuestreo.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        int getMaximo() {
+            return mMaximo.get();
+        }
+
+        double getMedia() {
+            long muestras = mMuestras.get();
+            return muestras == 0 ? 0 : (double) mSuma.get() / muestras;
+        }
+    }
+
+    /**
+     * Resultado de una prueba de carga.
+     */
+    public static final class Resultado {
+        private final int mConcurrencia;
+        private final int mOperaciones;
+        private final int mErrores;
+        private final long mDuracionNanos;
+        private final Map<Operacion, long[]> mLatencias = new EnumMap<>(Operacion.class);
+        private final int mColaMaxima;
+        private final double mColaMedia;
+
+        private Resultado(int concurrencia, int operaciones, int errores, long duracionNanos,
+                          Map<Operacion, Latencias> latencias, int colaMaxima, double colaMedia) {
+            mConcurrencia = concurrencia;
+            mOperaciones = operaciones;
+            mErrores = errores;
+            mDuracionNanos = duracionNanos;
+            for (Map.Entry<Operacion, Latencias> entrada : latencias.entrySet()) {
+                mLatencias.put(entrada.getKey(), entrada.getValue().ordenadas());
+            }
+            mColaMaxima = colaMaxima;
+            mColaMedia = colaMedia;
+        }
+
+        /** @return El numero de operaciones que no terminaron correctamente. */
+        public int getErrores() {
+            return mErrores;
+        }
+
+        /** @return Las operaciones completadas por segundo. */
+        public double getRendimiento() {
+            return mOperaciones / (mDuracionNanos / 1e9);
+        }
+
+        /** @return El numero maximo de tareas observadas en la cola del ejecutor de la base de datos. */
+        public int getColaMaxima() {
+            return mColaMaxima;
+        }
+
+        /** @return El numero medio de tareas en la cola del ejecutor de la base de datos. */
+        public double getColaMedia() {
+            return mColaMedia;
+        }
+
+        /**
+         * Obtiene el numero de veces que se ejecuto una operacion.
+         *
+         * @param operacion La operacion.
+         * @return El numero de ejecuciones.
+         */
+        public int getEjecuciones(Operacion operacion) {
+            return mLatencias.get(operacion).length;
+        }
+
+        /**
+         * Obtiene un percentil de la latencia de una operacion.
+         *
+         * @param operacion La operacion.
+         * @param percentil El percentil, entre 0 y 100.
+         * @return La latencia en milisegundos, o 0 si la operacion no se ha ejecutado.
+         */
+        public double getPercentilMs(Operacion operacion, double percentil) {
+            long[] valores = mLatencias.get(operacion);
+            if (valores.length == 0) {
+                return 0;
+            }
+            int indice = (int) Math.ceil(percentil / 100 * valores.length) - 1;
+            return valores[Math.max(0, Math.min(indice, valores.length - 1))] / 1e6;
+        }
+
+        /**
+         * Obtiene el mayor de los percentiles de latencia de todas las operaciones.
+         *
+         * @param percentil El percentil, entre 0 y 100.
+         * @return La latencia en milisegundos de la operacion mas lenta en ese percentil.
+         */
+        public double getPercentilMaximoMs(double percentil) {
+            double maximo = 0;
+            for (Operacion operacion : Operacion.values()) {
+                maximo = Math.max(maximo, getPercentilMs(operacion, percentil));
+            }
+            return maximo;
+        }
+
+        /**
+         * Informe de la prueba, con una linea por operacion.
+         */
+        @Override
+        public String toString() {
+            StringBuilder informe = new StringBuilder(String.format(Locale.ROOT,
+                    "%d operaciones con %d hilos en %.1f s: %.1f op/s, %d errores, cola max %d media %.1f%n",
+                    mOperaciones, mConcurrencia, mDuracionNanos / 1e9, getRendimiento(), mErrores,
+                    mColaMaxima, mColaMedia));
+            for (Operacion operacion : Operacion.values()) {
+                informe.append(String.format(Locale.ROOT, "%-16s n=%-6d p50=%.2f ms p95=%.2f ms p99=%.2f ms%n",
+                        operacion, getEjecuciones(operacion), getPercentilMs(operacion, 50),
+                        getPercentilMs(operacion, 95), getPercentilMs(operacion, 99)));
+            }
+            return informe.toString();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Registro de las bases de datos de los campings, con un fichero de base de datos por camping.
+ * Cada base de datos se abre la primera vez que se pide. Como mucho se mantienen abiertas
+ * {@link #MAXIMO_ABIERTAS}; al superarse se cierra la usada hace mas tiempo, salvo la del camping
+ * principal, las que se estan usando con {@link #usar(String, Function)} y las retenidas con
+ * {@link #retener(String)}. Quien guarde la base de datos de un camping mas alla de una llamada,
+ * como los repositorios, la debe retener; la instancia de {@link #getDatabase(String)} se puede
+ * cerrar en cuanto se abran otros campings.
+ */
+public class RegistroCampings {
+
+    /** Identificador del camping principal, cuyo fichero es el de la version de un solo camping */
+    public static final String CAMPING_PRINCIPAL = "principal";
+    /** Numero maximo de bases de datos abiertas a la vez */
+    public static final int MAXIMO_ABIERTAS = 3;
+
+    private static final String FICHERO_PRINCIPAL = "m12_camping_database";
+    private static final String PREFIJO_FICHERO = FICHERO_PRINCIPAL + "_";
+    private static final Pattern ID_VALIDO = Pattern.compile("[A-Za-z0-9_]+");
+
+    private static volatile RegistroCampings INSTANCIA;
+
+    private final Context mContext;
+    private final int mMaximoAbiertas;
+    /** Bases de datos abiertas, de la usada hace mas tiempo a la mas reciente */
+    private final LinkedHashMap<String, Abierta> mAbiertas = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Obtiene el registro de la aplicacion. La primera vez activa, en las compilaciones de depuracion,
+     * la deteccion de accesos desde el hilo principal.
+     *
+     * @param context El contexto de la aplicacion.
+     * @return La instancia unica de RegistroCampings.
+     */
+    public static RegistroCampings getInstancia(Context context) {
+        if (INSTANCIA == null) {
+            synchronized (RegistroCampings.class) {
+                if (INSTANCIA == null) {
+                    // En depuracion se registran los accesos desde el hilo principal
+                    DetectorHiloPrincipal detector = DetectorHiloPrincipal.getInstancia();
+                    detector.setActivo((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0);
+                    if (Boolean.getBoolean(DetectorHiloPrincipal.PROPIEDAD_ESTRICTO)) {
+                        detector.setEstricto(true);
+                    }
+                    INSTANCIA = new RegistroCampings(context, MAXIMO_ABIERTAS);
+                }
+            }
+        }
+        return INSTANCIA;
+    }
+
+    /**
+     * La aplicacion usa {@link #getInstancia(Context)}; las pruebas crean registros propios.
+     *
+     * @param context        El contexto de la aplicacion.
+     * @param maximoAbiertas Numero maximo de bases de datos abiertas a la vez.
+     */
+    RegistroCampings(Context context, int maximoAbiertas) {
+        mContext = context.getApplicationContext();
+        mMaximoAbiertas = maximoAbiertas;
+    }
+
+    /**
+     * Obtiene la base de datos de un camping, abriendola si no lo esta. Si el camping no existe se
+     * crea su fichero al acceder a la base de datos por primera vez.
+     *
+     * @param campingId El identificador del camping (letras, digitos y guiones bajos).
+     * @return La base de datos del camping.
+     * @throws IllegalArgumentException Si el identificador no es valido.
+     */
+    public synchronized CampingRoomDatabase getDatabase(String campingId) {
+        CampingRoomDatabase db = abrir(campingId).mDb;
+        cerrarSobrantes(campingId);
+        return db;
+    }
+
+    /**
+     * Obtiene la base de datos de un camping y la retiene: no se cierra hasta que se libere con
+     * {@link #liberar(String)} tantas veces como se haya retenido. Mientras este retenida, el
+     * numero de bases de datos abiertas puede superar el maximo.
+     *
+     * @param campingId El identificador del camping.
+     * @return La base de datos del camping.
+     * @throws IllegalArgumentException Si el identificador no es valido.
+     */
+    public synchronized CampingRoomDatabase retener(String campingId) {
+        Abierta abierta = abrir(campingId);
+        abierta.mUsos++;
+        cerrarSobrantes(campingId);
+        return abierta.mDb;
+    }
+
+    /**
+     * Libera la base de datos de un camping retenida con {@link #retener(String)}. Si ya no la
+     * retiene nadie, se puede cerrar al abrir otros campings.
+     *
+     * @param campingId El identificador del camping.
+     * @throws IllegalStateException Si la base de datos no esta retenida.
+     */
+    public synchronized void liberar(String campingId) {
+        Abierta abierta = mAbiertas.get(campingId);
+        if (abierta == null || abierta.mUsos == 0) {
+            throw new IllegalStateException("La base de datos del camping " + campingId + " no esta retenida");
+        }
+        abierta.mUsos--;
+        cerrarSobrantes(null);
+    }
+
+    /**
+     * Ejecuta una operacion sobre la base de datos de un camping, sin que se pueda cerrar
+     * mientras tanto. La llamada es sincrona y no se debe hacer desde el hilo principal.
+     *
+     * @param campingId El identificador del camping.
+     * @param operacion La operacion.
+     * @param <T>       El tipo del resultado.
+     * @return El resultado de la operacion.
+     */
+    public <T> T usar(String campingId, Function<CampingRoomDatabase, T> operacion) {
+        Abierta abierta;
+        synchronized (this) {
+            abierta = abrir(campingId);
+            abierta.mUsos++;
+            cerrarSobrantes(campingId);
+        }
+        try {
+            return operacion.apply(abierta.mDb);
+        } finally {
+            synchronized (this) {
+                abierta.mUsos--;
+                cerrarSobrantes(null);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta una consulta sobre todos los campings en paralelo, en el ejecutor de la base de datos.
+     * Los campings cuya consulta falla o no termina antes de {@link MetricasRepositorio#TIMEOUT} ms
+     * no aparecen en el resultado. La llamada es sincrona y no se debe hacer desde el hilo principal.
+     *
+     * @param consulta La consulta.
+     * @param <T>      El tipo del resultado de cada camping.
+     * @return El resultado de cada camping, en el orden de {@link #getCampings()}.
+     */
+    public <T> Map<String, T> consultarTodos(Function<CampingRoomDatabase, T> consulta) {
+        Map<String, Future<T>> pendientes = new LinkedHashMap<>();
+        for (String campingId : getCampings()) {
+            pendientes.put(campingId, CampingRoomDatabase.databaseWriteExecutor.submit(() -> usar(campingId, consulta)));
+        }
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MetricasRepositorio.TIMEOUT);
+        Map<String, T> resultados = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<T>> pendiente : pendientes.entrySet()) {
+            try {
+                resultados.put(pendiente.getKey(),
+                        pendiente.getValue().get(limite - System.nanoTime(), TimeUnit.NANOSECONDS));
+            } catch (ExecutionException | TimeoutException e) {
+                pendiente.getValue().cancel(true);
+                Log.e("RegistroCampings", "Error al consultar el camping " + pendiente.getKey(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Obtiene los campings: el principal, los que tienen fichero de base de datos y los abiertos.
+     *
+     * @return Los identificadores de los campings, empezando por el principal y despues en orden alfabetico.
+     */
+    public List<String> getCampings() {
+        List<String> campings = new ArrayList<>();
+        for (String fichero : mContext.databaseList()) {
+            if (fichero.startsWith(PREFIJO_FICHERO)) {
+                String campingId = fichero.substring(PREFIJO_FICHERO.length());
+                if (ID_VALIDO.matcher(campingId).matches() && !campings.contains(campingId)) {
+                    campings.add(campingId);
+                }
+            }
+        }
+        synchronized (this) {
+            for (String campingId : mAbiertas.keySet()) {
+                if (!campings.contains(campingId)) {
+                    campings.add(campingId);
+                }
+            }
+        }
+        campings.remove(CAMPING_PRINCIPAL);
+        campings.sort(null);
+        campings.add(0, CAMPING_PRINCIPAL);
+        return campings;
+    }
+
+    /**
+     * Obtiene los campings con la base de datos abierta.
+     *
+     * @return Los identificadores, del usado hace mas tiempo al mas reciente.
+     */
+    public synchronized List<String> getCampingsAbiertos() {
+        return new ArrayList<>(mAbiertas.keySet());
+    }
+
+    /**
+     * Sustituye el fichero de base de datos de un camping por otro. Si la base de datos esta abierta
+     * se cierra antes; la siguiente llamada a {@link #getDatabase(String)} abre el fichero nuevo y,
+     * si es de una version anterior, aplica las migraciones.
+     *
+     * @param campingId El identificador del camping.
+     * @param origen    El fichero nuevo, en el mismo directorio que el de la base de datos. Se mueve, no se copia.
+     * @throws IllegalStateException Si la base de datos se esta usando con {@link #usar(String, Function)}
+     *                               o esta retenida.
+     * @throws IOException           Si no se puede sustituir el fichero.
+     */
+    synchronized void reemplazar(String campingId, File origen) throws IOException {
+        File destino = getFichero(campingId);
+        Abierta abierta = mAbiertas.get(campingId);
+        if (abierta != null) {
+            if (abierta.mUsos > 0) {
+                throw new IllegalStateException("La base de datos del camping " + campingId + " se esta usando");
+            }
+            mAbiertas.remove(campingId);
+            abierta.mDb.close();
+        }
+        // El WAL y el indice compartido del fichero anterior no valen para el nuevo
+        for (String sufijo : new String[]{"-wal", "-shm", "-journal"}) {
+            File auxiliar = new File(destino.getPath() + sufijo);
+            if (auxiliar.exists() && !auxiliar.delete()) {
+                throw new IOException("No se puede borrar " + auxiliar);
+            }
+        }
+        if (!origen.renameTo(destino)) {
+            throw new IOException("No se puede mover " + origen + " a " + destino);
+        }
+        Log.d("RegistroCampings", "Sustituida la base de datos del camping " + campingId);
+    }
+
+    /**
+     * Obtiene la ruta del fichero de base de datos de un camping.
+     *
+     * @param campingId El identificador del camping.
+     * @return La ruta del fichero.
+     * @throws IllegalArgumentException Si el identificador no es valido.
+     */
+    File getFichero(String campingId) {
+        return mContext.getDatabasePath(fichero(campingId));
+    }
+
+    /**
+     * Obtiene el nombre del fichero de base de datos de un camping.
+     *
+     * @param campingId El identificador del camping.
+     * @return El nombre del fichero.
+     * @throws IllegalArgumentException Si el identificador no es valido.
+     */
+    static String fichero(String campingId) {
+        if (CAMPING_PRINCIPAL.equals(campingId)) {
+            return FICHERO_PRINCIPAL;
+        }
+        if (campingId == null || !ID_VALIDO.matcher(campingId).matches()) {
+            throw new IllegalArgumentException("Identificador de camping no valido: " + campingId);
+        }
+        return PREFIJO_FICHERO + campingId;
+    }
+
+    /** Obtiene o abre la base de datos de un camping; se llama con el cerrojo del registro */
+    private Abierta abrir(String campingId) {
+        Abierta abierta = mAbiertas.get(campingId);
+        if (abierta == null) {
+            abierta = new Abierta(CampingRoomDatabase.crear(mContext, fichero(campingId),
+                    CAMPING_PRINCIPAL.equals(campingId)));
+            mAbiertas.put(campingId, abierta);
+        }
+        return abierta;
+    }
+
+    /**
+     * Cierra las bases de datos usadas hace mas tiempo hasta no superar el maximo, sin cerrar la
+     * del camping principal, las que estan en uso ni la que se acaba de pedir; se llama con el
+     * cerrojo del registro.
+     *
+     * @param pedida El camping cuya base de datos se acaba de pedir, o null.
+     */
+    private void cerrarSobrantes(String pedida) {
+        Iterator<Map.Entry<String, Abierta>> it = mAbiertas.entrySet().iterator();
+        while (mAbiertas.size() > mMaximoAbiertas && it.hasNext()) {
+            Map.Entry<String, Abierta> entrada = it.next();
+            if (!CAMPING_PRINCIPAL.equals(entrada.getKey()) && !entrada.getKey().equals(pedida)
+                    && entrada.getValue().mUsos == 0) {
+                it.remove();
+                entrada.getValue().mDb.close();
+                Log.d("RegistroCampings", "Cerrada la base de datos del camping " + entrada.getKey());
+            }
+        }
+    }
+
+    /** Base de datos abierta de un camping */
+    private static final class Abierta {
+        final CampingRoomDatabase mDb;
+        /** Operaciones de {@link #usar(String, Function)} en curso y retenciones de {@link #retener(String)} */
+        int mUsos;
+
+        Abierta(CampingRoomDatabase db) {
+            mDb = db;
+        }
+    }
+}
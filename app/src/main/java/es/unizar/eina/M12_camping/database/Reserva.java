@@ -3,6 +3,9 @@ package es.unizar.eina.M12_camping.database;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.TypeConverters;
 
@@ -12,8 +15,24 @@ import java.util.Date;
  * Clase que representa una reserva en el sistema de camping.
  * Cada reserva incluye informacion relevante sobre el cliente, las fechas de entrada y salida, y otros detalles.
  * Esta clase esta anotada como una entidad de Room, lo que la convierte en una tabla de la base de datos.
+ * Los indices de los campos por los que se ordenan los listados evitan ordenar las filas en cada consulta,
+ * y el del telefono permite ademas buscar reservas por una parte inicial del numero.
+ * Cada reserva apunta a su {@link Cliente}; el indice de (clienteId, fechaEntrada) devuelve el
+ * historial de un cliente ya ordenado, leyendo solo sus reservas.
  */
-@Entity(tableName = "reserva")
+@Entity(tableName = "reserva",
+        foreignKeys = {
+                @ForeignKey(entity = Cliente.class,
+                        parentColumns = "id",
+                        childColumns = "clienteId",
+                        onDelete = ForeignKey.SET_NULL)
+        },
+        indices = {
+                @Index(value = "nombreCliente"),
+                @Index(value = "numeroMovil"),
+                @Index(value = "fechaEntrada"),
+                @Index(value = {"clienteId", "fechaEntrada"})
+        })
 public class Reserva {
 
     /** ID unico de la reserva, autogenerado. */
@@ -26,10 +45,10 @@ public class Reserva {
     @ColumnInfo(name = "nombreCliente")
     private String nombreCliente;
 
-    /** Telefono de contacto del cliente. */
+    /** Telefono de contacto del cliente, solo con sus digitos (ver {@link NumeroTelefono}). */
     @NonNull
     @ColumnInfo(name = "numeroMovil")
-    private Integer numeroMovil;
+    private String numeroMovil;
 
     /** Fecha de entrada de la reserva. */
     @NonNull
@@ -43,9 +62,20 @@ public class Reserva {
     @TypeConverters(DateConverter.class)
     private Date fechaSalida;
 
-    /** Precio total de la reserva. */
-    @ColumnInfo(name = "precioTotal")
-    private double precioTotal;
+    /** Precio total de la reserva, en centimos. */
+    @ColumnInfo(name = "precioTotalCentimos")
+    private long precioTotalCentimos;
+
+    /**
+     * ID del cliente de la reserva. Lo asignan los triggers de {@link SqlClientes} a partir del
+     * nombre y el telefono, asi que las reservas nuevas lo dejan a null.
+     */
+    @ColumnInfo(name = "clienteId")
+    private Integer clienteId;
+
+    /** Version de la reserva, que aumenta con cada modificacion para detectar ediciones concurrentes. */
+    @ColumnInfo(name = "version", defaultValue = "0")
+    private long version;
 
     /**
      * Constructor para la clase Reserva.
@@ -54,16 +84,32 @@ public class Reserva {
      * @param numeroMovil   Telefono de contacto del cliente.
      * @param fechaEntrada  Fecha de entrada de la reserva.
      * @param fechaSalida   Fecha de salida de la reserva.
-     * @param precioTotal   Precio total de la reserva.
+     * @param precioTotal   Precio total de la reserva en euros.
      */
-    public Reserva(@NonNull String nombreCliente, @NonNull Integer numeroMovil,
+    @Ignore
+    public Reserva(@NonNull String nombreCliente, @NonNull String numeroMovil,
                    @NonNull Date fechaEntrada, @NonNull Date fechaSalida,
                    double precioTotal) {
+        this(nombreCliente, numeroMovil, fechaEntrada, fechaSalida, CalculadoraPrecio.aCentimos(precioTotal));
+    }
+
+    /**
+     * Constructor utilizado por Room, con el precio total ya expresado en centimos.
+     *
+     * @param nombreCliente       Nombre del cliente que realiza la reserva.
+     * @param numeroMovil         Telefono de contacto del cliente.
+     * @param fechaEntrada        Fecha de entrada de la reserva.
+     * @param fechaSalida         Fecha de salida de la reserva.
+     * @param precioTotalCentimos Precio total de la reserva en centimos.
+     */
+    Reserva(@NonNull String nombreCliente, @NonNull String numeroMovil,
+            @NonNull Date fechaEntrada, @NonNull Date fechaSalida,
+            long precioTotalCentimos) {
         this.nombreCliente = nombreCliente;
         this.numeroMovil = numeroMovil;
         this.fechaEntrada = fechaEntrada;
         this.fechaSalida = fechaSalida;
-        this.precioTotal = precioTotal;
+        this.precioTotalCentimos = precioTotalCentimos;
     }
 
     /**
@@ -109,7 +155,7 @@ public class Reserva {
      * @return El numero de contacto del cliente.
      */
     @NonNull
-    public Integer getNumeroMovil() {
+    public String getNumeroMovil() {
         return numeroMovil;
     }
 
@@ -118,7 +164,7 @@ public class Reserva {
      *
      * @param numeroMovil El numero de contacto del cliente.
      */
-    public void setNumeroMovil(@NonNull Integer numeroMovil) {
+    public void setNumeroMovil(@NonNull String numeroMovil) {
         this.numeroMovil = numeroMovil;
     }
 
@@ -163,19 +209,75 @@ public class Reserva {
     /**
      * Obtiene el precio total de la reserva.
      *
-     * @return El precio total.
+     * @return El precio total en euros.
      */
     public double getPrecioTotal() {
-        return precioTotal;
+        return CalculadoraPrecio.aEuros(precioTotalCentimos);
     }
 
     /**
      * Establece el precio total de la reserva.
      *
-     * @param precioTotal El precio total.
+     * @param precioTotal El precio total en euros.
      */
     public void setPrecioTotal(double precioTotal) {
-        this.precioTotal = precioTotal;
+        this.precioTotalCentimos = CalculadoraPrecio.aCentimos(precioTotal);
+    }
+
+    /**
+     * Obtiene el precio total de la reserva en centimos.
+     *
+     * @return El precio total en centimos.
+     */
+    public long getPrecioTotalCentimos() {
+        return precioTotalCentimos;
+    }
+
+    /**
+     * Establece el precio total de la reserva en centimos.
+     *
+     * @param precioTotalCentimos El precio total en centimos.
+     */
+    public void setPrecioTotalCentimos(long precioTotalCentimos) {
+        this.precioTotalCentimos = precioTotalCentimos;
+    }
+
+    /**
+     * Obtiene el ID del cliente de la reserva.
+     *
+     * @return El ID del cliente, o null si la reserva aun no se ha guardado.
+     */
+    public Integer getClienteId() {
+        return clienteId;
+    }
+
+    /**
+     * Establece el ID del cliente de la reserva. Si se deja a null, al guardar la reserva se le
+     * asigna el cliente de su nombre y telefono.
+     *
+     * @param clienteId El ID del cliente.
+     */
+    public void setClienteId(Integer clienteId) {
+        this.clienteId = clienteId;
+    }
+
+    /**
+     * Obtiene la version de la reserva leida de la base de datos.
+     *
+     * @return La version de la reserva.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Establece la version de la reserva. Las actualizaciones condicionadas solo se aplican si
+     * coincide con la guardada.
+     *
+     * @param version La version de la reserva.
+     */
+    public void setVersion(long version) {
+        this.version = version;
     }
 
 }
@@ -0,0 +1,175 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import androidx.room.TypeConverters;
+
+import java.util.Date;
+
+/**
+ * Reserva pasada que se ha movido de la tabla reserva al archivo.
+ * Conserva el ID y los datos que tenia la reserva, de modo que el archivo se puede seguir
+ * consultando en los informes y busquedas sin que las consultas de las reservas vigentes
+ * tengan que recorrer todo el historico. Las filas solo las escribe {@link ArchivoRepository}.
+ */
+@Entity(tableName = "reservaArchivada",
+        indices = {@Index("fechaEntrada"), @Index("fechaSalida"), @Index("nombreCliente"), @Index("numeroMovil"),
+                @Index(value = {"clienteId", "fechaEntrada"})})
+public class ReservaArchivada {
+
+    /** ID que tenia la reserva en la tabla reserva. */
+    @PrimaryKey
+    @ColumnInfo(name = "id")
+    private final int id;
+
+    /** Nombre del cliente que realizo la reserva. */
+    @NonNull
+    @ColumnInfo(name = "nombreCliente")
+    private final String nombreCliente;
+
+    /** Telefono de contacto del cliente. */
+    @NonNull
+    @ColumnInfo(name = "numeroMovil")
+    private final String numeroMovil;
+
+    /** Fecha de entrada de la reserva. */
+    @NonNull
+    @ColumnInfo(name = "fechaEntrada")
+    @TypeConverters(DateConverter.class)
+    private final Date fechaEntrada;
+
+    /** Fecha de salida de la reserva. */
+    @NonNull
+    @ColumnInfo(name = "fechaSalida")
+    @TypeConverters(DateConverter.class)
+    private final Date fechaSalida;
+
+    /** Precio total de la reserva, en centimos. */
+    @ColumnInfo(name = "precioTotalCentimos")
+    private final long precioTotalCentimos;
+
+    /** ID del cliente que tenia la reserva, para consultar su historial. */
+    @ColumnInfo(name = "clienteId")
+    private final Integer clienteId;
+
+    /** Momento en que se archivo la reserva. */
+    @NonNull
+    @ColumnInfo(name = "archivada")
+    @TypeConverters(DateConverter.class)
+    private final Date archivada;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param id                  ID que tenia la reserva.
+     * @param nombreCliente       Nombre del cliente.
+     * @param numeroMovil         Telefono de contacto del cliente.
+     * @param fechaEntrada        Fecha de entrada de la reserva.
+     * @param fechaSalida         Fecha de salida de la reserva.
+     * @param precioTotalCentimos Precio total de la reserva en centimos.
+     * @param clienteId           ID del cliente de la reserva.
+     * @param archivada           Momento en que se archivo la reserva.
+     */
+    public ReservaArchivada(int id, @NonNull String nombreCliente, @NonNull String numeroMovil,
+                            @NonNull Date fechaEntrada, @NonNull Date fechaSalida,
+                            long precioTotalCentimos, Integer clienteId, @NonNull Date archivada) {
+        this.id = id;
+        this.nombreCliente = nombreCliente;
+        this.numeroMovil = numeroMovil;
+        this.fechaEntrada = fechaEntrada;
+        this.fechaSalida = fechaSalida;
+        this.precioTotalCentimos = precioTotalCentimos;
+        this.clienteId = clienteId;
+        this.archivada = archivada;
+    }
+
+    /**
+     * Obtiene el ID que tenia la reserva.
+     *
+     * @return El ID de la reserva.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene el nombre del cliente.
+     *
+     * @return El nombre del cliente.
+     */
+    @NonNull
+    public String getNombreCliente() {
+        return nombreCliente;
+    }
+
+    /**
+     * Obtiene el numero de contacto del cliente.
+     *
+     * @return El numero de contacto del cliente.
+     */
+    @NonNull
+    public String getNumeroMovil() {
+        return numeroMovil;
+    }
+
+    /**
+     * Obtiene la fecha de entrada de la reserva.
+     *
+     * @return La fecha de entrada.
+     */
+    @NonNull
+    public Date getFechaEntrada() {
+        return fechaEntrada;
+    }
+
+    /**
+     * Obtiene la fecha de salida de la reserva.
+     *
+     * @return La fecha de salida.
+     */
+    @NonNull
+    public Date getFechaSalida() {
+        return fechaSalida;
+    }
+
+    /**
+     * Obtiene el precio total de la reserva en centimos.
+     *
+     * @return El precio total en centimos.
+     */
+    public long getPrecioTotalCentimos() {
+        return precioTotalCentimos;
+    }
+
+    /**
+     * Obtiene el ID del cliente de la reserva.
+     *
+     * @return El ID del cliente, o null si no tiene.
+     */
+    public Integer getClienteId() {
+        return clienteId;
+    }
+
+    /**
+     * Obtiene el precio total de la reserva.
+     *
+     * @return El precio total en euros.
+     */
+    public double getPrecioTotal() {
+        return CalculadoraPrecio.aEuros(precioTotalCentimos);
+    }
+
+    /**
+     * Obtiene el momento en que se archivo la reserva.
+     *
+     * @return La fecha de archivo.
+     */
+    @NonNull
+    public Date getArchivada() {
+        return archivada;
+    }
+
+}
@@ -0,0 +1,24 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.Embedded;
+import androidx.room.Relation;
+
+import java.util.List;
+
+/**
+ * Reserva junto con sus parcelas reservadas y los datos de cada parcela.
+ * No es una entidad: Room la rellena en una sola transaccion, cargando las parcelas reservadas
+ * y las parcelas de todas las reservas pedidas con una consulta por tabla, de modo que se
+ * puede usar como instantanea para generar mensajes sin mas consultas.
+ */
+public class ReservaConParcelas {
+
+    /** La reserva */
+    @Embedded
+    public Reserva reserva;
+
+    /** Las parcelas reservadas de la reserva, con los datos de su parcela */
+    @Relation(entity = ParcelaReservada.class, parentColumn = "id", entityColumn = "reservaId")
+    public List<ParcelaReservadaConParcela> parcelas;
+
+}
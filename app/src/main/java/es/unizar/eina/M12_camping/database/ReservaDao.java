@@ -4,6 +4,7 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 import androidx.room.Delete;
 
@@ -18,6 +19,15 @@ import java.util.List;
 @Dao
 public interface ReservaDao {
 
+    /** Consultas de los listados de reservas; cada orden tiene un indice, declarado en {@link Reserva} */
+    String LISTADO_POR_NOMBRE_CLIENTE = "SELECT * FROM reserva ORDER BY nombreCliente ASC";
+    String LISTADO_POR_TELEFONO = "SELECT * FROM reserva ORDER BY numeroMovil ASC";
+    String LISTADO_POR_FECHA_ENTRADA = "SELECT * FROM reserva ORDER BY fechaEntrada ASC";
+
+    /** Busqueda por una parte inicial del telefono, como un rango del indice de numeroMovil */
+    String BUSQUEDA_POR_TELEFONO = "SELECT * FROM reserva WHERE numeroMovil >= :desde AND numeroMovil < :hasta " +
+            "ORDER BY numeroMovil ASC LIMIT :maximo";
+
     /**
      * Inserta una nueva reserva en la base de datos.
      *
@@ -28,7 +38,16 @@ public interface ReservaDao {
     long insert(Reserva reserva);
 
     /**
-     * Actualiza una reserva existente en la base de datos.
+     * Inserta varias reservas en una sola transaccion.
+     *
+     * @param reservas Las reservas a insertar.
+     * @return Los IDs de las reservas insertadas, en el mismo orden.
+     */
+    @Insert
+    long[] insertAll(List<Reserva> reservas);
+
+    /**
+     * Actualiza una reserva existente en la base de datos, con la version que lleva la reserva.
      *
      * @param reserva La reserva a actualizar.
      * @return El numero de filas afectadas (1 si la actualizacion fue exitosa, 0 en caso contrario).
@@ -36,6 +55,42 @@ public interface ReservaDao {
     @Update
     int update(Reserva reserva);
 
+    /**
+     * Actualiza una reserva si su version no ha cambiado desde que se leyo, e incrementa la version.
+     *
+     * @param id                  El ID de la reserva.
+     * @param version             La version leida.
+     * @param nombreCliente       El nombre del cliente.
+     * @param numeroMovil         El telefono del cliente.
+     * @param fechaEntrada        La fecha de entrada.
+     * @param fechaSalida         La fecha de salida.
+     * @param precioTotalCentimos El precio total en centimos.
+     * @return 1 si se ha actualizado, 0 si no existe o su version es otra.
+     */
+    @Query("UPDATE reserva SET nombreCliente = :nombreCliente, numeroMovil = :numeroMovil, " +
+            "fechaEntrada = :fechaEntrada, fechaSalida = :fechaSalida, " +
+            "precioTotalCentimos = :precioTotalCentimos, version = version + 1 " +
+            "WHERE id = :id AND version = :version")
+    int updateSiVersion(int id, long version, String nombreCliente, String numeroMovil,
+                        Date fechaEntrada, Date fechaSalida, long precioTotalCentimos);
+
+    /**
+     * Actualiza una reserva sea cual sea su version, e incrementa la version.
+     *
+     * @param id                  El ID de la reserva.
+     * @param nombreCliente       El nombre del cliente.
+     * @param numeroMovil         El telefono del cliente.
+     * @param fechaEntrada        La fecha de entrada.
+     * @param fechaSalida         La fecha de salida.
+     * @param precioTotalCentimos El precio total en centimos.
+     * @return 1 si se ha actualizado, 0 si no existe.
+     */
+    @Query("UPDATE reserva SET nombreCliente = :nombreCliente, numeroMovil = :numeroMovil, " +
+            "fechaEntrada = :fechaEntrada, fechaSalida = :fechaSalida, " +
+            "precioTotalCentimos = :precioTotalCentimos, version = version + 1 WHERE id = :id")
+    int sobrescribir(int id, String nombreCliente, String numeroMovil,
+                     Date fechaEntrada, Date fechaSalida, long precioTotalCentimos);
+
     /**
      * Elimina una reserva especifica de la base de datos.
      *
@@ -64,7 +119,7 @@ public interface ReservaDao {
      *
      * @return Una lista LiveData de reservas ordenadas por nombre del cliente.
      */
-    @Query("SELECT * FROM reserva ORDER BY nombreCliente ASC")
+    @Query(LISTADO_POR_NOMBRE_CLIENTE)
     LiveData<List<Reserva>> getOrderedReservasNombreCliente();
 
     /**
@@ -72,15 +127,28 @@ public interface ReservaDao {
      *
      * @return Una lista LiveData de reservas ordenadas por numero de movil.
      */
-    @Query("SELECT * FROM reserva ORDER BY numeroMovil ASC")
+    @Query(LISTADO_POR_TELEFONO)
     LiveData<List<Reserva>> getOrderedReservasTelefono();
 
+    /**
+     * Busca las reservas cuyo telefono esta en un rango, ordenadas por telefono.
+     * Con {@link NumeroTelefono#finPrefijo(String)} como limite superior devuelve las reservas
+     * cuyo telefono empieza por un prefijo.
+     *
+     * @param desde  El limite inferior, incluido.
+     * @param hasta  El limite superior, excluido.
+     * @param maximo El numero maximo de reservas que se devuelven.
+     * @return Las reservas encontradas.
+     */
+    @Query(BUSQUEDA_POR_TELEFONO)
+    List<Reserva> buscarPorTelefono(String desde, String hasta, int maximo);
+
     /**
      * Obtiene todas las reservas ordenadas por fecha de entrada en orden ascendente.
      *
      * @return Una lista LiveData de reservas ordenadas por fecha de entrada.
      */
-    @Query("SELECT * FROM reserva ORDER BY fechaEntrada ASC")
+    @Query(LISTADO_POR_FECHA_ENTRADA)
     LiveData<List<Reserva>> getOrderedReservasFechaEntrada();
 
     /**
@@ -92,4 +160,93 @@ public interface ReservaDao {
     @Query("SELECT * FROM reserva WHERE id = :id")
     Reserva getReservaById(int id);
 
+    /**
+     * Obtiene las reservas cuya fecha de entrada esta en el intervalo [inicio, fin).
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Lista de reservas ordenada por fecha de entrada.
+     */
+    @Query("SELECT * FROM reserva WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin ORDER BY fechaEntrada, id")
+    List<Reserva> getReservasConEntradaEntre(Date inicio, Date fin);
+
+    /**
+     * Obtiene una reserva con sus parcelas reservadas y los datos de cada parcela.
+     *
+     * @param id El ID de la reserva.
+     * @return La reserva con sus parcelas, o null si no se encuentra.
+     */
+    @Transaction
+    @Query("SELECT * FROM reserva WHERE id = :id")
+    ReservaConParcelas getReservaConParcelas(int id);
+
+    /**
+     * Obtiene varias reservas con sus parcelas reservadas y los datos de cada parcela.
+     * Room carga las relaciones de todas las reservas a la vez, sin una consulta por reserva.
+     *
+     * @param ids Los IDs de las reservas.
+     * @return Lista de reservas con sus parcelas, ordenada por ID.
+     */
+    @Transaction
+    @Query("SELECT * FROM reserva WHERE id IN (:ids) ORDER BY id")
+    List<ReservaConParcelas> getReservasConParcelas(List<Integer> ids);
+
+    /**
+     * Obtiene las reservas cuya fecha de entrada esta en el intervalo [inicio, fin), con sus
+     * parcelas reservadas y los datos de cada parcela.
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Lista de reservas con sus parcelas, ordenada por fecha de entrada.
+     */
+    @Transaction
+    @Query("SELECT * FROM reserva WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin ORDER BY fechaEntrada, id")
+    List<ReservaConParcelas> getReservasConParcelasEntradaEntre(Date inicio, Date fin);
+
+    /**
+     * Suma los precios totales de las reservas, vigentes y archivadas, cuya fecha de entrada esta en
+     * el intervalo [inicio, fin).
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Los ingresos del intervalo en centimos (0 si no hay reservas).
+     */
+    @Query("SELECT COALESCE(SUM(precioTotalCentimos), 0) FROM (" +
+            "SELECT precioTotalCentimos FROM reserva WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin " +
+            "UNION ALL SELECT precioTotalCentimos FROM reservaArchivada " +
+            "WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin)")
+    long getIngresosCentimosEntre(Date inicio, Date fin);
+
+    /**
+     * Calcula los ingresos por dia de entrada de las reservas, vigentes y archivadas, en el intervalo [inicio, fin).
+     * El periodo de cada resultado tiene el formato yyyy-MM-dd.
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Lista de ingresos por dia, ordenada por fecha.
+     */
+    @Query("SELECT strftime('%Y-%m-%d', fechaEntrada / 1000, 'unixepoch', 'localtime') AS periodo, " +
+            "SUM(precioTotalCentimos) AS ingresosCentimos FROM (" +
+            "SELECT fechaEntrada, precioTotalCentimos FROM reserva " +
+            "WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin " +
+            "UNION ALL SELECT fechaEntrada, precioTotalCentimos FROM reservaArchivada " +
+            "WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin) GROUP BY periodo ORDER BY periodo")
+    List<IngresoPeriodo> getIngresosPorDia(Date inicio, Date fin);
+
+    /**
+     * Calcula los ingresos por mes de entrada de las reservas, vigentes y archivadas, en el intervalo [inicio, fin).
+     * El periodo de cada resultado tiene el formato yyyy-MM.
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Lista de ingresos por mes, ordenada por fecha.
+     */
+    @Query("SELECT strftime('%Y-%m', fechaEntrada / 1000, 'unixepoch', 'localtime') AS periodo, " +
+            "SUM(precioTotalCentimos) AS ingresosCentimos FROM (" +
+            "SELECT fechaEntrada, precioTotalCentimos FROM reserva " +
+            "WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin " +
+            "UNION ALL SELECT fechaEntrada, precioTotalCentimos FROM reservaArchivada " +
+            "WHERE fechaEntrada >= :inicio AND fechaEntrada < :fin) GROUP BY periodo ORDER BY periodo")
+    List<IngresoPeriodo> getIngresosPorMes(Date inicio, Date fin);
+
 }
@@ -1,17 +1,14 @@
 package es.unizar.eina.M12_camping.database;
 
 import android.app.Application;
-import android.util.Log;
 
 import androidx.lifecycle.LiveData;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -20,6 +17,7 @@ import java.util.stream.Collectors;
  */
 public class ReservaRepository {
 
+    private final CampingRoomDatabase mDb;
     private final ReservaDao mReservaDao;
     private final ParcelaDao mParcelaDao;
     private final ParcelaReservadaDao mParcelaReservadaDao;
@@ -29,16 +27,54 @@ public class ReservaRepository {
     private final LiveData<List<Reserva>> mReservasOrdTelefono;
     private final LiveData<List<Reserva>> mReservasOrdFechaEntrada;
 
-    /** Tiempo maximo de espera para operaciones de base de datos en milisegundos */
-    private final long TIMEOUT = 15000;
+    /** Ejecuta las operaciones en segundo plano con timeout y registra sus metricas */
+    private final MetricasRepositorio mMetricas = MetricasRepositorio.getInstancia();
+
+    /** Numero maximo de IDs por consulta (SQLite admite 999 parametros en las versiones antiguas) */
+    private static final int MAX_PARAMETROS = 500;
+
+    /** Numero maximo de reservas que devuelve la busqueda por telefono */
+    public static final int MAX_RESULTADOS_TELEFONO = 50;
+
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
 
     /**
-     * Constructor del repositorio de reservas.
+     * Constructor del repositorio de reservas del camping principal.
      *
      * @param application La aplicacion que proporciona el contexto para la base de datos.
      */
     public ReservaRepository(Application application) {
-        CampingRoomDatabase db = CampingRoomDatabase.getDatabase(application);
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor del repositorio de reservas de un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public ReservaRepository(Application application, String campingId) {
+        this(new RetencionCamping(application, campingId));
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     */
+    private ReservaRepository(RetencionCamping retencion) {
+        this(retencion.getDatabase());
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor con la base de datos, por ejemplo una base de datos en memoria.
+     *
+     * @param db La base de datos.
+     */
+    ReservaRepository(CampingRoomDatabase db) {
+        mDb = db;
         mReservaDao = db.reservaDao();
         mParcelaDao = db.parcelaDao();
         mParcelaReservadaDao = db.parcelaReservadaDao();
@@ -49,6 +85,16 @@ public class ReservaRepository {
         mReservasOrdFechaEntrada = mReservaDao.getOrderedReservasFechaEntrada();
     }
 
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
     /**
      * Obtiene todas las reservas sin un orden especifico.
      *
@@ -85,6 +131,30 @@ public class ReservaRepository {
         return mReservasOrdFechaEntrada;
     }
 
+    /**
+     * Busca las reservas cuyo telefono empieza por los digitos dados, para encontrar al cliente
+     * mientras se escribe su numero. La busqueda recorre solo el rango del indice de numeroMovil
+     * que empieza por el prefijo, y devuelve como mucho {@link #MAX_RESULTADOS_TELEFONO} reservas.
+     *
+     * @param prefijo Los primeros digitos del telefono, con o sin espacios, guiones o prefijo internacional.
+     * @return Las reservas ordenadas por telefono; vacia si el prefijo no tiene digitos, no es un
+     * telefono o se produce un error.
+     */
+    public List<Reserva> buscarPorTelefono(String prefijo) {
+        String digitos;
+        try {
+            digitos = NumeroTelefono.normalizar(prefijo);
+        } catch (IllegalArgumentException e) {
+            return new ArrayList<>();
+        }
+        if (digitos.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return mMetricas.ejecutar("ReservaRepository.buscarPorTelefono",
+                () -> mReservaDao.buscarPorTelefono(digitos, NumeroTelefono.finPrefijo(digitos),
+                        MAX_RESULTADOS_TELEFONO), new ArrayList<>());
+    }
+
     /**
      * Inserta una nueva reserva en la base de datos.
      *
@@ -96,37 +166,139 @@ public class ReservaRepository {
            throw new IllegalArgumentException("El nombre del cliente no puede estar vacío.");
         }
 
-        Future<Long> future = CampingRoomDatabase.databaseWriteExecutor.submit(() -> mReservaDao.insert(reserva));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            Log.e("ReservaRepository", "Error al insertar la reserva: " + e.getMessage());
-            return -1; // Devuelve -1 en caso de error.
-        }
+        return mMetricas.ejecutarEscritura("ReservaRepository.insert", () -> mReservaDao.insert(reserva), -1L);
     }
 
     /**
-     * Actualiza una reserva en la base de datos.
+     * Actualiza una reserva en la base de datos, aunque otro la haya modificado despues de leerla.
      * La operacion se ejecuta en un hilo separado y espera un resultado utilizando Future.
      *
      * @param reserva La reserva que se desea actualizar. Debe tener un ID mayor que 0, y todos sus
      *                parametros no nulos y no vacios.
      * @return El numero de filas modificadas (1 si se actualiza correctamente,
      * 0 si no existe una reserva con ese ID).
+     * @see #updateSiVersion(Reserva)
      */
     public int update(Reserva reserva) {
         if (reserva.getNombreCliente().trim().isEmpty()) {
             throw new IllegalArgumentException("El nombre del cliente no puede estar vacío.");
         }
 
-        Future<Integer> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mReservaDao.update(reserva));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
-            Log.d("ReservaRepository", ex.getClass().getSimpleName() + ex.getMessage());
-            return -1;
+        return mMetricas.ejecutarEscritura("ReservaRepository.update", () -> mReservaDao.sobrescribir(reserva.getId(),
+                reserva.getNombreCliente(), reserva.getNumeroMovil(), reserva.getFechaEntrada(),
+                reserva.getFechaSalida(), reserva.getPrecioTotalCentimos()), -1);
+    }
+
+    /**
+     * Actualiza una reserva solo si nadie la ha modificado desde que se leyo, es decir, si su
+     * version coincide con la guardada. Asi dos pantallas o dispositivos que editan la misma
+     * reserva no se pisan: el segundo en guardar recibe un conflicto con la reserva actual.
+     *
+     * @param reserva La reserva que se desea actualizar, con la version leida. Debe tener un ID
+     *                mayor que 0, y todos sus parametros no nulos y no vacios.
+     * @return El resultado; si se actualiza, la reserva con la version nueva.
+     */
+    public ResultadoActualizacion<Reserva> updateSiVersion(Reserva reserva) {
+        if (reserva.getNombreCliente().trim().isEmpty()) {
+            throw new IllegalArgumentException("El nombre del cliente no puede estar vacío.");
+        }
+
+        ResultadoActualizacion<Reserva> resultado = mMetricas.ejecutarEscritura("ReservaRepository.updateSiVersion",
+                () -> actualizarSiVersion(reserva), ResultadoActualizacion.error());
+        if (resultado.isActualizada()) {
+            reserva.setVersion(reserva.getVersion() + 1);
         }
+        return resultado;
+    }
+
+    /**
+     * Inserta una reserva con sus parcelas reservadas en una sola transaccion. Las parcelas
+     * reservadas se asignan a la reserva insertada.
+     *
+     * @param reserva            La reserva a insertar.
+     * @param parcelasReservadas Las parcelas reservadas de la reserva.
+     * @return El ID de la reserva, o -1 si falla, en cuyo caso no se guarda nada.
+     */
+    public long insertConParcelas(Reserva reserva, List<ParcelaReservada> parcelasReservadas) {
+        if (reserva.getNombreCliente().trim().isEmpty()) {
+            throw new IllegalArgumentException("El nombre del cliente no puede estar vacío.");
+        }
+
+        return mMetricas.ejecutarEscritura("ReservaRepository.insertConParcelas", () -> mDb.runInTransaction(() -> {
+            int reservaId = (int) mReservaDao.insert(reserva);
+            for (ParcelaReservada parcelaReservada : parcelasReservadas) {
+                parcelaReservada.setReservaId(reservaId);
+            }
+            mParcelaReservadaDao.insertAll(parcelasReservadas);
+            return (long) reservaId;
+        }), -1L);
+    }
+
+    /**
+     * Actualiza una reserva y sus parcelas reservadas en una sola transaccion, si nadie ha
+     * modificado la reserva desde que se leyo. Las parcelas reservadas con ID se actualizan, las
+     * que no lo tienen se insertan y las que ya no estan en la lista se eliminan.
+     *
+     * @param reserva            La reserva a actualizar, con la version leida.
+     * @param parcelasReservadas Todas las parcelas reservadas de la reserva.
+     * @return El resultado; si hay conflicto no se modifica nada.
+     */
+    public ResultadoActualizacion<Reserva> updateConParcelas(Reserva reserva, List<ParcelaReservada> parcelasReservadas) {
+        if (reserva.getNombreCliente().trim().isEmpty()) {
+            throw new IllegalArgumentException("El nombre del cliente no puede estar vacío.");
+        }
+
+        ResultadoActualizacion<Reserva> resultado = mMetricas.ejecutarEscritura("ReservaRepository.updateConParcelas",
+                () -> mDb.runInTransaction(() -> {
+                    ResultadoActualizacion<Reserva> actualizacion = actualizarSiVersion(reserva);
+                    if (!actualizacion.isActualizada()) {
+                        return actualizacion;
+                    }
+                    Set<Integer> conservadas = new HashSet<>();
+                    List<ParcelaReservada> nuevas = new ArrayList<>();
+                    for (ParcelaReservada parcelaReservada : parcelasReservadas) {
+                        parcelaReservada.setReservaId(reserva.getId());
+                        if (parcelaReservada.getId() > 0) {
+                            mParcelaReservadaDao.update(parcelaReservada);
+                            conservadas.add(parcelaReservada.getId());
+                        } else {
+                            nuevas.add(parcelaReservada);
+                        }
+                    }
+                    List<Integer> eliminadas = new ArrayList<>();
+                    for (int id : mParcelaReservadaDao.getIdsByReservaId(reserva.getId())) {
+                        if (!conservadas.contains(id)) {
+                            eliminadas.add(id);
+                        }
+                    }
+                    for (int desde = 0; desde < eliminadas.size(); desde += MAX_PARAMETROS) {
+                        mParcelaReservadaDao.deleteByIds(
+                                eliminadas.subList(desde, Math.min(desde + MAX_PARAMETROS, eliminadas.size())));
+                    }
+                    mParcelaReservadaDao.insertAll(nuevas);
+                    return actualizacion;
+                }), ResultadoActualizacion.error());
+        if (resultado.isActualizada()) {
+            reserva.setVersion(reserva.getVersion() + 1);
+        }
+        return resultado;
+    }
+
+    /**
+     * Actualiza una reserva si su version coincide con la guardada, sin modificar la reserva.
+     *
+     * @param reserva La reserva, con la version leida.
+     * @return El resultado; si se actualiza, lleva la reserva recibida.
+     */
+    private ResultadoActualizacion<Reserva> actualizarSiVersion(Reserva reserva) {
+        if (mReservaDao.updateSiVersion(reserva.getId(), reserva.getVersion(), reserva.getNombreCliente(),
+                reserva.getNumeroMovil(), reserva.getFechaEntrada(), reserva.getFechaSalida(),
+                reserva.getPrecioTotalCentimos()) > 0) {
+            return ResultadoActualizacion.actualizada(reserva);
+        }
+        Reserva actual = mReservaDao.getReservaById(reserva.getId());
+        return actual == null ? ResultadoActualizacion.<Reserva>noEncontrada()
+                : ResultadoActualizacion.conflicto(actual);
     }
 
     /**
@@ -136,14 +308,7 @@ public class ReservaRepository {
      * @return El numero de filas afectadas.
      */
     public int delete(Reserva reserva) {
-        Future<Integer> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mReservaDao.delete(reserva));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException ex) {
-            Log.d("ReservaRepository", ex.getClass().getSimpleName() + ex.getMessage());
-            return -1;
-        }
+        return mMetricas.ejecutarEscritura("ReservaRepository.delete", () -> mReservaDao.delete(reserva), -1);
     }
 
     /**
@@ -153,13 +318,37 @@ public class ReservaRepository {
      * @return La reserva correspondiente, o null si no se encuentra.
      */
     public Reserva getReservaById(int id) {
-        Future<Reserva> future = CampingRoomDatabase.databaseWriteExecutor.submit(() -> mReservaDao.getReservaById(id));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            Log.e("ReservaRepository", "Error al obtener la reserva por ID: " + e.getMessage());
-            return null; // Devuelve null en caso de error.
-        }
+        return mMetricas.ejecutar("ReservaRepository.getReservaById",
+                () -> mReservaDao.getReservaById(id), null);
+    }
+
+    /**
+     * Obtiene una reserva con sus parcelas reservadas y los datos de cada parcela, en una sola transaccion.
+     *
+     * @param id El ID de la reserva.
+     * @return La reserva con sus parcelas, o null si no se encuentra o se produce un error.
+     */
+    public ReservaConParcelas getReservaConParcelas(int id) {
+        return mMetricas.ejecutar("ReservaRepository.getReservaConParcelas",
+                () -> mReservaDao.getReservaConParcelas(id), null);
+    }
+
+    /**
+     * Obtiene varias reservas con sus parcelas reservadas y los datos de cada parcela.
+     * Los IDs se consultan en bloques para no superar el limite de parametros de SQLite.
+     *
+     * @param ids Los IDs de las reservas.
+     * @return Lista de reservas con sus parcelas, vacia en caso de error.
+     */
+    public List<ReservaConParcelas> getReservasConParcelas(List<Integer> ids) {
+        return mMetricas.ejecutar("ReservaRepository.getReservasConParcelas", () -> {
+            List<ReservaConParcelas> resultado = new ArrayList<>(ids.size());
+            for (int desde = 0; desde < ids.size(); desde += MAX_PARAMETROS) {
+                List<Integer> bloque = ids.subList(desde, Math.min(desde + MAX_PARAMETROS, ids.size()));
+                resultado.addAll(mReservaDao.getReservasConParcelas(bloque));
+            }
+            return resultado;
+        }, new ArrayList<>());
     }
 
     /**
@@ -179,13 +368,8 @@ public class ReservaRepository {
      * @return El ID de la parcela reservada recien insertada.
      */
     public long insertParcelaReservada(ParcelaReservada parcelaReservada) {
-        Future<Long> future = CampingRoomDatabase.databaseWriteExecutor.submit(() -> mParcelaReservadaDao.insert(parcelaReservada));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            Log.e("ReservaRepository", "Error al insertar la parcela reservada: " + e.getMessage());
-            return -1; // Retorna -1 en caso de error.
-        }
+        return mMetricas.ejecutarEscritura("ReservaRepository.insertParcelaReservada",
+                () -> mParcelaReservadaDao.insert(parcelaReservada), -1L);
     }
 
     /**
@@ -195,15 +379,8 @@ public class ReservaRepository {
      * @return El numero de filas afectadas por la actualizacion.
      */
     public int updateParcelaReservada(ParcelaReservada parcelaReservada) {
-        Future<Integer> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mParcelaReservadaDao.update(parcelaReservada)
-        );
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            Log.e("ReservaRepository", "Error al actualizar la parcela reservada: " + e.getMessage());
-            return -1; // Retorna -1 en caso de error.
-        }
+        return mMetricas.ejecutarEscritura("ReservaRepository.updateParcelaReservada",
+                () -> mParcelaReservadaDao.update(parcelaReservada), -1);
     }
 
     /**
@@ -213,15 +390,68 @@ public class ReservaRepository {
      * @return El numero de filas afectadas por la eliminacion.
      */
     public int deleteParcelaReservada(ParcelaReservada parcelaReservada) {
-        Future<Integer> future = CampingRoomDatabase.databaseWriteExecutor.submit(
-                () -> mParcelaReservadaDao.delete(parcelaReservada)
-        );
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            Log.e("ReservaRepository", "Error al eliminar la parcela reservada: " + e.getMessage());
-            return -1; // Retorna -1 en caso de error.
-        }
+        return mMetricas.ejecutarEscritura("ReservaRepository.deleteParcelaReservada",
+                () -> mParcelaReservadaDao.delete(parcelaReservada), -1);
+    }
+
+    /**
+     * Calcula el precio total de una reserva a partir de sus parcelas reservadas.
+     * Usa el precio por persona y las noches guardadas en cada linea, por lo que el resultado
+     * no cambia si despues se modifica el precio de alguna parcela.
+     *
+     * @param reservaId El ID de la reserva.
+     * @return El precio total de la reserva en centimos, o -1 en caso de error.
+     */
+    public long getPrecioTotalCentimosByReservaId(int reservaId) {
+        return mMetricas.ejecutar("ReservaRepository.getPrecioTotalCentimosByReservaId",
+                () -> mParcelaReservadaDao.getPrecioTotalCentimosByReservaId(reservaId), -1L);
+    }
+
+    /**
+     * Obtiene los ingresos de las reservas cuya fecha de entrada esta en el intervalo [inicio, fin).
+     * La suma se calcula en SQL sin cargar las reservas.
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Los ingresos en centimos, o -1 en caso de error.
+     */
+    public long getIngresosCentimosEntre(Date inicio, Date fin) {
+        return mMetricas.ejecutar("ReservaRepository.getIngresosCentimosEntre",
+                () -> mReservaDao.getIngresosCentimosEntre(inicio, fin), -1L);
+    }
+
+    /**
+     * Obtiene los ingresos por dia de entrada en el intervalo [inicio, fin).
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Lista de ingresos por dia, vacia en caso de error.
+     */
+    public List<IngresoPeriodo> getIngresosPorDia(Date inicio, Date fin) {
+        return mMetricas.ejecutar("ReservaRepository.getIngresosPorDia",
+                () -> mReservaDao.getIngresosPorDia(inicio, fin), new ArrayList<>());
+    }
+
+    /**
+     * Obtiene los ingresos por mes de entrada en el intervalo [inicio, fin).
+     *
+     * @param inicio Fecha de inicio del intervalo (incluida).
+     * @param fin    Fecha de fin del intervalo (excluida).
+     * @return Lista de ingresos por mes, vacia en caso de error.
+     */
+    public List<IngresoPeriodo> getIngresosPorMes(Date inicio, Date fin) {
+        return mMetricas.ejecutar("ReservaRepository.getIngresosPorMes",
+                () -> mReservaDao.getIngresosPorMes(inicio, fin), new ArrayList<>());
+    }
+
+    /**
+     * Obtiene los ingresos generados por cada parcela, calculados a partir de las parcelas reservadas.
+     *
+     * @return Lista de ingresos por parcela, vacia en caso de error.
+     */
+    public List<IngresoPeriodo> getIngresosPorParcela() {
+        return mMetricas.ejecutar("ReservaRepository.getIngresosPorParcela",
+                mParcelaReservadaDao::getIngresosPorParcela, new ArrayList<>());
     }
 
     /**
@@ -232,13 +462,8 @@ public class ReservaRepository {
      * @return Lista de parcelas disponibles.
      */
     public List<Parcela> getParcelasDisponibles(Date fechaInicio, Date fechaFin) {
-        Future<List<Parcela>> future = CampingRoomDatabase.databaseWriteExecutor.submit(() -> mParcelaDao.getParcelasDisponibles(fechaInicio, fechaFin));
-        try {
-            return future.get(TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            Log.e("ReservaRepository", "Error al obtener parcelas disponibles: " + e.getMessage());
-            return new ArrayList<>();
-        }
+        return mMetricas.ejecutar("ReservaRepository.getParcelasDisponibles",
+                () -> mParcelaDao.getParcelasDisponibles(fechaInicio, fechaFin), new ArrayList<>());
     }
 
 }
\ No newline at end of file
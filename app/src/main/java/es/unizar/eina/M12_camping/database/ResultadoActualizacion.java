@@ -0,0 +1,139 @@
+package es.unizar.eina.M12_camping.database;
+
+/**
+ * Resultado de una actualizacion condicionada a la version de la fila.
+ * Si otra pantalla u otro dispositivo ha modificado la fila despues de leerla, la actualizacion no
+ * se aplica y el resultado lleva la fila tal como esta guardada, para mostrarla o volver a editarla.
+ *
+ * @param <T> El tipo de la fila.
+ */
+public final class ResultadoActualizacion<T> {
+
+    /** Estado de una actualizacion */
+    public enum Estado {
+        /** La fila se ha actualizado */
+        ACTUALIZADA,
+        /** La fila ha cambiado desde que se leyo y no se ha actualizado */
+        CONFLICTO,
+        /** La fila no existe */
+        NO_ENCONTRADA,
+        /** Otra fila tiene el mismo valor en una columna unica y no se ha actualizado */
+        DUPLICADA,
+        /** No se ha podido acceder a la base de datos */
+        ERROR
+    }
+
+    /** Estado de la actualizacion */
+    private final Estado estado;
+
+    /** Fila actualizada, o fila guardada si hay conflicto; null en otro caso */
+    private final T fila;
+
+    /**
+     * Constructor del resultado. Se usan los metodos de creacion de cada estado.
+     *
+     * @param estado El estado de la actualizacion.
+     * @param fila   La fila del resultado, o null.
+     */
+    private ResultadoActualizacion(Estado estado, T fila) {
+        this.estado = estado;
+        this.fila = fila;
+    }
+
+    /**
+     * Crea el resultado de una actualizacion aplicada.
+     *
+     * @param fila La fila actualizada, con la version nueva.
+     * @param <T>  El tipo de la fila.
+     * @return El resultado actualizado.
+     */
+    static <T> ResultadoActualizacion<T> actualizada(T fila) {
+        return new ResultadoActualizacion<>(Estado.ACTUALIZADA, fila);
+    }
+
+    /**
+     * Crea el resultado de una actualizacion rechazada porque la fila ha cambiado.
+     *
+     * @param actual La fila tal como esta guardada.
+     * @param <T>    El tipo de la fila.
+     * @return El resultado en conflicto.
+     */
+    static <T> ResultadoActualizacion<T> conflicto(T actual) {
+        return new ResultadoActualizacion<>(Estado.CONFLICTO, actual);
+    }
+
+    /**
+     * Crea el resultado de una actualizacion de una fila que no existe.
+     *
+     * @param <T> El tipo de la fila.
+     * @return El resultado no encontrado.
+     */
+    static <T> ResultadoActualizacion<T> noEncontrada() {
+        return new ResultadoActualizacion<>(Estado.NO_ENCONTRADA, null);
+    }
+
+    /**
+     * Crea el resultado de una actualizacion rechazada por un indice unico.
+     *
+     * @param <T> El tipo de la fila.
+     * @return El resultado duplicado.
+     */
+    static <T> ResultadoActualizacion<T> duplicada() {
+        return new ResultadoActualizacion<>(Estado.DUPLICADA, null);
+    }
+
+    /**
+     * Crea el resultado de una actualizacion que no se ha podido ejecutar.
+     *
+     * @param <T> El tipo de la fila.
+     * @return El resultado de error.
+     */
+    static <T> ResultadoActualizacion<T> error() {
+        return new ResultadoActualizacion<>(Estado.ERROR, null);
+    }
+
+    /**
+     * Devuelve el estado de la actualizacion.
+     *
+     * @return El estado.
+     */
+    public Estado getEstado() {
+        return estado;
+    }
+
+    /**
+     * Indica si la fila se ha actualizado.
+     *
+     * @return true si se ha actualizado.
+     */
+    public boolean isActualizada() {
+        return estado == Estado.ACTUALIZADA;
+    }
+
+    /**
+     * Indica si la fila ha cambiado desde que se leyo.
+     *
+     * @return true si hay conflicto.
+     */
+    public boolean isConflicto() {
+        return estado == Estado.CONFLICTO;
+    }
+
+    /**
+     * Indica si la fila no se ha actualizado porque repite un valor unico de otra fila.
+     *
+     * @return true si es duplicada.
+     */
+    public boolean isDuplicada() {
+        return estado == Estado.DUPLICADA;
+    }
+
+    /**
+     * Devuelve la fila: la actualizada, con su version nueva, o la guardada si hay conflicto.
+     *
+     * @return La fila, o null en el resto de casos.
+     */
+    public T getFila() {
+        return fila;
+    }
+}
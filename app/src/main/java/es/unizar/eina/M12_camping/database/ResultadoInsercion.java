@@ -0,0 +1,100 @@
+package es.unizar.eina.M12_camping.database;
+
+/**
+ * Resultado de una insercion en una tabla con columnas unicas.
+ * El indice unico comprueba los duplicados dentro de la propia escritura, de modo que no hace
+ * falta consultar antes si el valor ya existe.
+ */
+public final class ResultadoInsercion {
+
+    /** Estado de una insercion */
+    public enum Estado {
+        /** La fila se ha insertado */
+        INSERTADA,
+        /** Ya existe otra fila con el mismo valor en una columna unica y no se ha insertado */
+        DUPLICADA,
+        /** No se ha podido acceder a la base de datos */
+        ERROR
+    }
+
+    /** Estado de la insercion */
+    private final Estado estado;
+
+    /** ID de la fila insertada, o -1 si no se ha insertado */
+    private final long id;
+
+    /**
+     * Constructor del resultado. Se usan los metodos de creacion de cada estado.
+     *
+     * @param estado El estado de la insercion.
+     * @param id     El ID de la fila insertada, o -1.
+     */
+    private ResultadoInsercion(Estado estado, long id) {
+        this.estado = estado;
+        this.id = id;
+    }
+
+    /**
+     * Crea el resultado de una insercion aplicada.
+     *
+     * @param id El ID de la fila insertada.
+     * @return El resultado insertado.
+     */
+    static ResultadoInsercion insertada(long id) {
+        return new ResultadoInsercion(Estado.INSERTADA, id);
+    }
+
+    /**
+     * Crea el resultado de una insercion rechazada por el indice unico.
+     *
+     * @return El resultado duplicado.
+     */
+    static ResultadoInsercion duplicada() {
+        return new ResultadoInsercion(Estado.DUPLICADA, -1);
+    }
+
+    /**
+     * Crea el resultado de una insercion que no se ha podido ejecutar.
+     *
+     * @return El resultado de error.
+     */
+    static ResultadoInsercion error() {
+        return new ResultadoInsercion(Estado.ERROR, -1);
+    }
+
+    /**
+     * Devuelve el estado de la insercion.
+     *
+     * @return El estado.
+     */
+    public Estado getEstado() {
+        return estado;
+    }
+
+    /**
+     * Indica si la fila se ha insertado.
+     *
+     * @return true si se ha insertado.
+     */
+    public boolean isInsertada() {
+        return estado == Estado.INSERTADA;
+    }
+
+    /**
+     * Indica si la fila no se ha insertado porque repite un valor unico.
+     *
+     * @return true si es duplicada.
+     */
+    public boolean isDuplicada() {
+        return estado == Estado.DUPLICADA;
+    }
+
+    /**
+     * Devuelve el ID de la fila insertada.
+     *
+     * @return El ID, o -1 si no se ha insertado.
+     */
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,184 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Resumen de ocupacion e ingresos de una parcela en un mes.
+ * Las filas de esta tabla no se escriben desde la aplicacion: las mantienen los triggers
+ * definidos en {@link CampingRoomDatabase} cada vez que se inserta, modifica o elimina una
+ * parcela reservada, o cambia la fecha de entrada de una reserva. Las noches de cada parcela
+ * reservada se reparten entre los meses en que caen, y sus ocupantes se cuentan en cada uno
+ * de esos meses.
+ */
+@Entity(tableName = "resumenMensual",
+        primaryKeys = {"parcelaId", "mes"},
+        foreignKeys = {
+                @ForeignKey(entity = Parcela.class,
+                        parentColumns = "id",
+                        childColumns = "parcelaId",
+                        onDelete = ForeignKey.CASCADE)
+        },
+        indices = {@Index("mes")})
+public class ResumenMensual {
+
+    /** Milisegundos de un dia */
+    private static final long MILLIS_POR_DIA = 24L * 60 * 60 * 1000;
+
+    /** ID de la parcela */
+    @ColumnInfo(name = "parcelaId")
+    private int parcelaId;
+
+    /** Mes del resumen con formato aaaamm (por ejemplo 202501) */
+    @ColumnInfo(name = "mes")
+    private int mes;
+
+    /** Suma de las noches de las parcelas reservadas en el mes */
+    @ColumnInfo(name = "nochesVendidas")
+    private int nochesVendidas;
+
+    /** Suma de los ocupantes de las parcelas reservadas con alguna noche en el mes */
+    @ColumnInfo(name = "ocupantes")
+    private int ocupantes;
+
+    /** Ingresos de las parcelas reservadas en el mes, en centimos */
+    @ColumnInfo(name = "ingresosCentimos")
+    private long ingresosCentimos;
+
+    /**
+     * Constructor de la clase ResumenMensual.
+     *
+     * @param parcelaId        ID de la parcela.
+     * @param mes              Mes con formato aaaamm.
+     * @param nochesVendidas   Noches vendidas en el mes.
+     * @param ocupantes        Ocupantes en el mes.
+     * @param ingresosCentimos Ingresos del mes en centimos.
+     */
+    public ResumenMensual(int parcelaId, int mes, int nochesVendidas, int ocupantes, long ingresosCentimos) {
+        this.parcelaId = parcelaId;
+        this.mes = mes;
+        this.nochesVendidas = nochesVendidas;
+        this.ocupantes = ocupantes;
+        this.ingresosCentimos = ingresosCentimos;
+    }
+
+    /**
+     * Obtiene el mes con formato aaaamm al que pertenece una fecha guardada como medianoche local.
+     * Como los triggers, redondea la fecha al dia UTC mas proximo, de modo que el resultado no
+     * depende de la zona horaria del dispositivo.
+     *
+     * @param fecha La fecha.
+     * @return El mes con formato aaaamm.
+     */
+    public static int mesDe(Date fecha) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(Math.round(fecha.getTime() / (double) MILLIS_POR_DIA) * MILLIS_POR_DIA);
+        return calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1;
+    }
+
+    /**
+     * Obtiene el ID de la parcela.
+     *
+     * @return El ID de la parcela.
+     */
+    public int getParcelaId() {
+        return parcelaId;
+    }
+
+    /**
+     * Establece el ID de la parcela.
+     *
+     * @param parcelaId El ID de la parcela.
+     */
+    public void setParcelaId(int parcelaId) {
+        this.parcelaId = parcelaId;
+    }
+
+    /**
+     * Obtiene el mes del resumen.
+     *
+     * @return El mes con formato aaaamm.
+     */
+    public int getMes() {
+        return mes;
+    }
+
+    /**
+     * Establece el mes del resumen.
+     *
+     * @param mes El mes con formato aaaamm.
+     */
+    public void setMes(int mes) {
+        this.mes = mes;
+    }
+
+    /**
+     * Obtiene las noches vendidas en el mes.
+     *
+     * @return Las noches vendidas.
+     */
+    public int getNochesVendidas() {
+        return nochesVendidas;
+    }
+
+    /**
+     * Establece las noches vendidas en el mes.
+     *
+     * @param nochesVendidas Las noches vendidas.
+     */
+    public void setNochesVendidas(int nochesVendidas) {
+        this.nochesVendidas = nochesVendidas;
+    }
+
+    /**
+     * Obtiene los ocupantes del mes.
+     *
+     * @return Los ocupantes.
+     */
+    public int getOcupantes() {
+        return ocupantes;
+    }
+
+    /**
+     * Establece los ocupantes del mes.
+     *
+     * @param ocupantes Los ocupantes.
+     */
+    public void setOcupantes(int ocupantes) {
+        this.ocupantes = ocupantes;
+    }
+
+    /**
+     * Obtiene los ingresos del mes en centimos.
+     *
+     * @return Los ingresos en centimos.
+     */
+    public long getIngresosCentimos() {
+        return ingresosCentimos;
+    }
+
+    /**
+     * Establece los ingresos del mes en centimos.
+     *
+     * @param ingresosCentimos Los ingresos en centimos.
+     */
+    public void setIngresosCentimos(long ingresosCentimos) {
+        this.ingresosCentimos = ingresosCentimos;
+    }
+
+    /**
+     * Obtiene los ingresos del mes en euros.
+     *
+     * @return Los ingresos en euros.
+     */
+    public double getIngresos() {
+        return CalculadoraPrecio.aEuros(ingresosCentimos);
+    }
+
+}
@@ -0,0 +1,58 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO de solo lectura para los resumenes mensuales de ocupacion e ingresos.
+ * Las filas las mantienen los triggers de la base de datos, por lo que las consultas
+ * solo recorren un registro por parcela y mes, independientemente del historico de reservas.
+ */
+@Dao
+public interface ResumenMensualDao {
+
+    /**
+     * Obtiene los resumenes de todas las parcelas entre dos meses.
+     *
+     * @param mesInicio Mes inicial con formato aaaamm (incluido).
+     * @param mesFin    Mes final con formato aaaamm (incluido).
+     * @return Un objeto LiveData con los resumenes ordenados por mes y parcela.
+     */
+    @Query("SELECT * FROM resumenMensual WHERE mes BETWEEN :mesInicio AND :mesFin ORDER BY mes, parcelaId")
+    LiveData<List<ResumenMensual>> getResumenesEntre(int mesInicio, int mesFin);
+
+    /**
+     * Obtiene los resumenes de una parcela.
+     *
+     * @param parcelaId El ID de la parcela.
+     * @return Lista de resumenes de la parcela ordenados por mes.
+     */
+    @Query("SELECT * FROM resumenMensual WHERE parcelaId = :parcelaId ORDER BY mes")
+    List<ResumenMensual> getResumenesByParcelaId(int parcelaId);
+
+    /**
+     * Obtiene el resumen de una parcela en un mes.
+     *
+     * @param parcelaId El ID de la parcela.
+     * @param mes       Mes con formato aaaamm.
+     * @return El resumen, o null si la parcela no tiene reservas ese mes.
+     */
+    @Query("SELECT * FROM resumenMensual WHERE parcelaId = :parcelaId AND mes = :mes")
+    ResumenMensual getResumen(int parcelaId, int mes);
+
+    /**
+     * Obtiene los totales de todas las parcelas por mes entre dos meses.
+     *
+     * @param mesInicio Mes inicial con formato aaaamm (incluido).
+     * @param mesFin    Mes final con formato aaaamm (incluido).
+     * @return Lista de totales ordenada por mes.
+     */
+    @Query("SELECT mes, SUM(nochesVendidas) AS nochesVendidas, SUM(ocupantes) AS ocupantes, " +
+            "SUM(ingresosCentimos) AS ingresosCentimos FROM resumenMensual " +
+            "WHERE mes BETWEEN :mesInicio AND :mesFin GROUP BY mes ORDER BY mes")
+    List<TotalMensual> getTotalesMensuales(int mesInicio, int mesFin);
+
+}
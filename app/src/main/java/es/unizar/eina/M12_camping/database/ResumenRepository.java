@@ -0,0 +1,119 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.lifecycle.LiveData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase que gestiona el acceso a los resumenes mensuales de ocupacion e ingresos.
+ * Interactua con la base de datos a traves de {@link ResumenMensualDao}. Solo proporciona
+ * consultas, ya que los resumenes se actualizan automaticamente al escribir reservas.
+ */
+public class ResumenRepository {
+
+    private final ResumenMensualDao mResumenMensualDao;
+
+    /** Ejecuta las operaciones en segundo plano con timeout y registra sus metricas */
+    private final MetricasRepositorio mMetricas = MetricasRepositorio.getInstancia();
+
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
+
+    /**
+     * Constructor de ResumenRepository para el camping principal.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     */
+    public ResumenRepository(Application application) {
+        this(application, RegistroCampings.CAMPING_PRINCIPAL);
+    }
+
+    /**
+     * Constructor de ResumenRepository para un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param campingId   El identificador del camping.
+     */
+    public ResumenRepository(Application application, String campingId) {
+        this(new RetencionCamping(application, campingId));
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     */
+    private ResumenRepository(RetencionCamping retencion) {
+        this(retencion.getDatabase());
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor con la base de datos, por ejemplo una base de datos en memoria.
+     *
+     * @param db La base de datos.
+     */
+    ResumenRepository(CampingRoomDatabase db) {
+        mResumenMensualDao = db.resumenMensualDao();
+    }
+
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
+    /**
+     * Obtiene los resumenes de todas las parcelas entre dos meses.
+     *
+     * @param mesInicio Mes inicial con formato aaaamm (incluido).
+     * @param mesFin    Mes final con formato aaaamm (incluido).
+     * @return Un objeto LiveData con los resumenes ordenados por mes y parcela.
+     */
+    public LiveData<List<ResumenMensual>> getResumenesEntre(int mesInicio, int mesFin) {
+        return mResumenMensualDao.getResumenesEntre(mesInicio, mesFin);
+    }
+
+    /**
+     * Obtiene los resumenes mensuales de una parcela.
+     *
+     * @param parcelaId El ID de la parcela.
+     * @return Lista de resumenes ordenados por mes, vacia en caso de error.
+     */
+    public List<ResumenMensual> getResumenesByParcelaId(int parcelaId) {
+        return mMetricas.ejecutar("ResumenRepository.getResumenesByParcelaId",
+                () -> mResumenMensualDao.getResumenesByParcelaId(parcelaId), new ArrayList<>());
+    }
+
+    /**
+     * Obtiene el resumen de una parcela en un mes.
+     *
+     * @param parcelaId El ID de la parcela.
+     * @param mes       Mes con formato aaaamm.
+     * @return El resumen, o null si no hay reservas ese mes o se produce un error.
+     */
+    public ResumenMensual getResumen(int parcelaId, int mes) {
+        return mMetricas.ejecutar("ResumenRepository.getResumen",
+                () -> mResumenMensualDao.getResumen(parcelaId, mes), null);
+    }
+
+    /**
+     * Obtiene los totales de todas las parcelas por mes entre dos meses.
+     *
+     * @param mesInicio Mes inicial con formato aaaamm (incluido).
+     * @param mesFin    Mes final con formato aaaamm (incluido).
+     * @return Lista de totales ordenada por mes, vacia en caso de error.
+     */
+    public List<TotalMensual> getTotalesMensuales(int mesInicio, int mesFin) {
+        return mMetricas.ejecutar("ResumenRepository.getTotalesMensuales",
+                () -> mResumenMensualDao.getTotalesMensuales(mesInicio, mesFin), new ArrayList<>());
+    }
+
+}
@@ -0,0 +1,48 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.content.Context;
+
+/**
+ * Retencion de la base de datos de un camping en {@link RegistroCampings}. Los repositorios creados
+ * para un camping guardan su base de datos mientras existen; la retienen para que el registro no la
+ * cierre al abrir otros campings, y la liberan al cerrarse.
+ */
+final class RetencionCamping {
+
+    private final RegistroCampings mRegistro;
+    private final String mCampingId;
+    private final CampingRoomDatabase mDb;
+    private boolean mLiberada;
+
+    /**
+     * Obtiene la base de datos de un camping y la retiene.
+     *
+     * @param context   El contexto de la aplicacion.
+     * @param campingId El identificador del camping.
+     * @throws IllegalArgumentException Si el identificador no es valido.
+     */
+    RetencionCamping(Context context, String campingId) {
+        mRegistro = RegistroCampings.getInstancia(context);
+        mCampingId = campingId;
+        mDb = mRegistro.retener(campingId);
+    }
+
+    /**
+     * Obtiene la base de datos retenida.
+     *
+     * @return La base de datos del camping.
+     */
+    CampingRoomDatabase getDatabase() {
+        return mDb;
+    }
+
+    /**
+     * Libera la base de datos. Las llamadas posteriores no tienen efecto.
+     */
+    synchronized void liberar() {
+        if (!mLiberada) {
+            mLiberada = true;
+            mRegistro.liberar(mCampingId);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package es.unizar.eina.M12_camping.database;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Retenciones temporales de parcelas por las reservas que se estan editando y aun no se han guardado.
+ * Mientras el borrador de una reserva tiene una parcela para unas fechas, los demas borradores no la
+ * ven disponible en fechas que se solapen. Las retenciones solo estan en memoria y caducan
+ * {@link #DURACION_MS} ms despues de la ultima vez que su borrador se modifico o renovo, de modo
+ * que una edicion abandonada no deja parcelas bloqueadas ni filas en la base de datos.
+ * Los intervalos se comparan con los extremos incluidos, igual que
+ * {@link ParcelaDao#getParcelasDisponibles(Date, Date)}.
+ */
+public class RetencionesParcelas {
+
+    /** Tiempo que dura una retencion sin renovarla, en milisegundos */
+    public static final long DURACION_MS = 15 * 60 * 1000L;
+
+    private static final Map<String, RetencionesParcelas> INSTANCIAS = new HashMap<>();
+
+    private final LongSupplier mReloj;
+    private final long mDuracionMs;
+    /** Parcelas retenidas por cada borrador */
+    private final Map<String, Map<Integer, Intervalo>> mRetenciones = new HashMap<>();
+    /** Instante en el que caducan las retenciones de cada borrador */
+    private final Map<String, Long> mCaducidades = new HashMap<>();
+
+    /**
+     * Obtiene las retenciones de un camping.
+     *
+     * @param campingId El identificador del camping.
+     * @return La instancia unica de RetencionesParcelas del camping.
+     */
+    public static synchronized RetencionesParcelas getInstancia(String campingId) {
+        RetencionesParcelas retenciones = INSTANCIAS.get(campingId);
+        if (retenciones == null) {
+            retenciones = new RetencionesParcelas(System::currentTimeMillis, DURACION_MS);
+            INSTANCIAS.put(campingId, retenciones);
+        }
+        return retenciones;
+    }
+
+    /**
+     * La aplicacion usa {@link #getInstancia(String)}; las pruebas crean instancias con su reloj.
+     *
+     * @param reloj      El reloj, en milisegundos.
+     * @param duracionMs La duracion de las retenciones, en milisegundos.
+     */
+    RetencionesParcelas(LongSupplier reloj, long duracionMs) {
+        mReloj = reloj;
+        mDuracionMs = duracionMs;
+    }
+
+    /**
+     * Retiene una parcela para un borrador y renueva el resto de sus retenciones. Si el borrador
+     * ya la tenia retenida se sustituyen las fechas.
+     *
+     * @param borrador  El identificador del borrador.
+     * @param parcelaId El ID de la parcela.
+     * @param inicio    La fecha de entrada.
+     * @param fin       La fecha de salida.
+     * @return true si se ha retenido, false si otro borrador la tiene retenida en fechas que se solapan.
+     */
+    public synchronized boolean retener(String borrador, int parcelaId, Date inicio, Date fin) {
+        purgar();
+        Intervalo intervalo = new Intervalo(inicio.getTime(), fin.getTime());
+        for (Map.Entry<String, Map<Integer, Intervalo>> otro : mRetenciones.entrySet()) {
+            Intervalo retenida = otro.getValue().get(parcelaId);
+            if (!otro.getKey().equals(borrador) && retenida != null && retenida.seSolapa(intervalo)) {
+                return false;
+            }
+        }
+        Map<Integer, Intervalo> propias = mRetenciones.get(borrador);
+        if (propias == null) {
+            propias = new HashMap<>();
+            mRetenciones.put(borrador, propias);
+        }
+        propias.put(parcelaId, intervalo);
+        mCaducidades.put(borrador, mReloj.getAsLong() + mDuracionMs);
+        return true;
+    }
+
+    /**
+     * Sustituye las retenciones de un borrador por las de unas parcelas en unas fechas, como al
+     * cambiar las fechas de la reserva. Si otro borrador tiene alguna de las parcelas en fechas que
+     * se solapan no se cambia nada.
+     *
+     * @param borrador   El identificador del borrador.
+     * @param parcelaIds Los IDs de las parcelas.
+     * @param inicio     La fecha de entrada.
+     * @param fin        La fecha de salida.
+     * @return Los IDs de las parcelas que tiene retenidas otro borrador; vacio si se han retenido.
+     */
+    public synchronized Set<Integer> retenerTodas(String borrador, Collection<Integer> parcelaIds, Date inicio, Date fin) {
+        purgar();
+        Intervalo intervalo = new Intervalo(inicio.getTime(), fin.getTime());
+        Set<Integer> retenidas = new HashSet<>();
+        for (Map.Entry<String, Map<Integer, Intervalo>> otro : mRetenciones.entrySet()) {
+            if (otro.getKey().equals(borrador)) {
+                continue;
+            }
+            for (int parcelaId : parcelaIds) {
+                Intervalo retenida = otro.getValue().get(parcelaId);
+                if (retenida != null && retenida.seSolapa(intervalo)) {
+                    retenidas.add(parcelaId);
+                }
+            }
+        }
+        if (!retenidas.isEmpty()) {
+            return retenidas;
+        }
+        if (parcelaIds.isEmpty()) {
+            liberarTodas(borrador);
+            return retenidas;
+        }
+        Map<Integer, Intervalo> propias = new HashMap<>();
+        for (int parcelaId : parcelaIds) {
+            propias.put(parcelaId, intervalo);
+        }
+        mRetenciones.put(borrador, propias);
+        mCaducidades.put(borrador, mReloj.getAsLong() + mDuracionMs);
+        return retenidas;
+    }
+
+    /**
+     * Renueva las retenciones de un borrador, si no han caducado.
+     *
+     * @param borrador El identificador del borrador.
+     */
+    public synchronized void renovar(String borrador) {
+        purgar();
+        if (mRetenciones.containsKey(borrador)) {
+            mCaducidades.put(borrador, mReloj.getAsLong() + mDuracionMs);
+        }
+    }
+
+    /**
+     * Libera la retencion de una parcela por un borrador.
+     *
+     * @param borrador  El identificador del borrador.
+     * @param parcelaId El ID de la parcela.
+     */
+    public synchronized void liberar(String borrador, int parcelaId) {
+        Map<Integer, Intervalo> propias = mRetenciones.get(borrador);
+        if (propias != null && propias.remove(parcelaId) != null && propias.isEmpty()) {
+            mRetenciones.remove(borrador);
+            mCaducidades.remove(borrador);
+        }
+    }
+
+    /**
+     * Libera todas las retenciones de un borrador, al guardarlo o descartarlo.
+     *
+     * @param borrador El identificador del borrador.
+     */
+    public synchronized void liberarTodas(String borrador) {
+        mRetenciones.remove(borrador);
+        mCaducidades.remove(borrador);
+    }
+
+    /**
+     * Obtiene las parcelas retenidas por otros borradores en fechas que se solapan con un intervalo.
+     *
+     * @param inicio   La fecha de entrada.
+     * @param fin      La fecha de salida.
+     * @param excepto  El borrador cuyas retenciones no se tienen en cuenta, o null.
+     * @return Los IDs de las parcelas retenidas.
+     */
+    public synchronized Set<Integer> getRetenidas(Date inicio, Date fin, String excepto) {
+        purgar();
+        Intervalo intervalo = new Intervalo(inicio.getTime(), fin.getTime());
+        Set<Integer> retenidas = new HashSet<>();
+        for (Map.Entry<String, Map<Integer, Intervalo>> borrador : mRetenciones.entrySet()) {
+            if (borrador.getKey().equals(excepto)) {
+                continue;
+            }
+            for (Map.Entry<Integer, Intervalo> retencion : borrador.getValue().entrySet()) {
+                if (retencion.getValue().seSolapa(intervalo)) {
+                    retenidas.add(retencion.getKey());
+                }
+            }
+        }
+        return retenidas;
+    }
+
+    /** Borra las retenciones caducadas; se llama con el cerrojo */
+    private void purgar() {
+        long ahora = mReloj.getAsLong();
+        Iterator<Map.Entry<String, Long>> it = mCaducidades.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> caducidad = it.next();
+            if (caducidad.getValue() <= ahora) {
+                mRetenciones.remove(caducidad.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    /** Intervalo de fechas de una retencion, con los extremos incluidos */
+    private static final class Intervalo {
+        final long mInicio;
+        final long mFin;
+
+        Intervalo(long inicio, long fin) {
+            mInicio = inicio;
+            mFin = fin;
+        }
+
+        boolean seSolapa(Intervalo otro) {
+            return mInicio <= otro.mFin && otro.mInicio <= mFin;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package es.unizar.eina.M12_camping.database;
+
+import java.io.IOException;
+
+/**
+ * Punto de replicacion con el que se sincronizan los dispositivos. Recibe y devuelve conjuntos de
+ * cambios codificados con {@link ProtocoloSync}, de modo que una implementacion remota solo tiene
+ * que transportar los bytes.
+ */
+public interface ServidorSync {
+
+    /**
+     * Aplica los cambios de una peticion y devuelve los cambios de otros dispositivos.
+     *
+     * @param peticion La peticion codificada.
+     * @return La respuesta codificada.
+     * @throws IOException Si falla la comunicacion o la peticion no es valida.
+     */
+    byte[] sincronizar(byte[] peticion) throws IOException;
+}
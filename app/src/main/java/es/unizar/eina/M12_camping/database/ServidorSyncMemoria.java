@@ -0,0 +1,131 @@
+package es.unizar.eina.M12_camping.database;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Servidor de sincronizacion en memoria, en el mismo proceso, para pruebas y para sincronizar
+ * varias bases de datos del mismo dispositivo.
+ * Guarda la ultima version de cada fila (las borradas se conservan como lapidas para que el
+ * borrado llegue a todos los dispositivos) y un numero de secuencia por cambio. Un cambio se
+ * acepta si se basa en la version actual de la fila; si no, hay un conflicto, gana la version del
+ * servidor y se devuelve al dispositivo. Las filas posteriores al cursor de un dispositivo se
+ * obtienen de un indice por secuencia, por lo que el coste de cada peticion depende del numero de
+ * cambios y no del numero de filas.
+ */
+public class ServidorSyncMemoria implements ServidorSync {
+
+    /** Ultima version de una fila */
+    private static final class Registro {
+        final String mTabla;
+        final String mGid;
+        final long mVersion;
+        /** Datos de la fila, o null si se ha borrado */
+        final JsonObject mDatos;
+        final long mSecuencia;
+
+        Registro(String tabla, String gid, long version, JsonObject datos, long secuencia) {
+            mTabla = tabla;
+            mGid = gid;
+            mVersion = version;
+            mDatos = datos;
+            mSecuencia = secuencia;
+        }
+
+        JsonObject fila() {
+            return ProtocoloSync.fila(mTabla, mGid, mVersion, mDatos);
+        }
+    }
+
+    /** Filas por tabla e identificador global */
+    private final Map<String, Registro> mFilas = new HashMap<>();
+    /** Clave de la fila de cada secuencia, solo para la ultima version de cada fila */
+    private final NavigableMap<Long, String> mPorSecuencia = new TreeMap<>();
+    private long mSecuencia;
+
+    @Override
+    public synchronized byte[] sincronizar(byte[] peticion) throws IOException {
+        JsonObject mensaje = ProtocoloSync.decodificar(peticion);
+        long cursor;
+        int maximo;
+        try {
+            cursor = mensaje.get(ProtocoloSync.CURSOR).getAsLong();
+            maximo = mensaje.get(ProtocoloSync.MAXIMO).getAsInt();
+        } catch (RuntimeException e) {
+            throw new IOException("Peticion de sincronizacion no valida", e);
+        }
+        JsonArray aceptados = new JsonArray();
+        JsonArray conflictos = new JsonArray();
+        Set<Long> propias = new HashSet<>();
+        for (JsonElement elemento : mensaje.getAsJsonArray(ProtocoloSync.CAMBIOS)) {
+            JsonObject cambio = elemento.getAsJsonObject();
+            String tabla = cambio.get(ProtocoloSync.TABLA).getAsString();
+            String gid = cambio.get(ProtocoloSync.GID).getAsString();
+            long base = cambio.get(ProtocoloSync.VERSION).getAsLong();
+            JsonObject datos = ProtocoloSync.datos(cambio);
+            String clave = tabla + "/" + gid;
+            Registro actual = mFilas.get(clave);
+            long version;
+            if (actual != null && actual.mDatos == null && datos == null) {
+                // Borrar una fila ya borrada no cambia nada
+                version = actual.mVersion;
+            } else if (actual == null || actual.mVersion == base) {
+                version = base + 1;
+                if (actual != null) {
+                    mPorSecuencia.remove(actual.mSecuencia);
+                }
+                long secuencia = ++mSecuencia;
+                mFilas.put(clave, new Registro(tabla, gid, version, datos, secuencia));
+                mPorSecuencia.put(secuencia, clave);
+                propias.add(secuencia);
+            } else {
+                conflictos.add(actual.fila());
+                continue;
+            }
+            aceptados.add(ProtocoloSync.fila(tabla, gid, version, null));
+        }
+
+        JsonArray cambios = new JsonArray();
+        long nuevoCursor = Math.min(cursor, mSecuencia);
+        Iterator<Map.Entry<Long, String>> it = mPorSecuencia.tailMap(cursor, false).entrySet().iterator();
+        while (it.hasNext() && cambios.size() < maximo) {
+            Map.Entry<Long, String> entrada = it.next();
+            nuevoCursor = entrada.getKey();
+            if (!propias.contains(entrada.getKey())) {
+                cambios.add(mFilas.get(entrada.getValue()).fila());
+            }
+        }
+        JsonObject respuesta = new JsonObject();
+        respuesta.add(ProtocoloSync.ACEPTADOS, aceptados);
+        respuesta.add(ProtocoloSync.CONFLICTOS, conflictos);
+        respuesta.add(ProtocoloSync.CAMBIOS, cambios);
+        respuesta.addProperty(ProtocoloSync.CURSOR, it.hasNext() ? nuevoCursor : mSecuencia);
+        respuesta.addProperty(ProtocoloSync.HAY_MAS, it.hasNext());
+        return ProtocoloSync.codificar(respuesta);
+    }
+
+    /**
+     * Obtiene el numero de filas que tiene el servidor, sin contar las borradas.
+     *
+     * @return El numero de filas.
+     */
+    public synchronized int getNumeroFilas() {
+        int filas = 0;
+        for (Registro registro : mFilas.values()) {
+            if (registro.mDatos != null) {
+                filas++;
+            }
+        }
+        return filas;
+    }
+}
@@ -0,0 +1,654 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sincronizacion bidireccional por deltas de parcelas, reservas y parcelas reservadas con un
+ * {@link ServidorSync}, para compartir los datos entre varios dispositivos.
+ * Los cambios locales se obtienen del diario de cambios ({@link DiarioCambios}) desde la ultima
+ * sincronizacion, de modo que el coste depende del numero de cambios y no del tamano de la base de
+ * datos; solo la primera sincronizacion, o si faltan entradas del diario, recorre todas las filas.
+ * Es el unico consumidor del diario, asi que al terminar purga las entradas que ya ha procesado.
+ * Las filas se identifican entre dispositivos por un identificador global y cada una tiene un
+ * contador de version: el servidor rechaza los cambios basados en una version que ya no es la
+ * actual y devuelve la suya, que sustituye a la local. La huella de cada fila sincronizada evita
+ * reenviar las filas que solo se han escrito al recibir cambios de otros dispositivos.
+ * Los cambios se envian por lotes de {@link #TAMANO_LOTE}, comprimidos con {@link ProtocoloSync}.
+ * Las llamadas son sincronas y no se deben hacer desde el hilo principal.
+ */
+public class SincronizadorDelta {
+
+    /** Numero maximo de filas que se envian o reciben en cada peticion */
+    public static final int TAMANO_LOTE = 500;
+
+    /** Clave del estado con la ultima secuencia del diario de cambios enviada */
+    static final String CURSOR_DIARIO = "cursorDiario";
+    /** Clave del estado con el cursor del dispositivo en el servidor */
+    static final String CURSOR_SERVIDOR = "cursorServidor";
+
+    /** Numero maximo de IDs en una consulta, por debajo del limite de parametros de SQLite */
+    private static final int IDS_POR_CONSULTA = 500;
+
+    /** Tablas que se sincronizan, en el orden en que se insertan (las referenciadas primero) */
+    private static final Exportador.Tabla[] TABLAS = {
+            Exportador.Tabla.PARCELAS, Exportador.Tabla.RESERVAS, Exportador.Tabla.PARCELAS_RESERVADAS};
+
+    /** Columnas de parcelaReservada que referencian a otras tablas, y la tabla referenciada */
+    private static final Map<String, String> REFERENCIAS = new LinkedHashMap<>();
+
+    static {
+        REFERENCIAS.put("reservaId", "reserva");
+        REFERENCIAS.put("parcelaId", "parcela");
+    }
+
+    /**
+     * Cerrojo de las sincronizaciones del proceso: dos a la vez sobre la misma base de datos
+     * enviarian las mismas filas. Es privado para que nadie mas pueda bloquear con el.
+     */
+    private static final Object CERROJO = new Object();
+
+    /** Tablas del archivo de las tablas sincronizadas cuyas filas se archivan */
+    private static final Map<Exportador.Tabla, String> ARCHIVOS = new HashMap<>();
+
+    static {
+        ARCHIVOS.put(Exportador.Tabla.RESERVAS, "reservaArchivada");
+        ARCHIVOS.put(Exportador.Tabla.PARCELAS_RESERVADAS, "parcelaReservadaArchivada");
+    }
+
+    private final CampingRoomDatabase mDb;
+    private final SyncDao mSyncDao;
+    private final CambioDao mCambioDao;
+    private final ServidorSync mServidor;
+
+    /** Retencion de la base de datos del camping; null si se ha creado con la base de datos */
+    private RetencionCamping mRetencion;
+
+    /**
+     * Constructor de SincronizadorDelta para el camping principal.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param servidor    El servidor con el que se sincroniza.
+     */
+    public SincronizadorDelta(Application application, ServidorSync servidor) {
+        this(application, RegistroCampings.CAMPING_PRINCIPAL, servidor);
+    }
+
+    /**
+     * Constructor de SincronizadorDelta para un camping.
+     *
+     * @param application La aplicacion que proporciona el contexto para instanciar la base de datos.
+     * @param campingId   El identificador del camping.
+     * @param servidor    El servidor con el que se sincroniza.
+     */
+    public SincronizadorDelta(Application application, String campingId, ServidorSync servidor) {
+        this(new RetencionCamping(application, campingId), servidor);
+    }
+
+    /**
+     * Constructor con la base de datos retenida de un camping, que se libera con {@link #cerrar()}.
+     *
+     * @param retencion La retencion de la base de datos.
+     * @param servidor  El servidor con el que se sincroniza.
+     */
+    private SincronizadorDelta(RetencionCamping retencion, ServidorSync servidor) {
+        this(retencion.getDatabase(), servidor);
+        mRetencion = retencion;
+    }
+
+    /**
+     * Constructor con la base de datos, por ejemplo una base de datos en memoria.
+     *
+     * @param db       La base de datos.
+     * @param servidor El servidor con el que se sincroniza.
+     */
+    SincronizadorDelta(CampingRoomDatabase db, ServidorSync servidor) {
+        mDb = db;
+        mSyncDao = db.syncDao();
+        mCambioDao = db.cambioDao();
+        mServidor = servidor;
+    }
+
+    /**
+     * Libera la base de datos del camping para que el registro la pueda cerrar. Despues no se
+     * debe usar el objeto. No tiene efecto si se ha creado con la base de datos.
+     */
+    public void cerrar() {
+        if (mRetencion != null) {
+            mRetencion.liberar();
+        }
+    }
+
+    /**
+     * Envia los cambios locales y recibe los de otros dispositivos.
+     * Si falla la comunicacion, los lotes ya enviados quedan registrados y la siguiente llamada
+     * continua; una fila cuyo envio se acepto pero cuya respuesta se perdio vuelve como conflicto
+     * con los mismos datos.
+     *
+     * @return El resultado de la sincronizacion.
+     * @throws IOException Si falla la comunicacion con el servidor.
+     */
+    public Resultado sincronizar() throws IOException {
+        synchronized (CERROJO) {
+            long inicio = System.nanoTime();
+            Resultado resultado = new Resultado();
+            Envio envio = mDb.runInTransaction(this::recogerCambiosLocales);
+            Long guardado = mSyncDao.getEstado(CURSOR_SERVIDOR);
+            long cursor = guardado == null ? 0 : guardado;
+            // Filas recibidas por tabla e identificador global, con la version mas reciente de cada una
+            Map<String, JsonObject> recibidas = new LinkedHashMap<>();
+            int enviadas = 0;
+            boolean hayMas;
+            do {
+                List<Pendiente> lote = envio.mPendientes.subList(enviadas,
+                        Math.min(enviadas + TAMANO_LOTE, envio.mPendientes.size()));
+                JsonObject peticion = new JsonObject();
+                peticion.addProperty(ProtocoloSync.CURSOR, cursor);
+                peticion.addProperty(ProtocoloSync.MAXIMO, TAMANO_LOTE);
+                JsonArray cambios = new JsonArray();
+                for (Pendiente pendiente : lote) {
+                    cambios.add(pendiente.mFila);
+                }
+                peticion.add(ProtocoloSync.CAMBIOS, cambios);
+                byte[] bytes = ProtocoloSync.codificar(peticion);
+                resultado.mBytesEnviados += bytes.length;
+                bytes = mServidor.sincronizar(bytes);
+                resultado.mBytesRecibidos += bytes.length;
+                JsonObject respuesta = ProtocoloSync.decodificar(bytes);
+
+                mDb.runInTransaction(() -> registrarAceptados(lote, respuesta, resultado));
+                enviadas += lote.size();
+                resultado.mEnviadas += lote.size();
+                for (JsonElement fila : respuesta.getAsJsonArray(ProtocoloSync.CONFLICTOS)) {
+                    recibir(recibidas, fila.getAsJsonObject());
+                    resultado.mConflictos++;
+                }
+                for (JsonElement fila : respuesta.getAsJsonArray(ProtocoloSync.CAMBIOS)) {
+                    recibir(recibidas, fila.getAsJsonObject());
+                }
+                cursor = respuesta.get(ProtocoloSync.CURSOR).getAsLong();
+                hayMas = respuesta.get(ProtocoloSync.HAY_MAS).getAsBoolean();
+            } while (enviadas < envio.mPendientes.size() || hayMas);
+
+            long cursorServidor = cursor;
+            mDb.runInTransaction(() -> {
+                aplicarRecibidas(recibidas.values(), resultado);
+                mSyncDao.guardarEstado(new EstadoSync(CURSOR_SERVIDOR, cursorServidor));
+                mSyncDao.guardarEstado(new EstadoSync(CURSOR_DIARIO, envio.mHasta));
+                mCambioDao.purgarHasta(envio.mHasta);
+            });
+            resultado.mDuracionNanos = System.nanoTime() - inicio;
+            Log.d("SincronizadorDelta", resultado.toString());
+            return resultado;
+        }
+    }
+
+    /** Fila local pendiente de enviar */
+    private static final class Pendiente {
+        final String mTabla;
+        final int mFilaId;
+        final long mHuella;
+        final JsonObject mFila;
+
+        Pendiente(String tabla, int filaId, long huella, JsonObject fila) {
+            mTabla = tabla;
+            mFilaId = filaId;
+            mHuella = huella;
+            mFila = fila;
+        }
+    }
+
+    /** Cambios locales que se envian en una sincronizacion */
+    private static final class Envio {
+        /** Filas pendientes, con las de las tablas referenciadas primero */
+        final List<Pendiente> mPendientes = new ArrayList<>();
+        /** Ultima secuencia del diario incluida */
+        long mHasta;
+    }
+
+    /**
+     * Obtiene las filas que han cambiado desde la ultima sincronizacion. Se ejecuta en una
+     * transaccion, de modo que mientras tanto no se anaden entradas al diario y las filas leidas
+     * son las de la ultima secuencia.
+     */
+    private Envio recogerCambiosLocales() {
+        Envio envio = new Envio();
+        envio.mHasta = mCambioDao.getUltimaSecuencia();
+        Long cursor = mSyncDao.getEstado(CURSOR_DIARIO);
+        Map<String, Set<Integer>> candidatas = new HashMap<>();
+        for (Exportador.Tabla tabla : TABLAS) {
+            candidatas.put(tabla.getTablaSql(), new LinkedHashSet<>());
+        }
+        if (cursor != null && DiarioCambios.esContinuo(mCambioDao, cursor)) {
+            List<Cambio> cambios;
+            long desde = cursor;
+            do {
+                cambios = mCambioDao.getCambiosDesde(desde, DiarioCambios.TAMANO_LOTE);
+                for (Cambio cambio : cambios) {
+                    candidatas.get(cambio.getTabla()).add(cambio.getFilaId());
+                    desde = cambio.getSecuencia();
+                }
+            } while (cambios.size() == DiarioCambios.TAMANO_LOTE);
+        } else {
+            // Primera sincronizacion o faltan entradas del diario: se comparan todas las filas
+            Log.d("SincronizadorDelta", "Comparando todas las filas");
+            for (Exportador.Tabla tabla : TABLAS) {
+                Set<Integer> ids = candidatas.get(tabla.getTablaSql());
+                try (Cursor filas = mDb.query("SELECT id FROM " + tabla.getTablaSql(), null)) {
+                    while (filas.moveToNext()) {
+                        ids.add(filas.getInt(0));
+                    }
+                }
+                ids.addAll(mSyncDao.getIdsSincronizados(tabla.getTablaSql()));
+            }
+        }
+        for (Exportador.Tabla tabla : TABLAS) {
+            List<Integer> ids = new ArrayList<>(candidatas.get(tabla.getTablaSql()));
+            for (int i = 0; i < ids.size(); i += IDS_POR_CONSULTA) {
+                recogerFilas(tabla, ids.subList(i, Math.min(i + IDS_POR_CONSULTA, ids.size())), envio);
+            }
+        }
+        // Las filas referenciadas que se han anadido al resolver referencias van delante
+        Collections.sort(envio.mPendientes, (a, b) -> Integer.compare(orden(a.mTabla), orden(b.mTabla)));
+        return envio;
+    }
+
+    /**
+     * Anade al envio las filas que han cambiado de entre unas candidatas.
+     */
+    private void recogerFilas(Exportador.Tabla tabla, List<Integer> ids, Envio envio) {
+        String tablaSql = tabla.getTablaSql();
+        Map<Integer, JsonObject> filas = leerFilas(tabla, ids);
+        Map<Integer, FilaSync> estados = new HashMap<>();
+        for (FilaSync estado : mSyncDao.getFilas(tablaSql, ids)) {
+            estados.put(estado.getFilaId(), estado);
+        }
+        Set<Integer> archivadas = leerArchivadas(tabla, ids, filas.keySet());
+        for (int id : ids) {
+            JsonObject datos = filas.get(id);
+            FilaSync estado = estados.get(id);
+            if (datos == null) {
+                // Borrada: solo se envia si el servidor la conoce. Las archivadas no se envian: en
+                // los demas dispositivos siguen vigentes hasta que las archive su propio horizonte
+                if (estado != null && !archivadas.contains(id)) {
+                    envio.mPendientes.add(new Pendiente(tablaSql, id, 0,
+                            ProtocoloSync.fila(tablaSql, estado.getGid(), estado.getVersion(), null)));
+                }
+                continue;
+            }
+            if (tabla == Exportador.Tabla.PARCELAS_RESERVADAS) {
+                for (Map.Entry<String, String> referencia : REFERENCIAS.entrySet()) {
+                    int referenciada = datos.get(referencia.getKey()).getAsInt();
+                    datos.addProperty(referencia.getKey(), gidLocal(referencia.getValue(), referenciada, envio));
+                }
+            }
+            long huella = huella(datos);
+            if (estado != null && estado.getHuella() == huella) {
+                // Sin cambios desde la ultima sincronizacion, por ejemplo una fila recibida
+                continue;
+            }
+            if (estado == null) {
+                // El identificador se guarda ya, para reutilizarlo si se pierde la respuesta
+                estado = new FilaSync(tablaSql, id, UUID.randomUUID().toString(), 0, 0);
+                mSyncDao.guardar(estado);
+            }
+            envio.mPendientes.add(new Pendiente(tablaSql, id, huella,
+                    ProtocoloSync.fila(tablaSql, estado.getGid(), estado.getVersion(), datos)));
+        }
+    }
+
+    /**
+     * Obtiene el identificador global de una fila referenciada. Si la fila no se ha sincronizado
+     * nunca, se anade al envio.
+     */
+    private String gidLocal(String tablaSql, int filaId, Envio envio) {
+        FilaSync estado = mSyncDao.getFila(tablaSql, filaId);
+        if (estado == null) {
+            recogerFilas(tabla(tablaSql), Collections.singletonList(filaId), envio);
+            estado = mSyncDao.getFila(tablaSql, filaId);
+        }
+        if (estado == null) {
+            throw new IllegalStateException("No existe la fila " + filaId + " de " + tablaSql);
+        }
+        return estado.getGid();
+    }
+
+    /**
+     * Obtiene, de entre unas filas que ya no estan en su tabla, las que se han movido al archivo.
+     *
+     * @param existentes Los IDs de las filas que siguen en la tabla, que no se consultan.
+     * @return Los IDs de las filas archivadas.
+     */
+    private Set<Integer> leerArchivadas(Exportador.Tabla tabla, List<Integer> ids, Set<Integer> existentes) {
+        Set<Integer> archivadas = new HashSet<>();
+        String archivo = ARCHIVOS.get(tabla);
+        List<Integer> borradas = new ArrayList<>();
+        for (int id : ids) {
+            if (!existentes.contains(id)) {
+                borradas.add(id);
+            }
+        }
+        if (archivo == null || borradas.isEmpty()) {
+            return archivadas;
+        }
+        StringBuilder sql = new StringBuilder("SELECT id FROM ").append(archivo).append(" WHERE id IN (");
+        for (int i = 0; i < borradas.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        try (Cursor cursor = mDb.query(sql.toString(), borradas.toArray())) {
+            while (cursor.moveToNext()) {
+                archivadas.add(cursor.getInt(0));
+            }
+        }
+        return archivadas;
+    }
+
+    /**
+     * Lee unas filas con los tipos de sus valores, sin el ID.
+     *
+     * @return Los datos de cada fila que existe, por ID.
+     */
+    private Map<Integer, JsonObject> leerFilas(Exportador.Tabla tabla, List<Integer> ids) {
+        String[] columnas = tabla.getColumnas();
+        StringBuilder sql = new StringBuilder("SELECT ").append(String.join(", ", columnas))
+                .append(" FROM ").append(tabla.getTablaSql()).append(" WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+        Map<Integer, JsonObject> filas = new HashMap<>();
+        try (Cursor cursor = mDb.query(sql.toString(), ids.toArray())) {
+            while (cursor.moveToNext()) {
+                JsonObject datos = new JsonObject();
+                for (int i = 1; i < columnas.length; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            datos.add(columnas[i], null);
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            datos.addProperty(columnas[i], cursor.getLong(i));
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            datos.addProperty(columnas[i], cursor.getDouble(i));
+                            break;
+                        default:
+                            datos.addProperty(columnas[i], cursor.getString(i));
+                    }
+                }
+                filas.put(cursor.getInt(0), datos);
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Registra las versiones de las filas que ha aceptado el servidor.
+     */
+    private void registrarAceptados(List<Pendiente> lote, JsonObject respuesta, Resultado resultado) {
+        Map<String, Pendiente> porGid = new HashMap<>();
+        for (Pendiente pendiente : lote) {
+            porGid.put(pendiente.mTabla + "/" + pendiente.mFila.get(ProtocoloSync.GID).getAsString(), pendiente);
+        }
+        for (JsonElement elemento : respuesta.getAsJsonArray(ProtocoloSync.ACEPTADOS)) {
+            JsonObject aceptado = elemento.getAsJsonObject();
+            String gid = aceptado.get(ProtocoloSync.GID).getAsString();
+            Pendiente pendiente = porGid.get(aceptado.get(ProtocoloSync.TABLA).getAsString() + "/" + gid);
+            if (pendiente == null) {
+                continue;
+            }
+            if (ProtocoloSync.datos(pendiente.mFila) == null) {
+                mSyncDao.borrar(pendiente.mTabla, pendiente.mFilaId);
+            } else {
+                mSyncDao.guardar(new FilaSync(pendiente.mTabla, pendiente.mFilaId, gid,
+                        aceptado.get(ProtocoloSync.VERSION).getAsLong(), pendiente.mHuella));
+            }
+            resultado.mAceptadas++;
+        }
+    }
+
+    /** Guarda una fila recibida si es mas reciente que la que ya se habia recibido */
+    private static void recibir(Map<String, JsonObject> recibidas, JsonObject fila) {
+        String clave = fila.get(ProtocoloSync.TABLA).getAsString() + "/" + fila.get(ProtocoloSync.GID).getAsString();
+        JsonObject anterior = recibidas.get(clave);
+        if (anterior == null
+                || anterior.get(ProtocoloSync.VERSION).getAsLong() < fila.get(ProtocoloSync.VERSION).getAsLong()) {
+            recibidas.put(clave, fila);
+        }
+    }
+
+    /**
+     * Aplica las filas recibidas: primero las altas y modificaciones, de las tablas referenciadas a
+     * las que referencian, y despues los borrados en el orden contrario.
+     */
+    private void aplicarRecibidas(Iterable<JsonObject> recibidas, Resultado resultado) {
+        List<JsonObject> filas = new ArrayList<>();
+        for (JsonObject fila : recibidas) {
+            filas.add(fila);
+        }
+        Collections.sort(filas, (a, b) -> {
+            boolean borradaA = ProtocoloSync.datos(a) == null;
+            boolean borradaB = ProtocoloSync.datos(b) == null;
+            if (borradaA != borradaB) {
+                return borradaA ? 1 : -1;
+            }
+            int orden = Integer.compare(orden(a.get(ProtocoloSync.TABLA).getAsString()),
+                    orden(b.get(ProtocoloSync.TABLA).getAsString()));
+            return borradaA ? -orden : orden;
+        });
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        for (JsonObject fila : filas) {
+            String tablaSql = fila.get(ProtocoloSync.TABLA).getAsString();
+            String gid = fila.get(ProtocoloSync.GID).getAsString();
+            long version = fila.get(ProtocoloSync.VERSION).getAsLong();
+            JsonObject datos = ProtocoloSync.datos(fila);
+            FilaSync estado = mSyncDao.getFilaPorGid(tablaSql, gid);
+            if (estado != null && estado.getVersion() >= version) {
+                // Ya se tenia esta version, por ejemplo porque la envio este dispositivo
+                continue;
+            }
+            try {
+                if (datos == null) {
+                    if (estado != null) {
+                        db.execSQL("DELETE FROM " + tablaSql + " WHERE id = ?", new Object[]{estado.getFilaId()});
+                        mSyncDao.borrar(tablaSql, estado.getFilaId());
+                    }
+                } else {
+                    int filaId = escribir(db, tabla(tablaSql), estado == null ? null : estado.getFilaId(), datos);
+                    mSyncDao.guardar(new FilaSync(tablaSql, filaId, gid, version, huella(datos)));
+                }
+                resultado.mRecibidas++;
+            } catch (RuntimeException e) {
+                Log.e("SincronizadorDelta", "No se puede aplicar la fila " + gid + " de " + tablaSql, e);
+                resultado.mRechazadas++;
+            }
+        }
+    }
+
+    /**
+     * Inserta o modifica una fila con los datos recibidos.
+     *
+     * @param filaId El ID local de la fila, o null para insertarla.
+     * @return El ID local de la fila.
+     * @throws IllegalArgumentException Si referencia a una fila que no existe en este dispositivo.
+     */
+    private int escribir(SupportSQLiteDatabase db, Exportador.Tabla tabla, Integer filaId, JsonObject datos) {
+        String[] columnas = tabla.getColumnas();
+        StringBuilder sql = new StringBuilder();
+        if (filaId == null) {
+            sql.append("INSERT INTO ").append(tabla.getTablaSql()).append(" (");
+            for (int i = 1; i < columnas.length; i++) {
+                sql.append(i == 1 ? "" : ", ").append(columnas[i]);
+            }
+            sql.append(") VALUES (");
+            for (int i = 1; i < columnas.length; i++) {
+                sql.append(i == 1 ? "?" : ", ?");
+            }
+            sql.append(')');
+        } else {
+            sql.append("UPDATE ").append(tabla.getTablaSql()).append(" SET ");
+            for (int i = 1; i < columnas.length; i++) {
+                sql.append(i == 1 ? "" : ", ").append(columnas[i]).append(" = ?");
+            }
+            if (tabla != Exportador.Tabla.PARCELAS_RESERVADAS) {
+                // Las ediciones locales que partian de la fila anterior deben dar conflicto
+                sql.append(", version = version + 1");
+            }
+            sql.append(" WHERE id = ?");
+        }
+        try (SupportSQLiteStatement sentencia = db.compileStatement(sql.toString())) {
+            for (int i = 1; i < columnas.length; i++) {
+                JsonElement valor = datos.get(columnas[i]);
+                String referenciada = tabla == Exportador.Tabla.PARCELAS_RESERVADAS ? REFERENCIAS.get(columnas[i]) : null;
+                if (referenciada != null) {
+                    FilaSync estado = valor == null ? null : mSyncDao.getFilaPorGid(referenciada, valor.getAsString());
+                    if (estado == null) {
+                        throw new IllegalArgumentException("No existe la fila " + valor + " de " + referenciada);
+                    }
+                    sentencia.bindLong(i, estado.getFilaId());
+                } else if (valor == null || valor.isJsonNull()) {
+                    sentencia.bindNull(i);
+                } else {
+                    JsonPrimitive primitivo = valor.getAsJsonPrimitive();
+                    if (!primitivo.isNumber()) {
+                        sentencia.bindString(i, primitivo.getAsString());
+                    } else if (primitivo.getAsString().matches("-?\\d+")) {
+                        sentencia.bindLong(i, primitivo.getAsLong());
+                    } else {
+                        sentencia.bindDouble(i, primitivo.getAsDouble());
+                    }
+                }
+            }
+            if (filaId == null) {
+                return (int) sentencia.executeInsert();
+            }
+            sentencia.bindLong(columnas.length, filaId);
+            sentencia.executeUpdateDelete();
+            return filaId;
+        } catch (IOException e) {
+            // Cerrar una sentencia no hace E/S
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calcula la huella de los datos de una fila: los primeros 64 bits de su SHA-256.
+     *
+     * @param datos Los datos, con las referencias como identificadores globales.
+     * @return La huella.
+     */
+    static long huella(JsonObject datos) {
+        try {
+            byte[] resumen = MessageDigest.getInstance("SHA-256").digest(datos.toString().getBytes(StandardCharsets.UTF_8));
+            long huella = 0;
+            for (int i = 0; i < 8; i++) {
+                huella = huella << 8 | (resumen[i] & 0xff);
+            }
+            return huella;
+        } catch (NoSuchAlgorithmException e) {
+            // Todas las plataformas Java tienen SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Exportador.Tabla tabla(String tablaSql) {
+        return TABLAS[orden(tablaSql)];
+    }
+
+    private static int orden(String tablaSql) {
+        for (int i = 0; i < TABLAS.length; i++) {
+            if (TABLAS[i].getTablaSql().equals(tablaSql)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Tabla no sincronizada: " + tablaSql);
+    }
+
+    /**
+     * Resultado de una sincronizacion.
+     */
+    public static final class Resultado {
+        private int mEnviadas;
+        private int mAceptadas;
+        private int mConflictos;
+        private int mRecibidas;
+        private int mRechazadas;
+        private long mBytesEnviados;
+        private long mBytesRecibidos;
+        private long mDuracionNanos;
+
+        /** @return Las filas locales enviadas. */
+        public int getEnviadas() {
+            return mEnviadas;
+        }
+
+        /** @return Las filas enviadas que ha aceptado el servidor. */
+        public int getAceptadas() {
+            return mAceptadas;
+        }
+
+        /** @return Las filas enviadas rechazadas por conflicto, sustituidas por la version del servidor. */
+        public int getConflictos() {
+            return mConflictos;
+        }
+
+        /** @return Las filas de otros dispositivos aplicadas localmente. */
+        public int getRecibidas() {
+            return mRecibidas;
+        }
+
+        /** @return Las filas recibidas que no se han podido aplicar. */
+        public int getRechazadas() {
+            return mRechazadas;
+        }
+
+        /** @return Los bytes enviados, comprimidos. */
+        public long getBytesEnviados() {
+            return mBytesEnviados;
+        }
+
+        /** @return Los bytes recibidos, comprimidos. */
+        public long getBytesRecibidos() {
+            return mBytesRecibidos;
+        }
+
+        /** @return La duracion de la sincronizacion en milisegundos. */
+        public double getDuracionMs() {
+            return mDuracionNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Enviadas %d filas (aceptadas %d, conflictos %d), recibidas %d, rechazadas %d, " +
+                            "%d bytes enviados, %d recibidos, %.0f ms",
+                    mEnviadas, mAceptadas, mConflictos, mRecibidas, mRechazadas,
+                    mBytesEnviados, mBytesRecibidos, getDuracionMs());
+        }
+    }
+}
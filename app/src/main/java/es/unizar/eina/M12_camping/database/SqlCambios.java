@@ -0,0 +1,82 @@
+package es.unizar.eina.M12_camping.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sentencias SQL que mantienen el diario de cambios (tabla cambio).
+ * Cada insercion, modificacion o borrado de una fila de las tablas registradas anade una entrada
+ * desde un trigger, de modo que el cambio y su entrada se confirman en la misma transaccion.
+ * Como SQLite solo admite un escritor a la vez, las secuencias se confirman en orden y quien lee
+ * las entradas posteriores a una secuencia no se salta ninguna que se confirme despues.
+ * Las filas borradas en cascada (por ejemplo, las parcelas reservadas de una reserva borrada o
+ * archivada) tambien se registran. No depende de Android, igual que {@link SqlResumenMensual}.
+ */
+public final class SqlCambios {
+
+    /** Tablas cuyos cambios se registran */
+    public static final List<String> TABLAS =
+            Collections.unmodifiableList(Arrays.asList("parcela", "reserva", "parcelaReservada"));
+
+    /**
+     * Columnas de reserva cuyas modificaciones se registran. No incluye clienteId, que los triggers
+     * de {@link SqlClientes} calculan a partir del nombre y el telefono justo despues de cada escritura.
+     */
+    private static final String COLUMNAS_RESERVA =
+            "id, nombreCliente, numeroMovil, fechaEntrada, fechaSalida, precioTotalCentimos, version";
+
+    private SqlCambios() {
+    }
+
+    /**
+     * Genera la sentencia que anade una entrada al diario.
+     *
+     * @param tabla     La tabla de la fila.
+     * @param fila      La fila del trigger (NEW u OLD).
+     * @param operacion La operacion.
+     * @return La sentencia SQL, terminada en punto y coma.
+     */
+    private static String registrar(String tabla, String fila, Cambio.Operacion operacion) {
+        return "INSERT INTO cambio (tabla, filaId, operacion) VALUES ('" + tabla + "', " + fila + ".id, '"
+                + operacion.name() + "'); ";
+    }
+
+    /**
+     * Sentencias que crean los triggers del diario. Si una modificacion cambia el ID de una fila,
+     * se registra el borrado del ID anterior y la modificacion del nuevo.
+     *
+     * @return Las sentencias SQL.
+     */
+    public static List<String> crearTriggers() {
+        List<String> sentencias = new ArrayList<>();
+        for (String tabla : TABLAS) {
+            sentencias.add("CREATE TRIGGER IF NOT EXISTS cambio_" + tabla + "_insert AFTER INSERT ON " + tabla +
+                    " BEGIN " + registrar(tabla, "NEW", Cambio.Operacion.INSERT) + "END");
+            String columnas = "reserva".equals(tabla) ? "OF " + COLUMNAS_RESERVA + " " : "";
+            sentencias.add("CREATE TRIGGER IF NOT EXISTS cambio_" + tabla + "_update AFTER UPDATE " + columnas + "ON " + tabla +
+                    " BEGIN INSERT INTO cambio (tabla, filaId, operacion) SELECT '" + tabla + "', OLD.id, '" +
+                    Cambio.Operacion.DELETE.name() + "' WHERE OLD.id != NEW.id; " +
+                    registrar(tabla, "NEW", Cambio.Operacion.UPDATE) + "END");
+            sentencias.add("CREATE TRIGGER IF NOT EXISTS cambio_" + tabla + "_delete AFTER DELETE ON " + tabla +
+                    " BEGIN " + registrar(tabla, "OLD", Cambio.Operacion.DELETE) + "END");
+        }
+        return sentencias;
+    }
+
+    /**
+     * Sentencias que eliminan los triggers del diario.
+     *
+     * @return Las sentencias SQL.
+     */
+    public static List<String> borrarTriggers() {
+        List<String> sentencias = new ArrayList<>();
+        for (String tabla : TABLAS) {
+            for (String operacion : new String[]{"insert", "update", "delete"}) {
+                sentencias.add("DROP TRIGGER IF EXISTS cambio_" + tabla + "_" + operacion);
+            }
+        }
+        return sentencias;
+    }
+}
@@ -0,0 +1,82 @@
+package es.unizar.eina.M12_camping.database;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sentencias SQL que mantienen la tabla cliente y la columna clienteId de las reservas.
+ * Un cliente es un par (numeroMovil, nombre) distinto; las reservas siguen guardando el nombre y
+ * el telefono, y los triggers asignan a cada reserva nueva o modificada el cliente que les
+ * corresponde, creandolo si no existe. Asi cualquier escritura (la interfaz, la importacion o la
+ * sincronizacion) mantiene el historial de cada cliente. Los clientes no se borran aunque se queden
+ * sin reservas vigentes, porque pueden tener reservas archivadas. No depende de Android, igual que
+ * {@link SqlResumenMensual}.
+ */
+public final class SqlClientes {
+
+    private SqlClientes() {
+    }
+
+    /**
+     * Genera las sentencias de trigger que crean el cliente de una reserva si no existe y se lo asignan.
+     * No se usa INSERT OR IGNORE porque la clausula de conflicto de la sentencia que dispara el
+     * trigger (por ejemplo, el INSERT OR ABORT de Room) sustituye a la de las sentencias del trigger.
+     *
+     * @return Las sentencias SQL, terminadas en punto y coma.
+     */
+    private static String asignarCliente() {
+        return "INSERT INTO cliente (nombre, numeroMovil) SELECT NEW.nombreCliente, NEW.numeroMovil " +
+                "WHERE NOT EXISTS (SELECT 1 FROM cliente c " +
+                "WHERE c.numeroMovil = NEW.numeroMovil AND c.nombre = NEW.nombreCliente); " +
+                "UPDATE reserva SET clienteId = (SELECT c.id FROM cliente c " +
+                "WHERE c.numeroMovil = NEW.numeroMovil AND c.nombre = NEW.nombreCliente) WHERE id = NEW.id; ";
+    }
+
+    /**
+     * Sentencias que crean los triggers de los clientes. La actualizacion de clienteId que hacen no
+     * vuelve a disparar el trigger de modificacion, porque no cambia el nombre ni el telefono.
+     *
+     * @return Las sentencias SQL.
+     */
+    public static List<String> crearTriggers() {
+        return Arrays.asList(
+                "CREATE TRIGGER IF NOT EXISTS cliente_reserva_insert AFTER INSERT ON reserva " +
+                        "WHEN NEW.clienteId IS NULL BEGIN " + asignarCliente() + "END",
+                "CREATE TRIGGER IF NOT EXISTS cliente_reserva_update " +
+                        "AFTER UPDATE OF nombreCliente, numeroMovil, clienteId ON reserva " +
+                        "WHEN NEW.clienteId IS NULL OR OLD.nombreCliente != NEW.nombreCliente " +
+                        "OR OLD.numeroMovil != NEW.numeroMovil BEGIN " + asignarCliente() + "END");
+    }
+
+    /**
+     * Sentencias que eliminan los triggers de los clientes.
+     *
+     * @return Las sentencias SQL.
+     */
+    public static List<String> borrarTriggers() {
+        return Arrays.asList(
+                "DROP TRIGGER IF EXISTS cliente_reserva_insert",
+                "DROP TRIGGER IF EXISTS cliente_reserva_update");
+    }
+
+    /**
+     * Sentencias que crean los clientes de todas las reservas, vigentes y archivadas, y se los asignan.
+     * Los clientes repetidos se descartan en una sola pasada por las reservas: cada fila se inserta
+     * con INSERT OR IGNORE y el indice unico de (numeroMovil, nombre) descarta las que ya existen, sin
+     * agrupar ni ordenar las reservas. Despues cada reserva busca su cliente en ese mismo indice.
+     * Las reservas archivadas van primero, de modo que los clientes se numeran por orden de aparicion.
+     *
+     * @return Las sentencias SQL, en el orden en que se deben ejecutar.
+     */
+    public static List<String> reconstruir() {
+        return Arrays.asList(
+                "INSERT OR IGNORE INTO cliente (nombre, numeroMovil) " +
+                        "SELECT nombreCliente, numeroMovil FROM reservaArchivada " +
+                        "UNION ALL SELECT nombreCliente, numeroMovil FROM reserva",
+                "UPDATE reservaArchivada SET clienteId = (SELECT c.id FROM cliente c " +
+                        "WHERE c.numeroMovil = reservaArchivada.numeroMovil " +
+                        "AND c.nombre = reservaArchivada.nombreCliente)",
+                "UPDATE reserva SET clienteId = (SELECT c.id FROM cliente c " +
+                        "WHERE c.numeroMovil = reserva.numeroMovil AND c.nombre = reserva.nombreCliente)");
+    }
+}
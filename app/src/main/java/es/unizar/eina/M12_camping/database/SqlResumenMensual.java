@@ -0,0 +1,243 @@
+package es.unizar.eina.M12_camping.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sentencias SQL que mantienen la tabla resumenMensual.
+ * No depende de Android, de modo que los triggers que instala {@link CampingRoomDatabase}
+ * se pueden instalar tambien sobre otra conexion SQLite (por ejemplo, en los benchmarks).
+ */
+public final class SqlResumenMensual {
+
+    /**
+     * Numero maximo de meses entre los que se reparten las noches de una parcela reservada;
+     * las noches que caen mas alla se cuentan en el ultimo de ellos.
+     */
+    static final int MESES_MAXIMOS = 24;
+
+    /** Consulta con los desplazamientos de mes (columna k) de 0 a MESES_MAXIMOS - 1 */
+    private static final String DESPLAZAMIENTOS;
+
+    static {
+        StringBuilder desplazamientos = new StringBuilder("SELECT 0 AS k");
+        for (int k = 1; k < MESES_MAXIMOS; k++) {
+            desplazamientos.append(" UNION ALL SELECT ").append(k);
+        }
+        DESPLAZAMIENTOS = desplazamientos.toString();
+    }
+
+    /** Inicio de la sentencia que elimina los resumenes que se han quedado a cero */
+    private static final String BORRAR_VACIOS =
+            "DELETE FROM resumenMensual WHERE nochesVendidas = 0 AND ocupantes = 0 AND ingresosCentimos = 0 ";
+
+    private SqlResumenMensual() {
+    }
+
+    /**
+     * Expresion SQL que calcula el dia (dias desde el 1 de enero de 1970) de una fecha en milisegundos.
+     * Las fechas se guardan como la medianoche local, asi que se redondean al dia UTC mas proximo: el
+     * resultado no depende de la zona horaria del dispositivo cuando se ejecuta el trigger, y un cambio
+     * de zona no hace que se reste de un mes distinto al que se sumo.
+     *
+     * @param fecha Expresion SQL con la fecha en milisegundos.
+     * @return La expresion SQL.
+     */
+    private static String dia(String fecha) {
+        return "CAST(ROUND(" + fecha + " / 86400000.0) AS INTEGER)";
+    }
+
+    /**
+     * Expresion SQL que calcula el dia en que empieza el mes situado k meses despues del de l.dia.
+     *
+     * @param k Expresion SQL con el desplazamiento de mes.
+     * @return La expresion SQL.
+     */
+    private static String inicioMes(String k) {
+        return "CAST(julianday(l.dia * 86400, 'unixepoch', 'start of month', '+' || (" + k +
+                ") || ' months') - 2440587.5 AS INTEGER)";
+    }
+
+    /**
+     * Consulta que reparte unas parcelas reservadas entre los meses en que caen sus noches.
+     * Devuelve una fila por parcela y mes con las noches de ese mes, los ocupantes de la parcela
+     * reservada y el importe de esas noches; la parcela reservada se cuenta al menos en el mes de
+     * la fecha de entrada, aunque no tenga noches.
+     *
+     * @param lineas Consulta con las columnas parcelaId, dia (dia de la fecha de entrada), noches,
+     *               ocupantes y precio de cada parcela reservada.
+     * @return La consulta SQL, con las columnas parcelaId, mes, noches, ocupantes e importe.
+     */
+    private static String repartirPorMes(String lineas) {
+        String fin = "CASE WHEN o.k = " + (MESES_MAXIMOS - 1) + " THEN l.dia + l.noches ELSE " +
+                inicioMes("o.k + 1") + " END";
+        return "SELECT parcelaId, mes, noches, ocupantes, precio * ocupantes * noches AS importe FROM (" +
+                "SELECT l.parcelaId AS parcelaId, o.k AS k, " +
+                "CAST(strftime('%Y%m', l.dia * 86400, 'unixepoch', 'start of month', '+' || o.k || ' months') " +
+                "AS INTEGER) AS mes, " +
+                "MIN(l.dia + l.noches, " + fin + ") - MAX(l.dia, " + inicioMes("o.k") + ") AS noches, " +
+                "l.ocupantes AS ocupantes, l.precio AS precio " +
+                "FROM (" + lineas + ") l JOIN (" + DESPLAZAMIENTOS + ") o ON o.k <= (l.noches + 27) / 28 " +
+                "WHERE l.dia IS NOT NULL) WHERE k = 0 OR noches > 0";
+    }
+
+    /**
+     * Genera las sentencias de trigger que suman o restan a los resumenes mensuales lo que aportan
+     * unas parcelas reservadas. Al sumar se crean antes los resumenes que no existen; no se usa
+     * INSERT OR IGNORE porque la clausula de conflicto de la sentencia que dispara el trigger (por
+     * ejemplo, el INSERT OR ABORT de Room) sustituye a la de las sentencias del trigger. Al restar
+     * se eliminan los resumenes que se quedan vacios.
+     *
+     * @param lineas Consulta con las parcelas reservadas, como la que recibe {@link #repartirPorMes(String)}.
+     * @param signo  "+" para sumar las parcelas reservadas, "-" para restarlas.
+     * @return Las sentencias SQL, terminadas en punto y coma.
+     */
+    private static String sumarAResumen(String lineas, String signo) {
+        String aportaciones = "(" + repartirPorMes(lineas) + ")";
+        String afectados = "WHERE parcelaId IN (SELECT parcelaId FROM " + aportaciones + ") " +
+                "AND mes IN (SELECT mes FROM " + aportaciones + ") ";
+        String insert = "+".equals(signo)
+                ? "INSERT INTO resumenMensual (parcelaId, mes, nochesVendidas, ocupantes, ingresosCentimos) " +
+                  "SELECT DISTINCT a.parcelaId, a.mes, 0, 0, 0 FROM " + aportaciones + " a " +
+                  "WHERE NOT EXISTS (SELECT 1 FROM resumenMensual m " +
+                  "WHERE m.parcelaId = a.parcelaId AND m.mes = a.mes); "
+                : "";
+        return insert +
+                "UPDATE resumenMensual SET " +
+                "nochesVendidas = nochesVendidas " + signo + " " + sumaAportaciones(aportaciones, "noches") + ", " +
+                "ocupantes = ocupantes " + signo + " " + sumaAportaciones(aportaciones, "ocupantes") + ", " +
+                "ingresosCentimos = ingresosCentimos " + signo + " " + sumaAportaciones(aportaciones, "importe") +
+                " " + afectados + "; " +
+                ("-".equals(signo) ? BORRAR_VACIOS + "AND " + afectados.substring("WHERE ".length()) + "; " : "");
+    }
+
+    /**
+     * Expresion SQL que suma una columna de las aportaciones a la parcela y mes de la fila de resumenMensual.
+     *
+     * @param aportaciones Consulta de {@link #repartirPorMes(String)}, entre parentesis.
+     * @param columna      Columna que se suma.
+     * @return La expresion SQL.
+     */
+    private static String sumaAportaciones(String aportaciones, String columna) {
+        return "IFNULL((SELECT SUM(a." + columna + ") FROM " + aportaciones + " a " +
+                "WHERE a.parcelaId = resumenMensual.parcelaId AND a.mes = resumenMensual.mes), 0)";
+    }
+
+    /**
+     * Consulta con la parcela reservada de la fila de un trigger sobre parcelaReservada.
+     *
+     * @param fila La fila del trigger (NEW u OLD).
+     * @return La consulta SQL.
+     */
+    private static String parcelaReservada(String fila) {
+        return "SELECT " + fila + ".parcelaId AS parcelaId, " +
+                "(SELECT " + dia("r.fechaEntrada") + " FROM reserva r WHERE r.id = " + fila + ".reservaId) AS dia, " +
+                fila + ".numeroNoches AS noches, " + fila + ".numeroOcupantes AS ocupantes, " +
+                fila + ".precioXpersonaCentimos AS precio";
+    }
+
+    /**
+     * Consulta con las parcelas reservadas de la fila de un trigger sobre reserva, con la fecha de
+     * entrada de esa fila. Se usa para moverlas de mes cuando cambia la fecha.
+     *
+     * @param fila La fila del trigger (NEW u OLD).
+     * @return La consulta SQL.
+     */
+    private static String parcelasDeReserva(String fila) {
+        return "SELECT pr.parcelaId AS parcelaId, " + dia(fila + ".fechaEntrada") + " AS dia, " +
+                "pr.numeroNoches AS noches, pr.numeroOcupantes AS ocupantes, " +
+                "pr.precioXpersonaCentimos AS precio FROM parcelaReservada pr WHERE pr.reservaId = " + fila + ".id";
+    }
+
+    /**
+     * Sentencias que crean los triggers que mantienen la tabla resumenMensual al escribir parcelas
+     * reservadas y reservas. Al borrar una reserva se borran antes sus parcelas reservadas, para que
+     * sus triggers todavia puedan consultar la fecha de entrada (el borrado en cascada las eliminaria despues).
+     * Las parcelas reservadas que se borran porque ya se han copiado a parcelaReservadaArchivada no se
+     * restan, ya que los resumenes incluyen tambien las reservas archivadas. Como las noches se
+     * reparten entre meses, las parcelas reservadas se mueven cuando cambia el dia de entrada,
+     * aunque no cambie el mes.
+     *
+     * @return Las sentencias SQL, en el orden en que se deben ejecutar.
+     */
+    public static List<String> crearTriggers() {
+        return Arrays.asList(
+                "CREATE TRIGGER IF NOT EXISTS resumen_parcelaReservada_insert " +
+                        "AFTER INSERT ON parcelaReservada BEGIN " +
+                        sumarAResumen(parcelaReservada("NEW"), "+") + "END",
+                "CREATE TRIGGER IF NOT EXISTS resumen_parcelaReservada_delete " +
+                        "AFTER DELETE ON parcelaReservada " +
+                        "WHEN NOT EXISTS (SELECT 1 FROM parcelaReservadaArchivada a WHERE a.id = OLD.id) BEGIN " +
+                        sumarAResumen(parcelaReservada("OLD"), "-") + "END",
+                "CREATE TRIGGER IF NOT EXISTS resumen_parcelaReservada_update " +
+                        "AFTER UPDATE OF reservaId, parcelaId, numeroOcupantes, precioXpersonaCentimos, numeroNoches " +
+                        "ON parcelaReservada BEGIN " + sumarAResumen(parcelaReservada("OLD"), "-") +
+                        sumarAResumen(parcelaReservada("NEW"), "+") + "END",
+                "CREATE TRIGGER IF NOT EXISTS resumen_reserva_delete " +
+                        "BEFORE DELETE ON reserva BEGIN " +
+                        "DELETE FROM parcelaReservada WHERE reservaId = OLD.id; END",
+                "CREATE TRIGGER IF NOT EXISTS resumen_reserva_update " +
+                        "AFTER UPDATE OF fechaEntrada ON reserva " +
+                        "WHEN " + dia("OLD.fechaEntrada") + " IS NOT " + dia("NEW.fechaEntrada") + " BEGIN " +
+                        sumarAResumen(parcelasDeReserva("OLD"), "-") +
+                        sumarAResumen(parcelasDeReserva("NEW"), "+") + "END");
+    }
+
+    /**
+     * Nombres de los triggers que mantienen la tabla resumenMensual.
+     *
+     * @return Los nombres, en el orden de {@link #crearTriggers()}.
+     */
+    public static List<String> nombresTriggers() {
+        return Arrays.asList(
+                "resumen_parcelaReservada_insert",
+                "resumen_parcelaReservada_delete",
+                "resumen_parcelaReservada_update",
+                "resumen_reserva_delete",
+                "resumen_reserva_update");
+    }
+
+    /**
+     * Sentencias que eliminan los triggers de la tabla resumenMensual, para cargas masivas
+     * tras las que se recalculan los resumenes con {@link #reconstruir()}.
+     *
+     * @return Las sentencias SQL.
+     */
+    public static List<String> borrarTriggers() {
+        List<String> sentencias = new ArrayList<>();
+        for (String nombre : nombresTriggers()) {
+            sentencias.add("DROP TRIGGER IF EXISTS " + nombre);
+        }
+        return sentencias;
+    }
+
+    /**
+     * Sentencias que recalculan la tabla resumenMensual a partir de todas las parcelas reservadas,
+     * vigentes y archivadas.
+     *
+     * @return Las sentencias SQL, en el orden en que se deben ejecutar.
+     */
+    public static List<String> reconstruir() {
+        return Arrays.asList(
+                "DELETE FROM resumenMensual",
+                "INSERT INTO resumenMensual (parcelaId, mes, nochesVendidas, ocupantes, ingresosCentimos) " +
+                        "SELECT parcelaId, mes, SUM(noches), SUM(ocupantes), SUM(importe) " +
+                        "FROM (" + repartirPorMes(lineasConDia("parcelaReservada", "reserva") + " UNION ALL " +
+                        lineasConDia("parcelaReservadaArchivada", "reservaArchivada")) + ") " +
+                        "GROUP BY parcelaId, mes");
+    }
+
+    /**
+     * Consulta que obtiene las parcelas reservadas de una tabla con el dia de entrada de su reserva.
+     *
+     * @param lineas   Tabla de las parcelas reservadas.
+     * @param reservas Tabla de sus reservas.
+     * @return La consulta SQL, como la que recibe {@link #repartirPorMes(String)}.
+     */
+    private static String lineasConDia(String lineas, String reservas) {
+        return "SELECT pr.parcelaId AS parcelaId, " + dia("r.fechaEntrada") + " AS dia, " +
+                "pr.numeroNoches AS noches, pr.numeroOcupantes AS ocupantes, pr.precioXpersonaCentimos AS precio " +
+                "FROM " + lineas + " pr JOIN " + reservas + " r ON r.id = pr.reservaId";
+    }
+}
@@ -0,0 +1,88 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+/**
+ * DAO del estado de la sincronizacion: las filas sincronizadas y los cursores.
+ */
+@Dao
+public interface SyncDao {
+
+    /**
+     * Obtiene el estado de sincronizacion de unas filas.
+     *
+     * @param tabla La tabla de las filas.
+     * @param ids   Los IDs locales de las filas.
+     * @return El estado de las filas que se han sincronizado alguna vez.
+     */
+    @Query("SELECT * FROM filaSync WHERE tabla = :tabla AND filaId IN (:ids)")
+    List<FilaSync> getFilas(String tabla, List<Integer> ids);
+
+    /**
+     * Obtiene el estado de sincronizacion de una fila.
+     *
+     * @param tabla  La tabla de la fila.
+     * @param filaId El ID local de la fila.
+     * @return El estado, o null si la fila no se ha sincronizado.
+     */
+    @Query("SELECT * FROM filaSync WHERE tabla = :tabla AND filaId = :filaId")
+    FilaSync getFila(String tabla, int filaId);
+
+    /**
+     * Busca una fila por su identificador global.
+     *
+     * @param tabla La tabla de la fila.
+     * @param gid   El identificador global.
+     * @return El estado, o null si la fila no existe en este dispositivo.
+     */
+    @Query("SELECT * FROM filaSync WHERE tabla = :tabla AND gid = :gid")
+    FilaSync getFilaPorGid(String tabla, String gid);
+
+    /**
+     * Obtiene los IDs locales de las filas sincronizadas de una tabla.
+     *
+     * @param tabla La tabla.
+     * @return Lista de IDs.
+     */
+    @Query("SELECT filaId FROM filaSync WHERE tabla = :tabla")
+    List<Integer> getIdsSincronizados(String tabla);
+
+    /**
+     * Guarda el estado de sincronizacion de una fila, sustituyendo el anterior.
+     *
+     * @param fila El estado de la fila.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void guardar(FilaSync fila);
+
+    /**
+     * Borra el estado de sincronizacion de una fila.
+     *
+     * @param tabla  La tabla de la fila.
+     * @param filaId El ID local de la fila.
+     */
+    @Query("DELETE FROM filaSync WHERE tabla = :tabla AND filaId = :filaId")
+    void borrar(String tabla, int filaId);
+
+    /**
+     * Obtiene un valor del estado de la sincronizacion.
+     *
+     * @param clave El nombre del valor.
+     * @return El valor, o null si no se ha guardado.
+     */
+    @Query("SELECT valor FROM estadoSync WHERE clave = :clave")
+    Long getEstado(String clave);
+
+    /**
+     * Guarda un valor del estado de la sincronizacion.
+     *
+     * @param estado El valor.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void guardarEstado(EstadoSync estado);
+}
@@ -0,0 +1,45 @@
+package es.unizar.eina.M12_camping.database;
+
+/**
+ * Totales de ocupacion e ingresos de todas las parcelas en un mes.
+ * No es una entidad: Room lo rellena sumando las filas de {@link ResumenMensual} del mes.
+ */
+public class TotalMensual {
+
+    /** Mes con formato aaaamm */
+    public final int mes;
+
+    /** Noches vendidas en el mes */
+    public final int nochesVendidas;
+
+    /** Ocupantes del mes */
+    public final int ocupantes;
+
+    /** Ingresos del mes en centimos */
+    public final long ingresosCentimos;
+
+    /**
+     * Constructor utilizado por Room.
+     *
+     * @param mes              Mes con formato aaaamm.
+     * @param nochesVendidas   Noches vendidas en el mes.
+     * @param ocupantes        Ocupantes del mes.
+     * @param ingresosCentimos Ingresos del mes en centimos.
+     */
+    public TotalMensual(int mes, int nochesVendidas, int ocupantes, long ingresosCentimos) {
+        this.mes = mes;
+        this.nochesVendidas = nochesVendidas;
+        this.ocupantes = ocupantes;
+        this.ingresosCentimos = ingresosCentimos;
+    }
+
+    /**
+     * Devuelve los ingresos del mes en euros.
+     *
+     * @return Los ingresos en euros.
+     */
+    public double getIngresos() {
+        return CalculadoraPrecio.aEuros(ingresosCentimos);
+    }
+
+}
@@ -1,12 +1,12 @@
 package es.unizar.eina.M12_camping.ui;
 
-import androidx.activity.result.ActivityResultLauncher;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
@@ -17,14 +17,19 @@ import android.widget.Toast;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import es.unizar.eina.M12_camping.R;
+import es.unizar.eina.M12_camping.database.DetectorHiloPrincipal;
+import es.unizar.eina.M12_camping.database.MetricasConsultas;
+import es.unizar.eina.M12_camping.database.MetricasRepositorio;
 import es.unizar.eina.M12_camping.database.Parcela;
 import es.unizar.eina.M12_camping.database.ParcelaRepository;
+import es.unizar.eina.M12_camping.database.PruebaCarga;
 import es.unizar.eina.M12_camping.database.ReservaRepository;
 import es.unizar.eina.M12_camping.utils.UnitTests;
 
-import static androidx.activity.result.contract.ActivityResultContracts.StartActivityForResult;
-
-import java.util.Objects;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
 
 /**
  * Pantalla principal de la aplicacion ListadoParcelas.
@@ -42,6 +47,7 @@ public class ListadoParcelas extends AppCompatActivity {
     static final int ORDER_ID_NOMBRE = Menu.FIRST + 3;
     static final int ORDER_ID_MAXOCUPANTES = Menu.FIRST + 4;
     static final int ORDER_ID_PRECIOXPERSONA = Menu.FIRST + 5;
+    static final int METRICAS_ID = Menu.FIRST + 6;
 
     RecyclerView mRecyclerView;
     ParcelaListAdapter mParcelaListAdapter;
@@ -90,17 +96,22 @@ public class ListadoParcelas extends AppCompatActivity {
         // Configurar el botón de pruebas automáticas
         Button botonEjecutarTestsVolumen = findViewById(R.id.button_run_test_volumen);
         botonEjecutarTestsVolumen.setOnClickListener(view -> {
-            // Inicialización de los repositorios
-            ParcelaRepository parcelaRepository = new ParcelaRepository(getApplication());
-            ReservaRepository reservaRepository = new ReservaRepository(getApplication());
-
-            // Inicialización de UnitTests
-            UnitTests unitTests = UnitTests.getInstance(parcelaRepository, reservaRepository);
-
-            // Ejecución de las pruebas
-            unitTests.testVolumen();
-
-            Toast.makeText(this, "Prueba de volumen completada. Revisa el Logcat.", Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, "Prueba de carga iniciada.", Toast.LENGTH_SHORT).show();
+            // La prueba de carga accede a la base de datos de forma sincrona, fuera del hilo principal
+            new Thread(() -> {
+                PruebaCarga prueba = new PruebaCarga(getApplication(), System.currentTimeMillis());
+                try {
+                    prueba.cargarDatos(100, 10000);
+                    PruebaCarga.Resultado resultado = prueba.ejecutar();
+                    Log.i("PruebaCarga", resultado.toString());
+                    runOnUiThread(() -> Toast.makeText(this, String.format(Locale.ROOT,
+                            "Prueba de carga: %.0f op/s, p95 %.1f ms. Revisa el Logcat.",
+                            resultado.getRendimiento(), resultado.getPercentilMaximoMs(95)),
+                            Toast.LENGTH_LONG).show());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }).start();
         });
         // Configurar el botón de pruebas automáticas
         Button botonEjecutarTestsSobrecarga = findViewById(R.id.button_run_test_sobrecarga);
@@ -132,6 +143,10 @@ public class ListadoParcelas extends AppCompatActivity {
         menu.add(Menu.NONE, ORDER_ID_NOMBRE, Menu.NONE, R.string.ordenar_por_nombre);
         menu.add(Menu.NONE, ORDER_ID_MAXOCUPANTES, Menu.NONE, R.string.ordenar_por_maxocupantes);
         menu.add(Menu.NONE, ORDER_ID_PRECIOXPERSONA, Menu.NONE, R.string.ordenar_por_precioxpersona);
+        // Solo en las compilaciones de depuracion
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            menu.add(Menu.NONE, METRICAS_ID, Menu.NONE, R.string.volcar_metricas);
+        }
         return result;
     }
 
@@ -156,6 +171,9 @@ public class ListadoParcelas extends AppCompatActivity {
             case ORDER_ID_PRECIOXPERSONA:
                 mParcelaViewModel.getParcelasOrderedPrecio().observe(this, parcelas -> mParcelaListAdapter.submitList(parcelas));
                 break;
+            case METRICAS_ID:
+                volcarMetricas();
+                break;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -183,6 +201,34 @@ public class ListadoParcelas extends AppCompatActivity {
         return super.onContextItemSelected(item);
     }
 
+    /**
+     * Escribe las metricas de las consultas a la base de datos en el Logcat y en un fichero
+     * de la carpeta privada de la aplicacion, junto con los accesos desde el hilo principal, y anade
+     * las de los repositorios a un fichero JSON lines.
+     */
+    private void volcarMetricas() {
+        MetricasConsultas metricas = MetricasConsultas.getInstancia();
+        StringWriter informe = new StringWriter();
+        metricas.volcar(informe);
+        Log.i("MetricasConsultas", informe.toString());
+        File consultas = new File(getFilesDir(), "metricas_consultas.txt");
+        File repositorios = new File(getFilesDir(), "metricas_repositorios.jsonl");
+        File hiloPrincipal = new File(getFilesDir(), "bloqueos_hilo_principal.txt");
+        DetectorHiloPrincipal detector = DetectorHiloPrincipal.getInstancia();
+        StringWriter bloqueos = new StringWriter();
+        detector.volcar(bloqueos);
+        Log.i("DetectorHiloPrincipal", bloqueos.toString());
+        try {
+            metricas.volcar(consultas);
+            detector.volcar(hiloPrincipal);
+            MetricasRepositorio.getInstancia().exportar(repositorios);
+            Toast.makeText(this, "Metricas guardadas en " + getFilesDir().getAbsolutePath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Log.e("MetricasConsultas", "No se pudieron escribir las metricas", e);
+            Toast.makeText(this, "Metricas escritas en el Logcat.", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     /**
      * Cambia a la pantalla de listado de reservas.
      */
@@ -192,14 +238,14 @@ public class ListadoParcelas extends AppCompatActivity {
     }
 
     /**
-     * Inicia la actividad para crear una nueva parcela.
+     * Inicia la actividad para crear una nueva parcela, que la guarda antes de cerrarse.
      */
     private void createParcela() {
-        mStartCreateParcela.launch(new Intent(this, ParcelaEdit.class));
+        startActivity(new Intent(this, ParcelaEdit.class));
     }
 
     /**
-     * Inicia la actividad para editar una parcela existente.
+     * Inicia la actividad para editar una parcela existente, que la guarda antes de cerrarse.
      *
      * @param current La parcela que se desea editar.
      */
@@ -210,65 +256,7 @@ public class ListadoParcelas extends AppCompatActivity {
         intent.putExtra(ParcelaEdit.PARCELA_PRECIOXPERSONA, current.getPrecioXpersona());
         intent.putExtra(ParcelaEdit.PARCELA_DESCRIPCION, current.getDescripcion());
         intent.putExtra(ParcelaEdit.PARCELA_ID, current.getId());
-        mStartUpdateParcela.launch(intent);
-    }
-
-    /**
-     * ActivityResultLauncher para la creacion de nuevas parcelas
-     */
-    ActivityResultLauncher<Intent> mStartCreateParcela = newActivityResultLauncher(new ExecuteActivityResultParcelas() {
-        @Override
-        public void process(Bundle extras, Parcela parcela) {
-            mParcelaViewModel.insert(parcela);
-        }
-    });
-
-    /**
-     * ActivityResultLauncher para la actualizacion de parcelas existentes
-     */
-    ActivityResultLauncher<Intent> mStartUpdateParcela = newActivityResultLauncher(new ExecuteActivityResultParcelas() {
-        @Override
-        public void process(Bundle extras, Parcela parcela) {
-            int id = extras.getInt(ParcelaEdit.PARCELA_ID);
-            parcela.setId(id);
-            mParcelaViewModel.update(parcela);
-        }
-    });
-
-    /**
-     * Crea un ActivityResultLauncher para manejar los resultados de las actividades de creacion y edicion de parcelas.
-     *
-     * @param executable La interfaz que define la accion a ejecutar al recibir el resultado.
-     * @return Un ActivityResultLauncher configurado para manejar los resultados de actividades.
-     */
-    ActivityResultLauncher<Intent> newActivityResultLauncher(ExecuteActivityResultParcelas executable) {
-        return registerForActivityResult(
-                new StartActivityForResult(),
-                result -> {
-                    if (result.getResultCode() == RESULT_OK) {
-                        assert result.getData() != null;
-                        Bundle extras = result.getData().getExtras();
-                        assert extras != null;
-                        Parcela parcela = new Parcela(
-                                Objects.requireNonNull(extras.getString(ParcelaEdit.PARCELA_NOMBRE)),
-                                extras.getInt(ParcelaEdit.PARCELA_MAXOCUPANTES),
-                                extras.getDouble(ParcelaEdit.PARCELA_PRECIOXPERSONA),
-                                extras.getString(ParcelaEdit.PARCELA_DESCRIPCION));
-                        executable.process(extras, parcela);
-                    }
-                });
+        intent.putExtra(ParcelaEdit.PARCELA_VERSION, current.getVersion());
+        startActivity(intent);
     }
 }
-
-/**
- * Interfaz funcional para definir el procesamiento de los resultados de actividades.
- */
-interface ExecuteActivityResultParcelas {
-    /**
-     * Metodo que se ejecuta al recibir el resultado de una actividad.
-     *
-     * @param extras  Los datos adicionales de la actividad.
-     * @param parcela La parcela creada o editada.
-     */
-    void process(Bundle extras, Parcela parcela);
-}
\ No newline at end of file
@@ -2,7 +2,6 @@ package es.unizar.eina.M12_camping.ui;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -18,18 +17,23 @@ import androidx.appcompat.app.AlertDialog;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
 import es.unizar.eina.M12_camping.R;
+import es.unizar.eina.M12_camping.database.ArchivoRepository;
+import es.unizar.eina.M12_camping.database.CopiaSeguridad;
+import es.unizar.eina.M12_camping.database.Exportador;
 import es.unizar.eina.M12_camping.database.Parcela;
-import es.unizar.eina.M12_camping.database.ParcelaReservada;
+import es.unizar.eina.M12_camping.database.PlantillaMensaje;
 import es.unizar.eina.M12_camping.database.Reserva;
+import es.unizar.eina.send.CanalEnvio;
+import es.unizar.eina.send.RegistroImplementores;
 import es.unizar.eina.send.SMSImplementor;
 import es.unizar.eina.send.SendAbstraction;
 import es.unizar.eina.send.SendAbstractionImpl;
 import es.unizar.eina.send.WhatsAppImplementor;
 
+import java.io.File;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
-import java.text.SimpleDateFormat;
 
 import static androidx.activity.result.contract.ActivityResultContracts.StartActivityForResult;
 
@@ -51,6 +55,9 @@ public class ListadoReservas extends AppCompatActivity {
     static final int ORDER_ID_NOMBRECLIENTE = Menu.FIRST + 4;
     static final int ORDER_ID_TELEFONO = Menu.FIRST + 5;
     static final int ORDER_ID_FECHAE = Menu.FIRST + 6;
+    static final int ARCHIVE_ID = Menu.FIRST + 7;
+    static final int EXPORT_ID = Menu.FIRST + 8;
+    static final int SNAPSHOT_ID = Menu.FIRST + 9;
 
     RecyclerView mRecyclerView;
     ReservaListAdapter mAdapter;
@@ -90,6 +97,17 @@ public class ListadoReservas extends AppCompatActivity {
         registerForContextMenu(mRecyclerView);
     }
 
+    /**
+     * Metodo que se llama al destruir la actividad.
+     * Retira la actividad del registro de implementors de envio de la aplicacion, que la usa para
+     * abrir las aplicaciones de SMS y WhatsApp, para que no la retenga.
+     */
+    @Override
+    protected void onDestroy() {
+        RegistroImplementores.getInstancia().liberarActividad(this);
+        super.onDestroy();
+    }
+
     /**
      * Crea el menu de opciones de la actividad.
      *
@@ -103,6 +121,9 @@ public class ListadoReservas extends AppCompatActivity {
         menu.add(Menu.NONE, ORDER_ID_NOMBRECLIENTE, Menu.NONE, R.string.ordenar_por_nombreCliente);
         menu.add(Menu.NONE, ORDER_ID_TELEFONO, Menu.NONE, R.string.ordenar_por_telefono);
         menu.add(Menu.NONE, ORDER_ID_FECHAE, Menu.NONE, R.string.ordenar_por_fechaEntrada);
+        menu.add(Menu.NONE, ARCHIVE_ID, Menu.NONE, R.string.archivar_reservas);
+        menu.add(Menu.NONE, EXPORT_ID, Menu.NONE, R.string.exportar_reservas);
+        menu.add(Menu.NONE, SNAPSHOT_ID, Menu.NONE, R.string.copia_seguridad);
         return result;
     }
 
@@ -127,6 +148,15 @@ public class ListadoReservas extends AppCompatActivity {
             case ORDER_ID_FECHAE:
                 mReservaViewModel.getReservasOrderedFechaEntrada().observe(this, reservas -> mAdapter.submitList(reservas));
                 break;
+            case ARCHIVE_ID:
+                archivarReservas();
+                break;
+            case EXPORT_ID:
+                exportarReservas();
+                break;
+            case SNAPSHOT_ID:
+                crearCopiaSeguridad();
+                break;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -157,6 +187,63 @@ public class ListadoReservas extends AppCompatActivity {
         return super.onContextItemSelected(item);
     }
 
+    /**
+     * Mueve al archivo, en segundo plano, las reservas que salieron hace mas de
+     * {@link ArchivoRepository#HORIZONTE_DIAS} dias. La lista se actualiza sola al borrarse de la
+     * tabla de reservas.
+     */
+    private void archivarReservas() {
+        ArchivoRepository archivo = new ArchivoRepository(getApplication());
+        new Thread(() -> {
+            int archivadas = archivo.archivarAnterioresA(ArchivoRepository.HORIZONTE_DIAS);
+            archivo.cerrar();
+            runOnUiThread(() -> Toast.makeText(this, archivadas < 0
+                    ? "Error al archivar las reservas."
+                    : "Reservas archivadas: " + archivadas, Toast.LENGTH_SHORT).show());
+        }).start();
+    }
+
+    /**
+     * Exporta en segundo plano las parcelas y reservas a un fichero JSON en el almacenamiento de la
+     * aplicacion y muestra el resultado al terminar.
+     */
+    private void exportarReservas() {
+        File fichero = new File(getExternalFilesDir(null), "reservas.json");
+        Exportador exportador = new Exportador(getApplication());
+        exportador.exportar(Exportador.Formato.JSON, fichero, (tabla, hechas, total) ->
+                Log.d("ListadoReservas", "Exportando " + tabla.getNombre() + ": " + hechas + "/" + total),
+                (filas, error) -> {
+                    exportador.cerrar();
+                    if (error != null) {
+                        Log.e("ListadoReservas", "Error al exportar", error);
+                    }
+                    String mensaje = error == null
+                            ? "Exportadas " + filas + " filas a " + fichero
+                            : "Error al exportar las reservas.";
+                    runOnUiThread(() -> Toast.makeText(this, mensaje, Toast.LENGTH_LONG).show());
+                });
+    }
+
+    /**
+     * Guarda en segundo plano una instantanea de la base de datos en el almacenamiento de la aplicacion.
+     */
+    private void crearCopiaSeguridad() {
+        File fichero = new File(getExternalFilesDir(null), "copia_seguridad.db");
+        CopiaSeguridad copia = new CopiaSeguridad(getApplication());
+        new Thread(() -> {
+            String mensaje;
+            try {
+                long bytes = copia.crearInstantanea(fichero);
+                mensaje = "Copia de seguridad de " + bytes / 1024 + " KB en " + fichero;
+            } catch (Exception e) {
+                Log.e("ListadoReservas", "Error al hacer la copia de seguridad", e);
+                mensaje = "Error al hacer la copia de seguridad.";
+            }
+            String resultado = mensaje;
+            runOnUiThread(() -> Toast.makeText(this, resultado, Toast.LENGTH_LONG).show());
+        }).start();
+    }
+
     /**
      * Cambia a la pantalla de listado de reservas.
      */
@@ -193,15 +280,13 @@ public class ListadoReservas extends AppCompatActivity {
      * (WhatsApp o SMS). La informacion incluye el nombre del cliente, numero de telefono, fechas de
      * entrada y salida, precio total, y las parcelas reservadas con su numero de ocupantes.
      * <p>
-     * La funcion construye el mensaje dinamicamente obteniendo los datos asociados a la reserva,
-     * y muestra un cuadro de dialogo al usuario para elegir el metodo de envio.
+     * La reserva se carga una sola vez junto con sus parcelas, en segundo plano, y el mensaje se
+     * genera con la plantilla {@link PlantillaMensaje#CONFIRMACION}. Despues se muestra un cuadro
+     * de dialogo al usuario para elegir el metodo de envio.
      * </p>
      *
      * @param reserva La reserva cuya informacion se enviara. Si es {@code null}, se muestra un
      *                mensaje de error y no se realiza ninguna accion.
-     *
-     * @throws IllegalArgumentException si el metodo de envio seleccionado no es valido.
-     * @throws RuntimeException si ocurre un error durante el envio de la informacion.
      */
     private void sendReservaInfo(Reserva reserva) {
         if (reserva == null) {
@@ -209,33 +294,12 @@ public class ListadoReservas extends AppCompatActivity {
             return;
         }
 
-        // Construccion del mensaje
-        StringBuilder messageBuilder = new StringBuilder();
-        messageBuilder.append("Reserva a nombre de: ").append(reserva.getNombreCliente())
-                .append("\nTelefono: ").append(reserva.getNumeroMovil())
-                .append("\nFecha de entrada: ").append(new SimpleDateFormat("dd-MM-yyyy").format(reserva.getFechaEntrada()))
-                .append("\nFecha de salida: ").append(new SimpleDateFormat("dd-MM-yyyy").format(reserva.getFechaSalida()))
-                .append("\nPrecio total: ").append(reserva.getPrecioTotal());
-
-        // Obtener parcelas reservadas de forma reactiva (LiveData)
-        LiveData<List<ParcelaReservada>> parcelasLiveData = mReservaViewModel.getParcelasReservadasByReservaId(reserva.getId());
-        parcelasLiveData.observe(this, parcelasReservadas -> {
-            if (parcelasReservadas != null && !parcelasReservadas.isEmpty()) {
-                messageBuilder.append("\nParcelas reservadas: ");
-                for (ParcelaReservada parcelaReservada : parcelasReservadas) {
-                    // Obtener el nombre de la parcela asociado al ID
-                    String nombreParcela = mReservaViewModel.getNombreParcelaById(parcelaReservada.getParcelaId());
-                    messageBuilder.append("\n - Parcela: ").append(nombreParcela)
-                            .append(", Ocupantes: ").append(parcelaReservada.getNumeroOcupantes());
-                }
-            }
-
-            // Verificar que el mensaje no este vacio
-            String message = messageBuilder.toString();
-            if (message.isEmpty()) {
+        mReservaViewModel.cargarReservaConParcelas(reserva.getId()).observe(this, reservaConParcelas -> {
+            if (reservaConParcelas == null) {
                 Toast.makeText(this, "No hay informacion suficiente para enviar.", Toast.LENGTH_SHORT).show();
                 return;
             }
+            String message = PlantillaMensaje.CONFIRMACION.generar(reservaConParcelas);
 
             // Mostrar el dialogo para seleccionar el metodo de envio
             AlertDialog.Builder builder = new AlertDialog.Builder(this);
@@ -244,23 +308,25 @@ public class ListadoReservas extends AppCompatActivity {
                         SendAbstraction sendAbstraction;
                         switch (which) {
                             case 0: // WhatsApp
-                                sendAbstraction = new SendAbstractionImpl(this, "WHATS");
+                                sendAbstraction = new SendAbstractionImpl(this, CanalEnvio.WHATSAPP);
                                 break;
                             case 1: // SMS
-                                sendAbstraction = new SendAbstractionImpl(this, "SMS");
+                                sendAbstraction = new SendAbstractionImpl(this, CanalEnvio.SMS);
                                 break;
                             default:
                                 Toast.makeText(this, "Opcion invalida", Toast.LENGTH_SHORT).show();
                                 return;
                         }
-                        try {
-                            Log.d("sendReservaInfo", message);
-                            sendAbstraction.send(String.valueOf(reserva.getNumeroMovil()), message);
-                            Toast.makeText(this, "Informacion enviada correctamente.", Toast.LENGTH_SHORT).show();
-                        } catch (Exception e) {
-                            Toast.makeText(this, "Error al enviar la informacion: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                            Log.e("sendReservaInfo", "Error enviando informacion: ", e);
-                        }
+                        Log.d("sendReservaInfo", message);
+                        sendAbstraction.send(reserva.getNumeroMovil(), message)
+                                .thenAccept(resultado -> runOnUiThread(() -> {
+                                    if (resultado.isExito()) {
+                                        Toast.makeText(this, "Informacion enviada correctamente.", Toast.LENGTH_SHORT).show();
+                                    } else {
+                                        Toast.makeText(this, "Error al enviar la informacion: " + resultado.getError(), Toast.LENGTH_SHORT).show();
+                                        Log.e("sendReservaInfo", "Error enviando informacion: " + resultado.getError());
+                                    }
+                                }));
                     });
             builder.show();
         });
@@ -304,7 +370,7 @@ public class ListadoReservas extends AppCompatActivity {
                         assert extras != null;
                         Reserva reserva = new Reserva(
                                 Objects.requireNonNull(extras.getString(ReservaEdit.RESERVA_NOMBRECLIENTE)),
-                                extras.getInt(ReservaEdit.RESERVA_TELEFONO),
+                                Objects.requireNonNull(extras.getString(ReservaEdit.RESERVA_TELEFONO)),
                                 new Date(extras.getLong(ReservaEdit.RESERVA_FECHAENTRADA)),
                                 new Date(extras.getLong(ReservaEdit.RESERVA_FECHASALIDA)),
                                 extras.getDouble(ReservaEdit.RESERVA_PRECIOTOTAL));
@@ -1,21 +1,22 @@
 package es.unizar.eina.M12_camping.ui;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 
-import android.content.Intent;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
-import androidx.lifecycle.ViewModelProvider;
 
 import es.unizar.eina.M12_camping.R;
+import es.unizar.eina.M12_camping.database.Parcela;
 
 /**
  * Pantalla utilizada para la creacion o edicion de una parcela.
  * Esta actividad permite al usuario ingresar o modificar los detalles de una parcela.
- * Una vez completados los cambios, los datos se envian de vuelta a la actividad principal.
+ * Los cambios se guardan antes de cerrar la pantalla, de modo que si el nombre ya lo tiene otra
+ * parcela se avisa y el formulario sigue abierto para corregirlo.
  */
 public class ParcelaEdit extends AppCompatActivity {
 
@@ -25,13 +26,14 @@ public class ParcelaEdit extends AppCompatActivity {
     public static final String PARCELA_PRECIOXPERSONA = "precioXpersona";
     public static final String PARCELA_DESCRIPCION = "descripcion";
     public static final String PARCELA_ID = "id";
+    public static final String PARCELA_VERSION = "version";
 
     private EditText mNombreText;
     private EditText mMaxOcupantes;
     private EditText mPrecioXpersona;
     private EditText mDescripcionText;
     private Integer mRowId;
-    private ParcelaViewModel mParcelaViewModel; // ViewModel para acceder a los datos
+    private ParcelaViewModel mParcelaViewModel;
 
     Button mSaveButton;
 
@@ -50,8 +52,36 @@ public class ParcelaEdit extends AppCompatActivity {
         mMaxOcupantes = findViewById(R.id.maxOcupantes);
         mPrecioXpersona = findViewById(R.id.precioXpersona);
         mDescripcionText = findViewById(R.id.descripcion);
+        mParcelaViewModel = new ViewModelProvider(this).get(ParcelaViewModel.class);
 
-        mParcelaViewModel = new ViewModelProvider(this).get(ParcelaViewModel.class); // Inicializacion del ViewModel
+        // Cada resultado se atiende una sola vez, aunque la actividad se recree
+        mParcelaViewModel.getInsertResult().observe(this, resultado -> {
+            if (resultado == null) {
+                return;
+            }
+            mParcelaViewModel.limpiarInsertResult();
+            if (!resultado.isDuplicada() && !resultado.isInsertada()) {
+                Toast.makeText(this, R.string.parcela_save_error, Toast.LENGTH_SHORT).show();
+                return;
+            }
+            terminarGuardado(resultado.isDuplicada());
+        });
+        mParcelaViewModel.getUpdateResult().observe(this, resultado -> {
+            if (resultado == null) {
+                return;
+            }
+            mParcelaViewModel.limpiarUpdateResult();
+            if (resultado.isConflicto()) {
+                Toast.makeText(this, R.string.parcela_conflict_error, Toast.LENGTH_LONG).show();
+                finish();
+                return;
+            }
+            if (!resultado.isDuplicada() && !resultado.isActualizada()) {
+                Toast.makeText(this, R.string.parcela_save_error, Toast.LENGTH_SHORT).show();
+                return;
+            }
+            terminarGuardado(resultado.isDuplicada());
+        });
 
         mSaveButton = findViewById(R.id.button_save);
         mSaveButton.setOnClickListener(view -> {
@@ -66,20 +96,7 @@ public class ParcelaEdit extends AppCompatActivity {
                 return;
             }
 
-            // Verificar si ya existe una parcela con el mismo nombre (excluyendo la parcela actual si estamos editando)
-            if (mRowId == null) {
-                // Si es una nueva parcela
-                if (mParcelaViewModel.isNombreDuplicado(nombre)) {
-                    Toast.makeText(getApplicationContext(), R.string.duplicate_name_error, Toast.LENGTH_LONG).show();
-                    return;
-                }
-            } else {
-                // Si estamos editando, permitir el nombre si pertenece a la parcela actual
-                if (mParcelaViewModel.isNombreDuplicadoExceptId(nombre, mRowId)) {
-                    Toast.makeText(getApplicationContext(), R.string.duplicate_name_error, Toast.LENGTH_LONG).show();
-                    return;
-                }
-            }
+            // Los nombres repetidos los rechaza el indice unico al guardar
 
             // Validar numero maximo de ocupantes
             if (TextUtils.isEmpty(maxOcupantesStr)) {
@@ -120,24 +137,45 @@ public class ParcelaEdit extends AppCompatActivity {
                 return;
             }
 
-            Intent replyIntent = new Intent();
-            replyIntent.putExtra(PARCELA_NOMBRE, nombre);
-            replyIntent.putExtra(PARCELA_MAXOCUPANTES, Integer.parseInt(mMaxOcupantes.getText().toString()));
-            replyIntent.putExtra(PARCELA_PRECIOXPERSONA, Double.parseDouble(mPrecioXpersona.getText().toString()));
-            replyIntent.putExtra(PARCELA_DESCRIPCION, mDescripcionText.getText().toString());
-
-            if (mRowId != null) {
-                replyIntent.putExtra(PARCELA_ID, mRowId.intValue());
-            }
-
-            setResult(RESULT_OK, replyIntent);
-            Toast.makeText(this, R.string.parcela_saved_successfully, Toast.LENGTH_SHORT).show();
-            finish();
+            guardarParcela(new Parcela(nombre, maxOcupantes, precioXpersona, descripcion));
         });
 
         populateFields();
     }
 
+    /**
+     * Guarda la parcela en segundo plano con el formulario abierto. El resultado lo atienden los
+     * observadores de {@link ParcelaViewModel}: si otra parcela tiene el mismo nombre se avisa y no
+     * se cierra la pantalla; si otro la ha modificado desde que se leyo se avisa y se cierra, para
+     * que se vuelva a editar con los datos actuales.
+     *
+     * @param parcela La parcela con los datos del formulario.
+     */
+    private void guardarParcela(Parcela parcela) {
+        if (mRowId == null) {
+            mParcelaViewModel.insert(parcela);
+        } else {
+            parcela.setId(mRowId);
+            parcela.setVersion(getIntent().getLongExtra(PARCELA_VERSION, 0));
+            mParcelaViewModel.update(parcela);
+        }
+    }
+
+    /**
+     * Termina un guardado sin errores: si el nombre esta repetido se avisa y el formulario sigue
+     * abierto; si no, se cierra la pantalla.
+     *
+     * @param duplicada Si otra parcela tiene el mismo nombre.
+     */
+    private void terminarGuardado(boolean duplicada) {
+        if (duplicada) {
+            Toast.makeText(this, R.string.duplicate_name_error, Toast.LENGTH_LONG).show();
+            return;
+        }
+        Toast.makeText(this, R.string.parcela_saved_successfully, Toast.LENGTH_SHORT).show();
+        finish();
+    }
+
     /**
      * Rellena los campos de texto con los datos de una parcela existente si estan disponibles.
      * Recupera los datos pasados en el Intent y los asigna a los campos correspondientes.
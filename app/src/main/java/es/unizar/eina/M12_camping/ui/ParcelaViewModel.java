@@ -4,11 +4,16 @@ import android.app.Application;
 
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import es.unizar.eina.M12_camping.database.Parcela;
 import es.unizar.eina.M12_camping.database.ParcelaRepository;
+import es.unizar.eina.M12_camping.database.ResultadoActualizacion;
+import es.unizar.eina.M12_camping.database.ResultadoInsercion;
 
 /**
  * ViewModel para gestionar la UI de parcelas y almacenar datos para la actividad ListadoParcelas.
@@ -17,6 +22,10 @@ import es.unizar.eina.M12_camping.database.ParcelaRepository;
 public class ParcelaViewModel extends AndroidViewModel {
 
     private final ParcelaRepository mRepository;
+    private final ExecutorService executorService;
+
+    private final MutableLiveData<ResultadoInsercion> insertResult = new MutableLiveData<>();
+    private final MutableLiveData<ResultadoActualizacion<Parcela>> updateResult = new MutableLiveData<>();
 
     private final LiveData<List<Parcela>> mAllParcelas;
     private final LiveData<List<Parcela>> mParcelasOrdNombre;
@@ -36,6 +45,7 @@ public class ParcelaViewModel extends AndroidViewModel {
         mParcelasOrdNombre = mRepository.getParcelasOrderedNombre();
         mParcelasOrdOcupantes = mRepository.getParcelasOrderedOcupantes();
         mParcelasOrdPrecio = mRepository.getParcelasOrderedPrecio();
+        executorService = Executors.newSingleThreadExecutor();
     }
 
     /**
@@ -76,51 +86,77 @@ public class ParcelaViewModel extends AndroidViewModel {
 
     /**
      * Inserta una nueva parcela en la base de datos.
+     * El resultado se publica en {@link #getInsertResult()}.
      *
      * @param parcela La parcela a insertar.
      */
     public void insert(Parcela parcela) {
-        mRepository.insert(parcela);
+        executorService.execute(() -> insertResult.postValue(mRepository.insert(parcela)));
     }
 
     /**
-     * Actualiza una parcela existente en la base de datos.
+     * Observa el resultado de la ultima operacion de insercion. Es null si no hay ninguno pendiente
+     * de atender.
      *
-     * @param parcela La parcela a actualizar.
+     * @return LiveData con el resultado; duplicada si ya existe una parcela con el mismo nombre.
      */
-    public void update(Parcela parcela) {
-        mRepository.update(parcela);
+    public LiveData<ResultadoInsercion> getInsertResult() {
+        return insertResult;
     }
 
     /**
-     * Elimina una parcela de la base de datos.
+     * Descarta el resultado de la ultima insercion una vez atendido, para que no se vuelva a
+     * entregar al recrearse la actividad. Se llama desde el hilo principal.
+     */
+    public void limpiarInsertResult() {
+        insertResult.setValue(null);
+    }
+
+    /**
+     * Actualiza una parcela existente en la base de datos si nadie la ha modificado desde que se leyo.
+     * El resultado se publica en {@link #getUpdateResult()}.
      *
-     * @param parcela La parcela a eliminar.
+     * @param parcela La parcela a actualizar, con la version leida.
      */
-    public void delete(Parcela parcela) {
-        mRepository.delete(parcela);
+    public void update(Parcela parcela) {
+        executorService.execute(() -> updateResult.postValue(mRepository.updateSiVersion(parcela)));
     }
 
     /**
-     * Verifica si ya existe una parcela con el nombre dado.
+     * Observa el resultado de la ultima operacion de actualizacion. Es null si no hay ninguno
+     * pendiente de atender.
      *
-     * @param nombre El nombre de la parcela a verificar.
-     * @return true si ya existe una parcela con ese nombre, false en caso contrario.
+     * @return LiveData con el resultado; duplicada si otra parcela tiene el mismo nombre.
      */
-    public boolean isNombreDuplicado(String nombre) {
-        return mRepository.isNombreDuplicado(nombre);
+    public LiveData<ResultadoActualizacion<Parcela>> getUpdateResult() {
+        return updateResult;
     }
 
     /**
-     * Verifica si un nombre de parcela ya existe en la base de datos, excluyendo una parcela especifica.
+     * Descarta el resultado de la ultima actualizacion una vez atendido, para que no se vuelva a
+     * entregar al recrearse la actividad. Se llama desde el hilo principal.
+     */
+    public void limpiarUpdateResult() {
+        updateResult.setValue(null);
+    }
+
+    /**
+     * Elimina una parcela de la base de datos.
      *
-     * @param nombre El nombre de la parcela a verificar.
-     * @param id     El ID de la parcela que se esta excluyendo de la verificacion.
-     * @return true si el nombre ya existe (excluyendo la parcela especificada), false en caso contrario.
+     * @param parcela La parcela a eliminar.
+     */
+    public void delete(Parcela parcela) {
+        mRepository.delete(parcela);
+    }
+
+    /**
+     * Libera la base de datos del repositorio al destruirse el ViewModel.
      */
-    public boolean isNombreDuplicadoExceptId(String nombre, int id) {
-        // Consulta en el repositorio excluyendo el ID actual
-        return mRepository.isNombreDuplicadoExceptId(nombre, id);
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        mRepository.cerrar();
+        executorService.shutdown();
     }
 
 }
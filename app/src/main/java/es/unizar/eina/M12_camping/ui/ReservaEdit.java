@@ -23,6 +23,8 @@ import java.util.Date;
 import java.util.List;
 
 import es.unizar.eina.M12_camping.R;
+import es.unizar.eina.M12_camping.database.CalculadoraPrecio;
+import es.unizar.eina.M12_camping.database.NumeroTelefono;
 import es.unizar.eina.M12_camping.database.Parcela;
 import es.unizar.eina.M12_camping.database.ParcelaReservada;
 import es.unizar.eina.M12_camping.database.Reserva;
@@ -50,6 +52,7 @@ public class ReservaEdit extends AppCompatActivity {
     private RecyclerView mRecyclerViewParcelas;
     private ParcelaReservadaAdapter mParcelaReservadaAdapter;
 
+    /** Copia de las parcelas reservadas del borrador, que se guarda en el ViewModel */
     private List<ParcelaReservada> mParcelasReservadasTemp = new ArrayList<>();
     private ReservaViewModel mReservaViewModel;
 
@@ -80,7 +83,7 @@ public class ReservaEdit extends AppCompatActivity {
 
         // Configurar RecyclerView y ViewModel
         mReservaViewModel = new ViewModelProvider(this).get(ReservaViewModel.class);
-        mParcelaReservadaAdapter = new ParcelaReservadaAdapter(mParcelasReservadasTemp,
+        mParcelaReservadaAdapter = new ParcelaReservadaAdapter(new ArrayList<>(),
                 this::onParcelaReservadaEdited,
                 this::onParcelaReservadaDeleted,
                 mReservaViewModel);
@@ -102,66 +105,61 @@ public class ReservaEdit extends AppCompatActivity {
 
         // Rellenar campos si estamos editando
         populateFields();
-    }
 
-    /**
-     * Abre un dialogo para añadir una nueva parcela reservada a la reserva.
-     */
-    private void openAddParcelaDialog() {
-        if (mRowId == null) {
-            // Crear una reserva provisional
-            String nombreCliente = mNombreClienteText.getText().toString();
-            String telefonoStr = mTelefonoText.getText().toString();
-            String fechaEntradaStr = mFechaEntradaText.getText().toString();
-            String fechaSalidaStr = mFechaSalidaText.getText().toString();
-
-            // Validaciones basicas antes de guardar la reserva
-            if (TextUtils.isEmpty(nombreCliente) || nombreCliente.trim().isEmpty()) {
-                Toast.makeText(this, R.string.empty_not_saved_nombre, Toast.LENGTH_SHORT).show();
+        // Configurar observador unico para el resultado de guardar una reserva nueva; cada
+        // resultado se atiende una sola vez, aunque la actividad se recree
+        mReservaViewModel.getInsertResult().observe(this, reservaId -> {
+            if (reservaId == null) {
                 return;
             }
-            if (TextUtils.isEmpty(telefonoStr)) {
-                Toast.makeText(this, R.string.empty_not_saved_telefono, Toast.LENGTH_SHORT).show();
+            mReservaViewModel.limpiarInsertResult();
+            if (reservaId == -1) {
+                Toast.makeText(this, "Error al guardar la reserva", Toast.LENGTH_SHORT).show();
                 return;
             }
-            if (TextUtils.isEmpty(fechaEntradaStr)) {
-                Toast.makeText(this, R.string.empty_not_saved_fechaEntrada, Toast.LENGTH_SHORT).show();
+            Toast.makeText(this, R.string.reserva_saved_successfully, Toast.LENGTH_SHORT).show();
+            finish();
+        });
+
+        // Configurar observador unico para el resultado de guardar una reserva editada
+        mReservaViewModel.getUpdateResult().observe(this, resultado -> {
+            if (resultado == null) {
                 return;
             }
-            if (TextUtils.isEmpty(fechaSalidaStr)) {
-                Toast.makeText(this, R.string.empty_not_saved_fechaSalida, Toast.LENGTH_SHORT).show();
+            mReservaViewModel.limpiarUpdateResult();
+            if (resultado.isConflicto()) {
+                // Se descarta el borrador entero y se muestran los datos guardados para que se vuelvan a editar
+                Toast.makeText(this, R.string.reserva_conflict_error, Toast.LENGTH_LONG).show();
+                cargarReserva();
                 return;
             }
-
-            try {
-                int telefono = Integer.parseInt(telefonoStr);
-                Date fechaEntrada = dateFormat.parse(fechaEntradaStr);
-                Date fechaSalida = dateFormat.parse(fechaSalidaStr);
-
-                if (fechaEntrada == null || fechaSalida == null || fechaSalida.before(fechaEntrada)) {
-                    Toast.makeText(this, R.string.invalid_date_logic, Toast.LENGTH_SHORT).show();
-                    return;
-                }
-
-                double precioTotal = calculatePrecioTotal();
-                Reserva nuevaReserva = new Reserva(nombreCliente, telefono, fechaEntrada, fechaSalida, precioTotal);
-
-                mReservaViewModel.insert(nuevaReserva); // Insertar reserva provisional
-                mReservaViewModel.getInsertResult().observe(this, reservaId -> {
-                    if (reservaId != -1) {
-                        mRowId = reservaId.intValue();
-                        Log.d("Comprobaciones", "Reserva provisional creada con ID: " + mRowId);
-                    } else {
-                        Toast.makeText(this, "Error al crear reserva provisional", Toast.LENGTH_SHORT).show();
-                    }
-                });
-
-            } catch (ParseException | NumberFormatException e) {
-                Toast.makeText(this, R.string.invalid_data, Toast.LENGTH_SHORT).show();
-                return;
+            if (resultado.isActualizada()) {
+                Toast.makeText(this, R.string.reserva_saved_successfully, Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Error al guardar la reserva", Toast.LENGTH_SHORT).show();
             }
+            finish();
+        });
+    }
+
+    /**
+     * Recalcula el precio total cuando se recrea la actividad, una vez restauradas las fechas.
+     *
+     * @param savedInstanceState El estado guardado de la actividad.
+     */
+    @Override
+    protected void onRestoreInstanceState(Bundle savedInstanceState) {
+        super.onRestoreInstanceState(savedInstanceState);
+        if (!mParcelasReservadasTemp.isEmpty()) {
+            updatePrecioTotal();
         }
+    }
 
+    /**
+     * Abre un dialogo para añadir una nueva parcela reservada a la reserva.
+     */
+    private void openAddParcelaDialog() {
+        // La reserva no se guarda hasta pulsar guardar; las parcelas se anaden al borrador
         Log.d("Comprobaciones", "openAddParcelaDialog mRowId actual: " + mRowId);
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle(getString(R.string.add_parcela));
@@ -172,17 +170,19 @@ public class ReservaEdit extends AppCompatActivity {
         EditText numeroOcupantesText = dialogView.findViewById(R.id.numero_ocupantes);
 
         // Obtener fechas de la reserva
+        Date fechaInicio;
+        Date fechaFin;
         try {
-            Date fechaInicio = dateFormat.parse(mFechaEntradaText.getText().toString());
-            Date fechaFin = dateFormat.parse(mFechaSalidaText.getText().toString());
+            fechaInicio = dateFormat.parse(mFechaEntradaText.getText().toString());
+            fechaFin = dateFormat.parse(mFechaSalidaText.getText().toString());
 
             if (fechaInicio == null || fechaFin == null || fechaInicio.after(fechaFin)) {
                 Toast.makeText(this, R.string.invalid_date_logic, Toast.LENGTH_SHORT).show();
                 return;
             }
 
-            // Obtener parcelas disponibles
-            List<Parcela> parcelasDisponibles = mReservaViewModel.getParcelasDisponibles(fechaInicio, fechaFin);
+            // Obtener parcelas disponibles, sin las retenidas por otras reservas en edicion
+            List<Parcela> parcelasDisponibles = mReservaViewModel.getParcelasDisponiblesBorrador(fechaInicio, fechaFin);
             if (parcelasDisponibles.isEmpty()) {
                 Toast.makeText(this, R.string.no_available_parcelas, Toast.LENGTH_SHORT).show();
                 return;
@@ -213,20 +213,17 @@ public class ReservaEdit extends AppCompatActivity {
                 return;
             }
 
-            ParcelaReservada nuevaParcela = new ParcelaReservada(mRowId, selectedParcela.getId(), numeroOcupantes);
-            mReservaViewModel.insertParcelaReservada(nuevaParcela);
-            Log.d("Comprobaciones", "Insertada parcela reservada: " + nuevaParcela);
-
-            mReservaViewModel.getParcelasReservadasByReservaId(mRowId).observe(this, parcelasReservadas -> {
-                if (parcelasReservadas != null) {
-                    mParcelasReservadasTemp.clear();
-                    mParcelasReservadasTemp.addAll(parcelasReservadas);
-                    mParcelaReservadaAdapter.setParcelasReservadas(mParcelasReservadasTemp); // Actualizar la lista en el adaptador
-                    mParcelaReservadaAdapter.notifyDataSetChanged(); // Notificar los cambios al adaptador
-                    updatePrecioTotal(); // Recalcular el precio total basado en las parcelas actuales
-                }
-            });
-
+            // Se guarda el precio actual de la parcela para que el importe de la linea no cambie despues
+            // El ID de la reserva se asigna al guardarla
+            ParcelaReservada nuevaParcela = new ParcelaReservada(mRowId == null ? 0 : mRowId, selectedParcela.getId(),
+                    numeroOcupantes, selectedParcela.getPrecioXpersonaCentimos(), Math.max(calcularNoches(), 0));
+            if (!mReservaViewModel.anadirLineaBorrador(nuevaParcela, fechaInicio, fechaFin)) {
+                Toast.makeText(this, R.string.parcela_retenida_error, Toast.LENGTH_SHORT).show();
+                return;
+            }
+            Log.d("Comprobaciones", "Anadida parcela reservada al borrador: " + nuevaParcela);
+            mostrarParcelasReservadas();
+            updatePrecioTotal(); // Recalcular el precio total basado en las parcelas actuales
         });
 
         builder.setNegativeButton(getString(R.string.cancel), (dialog, which) -> dialog.dismiss());
@@ -268,7 +265,7 @@ public class ReservaEdit extends AppCompatActivity {
 
             // Actualizar el numero de ocupantes
             parcelaReservada.setNumeroOcupantes(numeroOcupantes);
-            mReservaViewModel.updateParcelaReservada(parcelaReservada); // Asegurate de tener este metodo en el ViewModel
+            mReservaViewModel.actualizarLineaBorrador(parcelaReservada);
 
             mParcelaReservadaAdapter.notifyDataSetChanged(); // Reflejar los cambios en el RecyclerView
             updatePrecioTotal(); // Recalcular el precio total
@@ -284,15 +281,11 @@ public class ReservaEdit extends AppCompatActivity {
      * @param parcelaReservada La parcela reservada que se va a eliminar.
      */
     private void onParcelaReservadaDeleted(ParcelaReservada parcelaReservada) {
+        // El adaptador ya la quita de su lista; en la base de datos se borra al guardar la reserva
+        mReservaViewModel.eliminarLineaBorrador(parcelaReservada);
         mParcelasReservadasTemp.remove(parcelaReservada);
-        mParcelaReservadaAdapter.notifyDataSetChanged();
         updatePrecioTotal();
 
-        // Eliminar la parcela reservada de la base de datos si tiene un ID valido
-        if (parcelaReservada.getId() > 0) {
-            mReservaViewModel.deleteParcelaReservada(parcelaReservada);
-        }
-
         Log.d("Comprobaciones", "Parcela eliminada y restaurada al listado: " + parcelaReservada.getParcelaId());
     }
 
@@ -342,84 +335,69 @@ public class ReservaEdit extends AppCompatActivity {
     }
 
     /**
-     * Calcula el precio total basado en las parcelas reservadas.
+     * Calcula el numero de noches entre la fecha de entrada y la de salida introducidas.
+     *
+     * @return El numero de noches, o -1 si alguna de las fechas no es valida.
      */
-    private double calculatePrecioTotal() {
-        double total = 0;
-
+    private int calcularNoches() {
         try {
-            // Parsear las fechas de entrada y salida
             Date fechaEntrada = dateFormat.parse(mFechaEntradaText.getText().toString());
             Date fechaSalida = dateFormat.parse(mFechaSalidaText.getText().toString());
+            if (fechaEntrada == null || fechaSalida == null) {
+                return -1;
+            }
+            long diffInMillis = fechaSalida.getTime() - fechaEntrada.getTime();
+            return (int) Math.round(diffInMillis / (1000.0 * 60 * 60 * 24));
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
 
-            if (fechaEntrada != null && fechaSalida != null) {
-                // Calcular la diferencia en dias
-                long diffInMillis = fechaSalida.getTime() - fechaEntrada.getTime();
-                int dias = (int) (diffInMillis / (1000 * 60 * 60 * 24));
+    /**
+     * Actualiza el numero de noches de las parcelas reservadas si han cambiado las fechas de la reserva
+     * y las retiene en las fechas nuevas. El precio por persona guardado en cada linea no se modifica.
+     * Solo cambia el borrador; las parcelas reservadas se guardan junto con la reserva.
+     *
+     * @param fechaEntrada La fecha de entrada de la reserva.
+     * @param fechaSalida  La fecha de salida de la reserva.
+     * @return true si se han actualizado, false si otra reserva en edicion tiene retenida alguna parcela.
+     */
+    private boolean actualizarFechasParcelasReservadas(Date fechaEntrada, Date fechaSalida) {
+        return mReservaViewModel.setFechasBorrador(fechaEntrada, fechaSalida, calcularNoches());
+    }
 
-                if (dias <= 0) {
-                    Toast.makeText(this, R.string.invalid_date_logic, Toast.LENGTH_SHORT).show();
-                    return 0; // Precio total es 0 si las fechas no son validas
-                }
+    /**
+     * Calcula el precio total basado en las parcelas reservadas.
+     * Utiliza el precio por persona guardado en cada parcela reservada, no el precio actual de la parcela.
+     */
+    private double calculatePrecioTotal() {
+        long totalCentimos = 0;
 
-                // Calcular el precio total en funcion de dias, ocupantes y precio por persona
-                for (ParcelaReservada parcelaReservada : mParcelasReservadasTemp) {
-                    Parcela parcela = mReservaViewModel.getParcelaById(parcelaReservada.getParcelaId());
-                    if (parcela != null) {
-                        total += parcela.getPrecioXpersona() * parcelaReservada.getNumeroOcupantes() * dias;
-                    } else {
-                        Log.e("Error", "No se pudo encontrar la parcela con ID: " + parcelaReservada.getParcelaId());
-                    }
-                }
-            }
-        } catch (ParseException e) {
+        int dias = calcularNoches();
+        if (dias < 0) {
             Toast.makeText(this, R.string.invalid_date_format, Toast.LENGTH_SHORT).show();
             return 0; // Precio total es 0 si hay un problema de formato de fecha
         }
+        if (dias == 0) {
+            Toast.makeText(this, R.string.invalid_date_logic, Toast.LENGTH_SHORT).show();
+            return 0; // Precio total es 0 si las fechas no son validas
+        }
 
-        return total;
+        // Calcular el precio total en funcion de dias, ocupantes y precio por persona
+        for (ParcelaReservada parcelaReservada : mParcelasReservadasTemp) {
+            totalCentimos += CalculadoraPrecio.importeCentimos(parcelaReservada.getPrecioXpersonaCentimos(),
+                    parcelaReservada.getNumeroOcupantes(), dias);
+        }
+
+        return CalculadoraPrecio.aEuros(totalCentimos);
     }
 
     /**
      * Calcula y actualiza el precio total de la reserva.
      */
     private void updatePrecioTotal() {
-        double total = 0;
-
-        try {
-            // Parsear las fechas de entrada y salida
-            Date fechaEntrada = dateFormat.parse(mFechaEntradaText.getText().toString());
-            Date fechaSalida = dateFormat.parse(mFechaSalidaText.getText().toString());
-
-            if (fechaEntrada != null && fechaSalida != null) {
-                // Calcular la diferencia en dias
-                long diffInMillis = fechaSalida.getTime() - fechaEntrada.getTime();
-                int dias = (int) (diffInMillis / (1000 * 60 * 60 * 24));
-
-                if (dias <= 0) {
-                    Toast.makeText(this, R.string.invalid_date_logic, Toast.LENGTH_SHORT).show();
-                    mPrecioTotalText.setText("0");
-                    return; // Precio total es 0 si las fechas no son validas
-                }
-
-                // Calcular el precio total en funcion de dias, ocupantes y precio por persona
-                for (ParcelaReservada parcelaReservada : mParcelasReservadasTemp) {
-                    Parcela parcela = mReservaViewModel.getParcelaById(parcelaReservada.getParcelaId());
-                    if (parcela != null) {
-                        total += parcela.getPrecioXpersona() * parcelaReservada.getNumeroOcupantes() * dias;
-                    } else {
-                        Log.e("Error", "No se pudo encontrar la parcela con ID: " + parcelaReservada.getParcelaId());
-                    }
-                }
-            }
-        } catch (ParseException e) {
-            Toast.makeText(this, R.string.invalid_date_format, Toast.LENGTH_SHORT).show();
-            mPrecioTotalText.setText("0");
-            return; // Precio total es 0 si hay un problema de formato de fecha
-        }
-
-        // Actualizar el TextView con el precio total
-        mPrecioTotalText.setText(String.valueOf(total));
+        // Actualizar el TextView con el precio total (0 si las fechas no son validas)
+        mPrecioTotalText.setText(String.valueOf(calculatePrecioTotal()));
     }
 
     /**
@@ -451,7 +429,7 @@ public class ReservaEdit extends AppCompatActivity {
         }
 
         try {
-            int telefono = Integer.parseInt(telefonoStr);
+            String telefono = NumeroTelefono.normalizar(telefonoStr);
             dateFormat.setLenient(false); // No permitir fechas invalidas
             Date fechaEntrada = dateFormat.parse(fechaEntradaStr);
             Date fechaSalida = dateFormat.parse(fechaSalidaStr);
@@ -472,44 +450,68 @@ public class ReservaEdit extends AppCompatActivity {
                 return;
             }
 
-            if (!telefonoStr.matches("\\d{9,15}")) {
+            if (!NumeroTelefono.esValido(telefono)) {
                 Toast.makeText(this, R.string.invalid_phone_number, Toast.LENGTH_SHORT).show();
                 return;
             }
 
+            if (!actualizarFechasParcelasReservadas(fechaEntrada, fechaSalida)) {
+                Toast.makeText(this, R.string.parcela_retenida_error, Toast.LENGTH_SHORT).show();
+                return;
+            }
             double precioTotal = calculatePrecioTotal();
             Reserva nuevaReserva = new Reserva(nombreCliente, telefono, fechaEntrada, fechaSalida, precioTotal);
 
             if (mRowId != null) {
                 nuevaReserva.setId(mRowId);
-                mReservaViewModel.update(nuevaReserva);
-            } else {
-                mReservaViewModel.insert(nuevaReserva); // Llama al metodo insert que usa LiveData
-                mReservaViewModel.getInsertResult().observe(this, reservaId -> {
-                    if (reservaId == -1) {
-                        Toast.makeText(this, "Error al guardar la reserva", Toast.LENGTH_SHORT).show();
-                        return;
-                    }
-
-                    mRowId = reservaId.intValue();
-
-                    // Inserta las parcelas reservadas asociadas
-                    for (ParcelaReservada parcelaReservada : mParcelasReservadasTemp) {
-                        parcelaReservada.setReservaId(reservaId.intValue());
-                        mReservaViewModel.insertParcelaReservada(parcelaReservada);
-                    }
-                });
             }
-            Toast.makeText(this, R.string.reserva_saved_successfully, Toast.LENGTH_SHORT).show();
-            finish();
+            // Se guardan la reserva y sus parcelas reservadas a la vez; los observadores de onCreate cierran la actividad
+            mReservaViewModel.guardarBorrador(nuevaReserva);
 
-        } catch (NumberFormatException e) {
+        } catch (IllegalArgumentException e) {
             Toast.makeText(this, R.string.invalid_phone_number, Toast.LENGTH_SHORT).show();
         } catch (ParseException e) {
             Toast.makeText(this, R.string.invalid_date_incorrect, Toast.LENGTH_SHORT).show();
         }
     }
 
+    /**
+     * Asigna los valores de una reserva a los campos.
+     *
+     * @param reserva La reserva leida de la base de datos.
+     */
+    private void mostrarReserva(Reserva reserva) {
+        mNombreClienteText.setText(reserva.getNombreCliente());
+        mTelefonoText.setText(reserva.getNumeroMovil());
+        mFechaEntradaText.setText(dateFormat.format(reserva.getFechaEntrada()));
+        mFechaSalidaText.setText(dateFormat.format(reserva.getFechaSalida()));
+        mPrecioTotalText.setText(String.valueOf(reserva.getPrecioTotal()));
+    }
+
+    /**
+     * Muestra las parcelas reservadas del borrador.
+     */
+    private void mostrarParcelasReservadas() {
+        mParcelasReservadasTemp.clear();
+        mParcelasReservadasTemp.addAll(mReservaViewModel.getLineasBorrador());
+        mParcelaReservadaAdapter.setParcelasReservadas(mParcelasReservadasTemp); // Actualizar la lista en el adaptador
+    }
+
+    /**
+     * Avisa de las parcelas que se han quitado del borrador al restaurarlo porque otra reserva en
+     * edicion las ha retenido.
+     */
+    private void avisarLineasNoRetenidas() {
+        List<String> nombres = new ArrayList<>();
+        for (ParcelaReservada parcelaReservada : mReservaViewModel.tomarLineasNoRetenidas()) {
+            nombres.add(mReservaViewModel.getNombreParcelaById(parcelaReservada.getParcelaId()));
+        }
+        if (!nombres.isEmpty()) {
+            Toast.makeText(this, getString(R.string.parcelas_no_retenidas, TextUtils.join(", ", nombres)),
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+
     /**
      * Rellena los campos de la reserva si se estan editando.
      */
@@ -519,35 +521,35 @@ public class ReservaEdit extends AppCompatActivity {
 
         if (mRowId == -1) {
             mRowId = null;
+        }
+        if (mRowId == null || mReservaViewModel.isBorradorCargado()) {
+            // Reserva nueva, o actividad recreada: el borrador ya tiene las parcelas reservadas y los
+            // campos se restauran en onRestoreInstanceState
+            mostrarParcelasReservadas();
+            avisarLineasNoRetenidas();
             return;
-        } else {
-            // Recuperar la reserva del ViewModel
-            Log.d("Comprobaciones", "populateFields: mRowId = " + mRowId);
-            Reserva reserva = mReservaViewModel.getReservaById(mRowId);
-            if (reserva == null) {
+        }
+
+        // Recuperar la reserva una sola vez; los cambios posteriores se hacen en el borrador
+        Log.d("Comprobaciones", "populateFields: mRowId = " + mRowId);
+        cargarReserva();
+    }
+
+    /**
+     * Lee la reserva editada con sus parcelas reservadas y su version, y sustituye con ellas el
+     * borrador y los campos.
+     */
+    private void cargarReserva() {
+        mReservaViewModel.cargarReservaConParcelas(mRowId).observe(this, reservaConParcelas -> {
+            if (reservaConParcelas == null) {
                 Toast.makeText(this, "Reserva no encontrada", Toast.LENGTH_SHORT).show();
                 return;
             }
-
-            // Asignar los valores a los campos
-            mNombreClienteText.setText(reserva.getNombreCliente());
-            mTelefonoText.setText(String.valueOf(reserva.getNumeroMovil()));
-            mFechaEntradaText.setText(dateFormat.format(reserva.getFechaEntrada()));
-            mFechaSalidaText.setText(dateFormat.format(reserva.getFechaSalida()));
-            mPrecioTotalText.setText(String.valueOf(reserva.getPrecioTotal()));
-
-
-            mReservaViewModel.getParcelasReservadasByReservaId(mRowId).observe(this, parcelasReservadas -> {
-                if (parcelasReservadas != null) {
-                    mParcelasReservadasTemp.clear();
-                    mParcelasReservadasTemp.addAll(parcelasReservadas);
-                    mParcelaReservadaAdapter.setParcelasReservadas(mParcelasReservadasTemp); // Actualizar la lista en el adaptador
-                    mParcelaReservadaAdapter.notifyDataSetChanged(); // Notificar los cambios al adaptador
-                    updatePrecioTotal(); // Recalcular el precio total basado en las parcelas actuales
-                }
-            });
-
-        }
+            mReservaViewModel.cargarBorrador(reservaConParcelas);
+            mostrarReserva(reservaConParcelas.reserva);
+            mostrarParcelasReservadas();
+            updatePrecioTotal(); // Recalcular el precio total basado en las parcelas actuales
+        });
     }
 
 }
@@ -6,29 +6,64 @@ import android.util.Log;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.SavedStateHandle;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.List;
 import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
 
 import es.unizar.eina.M12_camping.database.Parcela;
 import es.unizar.eina.M12_camping.database.ParcelaRepository;
 import es.unizar.eina.M12_camping.database.ParcelaReservada;
+import es.unizar.eina.M12_camping.database.ParcelaReservadaConParcela;
+import es.unizar.eina.M12_camping.database.RegistroCampings;
 import es.unizar.eina.M12_camping.database.Reserva;
+import es.unizar.eina.M12_camping.database.ReservaConParcelas;
 import es.unizar.eina.M12_camping.database.ReservaRepository;
+import es.unizar.eina.M12_camping.database.ResultadoActualizacion;
+import es.unizar.eina.M12_camping.database.RetencionesParcelas;
 
 /**
  * ViewModel que proporciona la logica de acceso a los datos de reservas.
  * Facilita la comunicacion entre la UI y el repositorio de datos.
+ * Tambien guarda el borrador de la reserva que se esta editando: sus parcelas reservadas y la
+ * version leida se mantienen en memoria y en el SavedStateHandle, y solo se escriben en la base de
+ * datos al guardar la reserva. Las parcelas del borrador se retienen con {@link RetencionesParcelas}
+ * para que otras ediciones no las ofrezcan en las mismas fechas.
  */
 public class ReservaViewModel extends AndroidViewModel {
 
+    private static final String CLAVE_BORRADOR = "borrador";
+    private static final String CLAVE_CARGADO = "borradorCargado";
+    private static final String CLAVE_VERSION = "borradorVersion";
+    private static final String CLAVE_IDS = "borradorIds";
+    private static final String CLAVE_PARCELAS = "borradorParcelas";
+    private static final String CLAVE_OCUPANTES = "borradorOcupantes";
+    private static final String CLAVE_PRECIOS = "borradorPrecios";
+    private static final String CLAVE_NOCHES = "borradorNoches";
+    private static final String CLAVE_ENTRADA = "borradorEntrada";
+    private static final String CLAVE_SALIDA = "borradorSalida";
+
     private final ReservaRepository mRepository;
     private final ParcelaRepository mParcelaRepository;
     private final ExecutorService executorService;
 
+    private final SavedStateHandle mEstado;
+    private final RetencionesParcelas mRetenciones;
+    /** Identificador del borrador, con el que se retienen sus parcelas */
+    private final String mBorrador;
+    /** Parcelas reservadas del borrador, sin guardar en la base de datos */
+    private final List<ParcelaReservada> mLineasBorrador = new ArrayList<>();
+    /** Parcelas reservadas restauradas que ya retiene otro borrador y se han quitado de este */
+    private final List<ParcelaReservada> mLineasNoRetenidas = new ArrayList<>();
+
     private final MutableLiveData<Long> insertResult = new MutableLiveData<>();
+    private final MutableLiveData<ResultadoActualizacion<Reserva>> updateResult = new MutableLiveData<>();
 
     private final LiveData<List<Reserva>> mAllReservas;
     private final LiveData<List<Reserva>> mReservasOrdNombreCliente;
@@ -40,9 +75,19 @@ public class ReservaViewModel extends AndroidViewModel {
      * Inicializa el repositorio y obtiene las listas de reservas.
      *
      * @param application La aplicacion actual, que proporciona el contexto para inicializar el repositorio.
+     * @param estado      El estado guardado, donde se conserva el borrador si se recrea la actividad.
      */
-    public ReservaViewModel(Application application) {
+    public ReservaViewModel(Application application, SavedStateHandle estado) {
         super(application);
+        mEstado = estado;
+        mRetenciones = RetencionesParcelas.getInstancia(RegistroCampings.CAMPING_PRINCIPAL);
+        String borrador = estado.get(CLAVE_BORRADOR);
+        if (borrador == null) {
+            borrador = UUID.randomUUID().toString();
+            estado.set(CLAVE_BORRADOR, borrador);
+        }
+        mBorrador = borrador;
+        restaurarLineasBorrador();
         mRepository = new ReservaRepository(application);
         mParcelaRepository = new ParcelaRepository(application);
         mAllReservas = mRepository.getAllReservas();
@@ -65,7 +110,8 @@ public class ReservaViewModel extends AndroidViewModel {
     }
 
     /**
-     * Observa el resultado de la ultima operacion de insercion.
+     * Observa el resultado de la ultima operacion de insercion. Es null si no hay ninguno pendiente
+     * de atender.
      *
      * @return LiveData con el ID de la reserva insertada.
      */
@@ -74,12 +120,39 @@ public class ReservaViewModel extends AndroidViewModel {
     }
 
     /**
-     * Actualiza una reserva existente en la base de datos.
+     * Descarta el resultado de la ultima insercion una vez atendido, para que no se vuelva a
+     * entregar al recrearse la actividad. Se llama desde el hilo principal.
+     */
+    public void limpiarInsertResult() {
+        insertResult.setValue(null);
+    }
+
+    /**
+     * Actualiza una reserva existente en la base de datos si nadie la ha modificado desde que se leyo.
+     * El resultado se publica en {@link #getUpdateResult()}.
      *
-     * @param reserva La reserva a actualizar.
+     * @param reserva La reserva a actualizar, con la version leida.
      */
     public void update(Reserva reserva) {
-        executorService.execute(() -> mRepository.update(reserva));
+        executorService.execute(() -> updateResult.postValue(mRepository.updateSiVersion(reserva)));
+    }
+
+    /**
+     * Observa el resultado de la ultima operacion de actualizacion. Es null si no hay ninguno
+     * pendiente de atender.
+     *
+     * @return LiveData con el resultado, que en caso de conflicto lleva la reserva guardada.
+     */
+    public LiveData<ResultadoActualizacion<Reserva>> getUpdateResult() {
+        return updateResult;
+    }
+
+    /**
+     * Descarta el resultado de la ultima actualizacion una vez atendido, para que no se vuelva a
+     * entregar al recrearse la actividad. Se llama desde el hilo principal.
+     */
+    public void limpiarUpdateResult() {
+        updateResult.setValue(null);
     }
 
     /**
@@ -156,6 +229,32 @@ public class ReservaViewModel extends AndroidViewModel {
         return mRepository.getReservaById(id);
     }
 
+    /**
+     * Carga una sola vez una reserva con sus parcelas reservadas y los datos de cada parcela.
+     * A diferencia de las consultas observables, el LiveData devuelto no se vuelve a notificar
+     * cuando cambian las tablas.
+     *
+     * @param id El ID de la reserva.
+     * @return LiveData que recibe la reserva con sus parcelas (o null si no se encuentra).
+     */
+    public LiveData<ReservaConParcelas> cargarReservaConParcelas(int id) {
+        MutableLiveData<ReservaConParcelas> resultado = new MutableLiveData<>();
+        executorService.execute(() -> resultado.postValue(mRepository.getReservaConParcelas(id)));
+        return resultado;
+    }
+
+    /**
+     * Busca en segundo plano las reservas cuyo telefono empieza por unos digitos.
+     *
+     * @param prefijo Los primeros digitos del telefono.
+     * @return LiveData que recibe las reservas encontradas, ordenadas por telefono.
+     */
+    public LiveData<List<Reserva>> buscarPorTelefono(String prefijo) {
+        MutableLiveData<List<Reserva>> resultado = new MutableLiveData<>();
+        executorService.execute(() -> resultado.postValue(mRepository.buscarPorTelefono(prefijo)));
+        return resultado;
+    }
+
     /**
      * Obtiene las parcelas reservadas asociadas a una reserva especifica.
      *
@@ -204,6 +303,250 @@ public class ReservaViewModel extends AndroidViewModel {
         return mRepository.getParcelasDisponibles(fechaInicio, fechaFin);
     }
 
+    /**
+     * Indica si el borrador ya tiene los datos de la reserva, leidos de la base de datos o
+     * restaurados del estado guardado.
+     *
+     * @return true si el borrador esta cargado.
+     */
+    public boolean isBorradorCargado() {
+        return Boolean.TRUE.equals(mEstado.get(CLAVE_CARGADO));
+    }
+
+    /**
+     * Carga en el borrador las parcelas reservadas y la version de una reserva guardada. Si el
+     * borrador ya tenia cambios, como al volver a leer la reserva tras un conflicto, se descartan
+     * y se liberan sus retenciones.
+     *
+     * @param reservaConParcelas La reserva con sus parcelas reservadas.
+     */
+    public void cargarBorrador(ReservaConParcelas reservaConParcelas) {
+        mRetenciones.liberarTodas(mBorrador);
+        mLineasBorrador.clear();
+        for (ParcelaReservadaConParcela linea : reservaConParcelas.parcelas) {
+            mLineasBorrador.add(linea.parcelaReservada);
+        }
+        mEstado.set(CLAVE_VERSION, reservaConParcelas.reserva.getVersion());
+        mEstado.set(CLAVE_CARGADO, true);
+        guardarFechasBorrador(reservaConParcelas.reserva.getFechaEntrada(), reservaConParcelas.reserva.getFechaSalida());
+        guardarLineasBorrador();
+    }
+
+    /**
+     * Obtiene la version de la reserva editada cuando se leyo.
+     *
+     * @return La version, o 0 si la reserva es nueva.
+     */
+    public long getVersionBorrador() {
+        Long version = mEstado.get(CLAVE_VERSION);
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * Obtiene las parcelas reservadas del borrador. La lista no se debe modificar directamente.
+     *
+     * @return Las parcelas reservadas del borrador.
+     */
+    public List<ParcelaReservada> getLineasBorrador() {
+        return Collections.unmodifiableList(mLineasBorrador);
+    }
+
+    /**
+     * Obtiene, una sola vez, las parcelas reservadas que se han quitado del borrador al restaurarlo
+     * porque otra reserva en edicion las ha retenido mientras tanto.
+     *
+     * @return Las parcelas reservadas quitadas del borrador; vacia en las llamadas siguientes.
+     */
+    public List<ParcelaReservada> tomarLineasNoRetenidas() {
+        List<ParcelaReservada> lineas = new ArrayList<>(mLineasNoRetenidas);
+        mLineasNoRetenidas.clear();
+        return lineas;
+    }
+
+    /**
+     * Anade una parcela reservada al borrador y retiene todas sus parcelas en las fechas de la
+     * reserva, que pueden haber cambiado desde que se anadieron las anteriores.
+     *
+     * @param parcelaReservada La parcela reservada.
+     * @param inicio           La fecha de entrada de la reserva.
+     * @param fin              La fecha de salida de la reserva.
+     * @return true si se ha anadido, false si otra reserva en edicion tiene retenida alguna de las parcelas.
+     */
+    public boolean anadirLineaBorrador(ParcelaReservada parcelaReservada, Date inicio, Date fin) {
+        List<Integer> parcelas = getParcelasBorrador();
+        parcelas.add(parcelaReservada.getParcelaId());
+        if (!mRetenciones.retenerTodas(mBorrador, parcelas, inicio, fin).isEmpty()) {
+            return false;
+        }
+        mLineasBorrador.add(parcelaReservada);
+        guardarFechasBorrador(inicio, fin);
+        guardarLineasBorrador();
+        return true;
+    }
+
+    /**
+     * Registra los cambios de una parcela reservada del borrador.
+     *
+     * @param parcelaReservada La parcela reservada modificada.
+     */
+    public void actualizarLineaBorrador(ParcelaReservada parcelaReservada) {
+        mRetenciones.renovar(mBorrador);
+        guardarLineasBorrador();
+    }
+
+    /**
+     * Quita una parcela reservada del borrador y libera su retencion.
+     *
+     * @param parcelaReservada La parcela reservada.
+     */
+    public void eliminarLineaBorrador(ParcelaReservada parcelaReservada) {
+        mLineasBorrador.remove(parcelaReservada);
+        mRetenciones.liberar(mBorrador, parcelaReservada.getParcelaId());
+        guardarLineasBorrador();
+    }
+
+    /**
+     * Establece las fechas del borrador: retiene todas sus parcelas en las fechas nuevas y cambia
+     * el numero de noches de cada parcela reservada. Si otra reserva en edicion tiene retenida
+     * alguna de las parcelas en esas fechas no se cambia nada.
+     *
+     * @param inicio La fecha de entrada de la reserva.
+     * @param fin    La fecha de salida de la reserva.
+     * @param noches El numero de noches de la reserva.
+     * @return true si se han cambiado las fechas, false si otra reserva en edicion tiene retenida alguna parcela.
+     */
+    public boolean setFechasBorrador(Date inicio, Date fin, int noches) {
+        if (!mRetenciones.retenerTodas(mBorrador, getParcelasBorrador(), inicio, fin).isEmpty()) {
+            return false;
+        }
+        for (ParcelaReservada parcelaReservada : mLineasBorrador) {
+            parcelaReservada.setNumeroNoches(noches);
+        }
+        guardarFechasBorrador(inicio, fin);
+        guardarLineasBorrador();
+        return true;
+    }
+
+    /** Obtiene los IDs de las parcelas del borrador */
+    private List<Integer> getParcelasBorrador() {
+        List<Integer> parcelas = new ArrayList<>();
+        for (ParcelaReservada parcelaReservada : mLineasBorrador) {
+            parcelas.add(parcelaReservada.getParcelaId());
+        }
+        return parcelas;
+    }
+
+    /**
+     * Obtiene las parcelas que se pueden anadir al borrador: las que no estan reservadas en las
+     * fechas, ni retenidas por otras reservas en edicion, ni ya incluidas en el borrador.
+     *
+     * @param fechaInicio La fecha de inicio.
+     * @param fechaFin    La fecha de fin.
+     * @return Lista de parcelas disponibles.
+     */
+    public List<Parcela> getParcelasDisponiblesBorrador(Date fechaInicio, Date fechaFin) {
+        Set<Integer> retenidas = mRetenciones.getRetenidas(fechaInicio, fechaFin, mBorrador);
+        for (ParcelaReservada parcelaReservada : mLineasBorrador) {
+            retenidas.add(parcelaReservada.getParcelaId());
+        }
+        List<Parcela> disponibles = new ArrayList<>();
+        for (Parcela parcela : mRepository.getParcelasDisponibles(fechaInicio, fechaFin)) {
+            if (!retenidas.contains(parcela.getId())) {
+                disponibles.add(parcela);
+            }
+        }
+        return disponibles;
+    }
+
+    /**
+     * Guarda la reserva con las parcelas reservadas del borrador en una sola transaccion y libera
+     * las retenciones. Si la reserva es nueva (ID 0) el resultado se publica en
+     * {@link #getInsertResult()}; si no, se actualiza con la version del borrador y el resultado
+     * se publica en {@link #getUpdateResult()}.
+     *
+     * @param reserva La reserva con los datos del formulario.
+     */
+    public void guardarBorrador(Reserva reserva) {
+        List<ParcelaReservada> lineas = new ArrayList<>(mLineasBorrador);
+        executorService.execute(() -> {
+            if (reserva.getId() == 0) {
+                long id = mRepository.insertConParcelas(reserva, lineas);
+                if (id != -1) {
+                    mRetenciones.liberarTodas(mBorrador);
+                }
+                insertResult.postValue(id);
+            } else {
+                reserva.setVersion(getVersionBorrador());
+                ResultadoActualizacion<Reserva> resultado = mRepository.updateConParcelas(reserva, lineas);
+                if (resultado.isActualizada()) {
+                    mRetenciones.liberarTodas(mBorrador);
+                }
+                updateResult.postValue(resultado);
+            }
+        });
+    }
+
+    /** Guarda las parcelas reservadas del borrador en el estado, por si se destruye el proceso */
+    private void guardarLineasBorrador() {
+        int n = mLineasBorrador.size();
+        int[] ids = new int[n];
+        int[] parcelas = new int[n];
+        int[] ocupantes = new int[n];
+        long[] precios = new long[n];
+        int[] noches = new int[n];
+        for (int i = 0; i < n; i++) {
+            ParcelaReservada parcelaReservada = mLineasBorrador.get(i);
+            ids[i] = parcelaReservada.getId();
+            parcelas[i] = parcelaReservada.getParcelaId();
+            ocupantes[i] = parcelaReservada.getNumeroOcupantes();
+            precios[i] = parcelaReservada.getPrecioXpersonaCentimos();
+            noches[i] = parcelaReservada.getNumeroNoches();
+        }
+        mEstado.set(CLAVE_IDS, ids);
+        mEstado.set(CLAVE_PARCELAS, parcelas);
+        mEstado.set(CLAVE_OCUPANTES, ocupantes);
+        mEstado.set(CLAVE_PRECIOS, precios);
+        mEstado.set(CLAVE_NOCHES, noches);
+    }
+
+    /** Guarda las fechas en las que se retienen las parcelas del borrador en el estado */
+    private void guardarFechasBorrador(Date inicio, Date fin) {
+        mEstado.set(CLAVE_ENTRADA, inicio.getTime());
+        mEstado.set(CLAVE_SALIDA, fin.getTime());
+    }
+
+    /**
+     * Recupera las parcelas reservadas del borrador del estado guardado y las vuelve a retener,
+     * ya que las retenciones se pierden si se destruye el proceso. Las que mientras tanto ha
+     * retenido otra reserva en edicion se quitan del borrador y se guardan en
+     * {@link #tomarLineasNoRetenidas()}.
+     */
+    private void restaurarLineasBorrador() {
+        int[] ids = mEstado.get(CLAVE_IDS);
+        int[] parcelas = mEstado.get(CLAVE_PARCELAS);
+        int[] ocupantes = mEstado.get(CLAVE_OCUPANTES);
+        long[] precios = mEstado.get(CLAVE_PRECIOS);
+        int[] noches = mEstado.get(CLAVE_NOCHES);
+        Long entrada = mEstado.get(CLAVE_ENTRADA);
+        Long salida = mEstado.get(CLAVE_SALIDA);
+        if (ids == null || parcelas == null || ocupantes == null || precios == null || noches == null) {
+            return;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            ParcelaReservada parcelaReservada = new ParcelaReservada(0, parcelas[i], ocupantes[i], precios[i], noches[i]);
+            parcelaReservada.setId(ids[i]);
+            if (entrada != null && salida != null
+                    && !mRetenciones.retener(mBorrador, parcelas[i], new Date(entrada), new Date(salida))) {
+                mLineasNoRetenidas.add(parcelaReservada);
+            } else {
+                mLineasBorrador.add(parcelaReservada);
+            }
+        }
+        if (!mLineasNoRetenidas.isEmpty()) {
+            guardarLineasBorrador();
+        }
+    }
+
     /**
      * Obtiene el nombre de una parcela especifica por su ID.
      *
@@ -224,6 +567,10 @@ public class ReservaViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        // Si la actividad se cierra sin guardar, el borrador se descarta sin tocar la base de datos
+        mRetenciones.liberarTodas(mBorrador);
+        mRepository.cerrar();
+        mParcelaRepository.cerrar();
         executorService.shutdown(); // Cierra el pool de hilos al destruir el ViewModel
         Log.d("ViewModelLifecycle", "onCleared llamado: ViewModel destruido");
     }
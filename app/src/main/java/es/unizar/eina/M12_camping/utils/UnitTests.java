@@ -7,6 +7,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
+import es.unizar.eina.M12_camping.database.CalculadoraPrecio;
 import es.unizar.eina.M12_camping.database.Parcela;
 import es.unizar.eina.M12_camping.database.ParcelaReservada;
 import es.unizar.eina.M12_camping.database.Reserva;
@@ -148,25 +149,17 @@ public class UnitTests {
             Log.e("UnitTests", "Prueba inválida: Descripción null. ERROR: " + e.getMessage());
         }
 
+        try {
+            // 2) Nombre no es único: lo rechaza el índice único de la base de datos
+            Parcela parcelaNombreDuplicado = new Parcela("Parcela1", 4, 12.0, "Duplicado");
+            verificarInsercionParcela(parcelaNombreDuplicado, "Prueba inválida: Nombre duplicado");
+        } catch (Exception e) {
+            Log.e("UnitTests", "Prueba inválida: Nombre duplicado. ERROR: " + e.getMessage());
+        }
+
         /*
          CASOS NO PROBADOS:
 
-         - Casos no probados porque no se pueden simular en esta prueba:
-         El siguiente caso no se puede probar directamente, ya que la gestión de nombre duplicados no se
-         realiza en la base de datos sino en ParcelaEdit, por lo que no se puede simular en esta prueba.
-         Si se descomenta la siguiente sección de código y se lanzan los tests, lo que sucederá
-         será que la inserción funcionará correctamente, aunque no debería hacerlo.
-         Por este motivo es que se ha comentado esta sección de código.
-
-         // 2) Nombre no es único
-         try {
-             Parcela parcelaNombreDuplicado = new Parcela("Parcela1", 4, 12.0, "Duplicado");
-             verificarInsercionParcela(parcelaNombreDuplicado, "Prueba inválida: Nombre duplicado");
-         } catch (Exception e) {
-             Log.e("UnitTests", "Prueba inválida: Nombre duplicado. ERROR: " + e.getMessage());
-         }
-
-
          - Casos no probados porque darían errores de compilación:
          try {
              // 8) maxOcupantes no es un número
@@ -203,7 +196,7 @@ public class UnitTests {
      * @param descripcionPrueba Descripción de la prueba actual (para los logs).
      */
     private void verificarInsercionParcela(Parcela parcela, String descripcionPrueba) {
-        long id = parcelaRepository.insert(parcela);
+        long id = parcelaRepository.insert(parcela).getId();
         if (id > 0) {
             Log.d("UnitTests", descripcionPrueba + " --> EXITO (ID: " + id + ")");
         } else {
@@ -223,7 +216,7 @@ public class UnitTests {
         // ===== PRUEBA DE EDICIÓN VÁLIDA =====
         // Crear una parcela base válida
         Parcela parcelaBase = new Parcela("Parcela Base", 4, 10.0, "Descripción válida");
-        long id = parcelaRepository.insert(parcelaBase);
+        long id = parcelaRepository.insert(parcelaBase).getId();
         try {
             // Caso 0: Editar con datos válidos
             parcelaExistente = parcelaRepository.getParcelaById((int) id);
@@ -241,7 +234,7 @@ public class UnitTests {
         // ===== PRUEBAS DE EDICIÓN INVÁLIDAS =====
         // Crear una parcela errores válida que debería mostrarse igual tras las ediciones
         Parcela parcelaErrores = new Parcela("Parcela Errores", 10, 8.0, "Descripción válida");
-        long id2 = parcelaRepository.insert(parcelaErrores);
+        long id2 = parcelaRepository.insert(parcelaErrores).getId();
 
         try {
             // 4) Editar nombre a una cadena vacía
@@ -376,9 +369,8 @@ public class UnitTests {
      * @param descripcionPrueba Descripción de la prueba actual.
      */
     private void verificarEdicionParcela(Parcela parcela, String descripcionPrueba) {
-        int filasAfectadas = parcelaRepository.update(parcela);
-        if (filasAfectadas > 0) {
-            Log.d("UnitTests", descripcionPrueba + " --> EXITO (Filas afectadas: " + filasAfectadas + ")");
+        if (parcelaRepository.update(parcela).isActualizada()) {
+            Log.d("UnitTests", descripcionPrueba + " --> EXITO");
         } else {
             Log.e("UnitTests", descripcionPrueba + " --> FALLO (No se actualizó)");
         }
@@ -395,7 +387,7 @@ public class UnitTests {
 
         // ===== PRUEBA 1: Eliminar una parcela existente =====
         Parcela parcelaExistente = new Parcela("parcelaBorrar", 5, 5.5, "no deberia existir");
-        long id = parcelaRepository.insert(parcelaExistente);
+        long id = parcelaRepository.insert(parcelaExistente).getId();
 
         if (id > 0) {
             int result = parcelaRepository.delete(parcelaRepository.getParcelaById((int) id));
@@ -424,7 +416,7 @@ public class UnitTests {
      * Prueba la creación de una reserva con todas las clases de equivalencia válidas e inválidas.
      * Se validan:
      * - nombreCliente (string, no nulo)
-     * - numeroMovil (numérico, no nulo)
+     * - numeroMovil (solo dígitos, no nulo)
      * - fechaEntrada (formato correcto, no anterior a hoy, válida)
      * - fechaSalida (formato correcto, posterior a fechaEntrada)
      * - parcelasReservadas (no vacías, ocupantes válidos y sin solapamientos)
@@ -434,11 +426,11 @@ public class UnitTests {
 
         // Crear una parcela para unir a las reservas
         Parcela parcelaReservas = new Parcela("ParcelaReservasCreacion", 5, 5.5, "Parcela para reservas");
-        long idParcela = parcelaRepository.insert(parcelaReservas);
+        long idParcela = parcelaRepository.insert(parcelaReservas).getId();
 
         try {
             // 1) Reserva válida con todos los parámetros correctos
-            Reserva reservaValida = new Reserva("Cliente1", 123456789, obtenerFecha("16-12-2025"),
+            Reserva reservaValida = new Reserva("Cliente1", "123456789", obtenerFecha("16-12-2025"),
                     obtenerFecha("20-12-2025"), 0.0);
             verificarInsercionReserva(reservaValida, idParcela, 2, "Prueba válida: Reserva con parámetros correctos");
         } catch (Exception e) {
@@ -448,7 +440,7 @@ public class UnitTests {
         // ===== CLASES INVÁLIDAS =====
         try {
             // 4) nombreCliente es null
-            Reserva nombreNull = new Reserva(null, 123456789, obtenerFecha("16-12-2025"),
+            Reserva nombreNull = new Reserva(null, "123456789", obtenerFecha("16-12-2025"),
                     obtenerFecha("20-12-2025"), 0.0);
             verificarInsercionReserva(nombreNull, idParcela, 1, "Prueba inválida: nombreCliente null");
         } catch (Exception e) {
@@ -466,7 +458,7 @@ public class UnitTests {
 
         try {
             // 16) fechaEntrada es null
-            Reserva fechaEntradaNull = new Reserva("fechaEntradaNull", 123456789, null,
+            Reserva fechaEntradaNull = new Reserva("fechaEntradaNull", "123456789", null,
                     obtenerFecha("20-12-2025"), 0.0);
             verificarInsercionReserva(fechaEntradaNull, idParcela, 1, "Prueba inválida: fechaEntrada null");
         } catch (Exception e) {
@@ -475,7 +467,7 @@ public class UnitTests {
 
         try {
             // 26) fechaSalida es null
-            Reserva fechaSalidaNull = new Reserva("fechaSalidaNull", 123456789, obtenerFecha("20-12-2025"),
+            Reserva fechaSalidaNull = new Reserva("fechaSalidaNull", "123456789", obtenerFecha("20-12-2025"),
                    null , 0.0);
             verificarInsercionReserva(fechaSalidaNull, idParcela, 1, "Prueba inválida: fechaSalida null");
         } catch (Exception e) {
@@ -488,7 +480,7 @@ public class UnitTests {
          - Casos no probados porque los errores no se gestionan en la base de datos sino en ReservaEdit:
          try {
              // 12) fechaEntrada anterior a la fecha actual
-             Reserva fechaEntradaAntigua = new Reserva("fechaEntradaAntigua", 123456789, obtenerFecha("01-01-2023"),
+             Reserva fechaEntradaAntigua = new Reserva("fechaEntradaAntigua", "123456789", obtenerFecha("01-01-2023"),
                      obtenerFecha("20-12-2025"), 0.0);
              verificarInsercionReserva(fechaEntradaAntigua, idParcela, 1, "Prueba inválida: fechaEntrada anterior a hoy");
          } catch (Exception e) {
@@ -497,7 +489,7 @@ public class UnitTests {
 
          try {
              // 14) fechaEntrada no es una fecha del calendario gregoriano
-             Reserva fechaEntradaInvalida = new Reserva("fechaEntradaInvalida", 123456789, obtenerFecha("40-30-2025"),
+             Reserva fechaEntradaInvalida = new Reserva("fechaEntradaInvalida", "123456789", obtenerFecha("40-30-2025"),
                      obtenerFecha("20-12-2025"), 0.0);
              verificarInsercionReserva(fechaEntradaInvalida, idParcela, 1, "Prueba inválida: fechaEntrada no válida");
          } catch (Exception e) {
@@ -506,7 +498,7 @@ public class UnitTests {
 
          try {
              // 24) fechaSalida anterior a fechaEntrada
-             Reserva fechaSalidaIncorrecta = new Reserva("fechaSalidaIncorrecta", 123456789, obtenerFecha("16-12-2025"),
+             Reserva fechaSalidaIncorrecta = new Reserva("fechaSalidaIncorrecta", "123456789", obtenerFecha("16-12-2025"),
                      obtenerFecha("15-12-2025"), 0.0);
              verificarInsercionReserva(fechaSalidaIncorrecta, idParcela, 1, "Prueba inválida: fechaSalida anterior a fechaEntrada");
          } catch (Exception e) {
@@ -515,7 +507,7 @@ public class UnitTests {
 
          try {
              // 28) No hay parcelas reservadas
-             Reserva sinParcelas = new Reserva("sinParcelas", 123456789, obtenerFecha("16-12-2025"),
+             Reserva sinParcelas = new Reserva("sinParcelas", "123456789", obtenerFecha("16-12-2025"),
                      obtenerFecha("20-12-2025"), 0.0);
              // NO agregamos parcelas asociadas
              verificarInsercionReserva(sinParcelas, -1, -1, "Prueba inválida: Sin parcelas reservadas");
@@ -525,7 +517,7 @@ public class UnitTests {
 
          try {
              // 30) numOcupantes > maxOcupantes
-             Reserva ocupantesExcedidos = new Reserva("ocupantesExcedidos", 123456789, obtenerFecha("16-12-2025"),
+             Reserva ocupantesExcedidos = new Reserva("ocupantesExcedidos", "123456789", obtenerFecha("16-12-2025"),
                      obtenerFecha("20-12-2025"), 0.0);
              verificarInsercionReserva(ocupantesExcedidos, idParcela, 100, "Prueba inválida: Ocupantes excedidos");
          } catch (Exception e) {
@@ -534,7 +526,7 @@ public class UnitTests {
 
          try {
              // 32) Hay solapamiento de fechas
-             Reserva solapamiento = new Reserva("solapamiento", 123456789, obtenerFecha("18-12-2025"),
+             Reserva solapamiento = new Reserva("solapamiento", "123456789", obtenerFecha("18-12-2025"),
                      obtenerFecha("22-12-2025"), 0.0);
              verificarInsercionReserva(solapamiento, idParcela, 2, "Prueba inválida: Solapamiento de fechas");
          } catch (Exception e) {
@@ -543,7 +535,7 @@ public class UnitTests {
 
          try {
              // 34) numOcupantes es null
-             Reserva ocupantesNull = new Reserva("ocupantesNull", 123456789, obtenerFecha("16-12-2025"),
+             Reserva ocupantesNull = new Reserva("ocupantesNull", "123456789", obtenerFecha("16-12-2025"),
                      obtenerFecha("20-12-2025"), 0.0);
              verificarInsercionReserva(ocupantesNull, idParcela, null, "Prueba inválida: numOcupantes null");
          } catch (Exception e) {
@@ -571,6 +563,16 @@ public class UnitTests {
         }
     }
 
+    /**
+     * Calcula el número de noches de una reserva a partir de sus fechas.
+     *
+     * @param reserva La reserva cuyas noches se calculan.
+     * @return Número de noches entre la fecha de entrada y la de salida.
+     */
+    private int calcularNoches(Reserva reserva) {
+        return CalculadoraPrecio.calcularNoches(reserva.getFechaEntrada(), reserva.getFechaSalida());
+    }
+
     /**
      * Intenta insertar una reserva en la base de datos y verifica si se ha añadido correctamente.
      *
@@ -580,7 +582,10 @@ public class UnitTests {
     private void verificarInsercionReserva(Reserva reserva, long idParcela, Integer numOcupantes, String descripcionPrueba) {
         long id = reservaRepository.insert(reserva);
         if (id > 0) {
-            ParcelaReservada parcelaReservada = new ParcelaReservada((int) id, (int) idParcela, numOcupantes);
+            Parcela parcela = parcelaRepository.getParcelaById((int) idParcela);
+            long precioXpersonaCentimos = parcela != null ? parcela.getPrecioXpersonaCentimos() : 0;
+            ParcelaReservada parcelaReservada = new ParcelaReservada((int) id, (int) idParcela, numOcupantes,
+                    precioXpersonaCentimos, calcularNoches(reserva));
             long idParRes = reservaRepository.insertParcelaReservada(parcelaReservada);
             if (idParRes > 0) {
                 Log.d("UnitTests", descripcionPrueba + " --> EXITO (ID: " + id + ")");
@@ -602,10 +607,10 @@ public class UnitTests {
         Reserva reservaExistente;
         // Crear una parcela para unir a las reservas
         Parcela parcelaReservas = new Parcela("ParcelaReservasEdicion", 5, 5.5, "Parcela para reservas");
-        long idParcela = parcelaRepository.insert(parcelaReservas);
+        long idParcela = parcelaRepository.insert(parcelaReservas).getId();
 
         // Crear una reserva base válida
-        Reserva reservaBase = new Reserva("Reserva Base", 123456789, obtenerFecha("20-12-2025"),
+        Reserva reservaBase = new Reserva("Reserva Base", "123456789", obtenerFecha("20-12-2025"),
                 obtenerFecha("30-12-2025"), 0.0);
         long id = reservaRepository.insert(reservaBase);
 
@@ -615,7 +620,7 @@ public class UnitTests {
             reservaExistente = reservaRepository.getReservaById((int) id);
             if (reservaExistente != null) {
                 reservaExistente.setNombreCliente("Reserva Editada");
-                reservaExistente.setNumeroMovil(987654321);
+                reservaExistente.setNumeroMovil("987654321");
                 reservaExistente.setFechaEntrada(obtenerFecha("22-12-2025"));
                 reservaExistente.setFechaSalida(obtenerFecha("28-12-2025"));
                 verificarEdicionReserva(reservaExistente, "Prueba válida: Edición exitosa");
@@ -626,7 +631,7 @@ public class UnitTests {
 
         // ===== PRUEBAS DE EDICIÓN INVÁLIDAS =====
         // Crear una reserva errores válida que debería mostrarse igual tras las ediciones
-        Reserva reservaErrores = new Reserva("Reserva Errores", 123456789, obtenerFecha("20-12-2025"),
+        Reserva reservaErrores = new Reserva("Reserva Errores", "123456789", obtenerFecha("20-12-2025"),
                 obtenerFecha("30-12-2025"), 0.0);
         long id2 = reservaRepository.insert(reservaErrores);
 
@@ -711,7 +716,7 @@ public class UnitTests {
         Log.i("UnitTests", "==== INICIANDO testBorrarReserva ====");
 
         // ===== PRUEBA 1: Eliminar una reserva existente =====
-        Reserva reservaExistente = new Reserva("reservaBorrar", 123456789, obtenerFecha("20-12-2025"),
+        Reserva reservaExistente = new Reserva("reservaBorrar", "123456789", obtenerFecha("20-12-2025"),
                 obtenerFecha("30-12-2025"), 0.0);
         long id = reservaRepository.insert(reservaExistente);
 
@@ -738,62 +743,6 @@ public class UnitTests {
         Log.i("UnitTests", "==== FINALIZADO testBorrarReserva ====");
     }
 
-    /**
-     * Prueba de volumen: Inserta masivamente 100 parcelas y 10.000 reservas en la base de datos.
-     * Se comprueba el funcionamiento del sistema con una carga esperada de datos.
-     */
-    public void testVolumen() {
-        Log.i("UnitTestsVolumen", "==== INICIANDO testVolumen ====");
-        final int NUM_PARCELAS = 100;
-        final int NUM_RESERVAS = 10000;
-
-        // Insertar 100 parcelas
-        for (int i = 1; i <= NUM_PARCELAS; i++) {
-            Parcela parcela = new Parcela("Parcela_" + i, 5, 5.5, "Descripción");
-            try {
-                long id = parcelaRepository.insert(parcela);
-                if (id > 0) {
-                    Log.d("UnitTestsVolumen", "Parcela creada: " + parcela.getNombre() + " (ID: " + id + ")");
-                } else {
-                    Log.e("UnitTestsVolumen", "Error al insertar Parcela: " + parcela.getNombre());
-                }
-            } catch (Exception e) {
-                Log.e("UnitTestsVolumen", "Excepción al insertar Parcela: " + e.getMessage());
-            }
-        }
-        Parcela parcela = new Parcela("Parcela_101", 5, 5.5, "Descripción");
-        long id = parcelaRepository.insert(parcela);
-        if (id > 0) {
-            Log.d("UnitTestsVolumen", "Parcela creada: " + parcela.getNombre() + " (ID: " + id + ")");
-        } else {
-            Log.e("UnitTestsVolumen", "Error al insertar Parcela: " + parcela.getNombre());
-        }
-
-        // Insertar 10,000 reservas
-        for (int i = 1; i <= NUM_RESERVAS; i++) {
-            Reserva reserva = new Reserva("Cliente_" + i, 123456789, obtenerFecha("20-12-2025"), obtenerFecha("30-12-2025"), 0.0);
-
-            try {
-                long reservaId = reservaRepository.insert(reserva);
-                if (reservaId > 0) {
-                    Log.d("UnitTestsVolumen", "Reserva creada: " + reserva.getNombreCliente() + " (ID: " + reservaId + ")");
-                    // Asociar la reserva a una parcela
-                    ParcelaReservada parcelaReservada = new ParcelaReservada((int) reservaId, (int) id, 5);
-                    long idParRes = reservaRepository.insertParcelaReservada(parcelaReservada);
-                    if (idParRes <= 0) {
-                        Log.e("UnitTestsVolumen", "Error al insertar ParcelaReservada: " + id);
-                    }
-                } else {
-                    Log.e("UnitTestsVolumen", "Error al insertar Reserva: " + reserva.getNombreCliente());
-                }
-            } catch (Exception e) {
-                Log.e("UnitTestsVolumen", "Excepción al insertar Reserva: " + e.getMessage());
-            }
-        }
-
-        Log.i("UnitTestsVolumen", "==== FINALIZADO testVolumen ====");
-    }
-
     /**
      * Prueba de sobrecarga: Inserta parcelas con descripciones de longitud creciente.
      * Se intenta insertar parcelas con descripciones de longitud creciente, hasta alcanzar el límite.
@@ -816,7 +765,7 @@ public class UnitTests {
                 Parcela parcela = new Parcela("Sobrecarga" + longitudActual, 5, 10.0, descripcion);
 
                 // Intentar insertar la parcela
-                long id = parcelaRepository.insert(parcela);
+                long id = parcelaRepository.insert(parcela).getId();
                 if (id > 0) {
                     Log.d("UnitTestSobrecarga", "Parcela insertada con descripción de longitud: " + longitudActual);
                 } else {
@@ -0,0 +1,27 @@
+package es.unizar.eina.send;
+
+/** Canales por los que se pueden enviar mensajes */
+public enum CanalEnvio {
+
+    /** Aplicacion de mensajes SMS del dispositivo */
+    SMS(true),
+
+    /** Aplicacion de WhatsApp */
+    WHATSAPP(true),
+
+    /** Implementor local que solo escribe en el log, para pruebas */
+    LOCAL(false);
+
+    /** indica si el envio abre otra aplicacion desde una actividad */
+    private final boolean requiereActividad;
+
+    CanalEnvio(boolean requiereActividad) {
+        this.requiereActividad = requiereActividad;
+    }
+
+    /** Indica si el canal abre otra aplicacion desde una actividad para que el usuario complete el envio.
+     * Estos canales solo se pueden usar desde la interfaz, no desde los envios en segundo plano */
+    public boolean requiereActividad() {
+        return requiereActividad;
+    }
+}
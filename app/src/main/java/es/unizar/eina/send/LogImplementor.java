@@ -0,0 +1,48 @@
+package es.unizar.eina.send;
+
+import android.app.Activity;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/** Concrete implementor local que no envia nada: escribe los mensajes en el log y los guarda en memoria.
+ * Sirve para probar los envios en segundo plano sin abrir ninguna aplicacion externa */
+public class LogImplementor implements SendImplementor {
+
+    /** actividad asociada; este implementor no la utiliza */
+    private volatile Activity sourceActivity;
+
+    /** mensajes enviados, con el formato "telefono: mensaje" */
+    private final List<String> enviados = Collections.synchronizedList(new ArrayList<>());
+
+    /**  Actualiza la actividad asociada */
+    public void setSourceActivity(Activity source) {
+        sourceActivity = source;
+    }
+
+    /**  Recupera la actividad asociada */
+    public Activity getSourceActivity() {
+        return sourceActivity;
+    }
+
+    /**
+     * Implementacion del metodo send que escribe el mensaje en el log
+     * @param phone telefono
+     * @param message cuerpo del mensaje
+     */
+    public CompletableFuture<ResultadoEnvio> send(String phone, String message) {
+        Log.d("LogImplementor", phone + ": " + message);
+        enviados.add(phone + ": " + message);
+        return CompletableFuture.completedFuture(ResultadoEnvio.exito(CanalEnvio.LOCAL));
+    }
+
+    /** Recupera una copia de los mensajes enviados, en orden de envio */
+    public List<String> getEnviados() {
+        synchronized (enviados) {
+            return new ArrayList<>(enviados);
+        }
+    }
+}
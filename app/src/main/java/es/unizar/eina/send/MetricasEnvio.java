@@ -0,0 +1,85 @@
+package es.unizar.eina.send;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Contadores de envios, fallos y latencia de un canal. Se pueden actualizar desde varios hilos a la vez */
+public class MetricasEnvio {
+
+    /** canal al que se refieren las metricas */
+    private final CanalEnvio canal;
+
+    private final LongAdder envios = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder agotados = new LongAdder();
+    private final LongAdder latenciaTotalNs = new LongAdder();
+    private final AtomicLong latenciaMaximaNs = new AtomicLong();
+
+    /** Constructor
+     * @param canal canal al que se refieren las metricas
+     */
+    public MetricasEnvio(CanalEnvio canal) {
+        this.canal = canal;
+    }
+
+    /** Registra el resultado de un envio
+     * @param exito true si el envio se ha realizado
+     * @param latenciaNs tiempo que ha tardado en completarse el envio, en nanosegundos
+     */
+    public void registrar(boolean exito, long latenciaNs) {
+        envios.increment();
+        if (!exito) {
+            fallos.increment();
+        }
+        latenciaTotalNs.add(latenciaNs);
+        long maxima;
+        do {
+            maxima = latenciaMaximaNs.get();
+        } while (latenciaNs > maxima && !latenciaMaximaNs.compareAndSet(maxima, latenciaNs));
+    }
+
+    /** Registra un envio que no se ha completado a tiempo y se ha cancelado. Cuenta como envio fallido
+     * @param latenciaNs tiempo que se ha esperado al envio antes de cancelarlo, en nanosegundos
+     */
+    public void registrarAgotado(long latenciaNs) {
+        agotados.increment();
+        registrar(false, latenciaNs);
+    }
+
+    /** Recupera el canal al que se refieren las metricas */
+    public CanalEnvio getCanal() {
+        return canal;
+    }
+
+    /** Recupera el numero de envios completados, con o sin exito */
+    public long getEnvios() {
+        return envios.sum();
+    }
+
+    /** Recupera el numero de envios fallidos */
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    /** Recupera el numero de envios cancelados por no completarse a tiempo (incluidos en los fallidos) */
+    public long getAgotados() {
+        return agotados.sum();
+    }
+
+    /** Recupera la latencia media de los envios en milisegundos (0 si no hay envios) */
+    public double getLatenciaMediaMs() {
+        long total = envios.sum();
+        return total == 0 ? 0 : latenciaTotalNs.sum() / 1e6 / total;
+    }
+
+    /** Recupera la latencia maxima de los envios en milisegundos */
+    public double getLatenciaMaximaMs() {
+        return latenciaMaximaNs.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(java.util.Locale.US, "%s: %d envios, %d fallos (%d agotados), media %.1f ms, maxima %.1f ms",
+                canal, getEnvios(), getFallos(), getAgotados(), getLatenciaMediaMs(), getLatenciaMaximaMs());
+    }
+}
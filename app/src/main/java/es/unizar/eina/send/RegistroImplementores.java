@@ -0,0 +1,134 @@
+package es.unizar.eina.send;
+
+import android.app.Activity;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/** Registro de los implementors de envio de cada canal, con las metricas de envio de cada uno */
+public class RegistroImplementores {
+
+    /** implementor registrado para cada canal */
+    private final Map<CanalEnvio, SendImplementor> implementores = new EnumMap<>(CanalEnvio.class);
+
+    /** metricas de envio de cada canal */
+    private final Map<CanalEnvio, MetricasEnvio> metricas = new EnumMap<>(CanalEnvio.class);
+
+    /** registro de la aplicacion, compartido por la interfaz y el despachador de mensajes */
+    private static volatile RegistroImplementores INSTANCIA;
+
+    /** Constructor. Crea un registro vacio, con metricas a cero para todos los canales */
+    public RegistroImplementores() {
+        for (CanalEnvio canal : CanalEnvio.values()) {
+            metricas.put(canal, new MetricasEnvio(canal));
+        }
+    }
+
+    /** Crea un registro con los implementors de todos los canales
+     * @param sourceActivity actividad desde la cual se abriran las aplicaciones de envio
+     */
+    public static RegistroImplementores porDefecto(Activity sourceActivity) {
+        RegistroImplementores registro = new RegistroImplementores();
+        registro.registrar(CanalEnvio.SMS, new SMSImplementor(sourceActivity));
+        registro.registrar(CanalEnvio.WHATSAPP, new WhatsAppImplementor(sourceActivity));
+        registro.registrar(CanalEnvio.LOCAL, new LogImplementor());
+        return registro;
+    }
+
+    /** Recupera el registro de la aplicacion, con los implementors de todos los canales.
+     * Sus metricas acumulan todos los envios de la aplicacion, tanto de la interfaz como de la cola de mensajes.
+     * Los implementors que abren otras aplicaciones no tienen actividad hasta que se les asigna con
+     * {@link #usarActividad(Activity)}, y solo se usan desde la interfaz (ver {@link CanalEnvio#requiereActividad()})
+     */
+    public static RegistroImplementores getInstancia() {
+        if (INSTANCIA == null) {
+            synchronized (RegistroImplementores.class) {
+                if (INSTANCIA == null) {
+                    INSTANCIA = porDefecto(null);
+                }
+            }
+        }
+        return INSTANCIA;
+    }
+
+    /** Asigna a todos los implementors la actividad desde la cual se abriran las aplicaciones de envio
+     * @param sourceActivity actividad desde la cual se abriran las aplicaciones de envio
+     * @return el propio registro
+     */
+    public synchronized RegistroImplementores usarActividad(Activity sourceActivity) {
+        for (SendImplementor implementor : implementores.values()) {
+            implementor.setSourceActivity(sourceActivity);
+        }
+        return this;
+    }
+
+    /** Retira una actividad de los implementors que la usan, para que el registro no la retenga cuando se destruye
+     * @param sourceActivity actividad que se destruye
+     */
+    public synchronized void liberarActividad(Activity sourceActivity) {
+        for (SendImplementor implementor : implementores.values()) {
+            if (implementor.getSourceActivity() == sourceActivity) {
+                implementor.setSourceActivity(null);
+            }
+        }
+    }
+
+    /** Registra (o sustituye) el implementor de un canal
+     * @param canal canal
+     * @param implementor implementor que realizara los envios del canal
+     */
+    public synchronized void registrar(CanalEnvio canal, SendImplementor implementor) {
+        implementores.put(canal, implementor);
+    }
+
+    /** Recupera el implementor de un canal, o null si no hay ninguno registrado */
+    public synchronized SendImplementor obtener(CanalEnvio canal) {
+        return implementores.get(canal);
+    }
+
+    /** Recupera las metricas de envio de un canal */
+    public MetricasEnvio getMetricas(CanalEnvio canal) {
+        return metricas.get(canal);
+    }
+
+    /**
+     * Envia un mensaje por un canal y registra el resultado y la latencia en sus metricas.
+     * El futuro nunca termina con excepcion: los errores se devuelven como un resultado fallido.
+     * Si quien espera el resultado completa o cancela el futuro antes de que termine el envio (por
+     * ejemplo, porque se agota su tiempo de espera), se cancela el envio del implementor y se
+     * registra en las metricas como agotado
+     * @param canal canal de envio
+     * @param phone telefono
+     * @param message cuerpo del mensaje
+     */
+    public CompletableFuture<ResultadoEnvio> enviar(CanalEnvio canal, String phone, String message) {
+        long inicio = System.nanoTime();
+        MetricasEnvio metricasCanal = metricas.get(canal);
+        SendImplementor implementor = obtener(canal);
+        CompletableFuture<ResultadoEnvio> envio;
+        if (implementor == null) {
+            envio = CompletableFuture.completedFuture(ResultadoEnvio.fallo(canal, "Canal no disponible"));
+        } else {
+            try {
+                envio = implementor.send(phone, message);
+            } catch (RuntimeException e) {
+                envio = CompletableFuture.completedFuture(ResultadoEnvio.fallo(canal, e.toString()));
+            }
+        }
+        CompletableFuture<ResultadoEnvio> original = envio;
+        CompletableFuture<ResultadoEnvio> resultado = new CompletableFuture<>();
+        original.whenComplete((completado, error) ->
+                resultado.complete(error == null ? completado : ResultadoEnvio.fallo(canal, error.toString())));
+        resultado.whenComplete((completado, error) -> {
+            long latencia = System.nanoTime() - inicio;
+            // Solo se puede cancelar el envio original si todavia no habia terminado
+            if (original.cancel(true)) {
+                metricasCanal.registrarAgotado(latencia);
+            } else {
+                metricasCanal.registrar(completado != null && completado.isExito(), latencia);
+            }
+        });
+        return resultado;
+    }
+}
@@ -0,0 +1,55 @@
+package es.unizar.eina.send;
+
+/** Resultado de un envio: canal, si se ha realizado y, en caso contrario, el motivo del fallo */
+public final class ResultadoEnvio {
+
+    /** canal por el que se ha intentado el envio */
+    private final CanalEnvio canal;
+
+    /** true si el mensaje se ha entregado a la aplicacion de envio */
+    private final boolean exito;
+
+    /** descripcion del error, o null si el envio se ha realizado */
+    private final String error;
+
+    private ResultadoEnvio(CanalEnvio canal, boolean exito, String error) {
+        this.canal = canal;
+        this.exito = exito;
+        this.error = error;
+    }
+
+    /** Crea el resultado de un envio realizado
+     * @param canal canal del envio
+     */
+    public static ResultadoEnvio exito(CanalEnvio canal) {
+        return new ResultadoEnvio(canal, true, null);
+    }
+
+    /** Crea el resultado de un envio fallido
+     * @param canal canal del envio
+     * @param error descripcion del error
+     */
+    public static ResultadoEnvio fallo(CanalEnvio canal, String error) {
+        return new ResultadoEnvio(canal, false, error);
+    }
+
+    /** Recupera el canal por el que se ha intentado el envio */
+    public CanalEnvio getCanal() {
+        return canal;
+    }
+
+    /** Indica si el envio se ha realizado */
+    public boolean isExito() {
+        return exito;
+    }
+
+    /** Recupera la descripcion del error, o null si el envio se ha realizado */
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return exito ? canal + ": enviado" : canal + ": error (" + error + ")";
+    }
+}
@@ -6,11 +6,13 @@ import android.content.Intent;
 import android.app.Activity;
 import android.util.Log;
 
+import java.util.concurrent.CompletableFuture;
+
 /** Concrete implementor utilizando la actividad de envio de SMS. No funciona en el emulador si no se ha configurado previamente */
 public class SMSImplementor implements SendImplementor {
 
     /** actividad desde la cual se abrira la actividad de envio de SMS */
-    private Activity sourceActivity;
+    private volatile Activity sourceActivity;
 
     /** Constructor
      * @param source actividad desde la cual se abrira la actividad de envio de SMS
@@ -30,17 +32,28 @@ public class SMSImplementor implements SendImplementor {
     }
 
     /**
-     * Implementacion del metodo send utilizando la aplicacion de envio de SMS
+     * Implementacion del metodo send utilizando la aplicacion de envio de SMS.
+     * El envio se considera realizado cuando se abre la aplicacion de SMS con el mensaje
      * @param phone telefono
      * @param message cuerpo del mensaje
      */
-    public void send (String phone, String message) {
+    public CompletableFuture<ResultadoEnvio> send (String phone, String message) {
         Log.d("SMSImplementor", message);
-        Uri smsUri = Uri.parse("sms:" + phone);
-        Intent sendIntent = new Intent(Intent.ACTION_VIEW, smsUri);
-        sendIntent.putExtra("sms_body", message);
-        getSourceActivity().startActivity(sendIntent);
-        Log.d("SMSImplementor", "Se ha terminado la funcion send");
+        Activity actividad = getSourceActivity();
+        if (actividad == null) {
+            return CompletableFuture.completedFuture(ResultadoEnvio.fallo(CanalEnvio.SMS, "Sin actividad desde la que abrir la aplicacion de SMS"));
+        }
+        try {
+            Uri smsUri = Uri.parse("sms:" + phone);
+            Intent sendIntent = new Intent(Intent.ACTION_VIEW, smsUri);
+            sendIntent.putExtra("sms_body", message);
+            actividad.startActivity(sendIntent);
+            Log.d("SMSImplementor", "Se ha terminado la funcion send");
+            return CompletableFuture.completedFuture(ResultadoEnvio.exito(CanalEnvio.SMS));
+        } catch (RuntimeException e) {
+            Log.e("SMSImplementor", "Error al abrir la aplicacion de SMS", e);
+            return CompletableFuture.completedFuture(ResultadoEnvio.fallo(CanalEnvio.SMS, e.toString()));
+        }
    }
 
 }
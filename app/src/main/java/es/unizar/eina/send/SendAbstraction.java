@@ -1,10 +1,14 @@
 package es.unizar.eina.send;
 
+import java.util.concurrent.CompletableFuture;
+
 /** Define la interfaz de la abstraccion */
 public interface SendAbstraction {
 
 	/** Definicion del metodo que permite realizar el envio del mensaje con texto 'message'
+     * @param phone telefono
      * @param message cuerpo del mensaje
+     * @return futuro que se completa con el resultado del envio
      */
-	public void send(String phone, String message);
+	public CompletableFuture<ResultadoEnvio> send(String phone, String message);
 }
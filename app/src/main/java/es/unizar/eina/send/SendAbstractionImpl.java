@@ -2,27 +2,40 @@ package es.unizar.eina.send;
 
 import android.app.Activity;
 
-/** Implementa la interfaz de la abstraccion utilizando (delegando a) una referencia a un objeto de tipo implementor  */
+import java.util.concurrent.CompletableFuture;
+
+/** Implementa la interfaz de la abstraccion utilizando (delegando a) el implementor de un canal de un registro de implementors  */
 public class SendAbstractionImpl implements SendAbstraction {
-	
-	/** objeto delegado que facilita la implementacion del metodo send */
-	private SendImplementor implementor;
-	
-	/** Constructor de la clase. Inicializa el objeto delegado
+
+	/** registro del que se obtiene el implementor del canal */
+	private final RegistroImplementores registro;
+
+	/** canal por el que se envian los mensajes */
+	private final CanalEnvio canal;
+
+	/** Constructor de la clase. Utiliza el registro de la aplicacion, de modo que los envios se suman a sus metricas
 	 * @param sourceActivity actividad desde la cual se abrira la actividad encargada de realizar el envio
-	 * @param method parametro potencialmente utilizable para instanciar el objeto delegado
+	 * @param canal canal por el que se enviaran los mensajes
+	 */
+	public SendAbstractionImpl(Activity sourceActivity, CanalEnvio canal) {
+		this(RegistroImplementores.getInstancia().usarActividad(sourceActivity), canal);
+	}
+
+	/** Constructor de la clase a partir de un registro de implementors ya creado
+	 * @param registro registro del que se obtiene el implementor del canal
+	 * @param canal canal por el que se enviaran los mensajes
 	 */
-	public SendAbstractionImpl(Activity sourceActivity, String method) {
-		if (method.equalsIgnoreCase ("SMS"))
-			implementor = new SMSImplementor(sourceActivity);
-		else
-			implementor = new WhatsAppImplementor(sourceActivity);
+	public SendAbstractionImpl(RegistroImplementores registro, CanalEnvio canal) {
+		this.registro = registro;
+		this.canal = canal;
 	}
 
-	/** Envia la correo con el asunto (subject) y cuerpo (body) que se reciben como parametros a traves de un objeto delegado
+	/** Envia el mensaje al telefono que se recibe como parametro a traves del implementor del canal
+     * @param phone telefono
      * @param message cuerpo del mensaje
+     * @return futuro que se completa con el resultado del envio
      */
-	public void send(String phone, String message) {
-		implementor.send(phone, message);
+	public CompletableFuture<ResultadoEnvio> send(String phone, String message) {
+		return registro.enviar(canal, phone, message);
 	}
 }
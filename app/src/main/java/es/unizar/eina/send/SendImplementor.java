@@ -2,6 +2,8 @@ package es.unizar.eina.send;
 
 import android.app.Activity;
 
+import java.util.concurrent.CompletableFuture;
+
 /** 
  * Define la interfaz para las clases de la implementacion.
  * La interfaz no se tiene que corresponder directamente con la interfaz de la abstraccion.
@@ -15,7 +17,12 @@ public interface SendImplementor {
    /**  Recupera la actividad desde la cual se abrira la actividad de envio */
    public Activity getSourceActivity();
 
-   /** Permite lanzar la actividad encargada de gestionar el envio de notas */
-   public void send (String phone, String message);
+   /** Permite lanzar la actividad encargada de gestionar el envio de notas.
+    * El futuro se completa con el resultado del envio; los errores se devuelven como un resultado
+    * fallido en lugar de mostrarse o ignorarse dentro del implementor
+    * @param phone telefono
+    * @param message cuerpo del mensaje
+    */
+   public CompletableFuture<ResultadoEnvio> send (String phone, String message);
 
 }
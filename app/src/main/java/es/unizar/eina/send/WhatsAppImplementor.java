@@ -7,13 +7,15 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 
 import android.app.Activity;
-import android.widget.Toast;
+import android.util.Log;
+
+import java.util.concurrent.CompletableFuture;
 
 /** Concrete implementor utilizando la aplicacion de WhatsApp. No funciona en el emulador si no se ha configurado previamente */
 public class WhatsAppImplementor implements SendImplementor{
 
    /** actividad desde la cual se abrira la aplicacion de WhatsApp */
-   private Activity sourceActivity;
+   private volatile Activity sourceActivity;
    /** Constructor
     * @param source actividad desde la cual se abrira la aplicacion de Whatsapp
     */
@@ -32,19 +34,25 @@ public class WhatsAppImplementor implements SendImplementor{
    }
 
     /**
-     * Implementacion del metodo send utilizando la aplicacion de WhatsApp
+     * Implementacion del metodo send utilizando la aplicacion de WhatsApp.
+     * El envio se considera realizado cuando se abre WhatsApp con el mensaje
      * @param phone telefono
      * @param message cuerpo del mensaje
      */
-    public void send (String phone, String message) {
+    public CompletableFuture<ResultadoEnvio> send (String phone, String message) {
+        Activity actividad = getSourceActivity();
+        if (actividad == null) {
+            return CompletableFuture.completedFuture(ResultadoEnvio.fallo(CanalEnvio.WHATSAPP, "Sin actividad desde la que abrir WhatsApp"));
+        }
         try {
             String url = "https://api.whatsapp.com/send?phone=" + phone + "&text=" + Uri.encode(message);
             Intent sendIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
             sendIntent.setPackage("com.whatsapp");
-            getSourceActivity().startActivity(sendIntent);
+            actividad.startActivity(sendIntent);
+            return CompletableFuture.completedFuture(ResultadoEnvio.exito(CanalEnvio.WHATSAPP));
         } catch (Exception e) {
-            Toast.makeText(getSourceActivity(), "Error al abrir WhatsApp", Toast.LENGTH_SHORT).show();
-            e.printStackTrace();
+            Log.e("WhatsAppImplementor", "Error al abrir WhatsApp", e);
+            return CompletableFuture.completedFuture(ResultadoEnvio.fallo(CanalEnvio.WHATSAPP, e.toString()));
         }
     }
 }
@@ -0,0 +1,167 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las actualizaciones condicionadas a la version de {@link ReservaRepository} y
+ * {@link ParcelaRepository}, ejecutadas con Robolectric sobre una base de datos en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ActualizacionVersionTest {
+
+    private CampingRoomDatabase mDb;
+    private ReservaRepository mReservas;
+    private ParcelaRepository mParcelas;
+    private int mReservaId;
+    private int mParcelaId;
+
+    @Before
+    public void abrir() {
+        Application application = ApplicationProvider.getApplicationContext();
+        mDb = Room.inMemoryDatabaseBuilder(application, CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        mReservas = new ReservaRepository(mDb);
+        mParcelas = new ParcelaRepository(mDb);
+        mParcelaId = (int) mDb.parcelaDao().insert(new Parcela("Aneto", 8, 10.0, "120m2"));
+        mReservaId = (int) mDb.reservaDao().insert(new Reserva("Juan", "600000000",
+                new Date(1736467200000L), new Date(1736812800000L), 40.0));
+    }
+
+    @After
+    public void cerrar() {
+        mDb.close();
+    }
+
+    @Test
+    public void actualizaSiLaVersionNoHaCambiado() {
+        Reserva reserva = mReservas.getReservaById(mReservaId);
+        assertEquals(0, reserva.getVersion());
+        reserva.setNombreCliente("Juana");
+
+        ResultadoActualizacion<Reserva> resultado = mReservas.updateSiVersion(reserva);
+        assertTrue(resultado.isActualizada());
+        assertEquals(1, resultado.getFila().getVersion());
+        // La misma copia, ya con la version nueva, se puede volver a guardar
+        reserva.setNumeroMovil("611111111");
+        assertTrue(mReservas.updateSiVersion(reserva).isActualizada());
+
+        Reserva guardada = mReservas.getReservaById(mReservaId);
+        assertEquals("Juana", guardada.getNombreCliente());
+        assertEquals("611111111", guardada.getNumeroMovil());
+        assertEquals(2, guardada.getVersion());
+    }
+
+    @Test
+    public void rechazaLaEdicionDeUnaCopiaAntigua() {
+        Reserva primera = mReservas.getReservaById(mReservaId);
+        Reserva segunda = mReservas.getReservaById(mReservaId);
+        primera.setNombreCliente("Juana");
+        assertTrue(mReservas.updateSiVersion(primera).isActualizada());
+
+        segunda.setNombreCliente("Juanito");
+        ResultadoActualizacion<Reserva> resultado = mReservas.updateSiVersion(segunda);
+        assertEquals(ResultadoActualizacion.Estado.CONFLICTO, resultado.getEstado());
+        assertEquals("Juana", resultado.getFila().getNombreCliente());
+        assertEquals(1, resultado.getFila().getVersion());
+        assertEquals("Juana", mReservas.getReservaById(mReservaId).getNombreCliente());
+
+        // Con la fila del conflicto se puede volver a intentar
+        Reserva actual = resultado.getFila();
+        actual.setNombreCliente("Juanito");
+        assertTrue(mReservas.updateSiVersion(actual).isActualizada());
+    }
+
+    @Test
+    public void laActualizacionSinVersionTambienLaIncrementa() {
+        Reserva antigua = mReservas.getReservaById(mReservaId);
+        Reserva otra = mReservas.getReservaById(mReservaId);
+        otra.setNombreCliente("Ana");
+        assertEquals(1, mReservas.update(otra));
+
+        antigua.setNombreCliente("Luisa");
+        assertTrue(mReservas.updateSiVersion(antigua).isConflicto());
+        assertEquals(1, mReservas.getReservaById(mReservaId).getVersion());
+    }
+
+    @Test
+    public void distingueLasFilasQueNoExisten() {
+        Reserva reserva = mReservas.getReservaById(mReservaId);
+        mDb.reservaDao().delete(reserva);
+        assertEquals(ResultadoActualizacion.Estado.NO_ENCONTRADA, mReservas.updateSiVersion(reserva).getEstado());
+        assertNull(mReservas.updateSiVersion(reserva).getFila());
+    }
+
+    @Test
+    public void guardaLaReservaConSusParcelasReservadas() {
+        int otraParcela = (int) mDb.parcelaDao().insert(new Parcela("Moncayo", 4, 12.0, "80m2"));
+        Reserva nueva = new Reserva("Ana", "622222222", new Date(1736467200000L), new Date(1736812800000L), 0.0);
+        List<ParcelaReservada> lineas = new ArrayList<>(Arrays.asList(
+                new ParcelaReservada(0, mParcelaId, 2, 1000, 4),
+                new ParcelaReservada(0, otraParcela, 3, 1200, 4)));
+        int reservaId = (int) mReservas.insertConParcelas(nueva, lineas);
+        assertTrue(reservaId > 0);
+        List<Integer> ids = mDb.parcelaReservadaDao().getIdsByReservaId(reservaId);
+        assertEquals(2, ids.size());
+
+        // Se modifica una linea, se quita la otra y se anade una nueva
+        ReservaConParcelas guardada = mReservas.getReservaConParcelas(reservaId);
+        ParcelaReservada modificada = guardada.parcelas.get(0).parcelaReservada;
+        modificada.setNumeroOcupantes(1);
+        Reserva reserva = guardada.reserva;
+        ResultadoActualizacion<Reserva> resultado = mReservas.updateConParcelas(reserva,
+                Arrays.asList(modificada, new ParcelaReservada(0, otraParcela, 4, 1200, 4)));
+        assertTrue(resultado.isActualizada());
+        assertEquals(1, reserva.getVersion());
+
+        guardada = mReservas.getReservaConParcelas(reservaId);
+        assertEquals(2, guardada.parcelas.size());
+        assertTrue(guardada.parcelas.stream().anyMatch(p -> p.parcelaReservada.getId() == modificada.getId()
+                && p.parcelaReservada.getNumeroOcupantes() == 1));
+        assertTrue(guardada.parcelas.stream().anyMatch(p -> p.parcelaReservada.getNumeroOcupantes() == 4));
+        assertTrue(guardada.parcelas.stream().noneMatch(p -> p.parcelaReservada.getNumeroOcupantes() == 3));
+    }
+
+    @Test
+    public void noGuardaLasParcelasReservadasSiHayConflicto() {
+        Reserva antigua = mReservas.getReservaById(mReservaId);
+        Reserva otra = mReservas.getReservaById(mReservaId);
+        assertTrue(mReservas.updateSiVersion(otra).isActualizada());
+
+        ResultadoActualizacion<Reserva> resultado = mReservas.updateConParcelas(antigua,
+                Arrays.asList(new ParcelaReservada(0, mParcelaId, 2, 1000, 4)));
+        assertTrue(resultado.isConflicto());
+        assertEquals(0, antigua.getVersion());
+        assertTrue(mDb.parcelaReservadaDao().getIdsByReservaId(mReservaId).isEmpty());
+    }
+
+    @Test
+    public void detectaLasEdicionesConcurrentesDeParcelas() {
+        Parcela primera = mParcelas.getParcelaById(mParcelaId);
+        Parcela segunda = mParcelas.getParcelaById(mParcelaId);
+        primera.setDescripcion("150m2");
+        assertTrue(mParcelas.updateSiVersion(primera).isActualizada());
+
+        segunda.setMaxOcupantes(2);
+        ResultadoActualizacion<Parcela> resultado = mParcelas.updateSiVersion(segunda);
+        assertTrue(resultado.isConflicto());
+        assertEquals("150m2", resultado.getFila().getDescripcion());
+        assertEquals(8, mParcelas.getParcelaById(mParcelaId).getMaxOcupantes());
+    }
+}
@@ -0,0 +1,101 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link ArchivoRepository} sobre una base de datos en memoria, ejecutadas con Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ArchivoRepositoryTest {
+
+    private static final long DIA = 24L * 60 * 60 * 1000;
+
+    private CampingRoomDatabase mDb;
+    private ArchivoRepository mArchivo;
+    private int mParcelaId;
+
+    @Before
+    public void abrir() {
+        Application application = ApplicationProvider.getApplicationContext();
+        mDb = Room.inMemoryDatabaseBuilder(application, CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        CampingRoomDatabase.crearTriggersResumen(mDb.getOpenHelper().getWritableDatabase());
+        mArchivo = new ArchivoRepository(mDb);
+        mParcelaId = (int) mDb.parcelaDao().insert(new Parcela("Aneto", 8, 10.0, "120m2"));
+    }
+
+    @After
+    public void cerrar() {
+        mDb.close();
+    }
+
+    private int insertarReserva(String cliente, Date entrada, int noches, int ocupantes) {
+        Date salida = new Date(entrada.getTime() + noches * DIA);
+        int id = (int) mDb.reservaDao().insert(new Reserva(cliente, "600000000", entrada, salida,
+                CalculadoraPrecio.importeCentimos(1000, ocupantes, noches)));
+        mDb.parcelaReservadaDao().insert(new ParcelaReservada(id, mParcelaId, ocupantes, 1000, noches));
+        return id;
+    }
+
+    @Test
+    public void archivaSoloLasReservasAnterioresAlHorizonte() {
+        Date antigua = new Date(System.currentTimeMillis() - 400 * DIA);
+        int idAntigua = insertarReserva("Juan", antigua, 4, 2);
+        int idReciente = insertarReserva("Luisa", new Date(System.currentTimeMillis() - 10 * DIA), 2, 1);
+        int mes = ResumenMensual.mesDe(antigua);
+        ResumenMensual resumenAntes = mDb.resumenMensualDao().getResumen(mParcelaId, mes);
+        long ingresosAntes = mDb.parcelaReservadaDao().getIngresosCentimosByParcelaId(mParcelaId);
+
+        assertEquals(1, mArchivo.archivarAnterioresA(ArchivoRepository.HORIZONTE_DIAS));
+
+        assertNull(mDb.reservaDao().getReservaById(idAntigua));
+        assertNotNull(mDb.reservaDao().getReservaById(idReciente));
+        ReservaArchivada archivada = mArchivo.getReservaArchivadaById(idAntigua);
+        assertEquals("Juan", archivada.getNombreCliente());
+        assertEquals(8000, archivada.getPrecioTotalCentimos());
+        List<ParcelaReservadaArchivada> lineas = mArchivo.getParcelasReservadasArchivadas(idAntigua);
+        assertEquals(1, lineas.size());
+        assertEquals(8000, lineas.get(0).getImporteCentimos());
+
+        // Los resumenes e informes de ingresos no cambian al archivar
+        ResumenMensual resumenDespues = mDb.resumenMensualDao().getResumen(mParcelaId, mes);
+        assertEquals(resumenAntes.getIngresosCentimos(), resumenDespues.getIngresosCentimos());
+        assertEquals(resumenAntes.getNochesVendidas(), resumenDespues.getNochesVendidas());
+        assertEquals(ingresosAntes, mDb.parcelaReservadaDao().getIngresosCentimosByParcelaId(mParcelaId));
+        assertEquals(8000, mDb.reservaDao().getIngresosCentimosEntre(antigua, new Date(antigua.getTime() + DIA)));
+
+        assertEquals(1, mArchivo.buscarPorNombreCliente("jua", 10).size());
+        assertEquals(0, mArchivo.archivarAnterioresA(ArchivoRepository.HORIZONTE_DIAS));
+    }
+
+    @Test
+    public void archivaPorLotes() {
+        Date entrada = new Date(System.currentTimeMillis() - 30 * DIA);
+        for (int i = 0; i < ArchivoRepository.TAMANO_LOTE + 20; i++) {
+            insertarReserva("Cliente " + i, entrada, 1, 1);
+        }
+        assertEquals(ArchivoRepository.TAMANO_LOTE + 20, mArchivo.archivarAnterioresA(7));
+        assertEquals(ArchivoRepository.TAMANO_LOTE + 20, mArchivo.getNumeroReservasArchivadas());
+        assertEquals(0, mDb.reservaDao().getReservasConEntradaEntre(new Date(0), new Date()).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rechazaUnHorizonteNegativo() {
+        mArchivo.archivarAnterioresA(-1);
+    }
+}
@@ -0,0 +1,120 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link NumeroTelefono} y de la busqueda de reservas por una parte inicial del
+ * telefono, ejecutadas con Robolectric sobre una base de datos en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BusquedaTelefonoTest {
+
+    private CampingRoomDatabase mDb;
+    private ReservaRepository mReservas;
+
+    @Before
+    public void abrir() {
+        mDb = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        mReservas = new ReservaRepository(mDb);
+    }
+
+    @After
+    public void cerrar() {
+        mDb.close();
+    }
+
+    private void insertar(String cliente, String telefono) {
+        mDb.reservaDao().insert(new Reserva(cliente, telefono,
+                new Date(1736467200000L), new Date(1736812800000L), 40.0));
+    }
+
+    private List<String> clientes(List<Reserva> reservas) {
+        List<String> nombres = new ArrayList<>();
+        for (Reserva reserva : reservas) {
+            nombres.add(reserva.getNombreCliente());
+        }
+        return nombres;
+    }
+
+    @Test
+    public void normalizaLosTelefonos() {
+        assertEquals("612345678", NumeroTelefono.normalizar(" 612 34-56.78 "));
+        assertEquals("34612345678", NumeroTelefono.normalizar("+34 (612) 345 678"));
+        assertEquals("34612345678", NumeroTelefono.normalizar("0034 612345678"));
+        assertEquals("", NumeroTelefono.normalizar("+"));
+        assertTrue(NumeroTelefono.esValido("612345678"));
+        assertTrue(NumeroTelefono.esValido("123456789012345"));
+        assertFalse(NumeroTelefono.esValido("61234567"));
+        assertFalse(NumeroTelefono.esValido("1234567890123456"));
+        assertEquals("613", NumeroTelefono.finPrefijo("612"));
+        assertEquals("6:", NumeroTelefono.finPrefijo("69"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rechazaLosTelefonosConLetras() {
+        NumeroTelefono.normalizar("612 ABC 678");
+    }
+
+    @Test
+    public void guardaLosTelefonosQueNoCabenEnUnEntero() {
+        insertar("Largo", "447700900123456");
+        assertEquals("447700900123456", mReservas.buscarPorTelefono("44770").get(0).getNumeroMovil());
+    }
+
+    @Test
+    public void buscaPorLaParteInicialDelTelefono() {
+        insertar("Juan", "612345678");
+        insertar("Ana", "612399999");
+        insertar("Luis", "613000000");
+        insertar("Eva", "699000000");
+
+        assertEquals(Arrays.asList("Juan", "Ana"), clientes(mReservas.buscarPorTelefono("6123")));
+        assertEquals(Arrays.asList("Juan", "Ana", "Luis"), clientes(mReservas.buscarPorTelefono("61")));
+        assertEquals(Arrays.asList("Eva"), clientes(mReservas.buscarPorTelefono("69")));
+        assertEquals(Arrays.asList("Juan"), clientes(mReservas.buscarPorTelefono("612 34")));
+        assertTrue(mReservas.buscarPorTelefono("7").isEmpty());
+        assertTrue(mReservas.buscarPorTelefono("").isEmpty());
+        assertTrue(mReservas.buscarPorTelefono("abc").isEmpty());
+    }
+
+    @Test
+    public void limitaElNumeroDeResultados() {
+        for (int i = 0; i < ReservaRepository.MAX_RESULTADOS_TELEFONO + 10; i++) {
+            insertar("Cliente " + i, String.valueOf(600000000 + i));
+        }
+        assertEquals(ReservaRepository.MAX_RESULTADOS_TELEFONO, mReservas.buscarPorTelefono("6").size());
+    }
+
+    @Test
+    public void laBusquedaRecorreSoloUnRangoDelIndice() {
+        List<String> pasos = new ArrayList<>();
+        try (Cursor cursor = mDb.query("EXPLAIN QUERY PLAN " + ReservaDao.BUSQUEDA_POR_TELEFONO,
+                new Object[]{"612", "613", 50})) {
+            int detalle = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                pasos.add(cursor.getString(detalle));
+            }
+        }
+        assertEquals(pasos.toString(), 1, pasos.size());
+        assertTrue(pasos.toString(), pasos.get(0).startsWith("SEARCH"));
+        assertTrue(pasos.toString(), pasos.get(0).contains("USING INDEX index_reserva_numeroMovil"));
+    }
+}
@@ -0,0 +1,162 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de los clientes: los triggers de {@link SqlClientes}, su reconstruccion en la migracion
+ * y el historial de {@link ClienteRepository}. Se ejecutan con Robolectric sobre una base de
+ * datos en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ClienteRepositoryTest {
+
+    private static final long DIA = 24L * 60 * 60 * 1000;
+
+    private CampingRoomDatabase mDb;
+    private ClienteRepository mClientes;
+
+    @Before
+    public void abrir() {
+        mDb = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        CampingRoomDatabase.crearTriggersCambios(db);
+        CampingRoomDatabase.crearTriggersClientes(db);
+        mClientes = new ClienteRepository(mDb);
+    }
+
+    @After
+    public void cerrar() {
+        mDb.close();
+    }
+
+    private int insertar(String cliente, String telefono, int dia) {
+        return (int) mDb.reservaDao().insert(new Reserva(cliente, telefono,
+                new Date(1736467200000L + dia * DIA), new Date(1736467200000L + (dia + 2) * DIA), 40.0));
+    }
+
+    private int clienteDe(int reservaId) {
+        return mDb.reservaDao().getReservaById(reservaId).getClienteId();
+    }
+
+    @Test
+    public void asignaElMismoClienteALasReservasDelMismoNombreYTelefono() {
+        int primera = insertar("Juan", "612345678", 0);
+        int segunda = insertar("Juan", "612345678", 10);
+        int mismoTelefono = insertar("Juana", "612345678", 20);
+
+        assertEquals(clienteDe(primera), clienteDe(segunda));
+        assertNotEquals(clienteDe(primera), clienteDe(mismoTelefono));
+        Cliente juan = mClientes.getClienteById(clienteDe(primera));
+        assertEquals("Juan", juan.getNombre());
+        assertEquals("612345678", juan.getNumeroMovil());
+        assertEquals(2, mClientes.buscarPorTelefono("612 345").size());
+    }
+
+    @Test
+    public void cambiaElClienteAlCambiarElNombreOElTelefono() {
+        int reservaId = insertar("Juan", "612345678", 0);
+        int juan = clienteDe(reservaId);
+
+        Reserva reserva = mDb.reservaDao().getReservaById(reservaId);
+        reserva.setNumeroMovil("699999999");
+        assertTrue(new ReservaRepository(mDb).updateSiVersion(reserva).isActualizada());
+        int nuevo = clienteDe(reservaId);
+        assertNotEquals(juan, nuevo);
+        assertEquals("699999999", mClientes.getClienteById(nuevo).getNumeroMovil());
+
+        // Una reserva guardada sin su cliente lo recupera
+        reserva = mDb.reservaDao().getReservaById(reservaId);
+        reserva.setClienteId(null);
+        mDb.reservaDao().update(reserva);
+        assertEquals(nuevo, clienteDe(reservaId));
+    }
+
+    @Test
+    public void elDiarioNoRegistraLaAsignacionDelCliente() {
+        insertar("Juan", "612345678", 0);
+        List<Cambio> cambios = new DiarioCambios(mDb).getCambiosDesde(0, 10);
+        assertEquals(1, cambios.size());
+        assertEquals(Cambio.Operacion.INSERT, cambios.get(0).getOperacion());
+    }
+
+    @Test
+    public void devuelveElHistorialDelClienteConLasReservasArchivadas() {
+        int antigua = insertar("Juan", "612345678", 0);
+        int media = insertar("Juan", "612345678", 30);
+        int reciente = insertar("Juan", "612345678", 60);
+        insertar("Luisa", "698765432", 45);
+        int juan = clienteDe(antigua);
+        mDb.archivoDao().copiarReservas(Collections.singletonList(antigua), new Date());
+        mDb.archivoDao().borrarReservas(Collections.singletonList(antigua));
+
+        List<Integer> vigentes = new ArrayList<>();
+        for (Reserva reserva : mClientes.getReservas(juan)) {
+            vigentes.add(reserva.getId());
+        }
+        assertEquals(Arrays.asList(reciente, media), vigentes);
+        List<ReservaArchivada> archivadas = mClientes.getReservasArchivadas(juan);
+        assertEquals(1, archivadas.size());
+        assertEquals(antigua, archivadas.get(0).getId());
+        assertEquals(Integer.valueOf(juan), archivadas.get(0).getClienteId());
+    }
+
+    @Test
+    public void reconstruirDescartaLosClientesRepetidos() {
+        insertar("Juan", "612345678", 0);
+        insertar("Luisa", "698765432", 10);
+        insertar("Juan", "612345678", 20);
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        // Estado de una base de datos anterior a los clientes
+        for (String sql : SqlClientes.borrarTriggers()) {
+            db.execSQL(sql);
+        }
+        db.execSQL("UPDATE reserva SET clienteId = NULL");
+        db.execSQL("DELETE FROM cliente");
+
+        for (String sql : SqlClientes.reconstruir()) {
+            db.execSQL(sql);
+        }
+        try (Cursor cursor = mDb.query("SELECT COUNT(*), COUNT(DISTINCT clienteId), COUNT(clienteId) FROM reserva", null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(3, cursor.getInt(2));
+            assertEquals(2, cursor.getInt(1));
+        }
+        assertEquals(2, mClientes.buscarPorTelefono("6").size());
+    }
+
+    @Test
+    public void elHistorialSoloLeeLasReservasDelCliente() {
+        for (String sql : new String[]{ClienteDao.HISTORIAL, ClienteDao.HISTORIAL_ARCHIVADO}) {
+            List<String> pasos = new ArrayList<>();
+            try (Cursor cursor = mDb.query("EXPLAIN QUERY PLAN " + sql, new Object[]{1})) {
+                int detalle = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    pasos.add(cursor.getString(detalle));
+                }
+            }
+            assertEquals(pasos.toString(), 1, pasos.size());
+            assertTrue(pasos.toString(), pasos.get(0).startsWith("SEARCH"));
+            assertTrue(pasos.toString(), pasos.get(0).contains("_clienteId_fechaEntrada"));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link CopiaSeguridad}, ejecutadas con Robolectric. Room no permite consultas en el
+ * hilo principal, por lo que los accesos a la base de datos se hacen en su ejecutor.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CopiaSeguridadTest {
+
+    private static <T> T enSegundoPlano(Callable<T> tarea) throws Exception {
+        return CampingRoomDatabase.databaseWriteExecutor.submit(tarea).get();
+    }
+
+    @Test
+    public void restauraLosDatosDeLaInstantanea() throws Exception {
+        Application application = ApplicationProvider.getApplicationContext();
+        RegistroCampings registro = new RegistroCampings(application, RegistroCampings.MAXIMO_ABIERTAS);
+        CopiaSeguridad copia = new CopiaSeguridad(registro, "copia");
+        File instantanea = new File(application.getCacheDir(), "copia.db");
+
+        enSegundoPlano(() -> registro.getDatabase("copia").parcelaDao().insert(new Parcela("Aneto", 8, 10.0, "")));
+        assertTrue(enSegundoPlano(() -> copia.crearInstantanea(instantanea)) > 0);
+        assertFalse(new File(instantanea.getPath() + "-wal").exists());
+        enSegundoPlano(() -> registro.getDatabase("copia").parcelaDao().insert(new Parcela("Cinca", 4, 25.0, "")));
+
+        CampingRoomDatabase anterior = registro.getDatabase("copia");
+        enSegundoPlano(() -> {
+            copia.restaurar(instantanea);
+            return null;
+        });
+        assertFalse(anterior.isOpen());
+        ParcelaDao parcelaDao = registro.getDatabase("copia").parcelaDao();
+        assertNotNull(enSegundoPlano(() -> parcelaDao.getIdParcelaByNombre("Aneto")));
+        assertNull(enSegundoPlano(() -> parcelaDao.getIdParcelaByNombre("Cinca")));
+        assertTrue(instantanea.exists());
+    }
+
+    @Test
+    public void noTocaLaBaseDeDatosSiLaInstantaneaEstaDanada() throws Exception {
+        Application application = ApplicationProvider.getApplicationContext();
+        RegistroCampings registro = new RegistroCampings(application, RegistroCampings.MAXIMO_ABIERTAS);
+        CopiaSeguridad copia = new CopiaSeguridad(registro, "danada");
+        File instantanea = new File(application.getCacheDir(), "danada.db");
+        try (FileOutputStream salida = new FileOutputStream(instantanea)) {
+            salida.write("no es una base de datos".getBytes(StandardCharsets.UTF_8));
+        }
+        CampingRoomDatabase db = registro.getDatabase("danada");
+        enSegundoPlano(() -> db.parcelaDao().insert(new Parcela("Aneto", 8, 10.0, "")));
+
+        assertThrows(IOException.class, () -> copia.restaurar(instantanea));
+        assertSame(db, registro.getDatabase("danada"));
+        assertNotNull(enSegundoPlano(() -> db.parcelaDao().getIdParcelaByNombre("Aneto")));
+        assertFalse(new File(registro.getFichero("danada").getPath() + ".tmp").exists());
+    }
+}
@@ -0,0 +1,274 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.lifecycle.LiveData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import es.unizar.eina.send.CanalEnvio;
+import es.unizar.eina.send.LogImplementor;
+import es.unizar.eina.send.RegistroImplementores;
+import es.unizar.eina.send.ResultadoEnvio;
+import es.unizar.eina.send.SendImplementor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de {@link DespachadorMensajes}, usando una cola en memoria,
+ * un reloj simulado y {@link LogImplementor} como implementor de envio.
+ */
+public class DespachadorMensajesTest {
+
+    private ColaEnMemoria cola;
+    private RelojSimulado reloj;
+    private LogImplementor implementor;
+    private RegistroImplementores registro;
+
+    @Before
+    public void setUp() {
+        cola = new ColaEnMemoria();
+        reloj = new RelojSimulado();
+        implementor = new LogImplementor();
+        registro = new RegistroImplementores();
+        registro.registrar(CanalEnvio.LOCAL, implementor);
+    }
+
+    @Test
+    public void enviaTodosLosMensajesRespetandoElLimite() throws InterruptedException {
+        for (int i = 1; i <= 10; i++) {
+            cola.encolar(new MensajePendiente("m" + i, i, "60000000" + i, "texto " + i, CanalEnvio.LOCAL.name(), 0));
+        }
+        DespachadorMensajes despachador = new DespachadorMensajes(cola, registro, reloj, 4, 2, 3, 1000, 5000);
+
+        int procesados = 0;
+        int lote;
+        while ((lote = despachador.procesarLote()) > 0) {
+            procesados += lote;
+        }
+
+        assertEquals(10, procesados);
+        assertEquals(10, implementor.getEnviados().size());
+        assertEquals(10, cola.contarPorEstado(MensajePendiente.ENVIADO));
+        assertEquals(10, registro.getMetricas(CanalEnvio.LOCAL).getEnvios());
+        assertEquals(0, registro.getMetricas(CanalEnvio.LOCAL).getFallos());
+        // 2 mensajes por segundo: entre el primer y el ultimo envio pasan al menos 4,5 segundos
+        assertTrue(reloj.ahora >= 4500);
+    }
+
+    @Test
+    public void reintentaConEsperaCrecienteYMarcaFallido() throws InterruptedException {
+        registro.registrar(CanalEnvio.LOCAL, new SendImplementor() {
+            public void setSourceActivity(android.app.Activity source) { }
+            public android.app.Activity getSourceActivity() { return null; }
+            public CompletableFuture<ResultadoEnvio> send(String phone, String message) {
+                return CompletableFuture.completedFuture(ResultadoEnvio.fallo(CanalEnvio.LOCAL, "sin cobertura"));
+            }
+        });
+        cola.encolar(new MensajePendiente("m1", 1, "600000001", "texto", CanalEnvio.LOCAL.name(), 0));
+        DespachadorMensajes despachador = new DespachadorMensajes(cola, registro, reloj, 10, 100, 3, 1000, 5000);
+
+        assertEquals(1, despachador.procesarLote());
+        MensajePendiente mensaje = cola.mensajes.get(0);
+        assertEquals(MensajePendiente.PENDIENTE, mensaje.getEstado());
+        assertEquals(1, mensaje.getIntentos());
+        assertEquals(reloj.ahora + 1000, mensaje.getProximoIntento());
+
+        // Antes de que pase la espera no se vuelve a intentar
+        assertEquals(0, despachador.procesarLote());
+
+        reloj.ahora = mensaje.getProximoIntento();
+        assertEquals(1, despachador.procesarLote());
+        assertEquals(2, mensaje.getIntentos());
+        assertEquals(reloj.ahora + 2000, mensaje.getProximoIntento());
+
+        reloj.ahora = mensaje.getProximoIntento();
+        assertEquals(1, despachador.procesarLote());
+        assertEquals(MensajePendiente.FALLIDO, mensaje.getEstado());
+        assertEquals(3, mensaje.getIntentos());
+        assertEquals("sin cobertura", mensaje.getUltimoError());
+        assertEquals(3, registro.getMetricas(CanalEnvio.LOCAL).getFallos());
+    }
+
+    @Test
+    public void canalQueRequiereActividadMarcaFallidoSinEnviar() throws InterruptedException {
+        registro.registrar(CanalEnvio.SMS, implementor);
+        cola.encolar(new MensajePendiente("m1", 1, "600000001", "texto", CanalEnvio.SMS.name(), 0));
+        DespachadorMensajes despachador = new DespachadorMensajes(cola, registro, reloj, 10, 100, 3, 1000, 5000);
+
+        assertEquals(1, despachador.procesarLote());
+        assertEquals(MensajePendiente.FALLIDO, cola.mensajes.get(0).getEstado());
+        assertEquals(1, cola.mensajes.get(0).getIntentos());
+        assertTrue(implementor.getEnviados().isEmpty());
+    }
+
+    @Test
+    public void canalSinImplementorMarcaFallido() throws InterruptedException {
+        cola.encolar(new MensajePendiente("m1", 1, "600000001", "texto", CanalEnvio.SMS.name(), 0));
+        DespachadorMensajes despachador = new DespachadorMensajes(cola, registro, reloj, 10, 100, 3, 1000, 5000);
+
+        assertEquals(1, despachador.procesarLote());
+        assertEquals(MensajePendiente.FALLIDO, cola.mensajes.get(0).getEstado());
+        assertTrue(implementor.getEnviados().isEmpty());
+    }
+
+    @Test
+    public void cancelaLosEnviosQueNoTerminanATiempo() throws InterruptedException {
+        CompletableFuture<ResultadoEnvio> envioColgado = new CompletableFuture<>();
+        registro.registrar(CanalEnvio.LOCAL, new SendImplementor() {
+            public void setSourceActivity(android.app.Activity source) { }
+            public android.app.Activity getSourceActivity() { return null; }
+            public CompletableFuture<ResultadoEnvio> send(String phone, String message) {
+                return envioColgado;
+            }
+        });
+        cola.encolar(new MensajePendiente("m1", 1, "600000001", "texto", CanalEnvio.LOCAL.name(), 0));
+        DespachadorMensajes despachador = new DespachadorMensajes(cola, registro, reloj, 10, 100, 3, 1000, 50);
+
+        assertEquals(1, despachador.procesarLote());
+        assertTrue(envioColgado.isCancelled());
+        assertEquals("Tiempo de espera agotado", cola.mensajes.get(0).getUltimoError());
+        assertEquals(MensajePendiente.PENDIENTE, cola.mensajes.get(0).getEstado());
+
+        // Si el implementor termina despues, el envio no se vuelve a contar
+        envioColgado.complete(ResultadoEnvio.exito(CanalEnvio.LOCAL));
+        assertEquals(1, registro.getMetricas(CanalEnvio.LOCAL).getEnvios());
+        assertEquals(1, registro.getMetricas(CanalEnvio.LOCAL).getFallos());
+        assertEquals(1, registro.getMetricas(CanalEnvio.LOCAL).getAgotados());
+    }
+
+    @Test
+    public void laEsperaNoSuperaElMaximo() {
+        DespachadorMensajes despachador = new DespachadorMensajes(cola, registro, reloj, 10, 100, 50, 1000, 5000);
+        assertEquals(1000, despachador.calcularEspera(1));
+        assertEquals(8000, despachador.calcularEspera(4));
+        assertEquals(DespachadorMensajes.ESPERA_MAXIMA, despachador.calcularEspera(40));
+    }
+
+    /** Reloj que avanza solo cuando se espera */
+    private static class RelojSimulado implements DespachadorMensajes.Reloj {
+        long ahora = 0;
+
+        @Override
+        public long ahora() {
+            return ahora;
+        }
+
+        @Override
+        public void esperar(long milisegundos) {
+            ahora += milisegundos;
+        }
+    }
+
+    /** Implementacion en memoria de la cola de mensajes */
+    private static class ColaEnMemoria implements MensajePendienteDao {
+        final List<MensajePendiente> mensajes = new ArrayList<>();
+
+        void encolar(MensajePendiente mensaje) {
+            mensaje.setId(mensajes.size() + 1);
+            mensajes.add(mensaje);
+        }
+
+        private MensajePendiente buscar(int id) {
+            return mensajes.get(id - 1);
+        }
+
+        @Override
+        public long[] insertAll(List<MensajePendiente> nuevos) {
+            long[] ids = new long[nuevos.size()];
+            for (int i = 0; i < nuevos.size(); i++) {
+                encolar(nuevos.get(i));
+                ids[i] = nuevos.get(i).getId();
+            }
+            return ids;
+        }
+
+        @Override
+        public List<MensajePendiente> getListos(long ahora, int limite) {
+            List<MensajePendiente> listos = new ArrayList<>();
+            for (MensajePendiente mensaje : mensajes) {
+                if (listos.size() < limite && mensaje.getEstado() == MensajePendiente.PENDIENTE
+                        && mensaje.getProximoIntento() <= ahora) {
+                    listos.add(mensaje);
+                }
+            }
+            return listos;
+        }
+
+        @Override
+        public int marcarEnviando(List<Integer> ids) {
+            for (int id : ids) {
+                buscar(id).setEstado(MensajePendiente.ENVIANDO);
+            }
+            return ids.size();
+        }
+
+        @Override
+        public int marcarEnviado(int id, int intentos) {
+            buscar(id).setEstado(MensajePendiente.ENVIADO);
+            buscar(id).setIntentos(intentos);
+            return 1;
+        }
+
+        @Override
+        public int reprogramar(int id, int intentos, long proximoIntento, String error) {
+            MensajePendiente mensaje = buscar(id);
+            mensaje.setEstado(MensajePendiente.PENDIENTE);
+            mensaje.setIntentos(intentos);
+            mensaje.setProximoIntento(proximoIntento);
+            mensaje.setUltimoError(error);
+            return 1;
+        }
+
+        @Override
+        public int marcarFallido(int id, int intentos, String error) {
+            MensajePendiente mensaje = buscar(id);
+            mensaje.setEstado(MensajePendiente.FALLIDO);
+            mensaje.setIntentos(intentos);
+            mensaje.setUltimoError(error);
+            return 1;
+        }
+
+        @Override
+        public int reiniciarEnviando() {
+            int reiniciados = 0;
+            for (MensajePendiente mensaje : mensajes) {
+                if (mensaje.getEstado() == MensajePendiente.ENVIANDO) {
+                    mensaje.setEstado(MensajePendiente.PENDIENTE);
+                    reiniciados++;
+                }
+            }
+            return reiniciados;
+        }
+
+        @Override
+        public int contarPorEstado(int estado) {
+            int total = 0;
+            for (MensajePendiente mensaje : mensajes) {
+                if (mensaje.getEstado() == estado) {
+                    total++;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        public LiveData<Integer> observarPendientes() {
+            return null;
+        }
+
+        @Override
+        public List<MensajePendiente> getMensajesByReservaId(int reservaId) {
+            List<MensajePendiente> resultado = new ArrayList<>();
+            for (MensajePendiente mensaje : mensajes) {
+                if (mensaje.getReservaId() == reservaId) {
+                    resultado.add(mensaje);
+                }
+            }
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link DetectorHiloPrincipal}. Se ejecutan con Robolectric, donde el hilo de la prueba
+ * es el hilo principal, de modo que las llamadas a los repositorios desde la prueba lo bloquean.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DetectorHiloPrincipalTest {
+
+    private final DetectorHiloPrincipal mDetector = DetectorHiloPrincipal.getInstancia();
+
+    private ParcelaRepository crearRepositorio() {
+        Application application = ApplicationProvider.getApplicationContext();
+        ParcelaRepository repositorio = new ParcelaRepository(application);
+        mDetector.reiniciar();
+        return repositorio;
+    }
+
+    @After
+    public void restaurar() {
+        mDetector.setEstricto(false);
+        mDetector.setActivo(false);
+        mDetector.reiniciar();
+    }
+
+    @Test
+    public void registraElPuntoDeLlamadaYElTiempoBloqueado() {
+        ParcelaRepository repositorio = crearRepositorio();
+        mDetector.setActivo(true);
+        repositorio.getParcelaById(1);
+        repositorio.getParcelaById(2);
+
+        List<DetectorHiloPrincipal.Bloqueo> bloqueos = mDetector.getBloqueos();
+        assertEquals(1, bloqueos.size());
+        DetectorHiloPrincipal.Bloqueo bloqueo = bloqueos.get(0);
+        assertEquals("ParcelaRepository.getParcelaById", bloqueo.getMetodo());
+        assertTrue(bloqueo.getSitio(), bloqueo.getSitio().startsWith(
+                DetectorHiloPrincipalTest.class.getName() + ".registraElPuntoDeLlamadaYElTiempoBloqueado("));
+        assertEquals(2, bloqueo.getLlamadas());
+        assertTrue(bloqueo.getTotalNanos() > 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void elModoEstrictoHaceFallarLaLlamada() {
+        ParcelaRepository repositorio = crearRepositorio();
+        mDetector.setEstricto(true);
+        repositorio.getParcelaById(1);
+    }
+
+    @Test
+    public void inactivoNoRegistraNada() {
+        ParcelaRepository repositorio = crearRepositorio();
+        mDetector.setActivo(false);
+        repositorio.getParcelaById(1);
+        assertTrue(mDetector.getBloqueos().isEmpty());
+    }
+
+    @Test
+    public void elSitioEsQuienLlamaAlRepositorio() {
+        StackTraceElement[] pila = {
+                new StackTraceElement(DetectorHiloPrincipal.class.getName(), "registrar", "DetectorHiloPrincipal.java", 5),
+                new StackTraceElement(MetricasRepositorio.class.getName(), "ejecutar", "MetricasRepositorio.java", 10),
+                new StackTraceElement(ReservaRepository.class.getName(), "getReservaById", "ReservaRepository.java", 20),
+                new StackTraceElement("es.unizar.eina.M12_camping.ui.ReservaEdit", "populateFields", "ReservaEdit.java", 30),
+                new StackTraceElement("android.app.Activity", "performCreate", "Activity.java", 40)
+        };
+        assertEquals("es.unizar.eina.M12_camping.ui.ReservaEdit.populateFields(ReservaEdit.java:30)",
+                DetectorHiloPrincipal.sitioDeLlamada(pila));
+    }
+
+    @Test
+    public void elInventarioOrdenaPorTiempoBloqueado() {
+        DetectorHiloPrincipal detector = new DetectorHiloPrincipal();
+        detector.registrar("ParcelaRepository.isNombreDuplicado", "ParcelaEdit.guardar(ParcelaEdit.java:1)", 2000000);
+        detector.registrar("ReservaRepository.getParcelasDisponibles", "ReservaEdit.abrir(ReservaEdit.java:2)", 9000000);
+        detector.registrar("ParcelaRepository.isNombreDuplicado", "ParcelaEdit.guardar(ParcelaEdit.java:1)", 2000000);
+
+        StringWriter salida = new StringWriter();
+        detector.volcar(salida);
+        String[] lineas = salida.toString().split("\\R");
+        assertEquals(3, lineas.length);
+        assertTrue(lineas[1].startsWith("n=1 total=9.0 ms"));
+        assertTrue(lineas[2].startsWith("n=2 total=4.0 ms media=2.00 ms max=2.00 ms"));
+    }
+}
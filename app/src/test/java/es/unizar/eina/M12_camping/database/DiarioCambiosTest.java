@@ -0,0 +1,100 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link DiarioCambios} y de los triggers de {@link SqlCambios}, ejecutadas con
+ * Robolectric sobre una base de datos en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DiarioCambiosTest {
+
+    private CampingRoomDatabase mDb;
+    private DiarioCambios mDiario;
+
+    @Before
+    public void abrir() {
+        Application application = ApplicationProvider.getApplicationContext();
+        mDb = Room.inMemoryDatabaseBuilder(application, CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        CampingRoomDatabase.crearTriggersResumen(mDb.getOpenHelper().getWritableDatabase());
+        CampingRoomDatabase.crearTriggersCambios(mDb.getOpenHelper().getWritableDatabase());
+        mDiario = new DiarioCambios(mDb);
+    }
+
+    @After
+    public void cerrar() {
+        mDb.close();
+    }
+
+    @Test
+    public void registraCadaEscrituraEnOrden() {
+        int parcelaId = (int) mDb.parcelaDao().insert(new Parcela("Aneto", 8, 10.0, "120m2"));
+        Reserva reserva = new Reserva("Juan", "600000000", new Date(1736467200000L), new Date(1736812800000L), 40.0);
+        int reservaId = (int) mDb.reservaDao().insert(reserva);
+        int lineaId = (int) mDb.parcelaReservadaDao().insert(new ParcelaReservada(reservaId, parcelaId, 1, 1000, 4));
+        reserva.setId(reservaId);
+        reserva.setNombreCliente("Juana");
+        mDb.reservaDao().update(reserva);
+        mDb.reservaDao().delete(reserva);
+
+        List<Cambio> cambios = mDiario.getCambiosDesde(0, 100);
+        assertEquals(6, cambios.size());
+        assertEquals("parcela", cambios.get(0).getTabla());
+        assertEquals(Cambio.Operacion.UPDATE, cambios.get(3).getOperacion());
+        assertEquals(reservaId, cambios.get(3).getFilaId());
+        // Las parcelas reservadas se borran antes que su reserva
+        assertEquals("parcelaReservada", cambios.get(4).getTabla());
+        assertEquals(lineaId, cambios.get(4).getFilaId());
+        assertEquals(Cambio.Operacion.DELETE, cambios.get(5).getOperacion());
+        for (int i = 1; i < cambios.size(); i++) {
+            assertTrue(cambios.get(i).getSecuencia() > cambios.get(i - 1).getSecuencia());
+        }
+        assertEquals(cambios.get(5).getSecuencia(), mDiario.getUltimaSecuencia());
+    }
+
+    @Test
+    public void entregaLosCambiosPorLotes() {
+        for (int i = 0; i < DiarioCambios.TAMANO_LOTE + 10; i++) {
+            mDb.parcelaDao().insert(new Parcela("P" + i, 4, 10.0, ""));
+        }
+        List<Integer> lotes = new ArrayList<>();
+        long ultima = mDiario.procesarDesde(5, lote -> lotes.add(lote.size()));
+        assertEquals(2, lotes.size());
+        assertEquals(DiarioCambios.TAMANO_LOTE + 5, lotes.get(0) + lotes.get(1));
+        assertEquals(mDiario.getUltimaSecuencia(), ultima);
+        assertTrue(mDiario.getCambiosDesde(ultima, 10).isEmpty());
+    }
+
+    @Test
+    public void detectaLasEntradasPurgadasSinLeer() {
+        for (int i = 0; i < 5; i++) {
+            mDb.parcelaDao().insert(new Parcela("P" + i, 4, 10.0, ""));
+        }
+        assertTrue(mDiario.esContinuo(0));
+        assertEquals(3, mDiario.purgarHasta(3));
+        assertTrue(mDiario.esContinuo(3));
+        assertFalse(mDiario.esContinuo(2));
+        assertEquals(2, mDiario.purgarHasta(5));
+        assertTrue(mDiario.esContinuo(5));
+        assertFalse(mDiario.esContinuo(4));
+        assertFalse(mDiario.esContinuo(6));
+        assertEquals(5, mDiario.getUltimaSecuencia());
+    }
+}
@@ -0,0 +1,79 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link Exportador}, ejecutadas con Robolectric sobre una base de datos en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ExportadorTest {
+
+    private CampingRoomDatabase crearBaseDatos() {
+        Application application = ApplicationProvider.getApplicationContext();
+        CampingRoomDatabase db = Room.inMemoryDatabaseBuilder(application, CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        int parcelaId = (int) db.parcelaDao().insert(new Parcela("Aneto, norte", 8, 10.0, "Dice \"grande\""));
+        int reservaId = (int) db.reservaDao().insert(new Reserva("Juan", "600000000",
+                new Date(1736467200000L), new Date(1736812800000L), 200.0));
+        db.parcelaReservadaDao().insert(new ParcelaReservada(reservaId, parcelaId, 5, 1000, 4));
+        return db;
+    }
+
+    @Test
+    public void exportaTodasLasTablasAJson() throws Exception {
+        CampingRoomDatabase db = crearBaseDatos();
+        StringWriter salida = new StringWriter();
+        List<Exportador.Tabla> avisos = new ArrayList<>();
+        long filas = new Exportador(db).exportarJson(salida, (tabla, hechas, total) -> avisos.add(tabla));
+
+        assertEquals(3, filas);
+        assertEquals(3, avisos.size());
+        JsonObject json = JsonParser.parseString(salida.toString()).getAsJsonObject();
+        JsonArray reservas = json.getAsJsonArray("reservas");
+        assertEquals(1, reservas.size());
+        assertEquals("Juan", reservas.get(0).getAsJsonObject().get("nombreCliente").getAsString());
+        assertEquals(1736467200000L, reservas.get(0).getAsJsonObject().get("fechaEntrada").getAsLong());
+        assertEquals(20000, reservas.get(0).getAsJsonObject().get("precioTotalCentimos").getAsLong());
+        assertEquals(4, json.getAsJsonArray("parcelasReservadas").get(0).getAsJsonObject()
+                .get("numeroNoches").getAsInt());
+        db.close();
+    }
+
+    @Test
+    public void exportaUnaTablaACsv() throws Exception {
+        CampingRoomDatabase db = crearBaseDatos();
+        StringWriter salida = new StringWriter();
+        assertEquals(1, new Exportador(db).exportarCsv(Exportador.Tabla.PARCELAS, salida, null));
+        String[] lineas = salida.toString().split("\r\n");
+        assertEquals("id,nombre,maxOcupantes,precioXpersonaCentimos,descripcion", lineas[0]);
+        assertTrue(lineas[1], lineas[1].endsWith(",\"Aneto, norte\",8,1000,\"Dice \"\"grande\"\"\""));
+        db.close();
+    }
+
+    @Test
+    public void escapaLosCamposCsv() {
+        assertEquals("Juan", Exportador.campoCsv("Juan"));
+        assertEquals("\"a,b\"", Exportador.campoCsv("a,b"));
+        assertEquals("\"di \"\"hola\"\"\"", Exportador.campoCsv("di \"hola\""));
+        assertEquals("\"dos\nlineas\"", Exportador.campoCsv("dos\nlineas"));
+    }
+}
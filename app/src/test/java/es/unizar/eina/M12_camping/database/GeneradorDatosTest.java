@@ -0,0 +1,154 @@
+package es.unizar.eina.M12_camping.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de {@link GeneradorDatos}, usando un destino en memoria.
+ */
+public class GeneradorDatosTest {
+
+    private static DatosEnMemoria generar(long semilla, int parcelas, int reservas) {
+        DatosEnMemoria datos = new DatosEnMemoria();
+        new GeneradorDatos(semilla).generar(parcelas, reservas, 300, datos);
+        return datos;
+    }
+
+    @Test
+    public void laMismaSemillaGeneraLosMismosDatos() {
+        DatosEnMemoria a = generar(7, 20, 1000);
+        DatosEnMemoria b = generar(7, 20, 1000);
+        DatosEnMemoria c = generar(8, 20, 1000);
+        assertEquals(a.resumen(), b.resumen());
+        assertNotEquals(a.resumen(), c.resumen());
+    }
+
+    @Test
+    public void generaLasCantidadesPedidasPorLotes() {
+        DatosEnMemoria datos = generar(1, 50, 1000);
+        assertEquals(50, datos.parcelas.size());
+        assertEquals(1000, datos.reservas.size());
+        // 1000 reservas en lotes de 300
+        assertEquals(4, datos.lotes);
+    }
+
+    @Test
+    public void lasReservasSonCoherentes() {
+        DatosEnMemoria datos = generar(2, 50, 2000);
+        int varias = 0;
+        for (int i = 0; i < datos.reservas.size(); i++) {
+            Reserva reserva = datos.reservas.get(i);
+            List<ParcelaReservada> lineas = datos.lineas.get(i);
+            int noches = CalculadoraPrecio.calcularNoches(reserva.getFechaEntrada(), reserva.getFechaSalida());
+            assertTrue(noches >= 1 && noches <= 14);
+            long total = 0;
+            for (ParcelaReservada linea : lineas) {
+                Parcela parcela = datos.parcelas.get(linea.getParcelaId() - 1);
+                assertEquals(reserva.getId(), linea.getReservaId());
+                assertEquals(noches, linea.getNumeroNoches());
+                assertEquals(parcela.getPrecioXpersonaCentimos(), linea.getPrecioXpersonaCentimos());
+                assertTrue(linea.getNumeroOcupantes() >= 1
+                        && linea.getNumeroOcupantes() <= parcela.getMaxOcupantes());
+                total += linea.getImporteCentimos();
+            }
+            assertEquals(total, reserva.getPrecioTotalCentimos());
+            if (lineas.size() > 1) {
+                varias++;
+            }
+        }
+        // Una de cada siete reservas ocupa varias parcelas
+        assertTrue(varias > 150 && varias < 450);
+    }
+
+    @Test
+    public void siguenLaTemporadaSinSolaparse() {
+        DatosEnMemoria datos = generar(3, 50, 2000);
+        int verano = 0;
+        int invierno = 0;
+        Calendar calendar = Calendar.getInstance();
+        BitSet[] ocupacion = new BitSet[datos.parcelas.size()];
+        for (int i = 0; i < ocupacion.length; i++) {
+            ocupacion[i] = new BitSet();
+        }
+        int solapes = 0;
+        long inicio = datos.reservas.get(0).getFechaEntrada().getTime();
+        for (Reserva reserva : datos.reservas) {
+            inicio = Math.min(inicio, reserva.getFechaEntrada().getTime());
+        }
+        for (int i = 0; i < datos.reservas.size(); i++) {
+            Reserva reserva = datos.reservas.get(i);
+            calendar.setTime(reserva.getFechaEntrada());
+            int mes = calendar.get(Calendar.MONTH);
+            if (mes == Calendar.JULY || mes == Calendar.AUGUST) {
+                verano++;
+            } else if (mes == Calendar.JANUARY || mes == Calendar.FEBRUARY) {
+                invierno++;
+            }
+            int desde = (int) Math.round((reserva.getFechaEntrada().getTime() - inicio) / 86400000.0);
+            for (ParcelaReservada linea : datos.lineas.get(i)) {
+                BitSet noches = ocupacion[linea.getParcelaId() - 1];
+                int ocupada = noches.nextSetBit(desde);
+                if (ocupada >= 0 && ocupada < desde + linea.getNumeroNoches()) {
+                    solapes++;
+                }
+                noches.set(desde, desde + linea.getNumeroNoches());
+            }
+        }
+        assertTrue(verano > 5 * invierno);
+        assertEquals(0, solapes);
+    }
+
+    /** Destino que guarda los datos en memoria y asigna IDs consecutivos */
+    private static class DatosEnMemoria implements GeneradorDatos.Destino {
+        final List<Parcela> parcelas = new ArrayList<>();
+        final List<Reserva> reservas = new ArrayList<>();
+        final List<List<ParcelaReservada>> lineas = new ArrayList<>();
+        int lotes = 0;
+
+        @Override
+        public void insertarParcelas(List<Parcela> nuevas) {
+            for (Parcela parcela : nuevas) {
+                parcelas.add(parcela);
+                parcela.setId(parcelas.size());
+            }
+        }
+
+        @Override
+        public void insertarReservas(List<Reserva> nuevas, List<List<ParcelaReservada>> nuevasLineas) {
+            lotes++;
+            for (int i = 0; i < nuevas.size(); i++) {
+                reservas.add(nuevas.get(i));
+                nuevas.get(i).setId(reservas.size());
+                for (ParcelaReservada linea : nuevasLineas.get(i)) {
+                    linea.setReservaId(reservas.size());
+                }
+                lineas.add(nuevasLineas.get(i));
+            }
+        }
+
+        /** Texto con todos los datos generados, para compararlos */
+        String resumen() {
+            StringBuilder texto = new StringBuilder();
+            for (Parcela parcela : parcelas) {
+                texto.append(parcela.getNombre()).append(parcela.getMaxOcupantes())
+                        .append(parcela.getPrecioXpersonaCentimos()).append(parcela.getDescripcion()).append('\n');
+            }
+            for (int i = 0; i < reservas.size(); i++) {
+                Reserva reserva = reservas.get(i);
+                texto.append(reserva.getNombreCliente()).append(reserva.getNumeroMovil())
+                        .append(reserva.getFechaEntrada().getTime()).append(reserva.getFechaSalida().getTime());
+                for (ParcelaReservada linea : lineas.get(i)) {
+                    texto.append(' ').append(linea.getParcelaId()).append('x').append(linea.getNumeroOcupantes());
+                }
+                texto.append('\n');
+            }
+            return texto.toString();
+        }
+    }
+}
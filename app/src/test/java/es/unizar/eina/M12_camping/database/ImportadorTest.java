@@ -0,0 +1,106 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link Importador}. Las que usan la base de datos se ejecutan con Robolectric sobre una
+ * base de datos en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ImportadorTest {
+
+    private static CampingRoomDatabase crearBaseDatos() {
+        Application application = ApplicationProvider.getApplicationContext();
+        CampingRoomDatabase db = Room.inMemoryDatabaseBuilder(application, CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        CampingRoomDatabase.crearTriggersResumen(db.getOpenHelper().getWritableDatabase());
+        return db;
+    }
+
+    @Test
+    public void divideLosRegistrosCsv() throws Exception {
+        BufferedReader lector = new BufferedReader(new StringReader("1,\"dos\nlineas\",3\r\n4,\"di \"\"hola\"\"\",\r\n"));
+        String registro = Importador.leerRegistroCsv(lector);
+        assertEquals(Arrays.asList("1", "dos\nlineas", "3"), Importador.camposCsv(registro));
+        assertEquals(Arrays.asList("4", "di \"hola\"", ""), Importador.camposCsv(Importador.leerRegistroCsv(lector)));
+        assertNull(Importador.leerRegistroCsv(lector));
+    }
+
+    @Test
+    public void importaLoExportadoYRelacionaLasLineas() throws Exception {
+        CampingRoomDatabase origen = crearBaseDatos();
+        int parcelaId = (int) origen.parcelaDao().insert(new Parcela("Aneto", 8, 10.0, "120m2"));
+        for (int i = 0; i < 3; i++) {
+            int reservaId = (int) origen.reservaDao().insert(new Reserva("Cliente " + i, "600000000",
+                    new Date(1736467200000L), new Date(1736812800000L), 40.0));
+            origen.parcelaReservadaDao().insert(new ParcelaReservada(reservaId, parcelaId, 1, 1000, 4));
+        }
+        StringWriter json = new StringWriter();
+        new Exportador(origen).exportarJson(json, null);
+        origen.close();
+
+        CampingRoomDatabase destino = crearBaseDatos();
+        // Ocupa los primeros IDs para que los importados sean distintos de los de origen
+        destino.reservaDao().insert(new Reserva("Otro", "600000001", new Date(0), new Date(86400000L), 1.0));
+        Importador.Resultado resultado = new Importador(destino, 2).importarJson(new StringReader(json.toString()));
+
+        assertEquals(0, resultado.getRechazadas());
+        assertEquals(1, resultado.getImportadas(Exportador.Tabla.PARCELAS));
+        assertEquals(3, resultado.getImportadas(Exportador.Tabla.RESERVAS));
+        assertEquals(3, resultado.getImportadas(Exportador.Tabla.PARCELAS_RESERVADAS));
+        List<ReservaConParcelas> reservas = destino.reservaDao().getReservasConParcelasEntradaEntre(
+                new Date(1736467200000L), new Date(1736467200001L));
+        assertEquals(3, reservas.size());
+        for (ReservaConParcelas reserva : reservas) {
+            assertEquals(1, reserva.parcelas.size());
+        }
+        int nuevaParcela = destino.parcelaDao().getIdParcelaByNombre("Aneto");
+        assertEquals(12000, destino.parcelaReservadaDao().getIngresosCentimosByParcelaId(nuevaParcela));
+        assertEquals(12000, destino.resumenMensualDao()
+                .getResumen(nuevaParcela, ResumenMensual.mesDe(new Date(1736467200000L))).getIngresosCentimos());
+        destino.close();
+    }
+
+    @Test
+    public void rechazaLasFilasNoValidasConSuMotivo() throws Exception {
+        CampingRoomDatabase db = crearBaseDatos();
+        Map<Exportador.Tabla, Reader> origenes = new EnumMap<>(Exportador.Tabla.class);
+        origenes.put(Exportador.Tabla.PARCELAS, new StringReader(
+                "id,nombre,maxOcupantes,precioXpersonaCentimos,descripcion\r\n1,Aneto,8,1000,\r\n2,,4,100,\r\n"));
+        origenes.put(Exportador.Tabla.RESERVAS, new StringReader(
+                "id,nombreCliente,numeroMovil,fechaEntrada,fechaSalida,precioTotalCentimos\r\n" +
+                        "7,Juan,600000000,2000,1000,100\r\n8,Luisa,600000000,1000,2000,100\r\n"));
+        origenes.put(Exportador.Tabla.PARCELAS_RESERVADAS, new StringReader(
+                "id,reservaId,parcelaId,numeroOcupantes,precioXpersonaCentimos,numeroNoches\r\n" +
+                        "1,7,1,2,1000,1\r\n2,8,1,2,1000,1\r\n"));
+        Importador.Resultado resultado = new Importador(db, 2).importarCsv(origenes);
+
+        assertEquals(3, resultado.getImportadas());
+        assertEquals(3, resultado.getRechazadas());
+        assertEquals("parcelas fila 3: Falta nombre", resultado.getRechazos().get(0).toString());
+        assertEquals(Exportador.Tabla.RESERVAS, resultado.getRechazos().get(1).getTabla());
+        assertEquals("No se ha importado la reserva 7", resultado.getRechazos().get(2).getMotivo());
+        assertTrue(resultado.getFilasPorSegundo() > 0);
+        db.close();
+    }
+}
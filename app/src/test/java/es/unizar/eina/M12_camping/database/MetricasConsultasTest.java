@@ -0,0 +1,99 @@
+package es.unizar.eina.M12_camping.database;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de {@link MetricasConsultas}.
+ */
+public class MetricasConsultasTest {
+
+    private static final long MS = 1000000;
+    private static final String CONSULTA = "SELECT * FROM parcela WHERE id = ?";
+    private static final String INSERCION = "INSERT INTO reserva VALUES (?, ?)";
+
+    @Test
+    public void acumulaLasEjecucionesDeCadaSentencia() {
+        MetricasConsultas metricas = new MetricasConsultas();
+        metricas.registrar(CONSULTA, null, 2 * MS);
+        metricas.registrar(CONSULTA, null, 4 * MS);
+        metricas.registrar(INSERCION, null, 10 * MS);
+
+        List<MetricasConsultas.EstadisticaConsulta> estadisticas = metricas.getEstadisticas();
+        assertEquals(2, estadisticas.size());
+        // De mayor a menor tiempo total
+        assertEquals(INSERCION, estadisticas.get(0).getSql());
+        MetricasConsultas.EstadisticaConsulta consulta = estadisticas.get(1);
+        assertEquals(2, consulta.getEjecuciones());
+        assertEquals(3.0, consulta.getMediaMs(), 1e-9);
+        assertEquals(4.0, consulta.getMaximoMs(), 1e-9);
+    }
+
+    @Test
+    public void losPercentilesSonLimitesDeLasCubetas() {
+        MetricasConsultas metricas = new MetricasConsultas();
+        for (int i = 0; i < 90; i++) {
+            metricas.registrar(CONSULTA, null, MS / 2);
+        }
+        for (int i = 0; i < 9; i++) {
+            metricas.registrar(CONSULTA, null, 20 * MS);
+        }
+        metricas.registrar(CONSULTA, null, 3000 * MS);
+
+        MetricasConsultas.EstadisticaConsulta consulta = metricas.getEstadisticas().get(0);
+        assertEquals(0.5, consulta.getPercentilMs(50), 1e-9);
+        assertEquals(0.5, consulta.getPercentilMs(90), 1e-9);
+        assertEquals(25.0, consulta.getPercentilMs(95), 1e-9);
+        assertEquals(25.0, consulta.getPercentilMs(99), 1e-9);
+        // La ultima cubeta no tiene limite
+        assertEquals(3000.0, consulta.getPercentilMs(100), 1e-9);
+    }
+
+    @Test
+    public void guardaLasConsultasLentasConSusArgumentos() {
+        MetricasConsultas metricas = new MetricasConsultas();
+        metricas.setUmbralLenta(10);
+        metricas.registrar(CONSULTA, new Object[]{1L}, 9 * MS);
+        metricas.registrar(CONSULTA, new Object[]{2L}, 10 * MS);
+
+        List<MetricasConsultas.ConsultaLenta> lentas = metricas.getConsultasLentas();
+        assertEquals(1, lentas.size());
+        assertArrayEquals(new Object[]{2L}, lentas.get(0).getArgumentos());
+        assertEquals(10.0, lentas.get(0).getDuracionMs(), 1e-9);
+    }
+
+    @Test
+    public void conservaSoloLasUltimasConsultasLentas() {
+        MetricasConsultas metricas = new MetricasConsultas();
+        metricas.setUmbralLenta(0);
+        for (long i = 0; i < MetricasConsultas.MAX_CONSULTAS_LENTAS + 5; i++) {
+            metricas.registrar(CONSULTA, new Object[]{i}, MS);
+        }
+
+        List<MetricasConsultas.ConsultaLenta> lentas = metricas.getConsultasLentas();
+        assertEquals(MetricasConsultas.MAX_CONSULTAS_LENTAS, lentas.size());
+        assertArrayEquals(new Object[]{5L}, lentas.get(0).getArgumentos());
+    }
+
+    @Test
+    public void elInformeIncluyeSentenciasYConsultasLentas() {
+        MetricasConsultas metricas = new MetricasConsultas();
+        metricas.registrar(INSERCION, null, MS);
+        metricas.registrar(CONSULTA, new Object[]{"a'b"}, 100 * MS);
+
+        StringWriter informe = new StringWriter();
+        metricas.volcar(informe);
+        String texto = informe.toString();
+        assertTrue(texto.contains("n=1 total=100.0 ms"));
+        assertTrue(texto.contains(INSERCION));
+        assertTrue(texto.contains("| " + CONSULTA + " | [a'b]"));
+
+        metricas.reiniciar();
+        assertTrue(metricas.getEstadisticas().isEmpty());
+        assertTrue(metricas.getConsultasLentas().isEmpty());
+    }
+}
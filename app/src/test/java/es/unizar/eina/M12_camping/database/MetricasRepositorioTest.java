@@ -0,0 +1,124 @@
+package es.unizar.eina.M12_camping.database;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de {@link MetricasRepositorio}, con un ejecutor propio.
+ */
+public class MetricasRepositorioTest {
+
+    private final ThreadPoolExecutor mEjecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>());
+
+    @After
+    public void cerrar() {
+        mEjecutor.shutdownNow();
+    }
+
+    @Test
+    public void cuentaLlamadasYFallos() {
+        MetricasRepositorio metricas = new MetricasRepositorio(mEjecutor, 1000, new DetectorHiloPrincipal());
+        assertEquals(Integer.valueOf(3), metricas.ejecutar("Prueba.metodo", () -> 3, -1));
+        assertEquals(Integer.valueOf(-1), metricas.ejecutar("Prueba.metodo", () -> {
+            throw new IllegalStateException("fallo");
+        }, -1));
+
+        MetricasRepositorio.EstadisticaMetodo estadistica = metricas.getEstadistica("Prueba.metodo");
+        assertEquals(2, estadistica.getLlamadas());
+        assertEquals(1, estadistica.getFallos());
+        assertEquals(0, estadistica.getTimeouts());
+        assertNull(metricas.getEstadistica("Prueba.otro"));
+    }
+
+    @Test
+    public void cuentaTimeoutsYEsperasCercanas() {
+        MetricasRepositorio metricas = new MetricasRepositorio(mEjecutor, 100, new DetectorHiloPrincipal());
+        assertEquals("justo", metricas.ejecutar("Prueba.justo", () -> {
+            Thread.sleep(90);
+            return "justo";
+        }, null));
+        assertNull(metricas.ejecutar("Prueba.lento", () -> {
+            Thread.sleep(300);
+            return "tarde";
+        }, null));
+
+        MetricasRepositorio.EstadisticaMetodo justo = metricas.getEstadistica("Prueba.justo");
+        assertEquals(0, justo.getTimeouts());
+        assertEquals(1, justo.getCercaDelTimeout());
+        assertTrue(justo.getColaMaximaMs() < justo.getEsperaMaximaMs());
+        MetricasRepositorio.EstadisticaMetodo lento = metricas.getEstadistica("Prueba.lento");
+        assertEquals(1, lento.getTimeouts());
+        assertEquals(0, lento.getCercaDelTimeout());
+        assertTrue(lento.getEsperaMaximaMs() >= 100);
+    }
+
+    @Test
+    public void esperaLasEscriturasAunqueSuperenElTimeout() {
+        MetricasRepositorio metricas = new MetricasRepositorio(mEjecutor, 50, new DetectorHiloPrincipal());
+        assertEquals("guardada", metricas.ejecutarEscritura("Prueba.escritura", () -> {
+            Thread.sleep(200);
+            return "guardada";
+        }, null));
+        Thread.currentThread().interrupt();
+        assertEquals("guardada", metricas.ejecutarEscritura("Prueba.escritura", () -> {
+            Thread.sleep(100);
+            return "guardada";
+        }, null));
+        // La interrupcion se conserva para quien llama
+        assertTrue(Thread.interrupted());
+
+        MetricasRepositorio.EstadisticaMetodo escritura = metricas.getEstadistica("Prueba.escritura");
+        assertEquals(2, escritura.getLlamadas());
+        assertEquals(0, escritura.getTimeouts());
+        assertEquals(2, escritura.getCercaDelTimeout());
+    }
+
+    @Test
+    public void muestreaElEjecutorYExportaJsonLines() throws InterruptedException {
+        MetricasRepositorio metricas = new MetricasRepositorio(mEjecutor, 1000, new DetectorHiloPrincipal());
+        metricas.ejecutar("Prueba.metodo", () -> 1, 0);
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        mEjecutor.execute(() -> {
+            try {
+                bloqueo.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        mEjecutor.execute(() -> { });
+        mEjecutor.execute(() -> { });
+        while (mEjecutor.getActiveCount() == 0) {
+            Thread.sleep(1);
+        }
+        metricas.muestrear();
+        bloqueo.countDown();
+        assertEquals(1, metricas.getHilosActivosMaximo());
+        assertEquals(2, metricas.getColaMaxima());
+
+        StringWriter salida = new StringWriter();
+        metricas.exportar(salida);
+        String[] lineas = salida.toString().split("\\R");
+        assertEquals(2, lineas.length);
+        JsonObject metodo = JsonParser.parseString(lineas[0]).getAsJsonObject();
+        assertEquals("metodo", metodo.get("tipo").getAsString());
+        assertEquals("Prueba.metodo", metodo.get("metodo").getAsString());
+        assertEquals(1, metodo.get("llamadas").getAsLong());
+        assertEquals(1000.0, metodo.get("timeoutMs").getAsDouble(), 1e-9);
+        JsonObject ejecutor = JsonParser.parseString(lineas[1]).getAsJsonObject();
+        assertEquals("ejecutor", ejecutor.get("tipo").getAsString());
+        assertEquals(2, ejecutor.get("colaMaxima").getAsInt());
+        assertEquals(1, ejecutor.get("muestras").getAsLong());
+    }
+}
@@ -0,0 +1,160 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de las migraciones de la version 1 a la 3: la copia del precio y las noches en cada
+ * parcela reservada ({@link CampingRoomDatabase#MIGRATION_1_2}) y el paso de los importes a
+ * centimos ({@link CampingRoomDatabase#MIGRATION_2_3}). Parten de una base de datos en memoria
+ * con el esquema de la version 1 y se ejecutan con Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MigracionImportesTest {
+
+    /** 29 de marzo de 2025 a medianoche en Madrid; la estancia de tres noches dura 71 horas por el cambio de hora */
+    private static final long ENTRADA_CAMBIO_HORA = 1743202800000L;
+    private static final long SALIDA_CAMBIO_HORA = 1743458400000L;
+
+    private static final long ENTRADA = 1736467200000L;
+    private static final long DIA = 24L * 60 * 60 * 1000;
+
+    private SupportSQLiteOpenHelper mHelper;
+    private SupportSQLiteDatabase mDb;
+
+    @Before
+    public void abrir() {
+        // Como Room, no activa las claves ajenas: las migraciones se ejecutan antes de onOpen
+        SupportSQLiteOpenHelper.Configuration configuracion = SupportSQLiteOpenHelper.Configuration
+                .builder(ApplicationProvider.getApplicationContext())
+                .callback(new SupportSQLiteOpenHelper.Callback(1) {
+                    @Override
+                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                        crearEsquemaVersion1(db);
+                    }
+
+                    @Override
+                    public void onUpgrade(@NonNull SupportSQLiteDatabase db, int anterior, int nueva) {
+                    }
+                })
+                .build();
+        mHelper = new FrameworkSQLiteOpenHelperFactory().create(configuracion);
+        mDb = mHelper.getWritableDatabase();
+    }
+
+    @After
+    public void cerrar() {
+        mHelper.close();
+    }
+
+    /**
+     * Crea las tablas tal como las creaba Room en la version 1, con los importes en euros.
+     *
+     * @param db La base de datos.
+     */
+    private static void crearEsquemaVersion1(SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `parcela` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "`nombre` TEXT NOT NULL, `maxOcupantes` INTEGER NOT NULL, `precioXpersona` REAL NOT NULL, " +
+                "`descripcion` TEXT NOT NULL)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS `reserva` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "`nombreCliente` TEXT NOT NULL, `numeroMovil` INTEGER NOT NULL, `fechaEntrada` INTEGER NOT NULL, " +
+                "`fechaSalida` INTEGER NOT NULL, `precioTotal` REAL NOT NULL)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS `parcelaReservada` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                "`reservaId` INTEGER NOT NULL, `parcelaId` INTEGER NOT NULL, `numeroOcupantes` INTEGER NOT NULL, " +
+                "FOREIGN KEY(`reservaId`) REFERENCES `reserva`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE , " +
+                "FOREIGN KEY(`parcelaId`) REFERENCES `parcela`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_parcelaReservada_reservaId` ON `parcelaReservada` (`reservaId`)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `index_parcelaReservada_parcelaId` ON `parcelaReservada` (`parcelaId`)");
+    }
+
+    private long consultarLong(String sql) {
+        try (Cursor cursor = mDb.query(sql)) {
+            assertTrue(sql, cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private double consultarDouble(String sql) {
+        try (Cursor cursor = mDb.query(sql)) {
+            assertTrue(sql, cursor.moveToFirst());
+            return cursor.getDouble(0);
+        }
+    }
+
+    private void insertarDatosVersion1() {
+        // 12.35 y 0.1 no tienen representacion exacta en coma flotante
+        mDb.execSQL("INSERT INTO parcela (id, nombre, maxOcupantes, precioXpersona, descripcion) " +
+                "VALUES (1, 'Aneto', 8, 12.35, ''), (2, 'Cinca', 4, 0.1, '')");
+        mDb.execSQL("INSERT INTO reserva (id, nombreCliente, numeroMovil, fechaEntrada, fechaSalida, precioTotal) " +
+                "VALUES (1, 'Juan', 612345678, " + ENTRADA + ", " + (ENTRADA + 3 * DIA) + ", 74.7), " +
+                "(2, 'Luisa', 698765432, " + ENTRADA_CAMBIO_HORA + ", " + SALIDA_CAMBIO_HORA + ", 37.05)");
+        mDb.execSQL("INSERT INTO parcelaReservada (id, reservaId, parcelaId, numeroOcupantes) " +
+                "VALUES (1, 1, 1, 2), (2, 1, 2, 2), (3, 2, 1, 1)");
+    }
+
+    @Test
+    public void copiaElPrecioYLasNochesEnCadaParcelaReservada() {
+        insertarDatosVersion1();
+
+        CampingRoomDatabase.MIGRATION_1_2.migrate(mDb);
+
+        assertEquals(12.35, consultarDouble("SELECT precioXpersona FROM parcelaReservada WHERE id = 1"), 0);
+        assertEquals(0.1, consultarDouble("SELECT precioXpersona FROM parcelaReservada WHERE id = 2"), 0);
+        assertEquals(3, consultarLong("SELECT numeroNoches FROM parcelaReservada WHERE id = 1"));
+        assertEquals(3, consultarLong("SELECT numeroNoches FROM parcelaReservada WHERE id = 3"));
+    }
+
+    @Test
+    public void pasaLosImportesACentimosSinCambiarLosTotales() {
+        insertarDatosVersion1();
+
+        CampingRoomDatabase.MIGRATION_1_2.migrate(mDb);
+        CampingRoomDatabase.MIGRATION_2_3.migrate(mDb);
+
+        assertEquals(1235, consultarLong("SELECT precioXpersonaCentimos FROM parcela WHERE id = 1"));
+        assertEquals(10, consultarLong("SELECT precioXpersonaCentimos FROM parcela WHERE id = 2"));
+        assertEquals(7470, consultarLong("SELECT precioTotalCentimos FROM reserva WHERE id = 1"));
+        assertEquals(3705, consultarLong("SELECT precioTotalCentimos FROM reserva WHERE id = 2"));
+        assertEquals(1235, consultarLong("SELECT precioXpersonaCentimos FROM parcelaReservada WHERE id = 1"));
+        assertEquals(10, consultarLong("SELECT precioXpersonaCentimos FROM parcelaReservada WHERE id = 2"));
+
+        // El importe de las parcelas reservadas de cada reserva suma su total
+        try (Cursor cursor = mDb.query("SELECT r.id, r.precioTotalCentimos, " +
+                "SUM(pr.precioXpersonaCentimos * pr.numeroOcupantes * pr.numeroNoches) " +
+                "FROM reserva r JOIN parcelaReservada pr ON pr.reservaId = r.id GROUP BY r.id")) {
+            assertEquals(2, cursor.getCount());
+            while (cursor.moveToNext()) {
+                assertEquals("Reserva " + cursor.getInt(0), cursor.getLong(1), cursor.getLong(2));
+            }
+        }
+        assertEquals(7470 + 3705, consultarLong("SELECT SUM(precioTotalCentimos) FROM reserva"));
+        assertEquals(3, consultarLong("SELECT COUNT(*) FROM parcelaReservada"));
+        try (Cursor cursor = mDb.query("PRAGMA foreign_key_check")) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void migraUnaBaseDeDatosVacia() {
+        CampingRoomDatabase.MIGRATION_1_2.migrate(mDb);
+        CampingRoomDatabase.MIGRATION_2_3.migrate(mDb);
+
+        assertEquals(0, consultarLong("SELECT COUNT(*) FROM reserva"));
+        mDb.execSQL("INSERT INTO parcela (nombre, maxOcupantes, precioXpersonaCentimos, descripcion) " +
+                "VALUES ('Aneto', 8, 1000, '')");
+        assertEquals(1000, consultarLong("SELECT precioXpersonaCentimos FROM parcela"));
+    }
+}
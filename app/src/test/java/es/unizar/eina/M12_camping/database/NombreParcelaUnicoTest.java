@@ -0,0 +1,109 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas del indice unico del nombre de las parcelas y de los resultados de
+ * {@link ParcelaRepository#insert(Parcela)} y {@link ParcelaRepository#update(Parcela)},
+ * ejecutadas con Robolectric sobre una base de datos en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NombreParcelaUnicoTest {
+
+    private CampingRoomDatabase mDb;
+    private ParcelaRepository mParcelas;
+
+    @Before
+    public void abrir() {
+        mDb = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        mParcelas = new ParcelaRepository(mDb);
+    }
+
+    @After
+    public void cerrar() {
+        mDb.close();
+    }
+
+    @Test
+    public void rechazaLaInsercionDeUnNombreRepetido() {
+        ResultadoInsercion primera = mParcelas.insert(new Parcela("Aneto", 8, 10.0, "120m2"));
+        assertTrue(primera.isInsertada());
+        assertTrue(primera.getId() > 0);
+
+        ResultadoInsercion segunda = mParcelas.insert(new Parcela("Aneto", 4, 25.0, "80m2"));
+        assertEquals(ResultadoInsercion.Estado.DUPLICADA, segunda.getEstado());
+        assertEquals(-1, segunda.getId());
+        assertEquals(8, mParcelas.getParcelaById((int) primera.getId()).getMaxOcupantes());
+    }
+
+    @Test
+    public void rechazaLaActualizacionAlNombreDeOtraParcela() {
+        int aneto = (int) mParcelas.insert(new Parcela("Aneto", 8, 10.0, "120m2")).getId();
+        int cinca = (int) mParcelas.insert(new Parcela("Cinca", 4, 25.0, "80m2")).getId();
+
+        Parcela parcela = mParcelas.getParcelaById(cinca);
+        parcela.setNombre("Aneto");
+        assertTrue(mParcelas.update(parcela).isDuplicada());
+        assertTrue(mParcelas.updateSiVersion(parcela).isDuplicada());
+        assertEquals("Cinca", mParcelas.getParcelaById(cinca).getNombre());
+        assertEquals(0, mParcelas.getParcelaById(cinca).getVersion());
+
+        // Conservar el propio nombre no es un duplicado
+        Parcela propia = mParcelas.getParcelaById(aneto);
+        propia.setDescripcion("150m2");
+        assertTrue(mParcelas.updateSiVersion(propia).isActualizada());
+    }
+
+    @Test
+    public void laMigracionRenombraLosDuplicadosYCreaElIndice() {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        db.execSQL("DROP INDEX index_parcela_nombre");
+        int aneto = (int) mDb.parcelaDao().insert(new Parcela("Aneto", 8, 10.0, ""));
+        int repetida = (int) mDb.parcelaDao().insert(new Parcela("Aneto", 4, 25.0, ""));
+        int cinca = (int) mDb.parcelaDao().insert(new Parcela("Cinca", 4, 25.0, ""));
+
+        CampingRoomDatabase.MIGRATION_9_10.migrate(db);
+
+        assertEquals("Aneto", mParcelas.getParcelaById(aneto).getNombre());
+        assertEquals("Aneto (" + repetida + ")", mParcelas.getParcelaById(repetida).getNombre());
+        assertEquals(1, mParcelas.getParcelaById(repetida).getVersion());
+        assertEquals("Cinca", mParcelas.getParcelaById(cinca).getNombre());
+        try (Cursor cursor = db.query("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' " +
+                "AND name = 'index_parcela_nombre' AND sql LIKE 'CREATE UNIQUE%'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(1, cursor.getInt(0));
+        }
+        assertTrue(mParcelas.insert(new Parcela("Cinca", 2, 5.0, "")).isDuplicada());
+    }
+
+    @Test
+    public void laMigracionNoRepiteElNombreDeOtraParcela() {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        db.execSQL("DROP INDEX index_parcela_nombre");
+        int aneto = (int) mDb.parcelaDao().insert(new Parcela("Aneto", 8, 10.0, ""));
+        int repetida = (int) mDb.parcelaDao().insert(new Parcela("Aneto", 4, 25.0, ""));
+        // Parcela que ya tiene el nombre que la migracion daria a la repetida
+        int ocupada = (int) mDb.parcelaDao().insert(new Parcela("Aneto (" + repetida + ")", 2, 5.0, ""));
+
+        CampingRoomDatabase.MIGRATION_9_10.migrate(db);
+
+        assertEquals("Aneto", mParcelas.getParcelaById(aneto).getNombre());
+        assertEquals("Aneto (" + repetida + ")", mParcelas.getParcelaById(ocupada).getNombre());
+        assertEquals(0, mParcelas.getParcelaById(ocupada).getVersion());
+        assertEquals("Aneto (" + repetida + "-2)", mParcelas.getParcelaById(repetida).getNombre());
+    }
+}
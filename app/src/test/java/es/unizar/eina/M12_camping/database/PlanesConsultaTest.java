@@ -0,0 +1,90 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de los planes de las consultas de los listados de parcelas y reservas: ninguna debe
+ * ordenar las filas en un arbol B temporal. Se ejecutan con Robolectric sobre una base de datos
+ * en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PlanesConsultaTest {
+
+    private static final String[] LISTADOS = {
+            ParcelaDao.LISTADO_POR_NOMBRE,
+            ParcelaDao.LISTADO_POR_OCUPANTES,
+            ParcelaDao.LISTADO_POR_PRECIO,
+            ReservaDao.LISTADO_POR_NOMBRE_CLIENTE,
+            ReservaDao.LISTADO_POR_TELEFONO,
+            ReservaDao.LISTADO_POR_FECHA_ENTRADA
+    };
+
+    private CampingRoomDatabase mDb;
+
+    @Before
+    public void abrir() {
+        mDb = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void cerrar() {
+        mDb.close();
+    }
+
+    /** Devuelve los pasos del plan de una consulta */
+    private List<String> plan(String sql) {
+        List<String> pasos = new ArrayList<>();
+        try (Cursor cursor = mDb.query("EXPLAIN QUERY PLAN " + sql, null)) {
+            int detalle = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                pasos.add(cursor.getString(detalle));
+            }
+        }
+        return pasos;
+    }
+
+    private void comprobarListados() {
+        for (String sql : LISTADOS) {
+            List<String> pasos = plan(sql);
+            assertFalse(sql + " -> " + pasos, pasos.isEmpty());
+            for (String paso : pasos) {
+                assertFalse(sql + " -> " + pasos, paso.contains("USE TEMP B-TREE FOR ORDER BY"));
+            }
+        }
+    }
+
+    @Test
+    public void losListadosNoOrdenanEnUnArbolTemporal() {
+        comprobarListados();
+    }
+
+    @Test
+    public void laMigracionCreaLosIndicesDeLosListados() {
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        for (String indice : new String[]{"index_parcela_maxOcupantes", "index_parcela_precioXpersonaCentimos",
+                "index_reserva_nombreCliente", "index_reserva_numeroMovil", "index_reserva_fechaEntrada"}) {
+            db.execSQL("DROP INDEX " + indice);
+        }
+        assertTrue(plan(ReservaDao.LISTADO_POR_FECHA_ENTRADA).toString().contains("USE TEMP B-TREE FOR ORDER BY"));
+
+        CampingRoomDatabase.MIGRATION_10_11.migrate(db);
+        comprobarListados();
+    }
+}
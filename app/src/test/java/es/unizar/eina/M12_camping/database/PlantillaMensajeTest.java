@@ -0,0 +1,80 @@
+package es.unizar.eina.M12_camping.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de {@link PlantillaMensaje}.
+ */
+public class PlantillaMensajeTest {
+
+    private static Date fecha(int anio, int mes, int dia) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(anio, mes - 1, dia);
+        return calendar.getTime();
+    }
+
+    private static ReservaConParcelas reserva(int id, String nombre) {
+        ReservaConParcelas r = new ReservaConParcelas();
+        r.reserva = new Reserva(nombre, "123456789", fecha(2025, 1, 10), fecha(2025, 1, 14), 200.0);
+        r.reserva.setId(id);
+        ParcelaReservadaConParcela linea = new ParcelaReservadaConParcela();
+        linea.parcelaReservada = new ParcelaReservada(id, 1, 5, 1000, 4);
+        linea.parcela = new Parcela("Aneto", 8, 10.0, "120m2");
+        r.parcelas = Collections.singletonList(linea);
+        return r;
+    }
+
+    @Test
+    public void generaLaConfirmacion() {
+        String mensaje = PlantillaMensaje.CONFIRMACION.generar(reserva(1, "Juan"));
+        assertEquals("Reserva a nombre de: Juan" +
+                "\nTelefono: 123456789" +
+                "\nFecha de entrada: 10-01-2025" +
+                "\nFecha de salida: 14-01-2025" +
+                "\nPrecio total: 200.00" +
+                "\n - Parcela: Aneto, Ocupantes: 5", mensaje);
+    }
+
+    @Test
+    public void generaLosCamposDeLasParcelas() {
+        PlantillaMensaje plantilla = PlantillaMensaje.compilar(
+                "{noches} noches{#parcelas}; {parcela} {noches}x{ocupantes}x{precioXpersona}={importe}{/parcelas}");
+        assertEquals("4 noches; Aneto 4x5x10.00=200.00", plantilla.generar(reserva(1, "Juan")));
+    }
+
+    @Test
+    public void generaUnLoteEnOrden() {
+        List<ReservaConParcelas> reservas = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            reservas.add(reserva(i, "Cliente" + i));
+        }
+        List<String> mensajes = PlantillaMensaje.compilar("{id}:{nombreCliente}").generarLote(reservas);
+        assertEquals(1000, mensajes.size());
+        assertEquals("1:Cliente1", mensajes.get(0));
+        assertEquals("1000:Cliente1000", mensajes.get(999));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rechazaCamposDesconocidos() {
+        PlantillaMensaje.compilar("Hola {apellido}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rechazaCamposDeParcelaFueraDelBloque() {
+        PlantillaMensaje.compilar("Parcela {parcela}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rechazaBloquesSinCerrar() {
+        PlantillaMensaje.compilar("{#parcelas}{parcela}");
+    }
+}
@@ -0,0 +1,66 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prueba de carga de los repositorios sobre la base de datos real, ejecutada con Robolectric.
+ * Falla si se supera alguno de los presupuestos, que se pueden cambiar desde Gradle
+ * (por ejemplo, ./gradlew test -Pcarga.presupuestoP95Ms=100).
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PruebaCargaTest {
+
+    private static final int PARCELAS = Integer.getInteger("carga.parcelas", 100);
+    private static final int RESERVAS = Integer.getInteger("carga.reservas", 5000);
+    private static final int CONCURRENCIA = Integer.getInteger("carga.concurrencia", 4);
+    private static final int OPERACIONES = Integer.getInteger("carga.operaciones", 2000);
+    private static final double PRESUPUESTO_P95_MS = presupuesto("carga.presupuestoP95Ms", 250);
+    private static final double PRESUPUESTO_P99_MS = presupuesto("carga.presupuestoP99Ms", 1000);
+    private static final double RENDIMIENTO_MINIMO = presupuesto("carga.rendimientoMinimo", 50);
+
+    private static double presupuesto(String propiedad, double porDefecto) {
+        String valor = System.getProperty(propiedad);
+        return valor == null ? porDefecto : Double.parseDouble(valor);
+    }
+
+    @Test
+    public void cumpleLosPresupuestos() throws Exception {
+        Application application = ApplicationProvider.getApplicationContext();
+        PruebaCarga prueba = new PruebaCarga(application, 42);
+        prueba.setConcurrencia(CONCURRENCIA);
+        prueba.setOperaciones(OPERACIONES);
+
+        // Room no permite acceder a la base de datos desde el hilo principal, que es el de la prueba
+        ExecutorService hilo = Executors.newSingleThreadExecutor();
+        PruebaCarga.Resultado resultado;
+        try {
+            resultado = hilo.submit(() -> {
+                prueba.cargarDatos(PARCELAS, RESERVAS);
+                return prueba.ejecutar();
+            }).get();
+        } finally {
+            hilo.shutdown();
+        }
+
+        assertEquals(resultado.toString(), 0, resultado.getErrores());
+        for (PruebaCarga.Operacion operacion : PruebaCarga.Operacion.values()) {
+            assertTrue(operacion + " p95 = " + resultado.getPercentilMs(operacion, 95) + " ms",
+                    resultado.getPercentilMs(operacion, 95) <= PRESUPUESTO_P95_MS);
+            assertTrue(operacion + " p99 = " + resultado.getPercentilMs(operacion, 99) + " ms",
+                    resultado.getPercentilMs(operacion, 99) <= PRESUPUESTO_P99_MS);
+        }
+        assertTrue("Rendimiento = " + resultado.getRendimiento() + " op/s",
+                resultado.getRendimiento() >= RENDIMIENTO_MINIMO);
+    }
+}
@@ -0,0 +1,104 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link RegistroCampings} y de la combinacion de resultados de {@link InformeCampings},
+ * ejecutadas con Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RegistroCampingsTest {
+
+    private RegistroCampings crearRegistro(int maximoAbiertas) {
+        Application application = ApplicationProvider.getApplicationContext();
+        return new RegistroCampings(application, maximoAbiertas);
+    }
+
+    @Test
+    public void cierraLaUsadaHaceMasTiempoSalvoLaPrincipal() {
+        RegistroCampings registro = crearRegistro(2);
+        CampingRoomDatabase principal = registro.getDatabase(RegistroCampings.CAMPING_PRINCIPAL);
+        CampingRoomDatabase norte = registro.getDatabase("norte");
+        assertSame(norte, registro.getDatabase("norte"));
+
+        registro.getDatabase("sur");
+        assertEquals(Arrays.asList(RegistroCampings.CAMPING_PRINCIPAL, "sur"), registro.getCampingsAbiertos());
+        assertSame(principal, registro.getDatabase(RegistroCampings.CAMPING_PRINCIPAL));
+        assertNotSame(norte, registro.getDatabase("norte"));
+        assertEquals(Arrays.asList(RegistroCampings.CAMPING_PRINCIPAL, "norte"), registro.getCampingsAbiertos());
+    }
+
+    @Test
+    public void noCierraLasQueSeEstanUsando() {
+        RegistroCampings registro = crearRegistro(1);
+        List<String> abiertas = registro.usar("este", db -> {
+            registro.getDatabase("oeste");
+            return registro.getCampingsAbiertos();
+        });
+        assertTrue(abiertas.contains("este"));
+        assertEquals(Collections.singletonList("oeste"), registro.getCampingsAbiertos());
+    }
+
+    @Test
+    public void noCierraLasRetenidasHastaLiberarlas() {
+        RegistroCampings registro = crearRegistro(1);
+        CampingRoomDatabase norte = registro.retener("norte");
+        registro.getDatabase("sur");
+        registro.getDatabase("este");
+        assertSame(norte, registro.getDatabase("norte"));
+
+        registro.liberar("norte");
+        registro.getDatabase("sur");
+        assertEquals(Collections.singletonList("sur"), registro.getCampingsAbiertos());
+        assertNotSame(norte, registro.getDatabase("norte"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rechazaLiberarUnaBaseDeDatosNoRetenida() {
+        RegistroCampings registro = crearRegistro(1);
+        registro.getDatabase("norte");
+        registro.liberar("norte");
+    }
+
+    @Test
+    public void consultaTodosLosCampingsEnOrden() {
+        RegistroCampings registro = crearRegistro(RegistroCampings.MAXIMO_ABIERTAS);
+        registro.getDatabase("sur");
+        registro.getDatabase("norte");
+        Map<String, String> ficheros = registro.consultarTodos(db -> db.getOpenHelper().getDatabaseName());
+        assertEquals(Arrays.asList(RegistroCampings.CAMPING_PRINCIPAL, "norte", "sur"),
+                Arrays.asList(ficheros.keySet().toArray()));
+        assertEquals("m12_camping_database", ficheros.get(RegistroCampings.CAMPING_PRINCIPAL));
+        assertEquals("m12_camping_database_norte", ficheros.get("norte"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rechazaIdentificadoresNoValidos() {
+        RegistroCampings.fichero("../otro");
+    }
+
+    @Test
+    public void sumaLosTotalesDeCadaMes() {
+        List<TotalMensual> combinados = InformeCampings.combinar(Arrays.asList(
+                Arrays.asList(new TotalMensual(202501, 4, 2, 1000), new TotalMensual(202502, 1, 1, 500)),
+                Collections.singletonList(new TotalMensual(202501, 3, 3, 700))));
+        assertEquals(2, combinados.size());
+        assertEquals(202501, combinados.get(0).mes);
+        assertEquals(7, combinados.get(0).nochesVendidas);
+        assertEquals(1700, combinados.get(0).ingresosCentimos);
+        assertEquals(500, combinados.get(1).ingresosCentimos);
+    }
+}
@@ -0,0 +1,159 @@
+package es.unizar.eina.M12_camping.database;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de los triggers de {@link SqlResumenMensual} al escribir reservas por los DAO y por
+ * {@link ReservaRepository}, que insertan y modifican con INSERT OR ABORT y UPDATE OR ABORT.
+ * Se ejecutan con Robolectric sobre una base de datos en memoria.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ResumenMensualTest {
+
+    private static final long DIA = 24L * 60 * 60 * 1000;
+
+    /** 15 de enero y 15 de febrero de 2025, lejos del cambio de mes en cualquier zona horaria */
+    private static final Date ENERO = new Date(1736899200000L);
+    private static final Date FEBRERO = new Date(1739577600000L);
+
+    private CampingRoomDatabase mDb;
+    private ReservaRepository mReservas;
+    private int mParcelaId;
+
+    @Before
+    public void abrir() {
+        mDb = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        CampingRoomDatabase.crearTriggersResumen(mDb.getOpenHelper().getWritableDatabase());
+        mReservas = new ReservaRepository(mDb);
+        mParcelaId = (int) mDb.parcelaDao().insert(new Parcela("Aneto", 8, 10.0, "120m2"));
+    }
+
+    @After
+    public void cerrar() {
+        mDb.close();
+    }
+
+    private Reserva reserva(String cliente, Date entrada, int noches) {
+        return new Reserva(cliente, "600000000", entrada, new Date(entrada.getTime() + noches * DIA), 0.0);
+    }
+
+    private int insertarConDao(String cliente, Date entrada, int noches, int ocupantes) {
+        int id = (int) mDb.reservaDao().insert(reserva(cliente, entrada, noches));
+        mDb.parcelaReservadaDao().insert(new ParcelaReservada(id, mParcelaId, ocupantes, 1000, noches));
+        return id;
+    }
+
+    @Test
+    public void sumaDosReservasDeLaMismaParcelaYMes() {
+        insertarConDao("Juan", ENERO, 2, 3);
+        insertarConDao("Luisa", new Date(ENERO.getTime() + 5 * DIA), 4, 1);
+
+        ResumenMensual resumen = mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(ENERO));
+        assertEquals(6, resumen.getNochesVendidas());
+        assertEquals(4, resumen.getOcupantes());
+        assertEquals(1000 * 3 * 2 + 1000 * 4, resumen.getIngresosCentimos());
+    }
+
+    @Test
+    public void guardaConElRepositorioReservasDelMismoMes() {
+        for (String cliente : new String[]{"Juan", "Luisa"}) {
+            List<ParcelaReservada> lineas = new ArrayList<>(Arrays.asList(
+                    new ParcelaReservada(0, mParcelaId, 2, 1000, 3)));
+            assertTrue(mReservas.insertConParcelas(reserva(cliente, ENERO, 3), lineas) > 0);
+        }
+        ResumenMensual resumen = mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(ENERO));
+        assertEquals(6, resumen.getNochesVendidas());
+        assertEquals(12000, resumen.getIngresosCentimos());
+    }
+
+    @Test
+    public void mueveLaReservaAUnMesQueYaTieneResumen() {
+        insertarConDao("Juan", FEBRERO, 2, 1);
+        int movida = insertarConDao("Luisa", ENERO, 3, 2);
+
+        Reserva reserva = mDb.reservaDao().getReservaById(movida);
+        reserva.setFechaEntrada(new Date(FEBRERO.getTime() + DIA));
+        reserva.setFechaSalida(new Date(FEBRERO.getTime() + 4 * DIA));
+        assertTrue(mReservas.updateSiVersion(reserva).isActualizada());
+
+        assertNull(mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(ENERO)));
+        ResumenMensual febrero = mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(FEBRERO));
+        assertEquals(5, febrero.getNochesVendidas());
+        assertEquals(3, febrero.getOcupantes());
+        assertEquals(1000 * 2 + 1000 * 2 * 3, febrero.getIngresosCentimos());
+    }
+
+    @Test
+    public void reparteLasNochesEntreLosMesesEnQueCaen() {
+        // Del 28 de enero al 7 de febrero: 4 noches en enero y 6 en febrero
+        int reserva = insertarConDao("Juan", new Date(ENERO.getTime() + 13 * DIA), 10, 2);
+
+        ResumenMensual enero = mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(ENERO));
+        ResumenMensual febrero = mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(FEBRERO));
+        assertEquals(4, enero.getNochesVendidas());
+        assertEquals(2, enero.getOcupantes());
+        assertEquals(1000 * 2 * 4, enero.getIngresosCentimos());
+        assertEquals(6, febrero.getNochesVendidas());
+        assertEquals(2, febrero.getOcupantes());
+        assertEquals(1000 * 2 * 6, febrero.getIngresosCentimos());
+
+        // Retrasar la entrada un dia mueve una noche de enero a febrero aunque no cambie el mes de entrada
+        Reserva movida = mDb.reservaDao().getReservaById(reserva);
+        movida.setFechaEntrada(new Date(ENERO.getTime() + 14 * DIA));
+        movida.setFechaSalida(new Date(ENERO.getTime() + 24 * DIA));
+        assertTrue(mReservas.updateSiVersion(movida).isActualizada());
+
+        assertEquals(3, mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(ENERO))
+                .getNochesVendidas());
+        assertEquals(7, mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(FEBRERO))
+                .getNochesVendidas());
+    }
+
+    @Test
+    public void repararTriggersRecalculaLosResumenesDeUnaCargaInterrumpida() {
+        insertarConDao("Juan", ENERO, 2, 1);
+        SupportSQLiteDatabase db = mDb.getOpenHelper().getWritableDatabase();
+        // Carga masiva que no llega a volver a crear los triggers
+        for (String sql : SqlResumenMensual.borrarTriggers()) {
+            db.execSQL(sql);
+        }
+        insertarConDao("Luisa", ENERO, 3, 2);
+
+        assertTrue(CampingRoomDatabase.repararTriggersResumen(db));
+        assertFalse(CampingRoomDatabase.repararTriggersResumen(db));
+        insertarConDao("Pedro", ENERO, 1, 1);
+
+        ResumenMensual resumen = mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(ENERO));
+        assertEquals(6, resumen.getNochesVendidas());
+        assertEquals(1000 * 2 + 1000 * 2 * 3 + 1000, resumen.getIngresosCentimos());
+    }
+
+    @Test
+    public void restaLasReservasBorradas() {
+        insertarConDao("Juan", ENERO, 2, 1);
+        int borrada = insertarConDao("Luisa", ENERO, 3, 2);
+
+        mDb.reservaDao().delete(mDb.reservaDao().getReservaById(borrada));
+
+        ResumenMensual resumen = mDb.resumenMensualDao().getResumen(mParcelaId, ResumenMensual.mesDe(ENERO));
+        assertEquals(2, resumen.getNochesVendidas());
+        assertEquals(2000, resumen.getIngresosCentimos());
+    }
+}
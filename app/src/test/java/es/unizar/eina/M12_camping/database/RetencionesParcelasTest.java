@@ -0,0 +1,102 @@
+package es.unizar.eina.M12_camping.database;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link RetencionesParcelas} con un reloj simulado.
+ */
+public class RetencionesParcelasTest {
+
+    private static final long DIA = 24 * 60 * 60 * 1000L;
+    private static final long DURACION = 1000;
+
+    private long mAhora = 0;
+    private final RetencionesParcelas mRetenciones = new RetencionesParcelas(() -> mAhora, DURACION);
+
+    private static Date dia(int n) {
+        return new Date(1736467200000L + n * DIA);
+    }
+
+    @Test
+    public void rechazaLasFechasQueSeSolapanConOtroBorrador() {
+        assertTrue(mRetenciones.retener("a", 1, dia(0), dia(3)));
+        assertFalse(mRetenciones.retener("b", 1, dia(2), dia(5)));
+        // La salida de una reserva coincide con la entrada de la otra, como en getParcelasDisponibles
+        assertFalse(mRetenciones.retener("b", 1, dia(3), dia(5)));
+        assertTrue(mRetenciones.retener("b", 1, dia(4), dia(6)));
+        assertTrue(mRetenciones.retener("b", 2, dia(0), dia(3)));
+    }
+
+    @Test
+    public void elMismoBorradorSustituyeSusFechas() {
+        assertTrue(mRetenciones.retener("a", 1, dia(0), dia(3)));
+        assertTrue(mRetenciones.retener("a", 1, dia(10), dia(12)));
+        assertTrue(mRetenciones.retener("b", 1, dia(0), dia(3)));
+    }
+
+    @Test
+    public void lasRetencionesCaducan() {
+        assertTrue(mRetenciones.retener("a", 1, dia(0), dia(3)));
+        mAhora = DURACION - 1;
+        assertEquals(Collections.singleton(1), mRetenciones.getRetenidas(dia(0), dia(3), "b"));
+        mAhora = DURACION;
+        assertTrue(mRetenciones.getRetenidas(dia(0), dia(3), "b").isEmpty());
+        assertTrue(mRetenciones.retener("b", 1, dia(0), dia(3)));
+    }
+
+    @Test
+    public void renovarAlargaTodasLasRetencionesDelBorrador() {
+        assertTrue(mRetenciones.retener("a", 1, dia(0), dia(3)));
+        assertTrue(mRetenciones.retener("a", 2, dia(0), dia(3)));
+        mAhora = DURACION - 1;
+        mRetenciones.renovar("a");
+        mAhora = DURACION + 1;
+        assertEquals(2, mRetenciones.getRetenidas(dia(0), dia(3), null).size());
+        mAhora = 2 * DURACION - 1;
+        assertTrue(mRetenciones.getRetenidas(dia(0), dia(3), null).isEmpty());
+    }
+
+    @Test
+    public void liberarDejaLaParcelaDisponible() {
+        assertTrue(mRetenciones.retener("a", 1, dia(0), dia(3)));
+        assertTrue(mRetenciones.retener("a", 2, dia(0), dia(3)));
+        mRetenciones.liberar("a", 1);
+        assertEquals(Collections.singleton(2), mRetenciones.getRetenidas(dia(0), dia(3), "b"));
+        mRetenciones.liberarTodas("a");
+        assertTrue(mRetenciones.getRetenidas(dia(0), dia(3), "b").isEmpty());
+    }
+
+    @Test
+    public void retenerTodasMueveLasRetencionesAOtrasFechas() {
+        assertTrue(mRetenciones.retener("a", 1, dia(0), dia(3)));
+        assertTrue(mRetenciones.retener("a", 2, dia(0), dia(3)));
+        assertTrue(mRetenciones.retenerTodas("a", Arrays.asList(1, 2), dia(10), dia(12)).isEmpty());
+        assertTrue(mRetenciones.getRetenidas(dia(0), dia(3), "b").isEmpty());
+        assertEquals(2, mRetenciones.getRetenidas(dia(11), dia(11), "b").size());
+    }
+
+    @Test
+    public void retenerTodasNoCambiaNadaSiOtroBorradorTieneUnaParcela() {
+        assertTrue(mRetenciones.retener("a", 1, dia(0), dia(3)));
+        assertTrue(mRetenciones.retener("a", 2, dia(0), dia(3)));
+        assertTrue(mRetenciones.retener("b", 2, dia(10), dia(12)));
+        assertEquals(Collections.singleton(2),
+                mRetenciones.retenerTodas("a", Arrays.asList(1, 2), dia(11), dia(13)));
+        assertEquals(2, mRetenciones.getRetenidas(dia(0), dia(3), "b").size());
+        assertTrue(mRetenciones.getRetenidas(dia(11), dia(13), "b").isEmpty());
+    }
+
+    @Test
+    public void noCuentaLasRetencionesDelPropioBorrador() {
+        assertTrue(mRetenciones.retener("a", 1, dia(0), dia(3)));
+        assertTrue(mRetenciones.retener("b", 2, dia(1), dia(2)));
+        assertEquals(Collections.singleton(2), mRetenciones.getRetenidas(dia(0), dia(3), "a"));
+        assertTrue(mRetenciones.getRetenidas(dia(5), dia(6), "a").isEmpty());
+    }
+}
@@ -0,0 +1,203 @@
+package es.unizar.eina.M12_camping.database;
+
+import android.app.Application;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas de {@link SincronizadorDelta} entre dos bases de datos en memoria y un
+ * {@link ServidorSyncMemoria}, ejecutadas con Robolectric.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SincronizadorDeltaTest {
+
+    private static final String CONTENIDO = "SELECT r.nombreCliente || '|' || r.numeroMovil || '|' || "
+            + "IFNULL((SELECT group_concat(p.nombre || ':' || pr.numeroOcupantes) FROM parcelaReservada pr "
+            + "JOIN parcela p ON p.id = pr.parcelaId WHERE pr.reservaId = r.id), '') "
+            + "FROM reserva r ORDER BY r.nombreCliente";
+
+    private CampingRoomDatabase mDbA;
+    private CampingRoomDatabase mDbB;
+    private SincronizadorDelta mA;
+    private SincronizadorDelta mB;
+
+    @Before
+    public void abrir() {
+        ServidorSyncMemoria servidor = new ServidorSyncMemoria();
+        mDbA = abrirBaseDatos();
+        mDbB = abrirBaseDatos();
+        mA = new SincronizadorDelta(mDbA, servidor);
+        mB = new SincronizadorDelta(mDbB, servidor);
+    }
+
+    @After
+    public void cerrar() {
+        mDbA.close();
+        mDbB.close();
+    }
+
+    @Test
+    public void replicaLasFilasNuevasConSusReferencias() throws IOException {
+        insertarReserva(mDbA, "Juan", insertarParcela(mDbA, "Aneto"));
+        // Los identificadores locales de B coinciden con los de A pero son otras filas
+        insertarReserva(mDbB, "Ana", insertarParcela(mDbB, "Cinca"));
+
+        SincronizadorDelta.Resultado resultado = mA.sincronizar();
+        assertEquals(3, resultado.getEnviadas());
+        assertEquals(3, resultado.getAceptadas());
+        resultado = mB.sincronizar();
+        assertEquals(3, resultado.getEnviadas());
+        assertEquals(3, resultado.getRecibidas());
+        assertEquals(3, mA.sincronizar().getRecibidas());
+
+        assertEquals("Ana|600000000|Cinca:2\nJuan|600000000|Aneto:2", contenido(mDbA));
+        assertEquals(contenido(mDbA), contenido(mDbB));
+    }
+
+    @Test
+    public void noReenviaLoRecibido() throws IOException {
+        insertarReserva(mDbA, "Juan", insertarParcela(mDbA, "Aneto"));
+        mA.sincronizar();
+        mB.sincronizar();
+
+        SincronizadorDelta.Resultado resultado = mB.sincronizar();
+        assertEquals(0, resultado.getEnviadas());
+        assertEquals(0, resultado.getRecibidas());
+        assertEquals(0, mA.sincronizar().getEnviadas());
+    }
+
+    @Test
+    public void enviaSoloLasFilasCambiadas() throws IOException {
+        int parcelaId = insertarParcela(mDbA, "Aneto");
+        for (int i = 0; i < 20; i++) {
+            insertarReserva(mDbA, "C" + i, parcelaId);
+        }
+        mA.sincronizar();
+        mB.sincronizar();
+
+        mDbA.getOpenHelper().getWritableDatabase().execSQL(
+                "UPDATE reserva SET numeroMovil = '611111111' WHERE nombreCliente = 'C7'");
+        assertEquals(1, mA.sincronizar().getEnviadas());
+        assertEquals(1, mB.sincronizar().getRecibidas());
+        assertEquals(contenido(mDbA), contenido(mDbB));
+    }
+
+    @Test
+    public void ganaLaVersionDelServidorEnUnConflicto() throws IOException {
+        insertarReserva(mDbA, "Juan", insertarParcela(mDbA, "Aneto"));
+        mA.sincronizar();
+        mB.sincronizar();
+
+        mDbA.getOpenHelper().getWritableDatabase().execSQL(
+                "UPDATE reserva SET numeroMovil = '611111111' WHERE nombreCliente = 'Juan'");
+        mDbB.getOpenHelper().getWritableDatabase().execSQL(
+                "UPDATE reserva SET numeroMovil = '622222222' WHERE nombreCliente = 'Juan'");
+        assertEquals(0, mA.sincronizar().getConflictos());
+        SincronizadorDelta.Resultado resultado = mB.sincronizar();
+        assertEquals(1, resultado.getConflictos());
+
+        assertEquals("Juan|611111111|Aneto:2", contenido(mDbB));
+        assertEquals(0, mA.sincronizar().getRecibidas());
+    }
+
+    @Test
+    public void propagaLosBorrados() throws IOException {
+        int parcelaId = insertarParcela(mDbA, "Aneto");
+        insertarReserva(mDbA, "Juan", parcelaId);
+        insertarReserva(mDbA, "Ana", parcelaId);
+        mA.sincronizar();
+        mB.sincronizar();
+
+        // El borrado en cascada de la parcela reservada tambien se envia
+        mDbA.getOpenHelper().getWritableDatabase().execSQL("DELETE FROM reserva WHERE nombreCliente = 'Juan'");
+        assertEquals(2, mA.sincronizar().getEnviadas());
+        assertEquals(2, mB.sincronizar().getRecibidas());
+
+        assertEquals("Ana|600000000|Aneto:2", contenido(mDbB));
+        assertEquals(0, mB.sincronizar().getEnviadas());
+    }
+
+    @Test
+    public void noDuplicaLasFilasSiSePierdeLaRespuesta() throws IOException {
+        ServidorSyncMemoria servidor = new ServidorSyncMemoria();
+        insertarParcela(mDbA, "Aneto");
+        SincronizadorDelta sinRespuesta = new SincronizadorDelta(mDbA, peticion -> {
+            servidor.sincronizar(peticion);
+            throw new IOException("Conexion perdida");
+        });
+        assertThrows(IOException.class, sinRespuesta::sincronizar);
+
+        SincronizadorDelta.Resultado resultado = new SincronizadorDelta(mDbA, servidor).sincronizar();
+        assertEquals(1, resultado.getConflictos());
+        assertEquals(1, servidor.getNumeroFilas());
+        assertEquals(1, contar(mDbA, "SELECT COUNT(*) FROM parcela"));
+    }
+
+    @Test
+    public void purgaElDiarioYaSincronizado() throws IOException {
+        int parcelaId = insertarParcela(mDbA, "Aneto");
+        insertarReserva(mDbA, "Juan", parcelaId);
+        mA.sincronizar();
+        assertEquals(0, contar(mDbA, "SELECT COUNT(*) FROM cambio"));
+
+        // Las entradas que quedan son las posteriores al cursor y se siguen enviando
+        insertarReserva(mDbA, "Ana", parcelaId);
+        assertEquals(2, contar(mDbA, "SELECT COUNT(*) FROM cambio"));
+        assertEquals(2, mA.sincronizar().getEnviadas());
+        assertEquals(0, contar(mDbA, "SELECT COUNT(*) FROM cambio"));
+        assertEquals(0, mA.sincronizar().getEnviadas());
+    }
+
+    private static CampingRoomDatabase abrirBaseDatos() {
+        Application application = ApplicationProvider.getApplicationContext();
+        CampingRoomDatabase db = Room.inMemoryDatabaseBuilder(application, CampingRoomDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        CampingRoomDatabase.crearTriggersResumen(db.getOpenHelper().getWritableDatabase());
+        CampingRoomDatabase.crearTriggersCambios(db.getOpenHelper().getWritableDatabase());
+        return db;
+    }
+
+    private static int insertarParcela(CampingRoomDatabase db, String nombre) {
+        return (int) db.parcelaDao().insert(new Parcela(nombre, 8, 10.0, ""));
+    }
+
+    private static void insertarReserva(CampingRoomDatabase db, String cliente, int parcelaId) {
+        int reservaId = (int) db.reservaDao().insert(new Reserva(cliente, "600000000",
+                new Date(1736467200000L), new Date(1736640000000L), 40.0));
+        db.parcelaReservadaDao().insert(new ParcelaReservada(reservaId, parcelaId, 2, 1000, 2));
+    }
+
+    private static String contenido(CampingRoomDatabase db) {
+        StringBuilder contenido = new StringBuilder();
+        try (Cursor cursor = db.query(CONTENIDO, null)) {
+            while (cursor.moveToNext()) {
+                if (contenido.length() > 0) {
+                    contenido.append('\n');
+                }
+                contenido.append(cursor.getString(0));
+            }
+        }
+        return contenido.toString();
+    }
+
+    private static long contar(CampingRoomDatabase db, String consulta) {
+        try (Cursor cursor = db.query(consulta, null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package es.unizar.eina.send;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pruebas locales de {@link RegistroImplementores} y de sus metricas de envio.
+ */
+public class RegistroImplementoresTest {
+
+    /** Implementor que falla lanzando una excepcion en lugar de devolver un resultado */
+    private static class ImplementorRoto implements SendImplementor {
+        public void setSourceActivity(android.app.Activity source) { }
+        public android.app.Activity getSourceActivity() { return null; }
+        public CompletableFuture<ResultadoEnvio> send(String phone, String message) {
+            throw new IllegalStateException("roto");
+        }
+    }
+
+    @Test
+    public void enviaPorElImplementorDelCanal() throws Exception {
+        RegistroImplementores registro = new RegistroImplementores();
+        LogImplementor local = new LogImplementor();
+        registro.registrar(CanalEnvio.LOCAL, local);
+
+        ResultadoEnvio resultado = new SendAbstractionImpl(registro, CanalEnvio.LOCAL).send("600000001", "hola").get();
+
+        assertTrue(resultado.isExito());
+        assertEquals(CanalEnvio.LOCAL, resultado.getCanal());
+        assertEquals(1, local.getEnviados().size());
+        assertEquals(1, registro.getMetricas(CanalEnvio.LOCAL).getEnvios());
+        assertEquals(0, registro.getMetricas(CanalEnvio.LOCAL).getFallos());
+    }
+
+    @Test
+    public void losErroresSeDevuelvenComoResultadoFallido() throws Exception {
+        RegistroImplementores registro = new RegistroImplementores();
+        registro.registrar(CanalEnvio.SMS, new ImplementorRoto());
+
+        ResultadoEnvio roto = registro.enviar(CanalEnvio.SMS, "600000001", "hola").get();
+        ResultadoEnvio sinCanal = registro.enviar(CanalEnvio.WHATSAPP, "600000001", "hola").get();
+
+        assertFalse(roto.isExito());
+        assertTrue(roto.getError().contains("roto"));
+        assertFalse(sinCanal.isExito());
+        assertEquals(1, registro.getMetricas(CanalEnvio.SMS).getFallos());
+        assertEquals(1, registro.getMetricas(CanalEnvio.WHATSAPP).getFallos());
+        assertEquals(0, registro.getMetricas(CanalEnvio.LOCAL).getEnvios());
+    }
+}
@@ -0,0 +1,150 @@
+package es.unizar.eina.M12_camping.database;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Calendar;
+
+/**
+ * Base de datos SQLite en memoria con el mismo esquema que {@link CampingRoomDatabase}.
+ * Las tablas e indices se crean a partir del esquema que exporta Room al compilar la aplicacion
+ * (directorio indicado en la propiedad del sistema camping.esquema), y los triggers de los
+ * resumenes mensuales y del diario de cambios a partir de {@link SqlResumenMensual} y {@link SqlCambios}.
+ */
+final class BaseDatosBenchmark {
+
+    /** Propiedad del sistema con el directorio del esquema exportado por Room */
+    static final String PROPIEDAD_ESQUEMA = "camping.esquema";
+
+    /** Milisegundos que tiene un dia */
+    static final long MILLIS_POR_DIA = 24L * 60 * 60 * 1000;
+
+    private BaseDatosBenchmark() {
+    }
+
+    /**
+     * Abre una base de datos vacia en memoria con el esquema de la ultima version de la aplicacion.
+     *
+     * @return La conexion a la base de datos.
+     * @throws SQLException Si no se puede crear el esquema.
+     * @throws IOException  Si no se puede leer el esquema exportado.
+     */
+    static Connection abrir() throws SQLException, IOException {
+        Connection conexion = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement sentencia = conexion.createStatement()) {
+            sentencia.execute("PRAGMA foreign_keys = ON");
+            for (JsonElement elemento : leerEsquema().getAsJsonArray("entities")) {
+                JsonObject entidad = elemento.getAsJsonObject();
+                String tabla = entidad.get("tableName").getAsString();
+                sentencia.execute(sqlDeTabla(entidad.get("createSql").getAsString(), tabla));
+                JsonArray indices = entidad.getAsJsonArray("indices");
+                if (indices != null) {
+                    for (JsonElement indice : indices) {
+                        sentencia.execute(sqlDeTabla(indice.getAsJsonObject().get("createSql").getAsString(), tabla));
+                    }
+                }
+            }
+            for (String sql : SqlResumenMensual.crearTriggers()) {
+                sentencia.execute(sql);
+            }
+            for (String sql : SqlCambios.crearTriggers()) {
+                sentencia.execute(sql);
+            }
+            for (String sql : SqlClientes.crearTriggers()) {
+                sentencia.execute(sql);
+            }
+        }
+        return conexion;
+    }
+
+    /**
+     * Sustituye el nombre de la tabla en una sentencia del esquema exportado.
+     */
+    private static String sqlDeTabla(String sql, String tabla) {
+        return sql.replace("${TABLE_NAME}", tabla);
+    }
+
+    /**
+     * Lee el esquema de la version mas alta que haya en el directorio del esquema exportado.
+     */
+    private static JsonObject leerEsquema() throws IOException {
+        String ruta = System.getProperty(PROPIEDAD_ESQUEMA);
+        if (ruta == null) {
+            throw new IllegalStateException("Falta la propiedad " + PROPIEDAD_ESQUEMA);
+        }
+        File[] versiones = new File(ruta).listFiles((dir, nombre) -> nombre.matches("\\d+\\.json"));
+        if (versiones == null || versiones.length == 0) {
+            throw new IOException("No hay esquemas exportados en " + ruta + "; compila el modulo app para exportarlo");
+        }
+        File ultima = versiones[0];
+        for (File version : versiones) {
+            if (numeroVersion(version) > numeroVersion(ultima)) {
+                ultima = version;
+            }
+        }
+        try (Reader lector = new InputStreamReader(Files.newInputStream(ultima.toPath()), StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(lector).getAsJsonObject().getAsJsonObject("database");
+        }
+    }
+
+    private static int numeroVersion(File esquema) {
+        String nombre = esquema.getName();
+        return Integer.parseInt(nombre.substring(0, nombre.length() - ".json".length()));
+    }
+
+    /**
+     * Carga en la base de datos parcelas y reservas generadas con {@link GeneradorDatos}.
+     *
+     * @param conexion    La conexion a la base de datos.
+     * @param semilla     La semilla del generador.
+     * @param numParcelas El numero de parcelas.
+     * @param numReservas El numero de reservas.
+     */
+    static void poblar(Connection conexion, long semilla, int numParcelas, int numReservas) {
+        new GeneradorDatos(semilla).generar(numParcelas, numReservas, new DestinoJdbc(conexion));
+    }
+
+    /**
+     * Instante (en milisegundos) del 1 de enero del anio indicado, en la zona horaria local.
+     */
+    static long inicioDeAnio(int anio) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(anio, Calendar.JANUARY, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    /** Operacion sobre la base de datos que se ejecuta dentro de una transaccion */
+    interface Operacion {
+        void ejecutar() throws SQLException;
+    }
+
+    /**
+     * Ejecuta una operacion en una transaccion, deshaciendola si falla.
+     */
+    static void enTransaccion(Connection conexion, Operacion operacion) throws SQLException {
+        boolean autoCommit = conexion.getAutoCommit();
+        conexion.setAutoCommit(false);
+        try {
+            operacion.ejecutar();
+            conexion.commit();
+        } catch (SQLException | RuntimeException e) {
+            conexion.rollback();
+            throw e;
+        } finally {
+            conexion.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package es.unizar.eina.M12_camping.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide las conversiones de {@link DateConverter}, que Room ejecuta por cada fecha leida o escrita.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateConverterBenchmark {
+
+    private Long timestamp;
+    private Date fecha;
+
+    @Setup
+    public void preparar() {
+        timestamp = BaseDatosBenchmark.inicioDeAnio(GeneradorDatos.PRIMER_ANIO);
+        fecha = new Date(timestamp);
+    }
+
+    @Benchmark
+    public Date desdeTimestamp() {
+        return DateConverter.fromTimestamp(timestamp);
+    }
+
+    @Benchmark
+    public Long aTimestamp() {
+        return DateConverter.dateToTimestamp(fecha);
+    }
+}
@@ -0,0 +1,91 @@
+package es.unizar.eina.M12_camping.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Destino de {@link GeneradorDatos} que inserta los datos en una conexion JDBC, con una transaccion
+ * por lote y las mismas columnas que escribe Room. Los triggers de la base de datos siguen activos.
+ */
+class DestinoJdbc implements GeneradorDatos.Destino {
+
+    private static final String SQL_PARCELA = "INSERT INTO parcela (nombre, maxOcupantes, " +
+            "precioXpersonaCentimos, descripcion) VALUES (?, ?, ?, ?)";
+    private static final String SQL_RESERVA = "INSERT INTO reserva (nombreCliente, numeroMovil, " +
+            "fechaEntrada, fechaSalida, precioTotalCentimos) VALUES (?, ?, ?, ?, ?)";
+    private static final String SQL_LINEA = "INSERT INTO parcelaReservada (reservaId, parcelaId, " +
+            "numeroOcupantes, precioXpersonaCentimos, numeroNoches) VALUES (?, ?, ?, ?, ?)";
+
+    private final Connection mConexion;
+
+    DestinoJdbc(Connection conexion) {
+        mConexion = conexion;
+    }
+
+    @Override
+    public void insertarParcelas(List<Parcela> parcelas) {
+        try {
+            BaseDatosBenchmark.enTransaccion(mConexion, () -> {
+                try (PreparedStatement insert = mConexion.prepareStatement(SQL_PARCELA,
+                        Statement.RETURN_GENERATED_KEYS)) {
+                    for (Parcela parcela : parcelas) {
+                        insert.setString(1, parcela.getNombre());
+                        insert.setInt(2, parcela.getMaxOcupantes());
+                        insert.setLong(3, parcela.getPrecioXpersonaCentimos());
+                        insert.setString(4, parcela.getDescripcion());
+                        insert.executeUpdate();
+                        parcela.setId((int) idGenerado(insert));
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error insertando parcelas", e);
+        }
+    }
+
+    @Override
+    public void insertarReservas(List<Reserva> reservas, List<List<ParcelaReservada>> lineas) {
+        try {
+            BaseDatosBenchmark.enTransaccion(mConexion, () -> {
+                try (PreparedStatement insertReserva = mConexion.prepareStatement(SQL_RESERVA,
+                        Statement.RETURN_GENERATED_KEYS);
+                     PreparedStatement insertLinea = mConexion.prepareStatement(SQL_LINEA)) {
+                    for (int i = 0; i < reservas.size(); i++) {
+                        Reserva reserva = reservas.get(i);
+                        insertReserva.setString(1, reserva.getNombreCliente());
+                        insertReserva.setString(2, reserva.getNumeroMovil());
+                        insertReserva.setLong(3, reserva.getFechaEntrada().getTime());
+                        insertReserva.setLong(4, reserva.getFechaSalida().getTime());
+                        insertReserva.setLong(5, reserva.getPrecioTotalCentimos());
+                        insertReserva.executeUpdate();
+                        reserva.setId((int) idGenerado(insertReserva));
+
+                        for (ParcelaReservada linea : lineas.get(i)) {
+                            linea.setReservaId(reserva.getId());
+                            insertLinea.setInt(1, linea.getReservaId());
+                            insertLinea.setInt(2, linea.getParcelaId());
+                            insertLinea.setInt(3, linea.getNumeroOcupantes());
+                            insertLinea.setLong(4, linea.getPrecioXpersonaCentimos());
+                            insertLinea.setInt(5, linea.getNumeroNoches());
+                            insertLinea.addBatch();
+                        }
+                    }
+                    insertLinea.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error insertando reservas", e);
+        }
+    }
+
+    private static long idGenerado(PreparedStatement insert) throws SQLException {
+        try (ResultSet claves = insert.getGeneratedKeys()) {
+            claves.next();
+            return claves.getLong(1);
+        }
+    }
+}
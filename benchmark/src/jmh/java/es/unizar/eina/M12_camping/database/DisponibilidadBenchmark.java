@@ -0,0 +1,89 @@
+package es.unizar.eina.M12_camping.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la consulta de parcelas disponibles en un rango de fechas ({@link ParcelaDao#getParcelasDisponibles})
+ * sobre bases de datos de distintos tamanos, incluyendo la lectura de las filas a objetos {@link Parcela}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DisponibilidadBenchmark {
+
+    /**
+     * Misma consulta que ParcelaDao.getParcelasDisponibles, con los parametros en el orden en que
+     * aparecen. Si cambia la consulta del DAO hay que cambiarla tambien aqui.
+     */
+    private static final String SQL_DISPONIBLES = "SELECT * FROM Parcela WHERE id NOT IN " +
+            "(SELECT pr.parcelaId FROM ParcelaReservada pr " +
+            "JOIN Reserva r ON pr.reservaId = r.id " +
+            "WHERE (? BETWEEN r.fechaEntrada AND r.fechaSalida) " +
+            "OR (? BETWEEN r.fechaEntrada AND r.fechaSalida) " +
+            "OR (r.fechaEntrada BETWEEN ? AND ?))";
+
+    @Param({"100", "1000"})
+    public int parcelas;
+
+    @Param({"10000", "100000"})
+    public int reservas;
+
+    private Connection conexion;
+    private PreparedStatement consulta;
+    private Random aleatorio;
+    private long inicioAnio;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        conexion = BaseDatosBenchmark.abrir();
+        BaseDatosBenchmark.poblar(conexion, 42, parcelas, reservas);
+        consulta = conexion.prepareStatement(SQL_DISPONIBLES);
+        aleatorio = new Random(7);
+        inicioAnio = BaseDatosBenchmark.inicioDeAnio(GeneradorDatos.PRIMER_ANIO);
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        consulta.close();
+        conexion.close();
+    }
+
+    @Benchmark
+    public List<Parcela> parcelasDisponibles() throws SQLException {
+        long fechaInicio = inicioAnio + aleatorio.nextInt(365) * BaseDatosBenchmark.MILLIS_POR_DIA;
+        long fechaFin = fechaInicio + (1 + aleatorio.nextInt(14)) * BaseDatosBenchmark.MILLIS_POR_DIA;
+        consulta.setLong(1, fechaInicio);
+        consulta.setLong(2, fechaFin);
+        consulta.setLong(3, fechaInicio);
+        consulta.setLong(4, fechaFin);
+
+        List<Parcela> disponibles = new ArrayList<>();
+        try (ResultSet filas = consulta.executeQuery()) {
+            while (filas.next()) {
+                Parcela parcela = new Parcela(filas.getString("nombre"), filas.getInt("maxOcupantes"),
+                        filas.getLong("precioXpersonaCentimos"), filas.getString("descripcion"));
+                parcela.setId(filas.getInt("id"));
+                disponibles.add(parcela);
+            }
+        }
+        return disponibles;
+    }
+}
@@ -0,0 +1,84 @@
+package es.unizar.eina.M12_camping.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la insercion de reservas con sus parcelas reservadas, en lotes de {@link GeneradorDatos#TAMANO_LOTE}
+ * reservas por transaccion y con los triggers de los resumenes mensuales activos. Los datos se generan
+ * antes de medir y cada iteracion parte de una base de datos nueva con las parcelas ya insertadas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InsercionMasivaBenchmark {
+
+    private static final int PARCELAS = 100;
+
+    @Param({"1000", "10000"})
+    public int reservas;
+
+    private LotesEnMemoria lotes;
+    private Connection conexion;
+    private DestinoJdbc destino;
+
+    @Setup(Level.Trial)
+    public void generar() {
+        lotes = new LotesEnMemoria();
+        new GeneradorDatos(42).generar(PARCELAS, reservas, lotes);
+    }
+
+    @Setup(Level.Iteration)
+    public void preparar() throws Exception {
+        conexion = BaseDatosBenchmark.abrir();
+        destino = new DestinoJdbc(conexion);
+        destino.insertarParcelas(lotes.parcelas);
+    }
+
+    @TearDown(Level.Iteration)
+    public void cerrar() throws SQLException {
+        conexion.close();
+    }
+
+    @Benchmark
+    public void insertarReservas() {
+        for (int i = 0; i < lotes.reservas.size(); i++) {
+            destino.insertarReservas(lotes.reservas.get(i), lotes.lineas.get(i));
+        }
+    }
+
+    /** Destino que guarda en memoria los lotes generados, con IDs de parcela consecutivos */
+    private static class LotesEnMemoria implements GeneradorDatos.Destino {
+        final List<Parcela> parcelas = new ArrayList<>();
+        final List<List<Reserva>> reservas = new ArrayList<>();
+        final List<List<List<ParcelaReservada>>> lineas = new ArrayList<>();
+
+        @Override
+        public void insertarParcelas(List<Parcela> nuevas) {
+            for (Parcela parcela : nuevas) {
+                parcelas.add(parcela);
+                parcela.setId(parcelas.size());
+            }
+        }
+
+        @Override
+        public void insertarReservas(List<Reserva> nuevas, List<List<ParcelaReservada>> nuevasLineas) {
+            reservas.add(nuevas);
+            lineas.add(nuevasLineas);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package es.unizar.eina.M12_camping.database;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el calculo del precio de una reserva: en Java con {@link CalculadoraPrecio}, como hace la
+ * pantalla de edicion, y en SQL con la suma de {@link ParcelaReservadaDao#getPrecioTotalCentimosByReservaId}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PrecioBenchmark {
+
+    /** Misma consulta que ParcelaReservadaDao.getPrecioTotalCentimosByReservaId */
+    private static final String SQL_PRECIO_TOTAL = "SELECT COALESCE(SUM(precioXpersonaCentimos * " +
+            "numeroOcupantes * numeroNoches), 0) FROM parcelaReservada WHERE reservaId = ?";
+
+    private static final int RESERVAS = 10000;
+
+    private Connection conexion;
+    private PreparedStatement consulta;
+    private Random aleatorio;
+
+    /** Lineas de una reserva de varias parcelas */
+    private ParcelaReservada[] lineas;
+    private Date entrada;
+    private Date salida;
+
+    @Setup(Level.Trial)
+    public void preparar() throws Exception {
+        conexion = BaseDatosBenchmark.abrir();
+        BaseDatosBenchmark.poblar(conexion, 42, 100, RESERVAS);
+        consulta = conexion.prepareStatement(SQL_PRECIO_TOTAL);
+        aleatorio = new Random(7);
+
+        entrada = new Date(BaseDatosBenchmark.inicioDeAnio(GeneradorDatos.PRIMER_ANIO));
+        salida = new Date(entrada.getTime() + 6 * BaseDatosBenchmark.MILLIS_POR_DIA);
+        Random datos = new Random(42);
+        lineas = new ParcelaReservada[4];
+        for (int i = 0; i < lineas.length; i++) {
+            lineas[i] = new ParcelaReservada(1, i + 1, 1 + datos.nextInt(6), 500 + 50L * datos.nextInt(31), 0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() throws SQLException {
+        consulta.close();
+        conexion.close();
+    }
+
+    @Benchmark
+    public long precioEnJava() {
+        int noches = CalculadoraPrecio.calcularNoches(entrada, salida);
+        long total = 0;
+        for (ParcelaReservada linea : lineas) {
+            total += CalculadoraPrecio.importeCentimos(linea.getPrecioXpersonaCentimos(),
+                    linea.getNumeroOcupantes(), noches);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long precioEnSql() throws SQLException {
+        consulta.setInt(1, 1 + aleatorio.nextInt(RESERVAS));
+        try (ResultSet fila = consulta.executeQuery()) {
+            fila.next();
+            return fila.getLong(1);
+        }
+    }
+}